@@ -1,9 +1,13 @@
 package ch.alejandrogarciahub.webserver;
 
+import ch.alejandrogarciahub.webserver.handler.HttpExchangeProcessor;
+import ch.alejandrogarciahub.webserver.handler.KeepAlivePolicy;
 import ch.alejandrogarciahub.webserver.observability.AccessLogger;
 import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
 import ch.alejandrogarciahub.webserver.observability.ObservabilityConfig;
+import ch.alejandrogarciahub.webserver.parser.HttpRequestParser;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * Immutable configuration for the web server.
@@ -16,10 +20,15 @@ final class ServerConfig {
   private final int backlog;
   private final int shutdownTimeoutSeconds;
   private final int clientReadTimeoutMs;
+  private final KeepAlivePolicy keepAlivePolicy;
   private final ConnectionHandlerFactory connectionHandlerFactory;
   private final ObservabilityConfig observabilityConfig;
   private final HttpMetrics metrics;
   private final AccessLogger accessLogger;
+  private final ServerEngine engine;
+  private final int eventLoopThreads;
+  private final HttpExchangeProcessor exchangeProcessor;
+  private final Supplier<HttpRequestParser> requestParserFactory;
 
   private ServerConfig(final Builder builder) {
     this.port = builder.port;
@@ -27,11 +36,20 @@ final class ServerConfig {
     this.backlog = builder.backlog;
     this.shutdownTimeoutSeconds = builder.shutdownTimeoutSeconds;
     this.clientReadTimeoutMs = builder.clientReadTimeoutMs;
+    this.keepAlivePolicy = builder.keepAlivePolicy;
     this.connectionHandlerFactory =
         Objects.requireNonNull(builder.connectionHandlerFactory, "connectionHandlerFactory");
     this.observabilityConfig = builder.observabilityConfig;
     this.metrics = builder.metrics;
     this.accessLogger = builder.accessLogger;
+    this.engine = builder.engine;
+    this.eventLoopThreads = builder.eventLoopThreads;
+    this.exchangeProcessor = builder.exchangeProcessor;
+    this.requestParserFactory = builder.requestParserFactory;
+    if (engine == ServerEngine.NIO) {
+      Objects.requireNonNull(exchangeProcessor, "exchangeProcessor");
+      Objects.requireNonNull(requestParserFactory, "requestParserFactory");
+    }
   }
 
   static Builder builder() {
@@ -75,10 +93,15 @@ final class ServerConfig {
     private int backlog;
     private int shutdownTimeoutSeconds;
     private int clientReadTimeoutMs;
+    private KeepAlivePolicy keepAlivePolicy;
     private ConnectionHandlerFactory connectionHandlerFactory;
     private ObservabilityConfig observabilityConfig;
     private HttpMetrics metrics;
     private AccessLogger accessLogger;
+    private ServerEngine engine = ServerEngine.BLOCKING;
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+    private HttpExchangeProcessor exchangeProcessor;
+    private Supplier<HttpRequestParser> requestParserFactory;
 
     Builder port(final int port) {
       this.port = port;
@@ -105,6 +128,11 @@ final class ServerConfig {
       return this;
     }
 
+    Builder keepAlivePolicy(final KeepAlivePolicy keepAlivePolicy) {
+      this.keepAlivePolicy = keepAlivePolicy;
+      return this;
+    }
+
     Builder connectionHandlerFactory(final ConnectionHandlerFactory connectionHandlerFactory) {
       this.connectionHandlerFactory = connectionHandlerFactory;
       return this;
@@ -125,6 +153,26 @@ final class ServerConfig {
       return this;
     }
 
+    Builder engine(final ServerEngine engine) {
+      this.engine = engine;
+      return this;
+    }
+
+    Builder eventLoopThreads(final int eventLoopThreads) {
+      this.eventLoopThreads = eventLoopThreads;
+      return this;
+    }
+
+    Builder exchangeProcessor(final HttpExchangeProcessor exchangeProcessor) {
+      this.exchangeProcessor = exchangeProcessor;
+      return this;
+    }
+
+    Builder requestParserFactory(final Supplier<HttpRequestParser> requestParserFactory) {
+      this.requestParserFactory = requestParserFactory;
+      return this;
+    }
+
     ServerConfig build() {
       return new ServerConfig(this);
     }
@@ -150,6 +198,11 @@ final class ServerConfig {
     return clientReadTimeoutMs;
   }
 
+  /** Returns the keep-alive limits, or null to close idle connections after the read timeout. */
+  KeepAlivePolicy getKeepAlivePolicy() {
+    return keepAlivePolicy;
+  }
+
   ConnectionHandlerFactory getConnectionHandlerFactory() {
     return connectionHandlerFactory;
   }
@@ -165,4 +218,20 @@ final class ServerConfig {
   AccessLogger getAccessLogger() {
     return accessLogger;
   }
+
+  ServerEngine getEngine() {
+    return engine;
+  }
+
+  int getEventLoopThreads() {
+    return eventLoopThreads;
+  }
+
+  HttpExchangeProcessor getExchangeProcessor() {
+    return exchangeProcessor;
+  }
+
+  Supplier<HttpRequestParser> getRequestParserFactory() {
+    return requestParserFactory;
+  }
 }
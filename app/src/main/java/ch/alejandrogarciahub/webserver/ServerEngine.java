@@ -0,0 +1,34 @@
+package ch.alejandrogarciahub.webserver;
+
+import java.util.Locale;
+
+/**
+ * Connection engines the server can run with.
+ *
+ * <p>Selected through the {@code SERVER_ENGINE} environment variable.
+ */
+enum ServerEngine {
+  /** One virtual thread per connection, blocking for the connection's whole lifetime. */
+  BLOCKING,
+
+  /**
+   * Selector-based event loops own idle connections; only parsed requests are dispatched to worker
+   * threads.
+   */
+  NIO;
+
+  /**
+   * Parses an engine name, case-insensitively.
+   *
+   * @param value the engine name (e.g., "nio", "blocking")
+   * @return the corresponding engine
+   * @throws IllegalArgumentException if the name is not recognized
+   */
+  static ServerEngine parse(final String value) {
+    try {
+      return ServerEngine.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown server engine: " + value, e);
+    }
+  }
+}
@@ -3,10 +3,19 @@
  */
 package ch.alejandrogarciahub.webserver;
 
+import ch.alejandrogarciahub.webserver.cache.MappedFileCache;
+import ch.alejandrogarciahub.webserver.cache.StaticFileCache;
 import ch.alejandrogarciahub.webserver.handler.FileServerHandler;
 import ch.alejandrogarciahub.webserver.handler.HttpConnectionHandler;
+import ch.alejandrogarciahub.webserver.handler.HttpExchangeProcessor;
 import ch.alejandrogarciahub.webserver.handler.HttpRequestHandler;
+import ch.alejandrogarciahub.webserver.handler.KeepAlivePolicy;
 import ch.alejandrogarciahub.webserver.handler.MetricsRequestHandler;
+import ch.alejandrogarciahub.webserver.handler.Router;
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.limit.ConcurrencyLimiter;
+import ch.alejandrogarciahub.webserver.limit.RateLimitingHandler;
+import ch.alejandrogarciahub.webserver.nio.NioServerEngine;
 import ch.alejandrogarciahub.webserver.observability.AccessLogger;
 import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
 import ch.alejandrogarciahub.webserver.observability.HttpMetricsRecorder;
@@ -19,6 +28,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,6 +38,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +49,10 @@ import org.slf4j.LoggerFactory;
  * handle concurrent client connections efficiently. Each incoming connection is processed by a
  * dedicated virtual thread, eliminating the need for traditional thread pooling.
  *
+ * <p>Alternatively, with <code>SERVER_ENGINE=nio</code>, a small number of selector event loops own
+ * all connections and only dispatch fully parsed requests to virtual threads, so idle keep-alive
+ * connections do not pin a thread or stream each.
+ *
  * <p>Key features:
  *
  * <ul>
@@ -55,6 +70,9 @@ import org.slf4j.LoggerFactory;
  *   <li><code>SERVER_ACCEPT_TIMEOUT_MS</code>: Accept timeout in milliseconds (default: 5000)
  *   <li><code>SERVER_BACKLOG</code>: Connection queue size (default: 100)
  *   <li><code>SERVER_SHUTDOWN_TIMEOUT_SEC</code>: Graceful shutdown timeout (default: 30)
+ *   <li><code>SERVER_ENGINE</code>: Connection engine, <code>blocking</code> or <code>nio</code>
+ *       (default: blocking)
+ *   <li><code>SERVER_EVENT_LOOPS</code>: Event loop threads for the NIO engine (default: CPU count)
  * </ul>
  *
  * @see <a href="https://openjdk.org/jeps/444">JEP 444: Virtual Threads</a>
@@ -75,6 +93,10 @@ public class WebServer {
   private static final int DEFAULT_BACKLOG = 100;
   private static final int DEFAULT_SHUTDOWN_TIMEOUT_SEC = 30;
   private static final int DEFAULT_CLIENT_SO_TIMEOUT_MS = 15000;
+  private static final int DEFAULT_KEEP_ALIVE_TIMEOUT_MS = 5000;
+  private static final int DEFAULT_KEEP_ALIVE_MAX_REQUESTS = 1000;
+  private static final long DEFAULT_KEEP_ALIVE_MAX_AGE_MS = 0; // No age limit
+  private static final int DEFAULT_EVENT_LOOPS = Runtime.getRuntime().availableProcessors();
 
   // HTTP parser limits defaults
   private static final int DEFAULT_MAX_REQUEST_LINE_LENGTH = 8192;
@@ -82,6 +104,22 @@ public class WebServer {
   private static final int DEFAULT_MAX_HEADERS_COUNT = 100;
   private static final long DEFAULT_MAX_CONTENT_LENGTH = 10 * 1024 * 1024; // 10MB
 
+  // Static file cache defaults
+  private static final long DEFAULT_STATIC_CACHE_MAX_BYTES = 64 * 1024 * 1024; // 64MB
+  private static final long DEFAULT_STATIC_CACHE_MAX_FILE_BYTES = 1024 * 1024; // 1MB
+  private static final long DEFAULT_STATIC_MMAP_MAX_BYTES = 0; // Memory mapping disabled
+  private static final long DEFAULT_STATIC_MMAP_MIN_FILE_BYTES = 1024 * 1024; // 1MB
+
+  // Adaptive concurrency limit defaults
+  private static final int DEFAULT_CONCURRENCY_LIMIT_INITIAL = 100;
+  private static final int DEFAULT_CONCURRENCY_LIMIT_MIN = 10;
+  private static final int DEFAULT_CONCURRENCY_LIMIT_MAX = 0;
+
+  // Per-client rate limit defaults
+  private static final int DEFAULT_RATE_LIMIT_PER_SECOND = 0; // Rate limiting disabled
+  private static final int DEFAULT_RATE_LIMIT_BURST = 50;
+  private static final int DEFAULT_RATE_LIMIT_MAX_CLIENTS = 65536;
+
   // Server configuration
   private final ServerConfig config;
 
@@ -89,6 +127,7 @@ public class WebServer {
   private volatile boolean running = false;
   private ServerSocket serverSocket;
   private ExecutorService executor;
+  private NioServerEngine nioEngine;
   private final ReentrantLock lifecycleLock = new ReentrantLock();
 
   /**
@@ -101,12 +140,43 @@ public class WebServer {
    *   <li><code>SERVER_ACCEPT_TIMEOUT_MS</code>: Accept timeout in milliseconds (default: 5000)
    *   <li><code>SERVER_BACKLOG</code>: Connection queue size (default: 100)
    *   <li><code>SERVER_SHUTDOWN_TIMEOUT_SEC</code>: Graceful shutdown timeout (default: 30)
-   *   <li><code>CLIENT_READ_TIMEOUT_MS</code>: Client socket read timeout (default: 15000)
+   *   <li><code>SERVER_ENGINE</code>: Connection engine, <code>blocking</code> or <code>nio</code>
+   *       (default: blocking)
+   *   <li><code>SERVER_EVENT_LOOPS</code>: Event loop threads for the NIO engine (default: CPU
+   *       count)
+   *   <li><code>CLIENT_READ_TIMEOUT_MS</code>: Client socket read timeout while a request is
+   *       arriving (default: 15000)
+   *   <li><code>HTTP_KEEP_ALIVE_TIMEOUT_MS</code>: Wait for the next request on a persistent
+   *       connection (default: 5000)
+   *   <li><code>HTTP_KEEP_ALIVE_MAX_REQUESTS</code>: Requests per connection, 0 for no limit
+   *       (default: 1000)
+   *   <li><code>HTTP_KEEP_ALIVE_MAX_AGE_MS</code>: Connection age after which it is closed, 0 for
+   *       no limit (default: 0)
    *   <li><code>HTTP_MAX_REQUEST_LINE_LENGTH</code>: Maximum request line length (default: 8192)
    *   <li><code>HTTP_MAX_HEADER_SIZE</code>: Maximum header section size (default: 8192)
    *   <li><code>HTTP_MAX_HEADERS_COUNT</code>: Maximum number of headers (default: 100)
    *   <li><code>HTTP_MAX_CONTENT_LENGTH</code>: Maximum body size in bytes (default: 10485760)
    *   <li><code>DOCUMENT_ROOT</code>: Document root for file serving (default: "./public")
+   *   <li><code>STATIC_CACHE_MAX_BYTES</code>: Off-heap budget of the static file cache, 0 to
+   *       disable (default: 67108864)
+   *   <li><code>STATIC_CACHE_MAX_FILE_BYTES</code>: Largest file kept in the cache (default:
+   *       1048576)
+   *   <li><code>STATIC_MMAP_MAX_BYTES</code>: Cap on memory-mapped hot files, 0 to disable
+   *       (default: 0)
+   *   <li><code>STATIC_MMAP_MIN_FILE_BYTES</code>: Smallest file served from a mapping (default:
+   *       1048576)
+   *   <li><code>HTTP_CONCURRENCY_LIMIT_MAX</code>: Upper bound of the adaptive concurrency limit, 0
+   *       to admit every request (default: 0)
+   *   <li><code>HTTP_CONCURRENCY_LIMIT_INITIAL</code>: Concurrency limit before latency is known
+   *       (default: 100)
+   *   <li><code>HTTP_CONCURRENCY_LIMIT_MIN</code>: Lower bound of the concurrency limit (default:
+   *       10)
+   *   <li><code>HTTP_RATE_LIMIT_PER_SECOND</code>: Sustained requests per second per client, 0 to
+   *       disable (default: 0)
+   *   <li><code>HTTP_RATE_LIMIT_BURST</code>: Requests a client may send at once (default: 50)
+   *   <li><code>HTTP_RATE_LIMIT_MAX_CLIENTS</code>: Clients tracked at once (default: 65536)
+   *   <li><code>HTTP_RATE_LIMIT_KEY_HEADER</code>: Header identifying clients instead of their
+   *       address, e.g. X-Forwarded-For behind a trusted proxy (default: unset)
    * </ul>
    */
   public WebServer() {
@@ -117,9 +187,11 @@ public class WebServer {
   private static ServerConfig loadConfigFromEnvironment() {
     final ObservabilityConfig observabilityConfig = ObservabilityConfig.fromEnvironment();
     final HttpMetricsRecorder sharedMetrics =
-        observabilityConfig.isMetricsEnabled() ? new HttpMetricsRecorder() : null;
+        observabilityConfig.isMetricsEnabled()
+            ? new HttpMetricsRecorder(observabilityConfig.getMaxMetricsRoutes())
+            : null;
     final AccessLogger sharedAccessLogger =
-        new AccessLogger(observabilityConfig.isAccessLogEnabled());
+        createAccessLogger(observabilityConfig.isAccessLogEnabled());
 
     final int port = getEnvAsInt("SERVER_PORT", DEFAULT_PORT);
     final int acceptTimeoutMs = getEnvAsInt("SERVER_ACCEPT_TIMEOUT_MS", DEFAULT_ACCEPT_TIMEOUT_MS);
@@ -128,6 +200,7 @@ public class WebServer {
         getEnvAsInt("SERVER_SHUTDOWN_TIMEOUT_SEC", DEFAULT_SHUTDOWN_TIMEOUT_SEC);
     final int clientReadTimeoutMs =
         getEnvAsInt("CLIENT_READ_TIMEOUT_MS", DEFAULT_CLIENT_SO_TIMEOUT_MS);
+    final KeepAlivePolicy keepAlivePolicy = createKeepAlivePolicy();
     final int maxRequestLineLength =
         getEnvAsInt("HTTP_MAX_REQUEST_LINE_LENGTH", DEFAULT_MAX_REQUEST_LINE_LENGTH);
     final int maxHeaderSize = getEnvAsInt("HTTP_MAX_HEADER_SIZE", DEFAULT_MAX_HEADER_SIZE);
@@ -135,21 +208,52 @@ public class WebServer {
     final long maxContentLength =
         getEnvAsLong("HTTP_MAX_CONTENT_LENGTH", DEFAULT_MAX_CONTENT_LENGTH);
     final String documentRoot = System.getenv().getOrDefault("DOCUMENT_ROOT", "./public");
-
-    final FileServerHandler fileHandler = new FileServerHandler(Paths.get(documentRoot));
+    final ServerEngine engine = getEnvAsEngine("SERVER_ENGINE", ServerEngine.BLOCKING);
+    final int eventLoopThreads = getEnvAsInt("SERVER_EVENT_LOOPS", DEFAULT_EVENT_LOOPS);
+    final long staticCacheMaxBytes =
+        getEnvAsLong("STATIC_CACHE_MAX_BYTES", DEFAULT_STATIC_CACHE_MAX_BYTES);
+    final long staticCacheMaxFileBytes =
+        getEnvAsLong("STATIC_CACHE_MAX_FILE_BYTES", DEFAULT_STATIC_CACHE_MAX_FILE_BYTES);
+
+    final StaticFileCache staticFileCache =
+        staticCacheMaxBytes > 0 && staticCacheMaxFileBytes > 0
+            ? new StaticFileCache(staticCacheMaxBytes, staticCacheMaxFileBytes, sharedMetrics)
+            : null;
+    final long staticMmapMaxBytes =
+        getEnvAsLong("STATIC_MMAP_MAX_BYTES", DEFAULT_STATIC_MMAP_MAX_BYTES);
+    final long staticMmapMinFileBytes =
+        getEnvAsLong("STATIC_MMAP_MIN_FILE_BYTES", DEFAULT_STATIC_MMAP_MIN_FILE_BYTES);
+    final MappedFileCache mappedFileCache =
+        staticMmapMaxBytes > 0
+            ? new MappedFileCache(Math.max(0, staticMmapMinFileBytes), staticMmapMaxBytes)
+            : null;
+    final FileServerHandler fileHandler =
+        new FileServerHandler(Paths.get(documentRoot), staticFileCache, mappedFileCache);
     final HttpRequestHandler rootHandler =
-        buildRootHandler(fileHandler, sharedMetrics, observabilityConfig);
+        rateLimited(buildRootHandler(fileHandler, sharedMetrics, observabilityConfig));
+
+    final ConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+
+    // One pipeline shared by both engines so they report identical logs and metrics
+    final HttpExchangeProcessor exchangeProcessor =
+        new HttpExchangeProcessor(
+            rootHandler,
+            sharedMetrics,
+            observabilityConfig,
+            sharedAccessLogger,
+            concurrencyLimiter);
+    final Supplier<HttpRequestParser> requestParserFactory =
+        () ->
+            new HttpRequestParser(
+                maxRequestLineLength, maxHeaderSize, maxHeadersCount, maxContentLength);
 
     final ConnectionHandlerFactory connectionHandlerFactory =
         () ->
             new HttpConnectionHandler(
-                rootHandler,
-                new HttpRequestParser(
-                    maxRequestLineLength, maxHeaderSize, maxHeadersCount, maxContentLength),
+                exchangeProcessor,
+                requestParserFactory.get(),
                 clientReadTimeoutMs,
-                sharedMetrics,
-                observabilityConfig,
-                sharedAccessLogger);
+                keepAlivePolicy);
 
     return ServerConfig.builder()
         .port(port)
@@ -157,29 +261,109 @@ public class WebServer {
         .backlog(backlog)
         .shutdownTimeoutSeconds(shutdownTimeoutSeconds)
         .clientReadTimeoutMs(clientReadTimeoutMs)
+        .keepAlivePolicy(keepAlivePolicy)
         .connectionHandlerFactory(connectionHandlerFactory)
         .observabilityConfig(observabilityConfig)
         .metrics(sharedMetrics)
         .accessLogger(sharedAccessLogger)
+        .engine(engine)
+        .eventLoopThreads(eventLoopThreads)
+        .exchangeProcessor(exchangeProcessor)
+        .requestParserFactory(requestParserFactory)
         .build();
   }
 
+  /** Reads the keep-alive limits, ignoring values that would disable keep-alive altogether. */
+  private static KeepAlivePolicy createKeepAlivePolicy() {
+    final int idleTimeoutMs =
+        getEnvAsInt("HTTP_KEEP_ALIVE_TIMEOUT_MS", DEFAULT_KEEP_ALIVE_TIMEOUT_MS);
+    return new KeepAlivePolicy(
+        idleTimeoutMs > 0 ? idleTimeoutMs : DEFAULT_KEEP_ALIVE_TIMEOUT_MS,
+        Math.max(0, getEnvAsInt("HTTP_KEEP_ALIVE_MAX_REQUESTS", DEFAULT_KEEP_ALIVE_MAX_REQUESTS)),
+        Math.max(0, getEnvAsLong("HTTP_KEEP_ALIVE_MAX_AGE_MS", DEFAULT_KEEP_ALIVE_MAX_AGE_MS)));
+  }
+
+  /**
+   * Creates the access logger, writing to OBS_ACCESS_LOG_FILE if set and to the {@code
+   * http.access} SLF4J channel otherwise.
+   */
+  private static AccessLogger createAccessLogger(final boolean enabled) {
+    final int capacity =
+        Math.max(1, getEnvAsInt("OBS_ACCESS_LOG_BUFFER_SIZE", AccessLogger.DEFAULT_CAPACITY));
+    final String file = System.getenv("OBS_ACCESS_LOG_FILE");
+    if (!enabled || file == null || file.isBlank()) {
+      return new AccessLogger(
+          enabled, AccessLogger.loggerSink(LoggerFactory.getLogger("http.access")), capacity);
+    }
+    try {
+      return new AccessLogger(true, AccessLogger.fileSink(Path.of(file.trim())), capacity);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Cannot open access log file " + file, e);
+    }
+  }
+
+  /** Wraps the handler in a per-client rate limiter when one is configured. */
+  private static HttpRequestHandler rateLimited(final HttpRequestHandler handler) {
+    final int requestsPerSecond =
+        getEnvAsInt("HTTP_RATE_LIMIT_PER_SECOND", DEFAULT_RATE_LIMIT_PER_SECOND);
+    if (requestsPerSecond <= 0) {
+      return handler;
+    }
+    final String keyHeader = System.getenv("HTTP_RATE_LIMIT_KEY_HEADER");
+    return new RateLimitingHandler(
+        handler,
+        requestsPerSecond,
+        Math.max(1, getEnvAsInt("HTTP_RATE_LIMIT_BURST", DEFAULT_RATE_LIMIT_BURST)),
+        Math.max(1, getEnvAsInt("HTTP_RATE_LIMIT_MAX_CLIENTS", DEFAULT_RATE_LIMIT_MAX_CLIENTS)),
+        keyHeader == null || keyHeader.isBlank() ? null : keyHeader.trim());
+  }
+
+  /** Creates the admission controller, or null when it is disabled. */
+  private static ConcurrencyLimiter createConcurrencyLimiter() {
+    final int maxLimit = getEnvAsInt("HTTP_CONCURRENCY_LIMIT_MAX", DEFAULT_CONCURRENCY_LIMIT_MAX);
+    if (maxLimit <= 0) {
+      return null;
+    }
+    // WHY clamp: Setting only the maximum must not make the default initial limit invalid
+    final int initialLimit =
+        Math.min(
+            maxLimit,
+            getEnvAsInt("HTTP_CONCURRENCY_LIMIT_INITIAL", DEFAULT_CONCURRENCY_LIMIT_INITIAL));
+    final int minLimit =
+        Math.max(
+            1,
+            Math.min(
+                initialLimit,
+                getEnvAsInt("HTTP_CONCURRENCY_LIMIT_MIN", DEFAULT_CONCURRENCY_LIMIT_MIN)));
+    return new ConcurrencyLimiter(Math.max(minLimit, initialLimit), minLimit, maxLimit);
+  }
+
   private static HttpRequestHandler buildRootHandler(
       final HttpRequestHandler fileHandler,
       final HttpMetrics metrics,
       final ObservabilityConfig observabilityConfig) {
+    final Router.Builder routes = Router.builder();
     if (metrics != null && observabilityConfig.isMetricsEnabled()) {
-      final MetricsRequestHandler metricsHandler = new MetricsRequestHandler(metrics);
       final String metricsPath = observabilityConfig.getMetricsEndpointPath();
-
-      return request -> {
-        if (metricsPath.equals(request.getPath())) {
-          return metricsHandler.handle(request);
-        }
-        return fileHandler.handle(request);
-      };
+      routes.route(HttpMethod.GET, metricsPath, new MetricsRequestHandler(metrics));
+      // For scrapers that cannot set Accept: the same metrics, always in the Prometheus format
+      final String prometheusPath =
+          (metricsPath.endsWith("/") ? metricsPath : metricsPath + "/") + "prometheus";
+      routes.route(HttpMethod.GET, prometheusPath, new MetricsRequestHandler(metrics, true));
+    }
+    // WHY mount at root: Every other path is a file lookup; the file handler answers 405 itself
+    routes.mount("/", fileHandler);
+    if (metrics != null) {
+      // Same files, but a route ID of their own, so metrics tell these prefixes apart
+      for (final String prefix : observabilityConfig.getMetricsRoutes()) {
+        routes.mount(prefix, fileHandler);
+      }
+    }
+    final Router router = routes.build();
+    if (metrics != null) {
+      metrics.registerRoutes(router.routeNames());
     }
-    return fileHandler;
+    return router;
   }
 
   /**
@@ -255,11 +439,14 @@ public class WebServer {
     this.config = config;
 
     logger.info(
-        "Server configured: port={}, acceptTimeout={}ms, backlog={}, clientReadTimeout={}ms, shutdownTimeout={}s",
+        "Server configured: engine={}, port={}, acceptTimeout={}ms, backlog={}, "
+            + "clientReadTimeout={}ms, keepAlive={}, shutdownTimeout={}s",
+        config.getEngine(),
         config.getPort(),
         config.getAcceptTimeoutMs(),
         config.getBacklog(),
         config.getClientReadTimeoutMs(),
+        config.getKeepAlivePolicy(),
         config.getShutdownTimeoutSeconds());
   }
 
@@ -273,6 +460,9 @@ public class WebServer {
    * indefinitely. Timeout exceptions are expected and indicate no client connected within the
    * timeout period.
    *
+   * <p>With the NIO engine, accepted connections are handed to the event loops instead and the
+   * executor only runs request exchanges.
+   *
    * @throws IOException if the server socket cannot be created, bound, or configured
    * @throws IllegalStateException if the server is already running
    */
@@ -283,14 +473,11 @@ public class WebServer {
         throw new IllegalStateException("Server is already running");
       }
 
-      // Create and configure server socket
-      serverSocket = new ServerSocket();
-      serverSocket.setReuseAddress(true); // Allow immediate rebind after restart
-      serverSocket.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
-      serverSocket.setSoTimeout(config.getAcceptTimeoutMs()); // Enable periodic shutdown checks
-
-      // Create virtual thread executor
-      executor = createExecutor();
+      if (config.getEngine() == ServerEngine.NIO) {
+        startNioEngine();
+      } else {
+        startBlockingEngine();
+      }
 
       running = true;
       logger.info("Server started on port {}", config.getPort());
@@ -298,6 +485,45 @@ public class WebServer {
       lifecycleLock.unlock();
     }
 
+    if (nioEngine != null) {
+      // Blocks until shutdown() closes the listening channel
+      nioEngine.acceptLoop();
+    } else {
+      acceptLoop();
+    }
+    logger.info("Server stopped accepting new connections");
+  }
+
+  private void startBlockingEngine() throws IOException {
+    // Create and configure server socket
+    // WHY through a channel: accepted sockets then have one, so file bodies can use sendfile
+    serverSocket = ServerSocketChannel.open().socket();
+    serverSocket.setReuseAddress(true); // Allow immediate rebind after restart
+    serverSocket.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+    serverSocket.setSoTimeout(config.getAcceptTimeoutMs()); // Enable periodic shutdown checks
+
+    // Create virtual thread executor
+    executor = createExecutor();
+  }
+
+  private void startNioEngine() throws IOException {
+    // Virtual threads run request exchanges only; event loops own the connections
+    executor = createExecutor();
+    nioEngine =
+        NioServerEngine.builder()
+            .port(config.getPort())
+            .backlog(config.getBacklog())
+            .eventLoopThreads(config.getEventLoopThreads())
+            .clientReadTimeoutMs(config.getClientReadTimeoutMs())
+            .keepAlivePolicy(config.getKeepAlivePolicy())
+            .exchangeProcessor(config.getExchangeProcessor())
+            .parserFactory(config.getRequestParserFactory())
+            .workers(executor)
+            .build();
+    nioEngine.start();
+  }
+
+  private void acceptLoop() {
     // Accept loop - runs until shutdown() is called
     // Use the thread interrupt flag as an additional escape hatch in case the
     // accept loop needs
@@ -328,8 +554,6 @@ public class WebServer {
         }
       }
     }
-
-    logger.info("Server stopped accepting new connections");
   }
 
   /**
@@ -387,6 +611,7 @@ public class WebServer {
    *   <li>Signal executor to reject new tasks
    *   <li>Wait up to {@code shutdownTimeoutSeconds} for active connections to complete
    *   <li>Force termination of remaining connections if timeout expires
+   *   <li>Stop the NIO event loops, closing idle connections (NIO engine only)
    * </ol>
    *
    * <p>This method blocks until shutdown completes or the timeout expires.
@@ -412,6 +637,9 @@ public class WebServer {
           logger.error("Error closing server socket", e);
         }
       }
+      if (nioEngine != null) {
+        nioEngine.stopAccepting();
+      }
 
       // Phase 2: Shutdown executor (no new tasks accepted)
       if (executor != null) {
@@ -433,6 +661,16 @@ public class WebServer {
         }
       }
 
+      // Phase 4: Close idle keep-alive connections still owned by the event loops
+      if (nioEngine != null) {
+        nioEngine.stopEventLoops(TimeUnit.SECONDS.toMillis(config.getShutdownTimeoutSeconds()));
+      }
+
+      // Phase 5: Write out the access log entries of the last requests
+      if (config.getAccessLogger() != null && !config.getAccessLogger().flush()) {
+        logger.warn("Access log entries were not written before shutdown completed");
+      }
+
       logger.info("Server shutdown complete");
     } finally {
       lifecycleLock.unlock();
@@ -504,6 +742,26 @@ public class WebServer {
     }
   }
 
+  /**
+   * Retrieves the connection engine from an environment variable with a default fallback.
+   *
+   * @param key the environment variable name
+   * @param defaultValue the engine to use if the variable is not set or invalid
+   * @return the parsed engine or the default value
+   */
+  private static ServerEngine getEnvAsEngine(final String key, final ServerEngine defaultValue) {
+    final String value = System.getenv(key);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return ServerEngine.parse(value);
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Invalid engine for {}: '{}', using default: {}", key, value, defaultValue);
+      return defaultValue;
+    }
+  }
+
   private ExecutorService createExecutor() {
     // Name virtual threads to keep diagnostics (logs, dumps, profilers) readable.
     final ThreadFactory factory = Thread.ofVirtual().name("http-worker-", 0).factory();
@@ -0,0 +1,66 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import ch.alejandrogarciahub.webserver.http.EntityTag;
+import ch.alejandrogarciahub.webserver.http.HttpDate;
+import java.nio.ByteBuffer;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Immutable snapshot of a file held by {@link StaticFileCache} or {@link MappedFileCache}.
+ *
+ * <p>The content lives in a read-only direct or mapped buffer shared by every response that serves
+ * it; each caller receives its own view via {@link #content()}, so concurrent writes never disturb
+ * each other's position.
+ *
+ * <p>Validators (ETag and Last-Modified) are rendered once when the file version is loaded, so
+ * conditional requests served from the cache allocate nothing.
+ */
+public final class CachedFile {
+  private final ByteBuffer content;
+  private final String contentType;
+  private final FileTime lastModified;
+  private final String etag;
+  private final String lastModifiedDate;
+
+  CachedFile(final ByteBuffer content, final String contentType, final FileTime lastModified) {
+    this.content = content.asReadOnlyBuffer();
+    this.contentType = contentType;
+    this.lastModified = lastModified;
+    this.etag = EntityTag.forFile(content.capacity(), lastModified.toMillis());
+    this.lastModifiedDate = HttpDate.format(lastModified.toMillis());
+  }
+
+  /** Returns a fresh read-only view of the file bytes, positioned at the start. */
+  public ByteBuffer content() {
+    return content.duplicate();
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  public FileTime lastModified() {
+    return lastModified;
+  }
+
+  /** Returns the entity tag of this file version. */
+  public String etag() {
+    return etag;
+  }
+
+  /** Returns the modification time formatted as an HTTP-date for the Last-Modified header. */
+  public String lastModifiedDate() {
+    return lastModifiedDate;
+  }
+
+  /** Returns the file size in bytes, which is also the entry's weight in the cache budget. */
+  public long size() {
+    return content.capacity();
+  }
+
+  /** Returns true if the file still has the size and modification time it had when loaded. */
+  boolean matches(final BasicFileAttributes attributes) {
+    return size() == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+  }
+}
@@ -0,0 +1,94 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+/**
+ * Approximate access-frequency counter used for TinyLFU admission.
+ *
+ * <p>A count-min sketch with four 4-bit counters per key, packed sixteen to a {@code long}. Counts
+ * saturate at 15 and every counter is halved once the number of recorded increments reaches the
+ * sample size, so the sketch tracks recent popularity rather than all-time totals.
+ *
+ * <p><strong>Thread Safety:</strong> Not thread-safe; callers guard access with their own lock.
+ */
+final class FrequencySketch {
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_COUNT = 15;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Creates a sketch sized for the expected number of distinct cached keys.
+   *
+   * @param expectedEntries estimate of how many entries the cache holds
+   */
+  FrequencySketch(final int expectedEntries) {
+    final int capacity = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 24)));
+    this.table = new long[capacity];
+    this.tableMask = capacity - 1;
+    this.sampleSize = capacity * 10;
+  }
+
+  /** Returns the estimated number of recent occurrences of the key, at most 15. */
+  int frequency(final Object key) {
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < SEEDS.length; i++) {
+      final int index = indexOf(hash, i);
+      final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Records an occurrence of the key, aging all counters when the sample period is reached. */
+  void increment(final Object key) {
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++additions == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(final int index, final int counter) {
+    final int offset = counter << 2;
+    final long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter; odd counts lose their remainder, which is subtracted from additions. */
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions = (additions - (odd >>> 2)) >>> 1;
+  }
+
+  private int indexOf(final int hash, final int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+
+  private static int spread(final int hashCode) {
+    int h = hashCode * 0x9e3779b9;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -0,0 +1,169 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shared read-only memory mappings for hot large static files.
+ *
+ * <p>Each mapped file has one {@link MappedByteBuffer}; every response writes its own view of it,
+ * so repeated requests need neither a file descriptor nor a heap copy. The bytes stay in the page
+ * cache, which the kernel may reclaim under memory pressure - this mode trades page-cache residency
+ * for fewer syscalls.
+ *
+ * <p>A file is mapped only from its second recent request ({@link FrequencySketch}), so one-off
+ * downloads keep using sendfile. The total mapped size is capped; the least recently used mappings
+ * are dropped first.
+ *
+ * <p>WHY a sketch of its own: Files small enough for {@link StaticFileCache} never reach this
+ * cache, so the two track disjoint sets of files; sharing one sketch would only make each cache's
+ * counters noisier and force a common lock on both lookup paths.
+ *
+ * <p><strong>Remapping:</strong> A mapping whose file size or modification time no longer matches
+ * the request's attributes is replaced. Dropped mappings are released by the garbage collector
+ * once in-flight responses finish with them, so a remap never pulls memory from under a writer.
+ *
+ * <p><strong>Thread Safety:</strong> Lookups run under a single lock; mapping happens outside it.
+ */
+public final class MappedFileCache {
+  private static final int MIN_ACCESSES = 2;
+  // Used to size the frequency sketch; mapped files are at least several hundred KiB
+  private static final long AVERAGE_ENTRY_BYTES = 1024 * 1024;
+
+  private final long minFileBytes;
+  private final long maxMappedBytes;
+  private final FrequencySketch sketch;
+
+  // Access-ordered: iteration starts at the least recently used mapping
+  private final LinkedHashMap<Path, CachedFile> mappings = new LinkedHashMap<>(16, 0.75f, true);
+  private long mappedBytes;
+
+  /**
+   * Constructs a MappedFileCache.
+   *
+   * @param minFileBytes smallest file that is mapped; smaller files are better served by copies
+   * @param maxMappedBytes cap on the total size of all live mappings
+   */
+  public MappedFileCache(final long minFileBytes, final long maxMappedBytes) {
+    if (minFileBytes < 0 || maxMappedBytes <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid mapping limits: minFileBytes="
+              + minFileBytes
+              + ", maxMappedBytes="
+              + maxMappedBytes);
+    }
+    this.minFileBytes = minFileBytes;
+    this.maxMappedBytes = maxMappedBytes;
+    final long expectedEntries = maxMappedBytes / AVERAGE_ENTRY_BYTES;
+    this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, expectedEntries));
+  }
+
+  /** Returns true if a file of the given size is served from a mapping once it is hot. */
+  public boolean isMappable(final long size) {
+    // A single MappedByteBuffer is limited to Integer.MAX_VALUE bytes
+    return size >= minFileBytes && size <= maxMappedBytes && size <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns the shared mapping of a file, mapping it once the file is requested repeatedly.
+   *
+   * @param file the absolute, normalized file path
+   * @param attributes attributes of the file read for this request
+   * @param contentTypeResolver computes the MIME type when the file is mapped
+   * @return the mapped file, or null if the file is not (yet) worth mapping or changed meanwhile
+   * @throws IOException if the file cannot be mapped
+   */
+  public CachedFile get(
+      final Path file,
+      final BasicFileAttributes attributes,
+      final Function<Path, String> contentTypeResolver)
+      throws IOException {
+    if (!isMappable(attributes.size())) {
+      return null;
+    }
+    synchronized (this) {
+      sketch.increment(file);
+      final CachedFile mapped = mappings.get(file);
+      if (mapped != null) {
+        if (mapped.matches(attributes)) {
+          return mapped;
+        }
+        remove(file);
+      }
+      if (sketch.frequency(file) < MIN_ACCESSES) {
+        return null;
+      }
+    }
+
+    final CachedFile mapped = map(file, attributes, contentTypeResolver);
+    if (mapped != null) {
+      install(file, mapped);
+    }
+    return mapped;
+  }
+
+  /** Returns the total size of the live mappings. */
+  public synchronized long mappedBytes() {
+    return mappedBytes;
+  }
+
+  /** Returns true if the file currently has a mapping. */
+  public synchronized boolean contains(final Path file) {
+    return mappings.containsKey(file);
+  }
+
+  private synchronized void install(final Path file, final CachedFile mapped) {
+    // Another thread may have mapped the same file concurrently; keep the newest mapping only
+    remove(file);
+    mappings.put(file, mapped);
+    mappedBytes += mapped.size();
+
+    final Iterator<Map.Entry<Path, CachedFile>> eldest = mappings.entrySet().iterator();
+    while (mappedBytes > maxMappedBytes && eldest.hasNext()) {
+      final Map.Entry<Path, CachedFile> victim = eldest.next();
+      if (victim.getKey().equals(file)) {
+        continue;
+      }
+      mappedBytes -= victim.getValue().size();
+      eldest.remove();
+    }
+  }
+
+  private void remove(final Path file) {
+    final CachedFile removed = mappings.remove(file);
+    if (removed != null) {
+      mappedBytes -= removed.size();
+    }
+  }
+
+  /**
+   * Maps the whole file read-only.
+   *
+   * <p>WHY null on size mismatch: The file changed between stat and map; a mapping validated
+   * against the old attributes would be served as if it were current.
+   */
+  private static CachedFile map(
+      final Path file,
+      final BasicFileAttributes attributes,
+      final Function<Path, String> contentTypeResolver)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() != attributes.size()) {
+        return null;
+      }
+      // The mapping stays valid after the channel is closed
+      final MappedByteBuffer mapping =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, attributes.size());
+      return new CachedFile(
+          mapping, contentTypeResolver.apply(file), attributes.lastModifiedTime());
+    }
+  }
+}
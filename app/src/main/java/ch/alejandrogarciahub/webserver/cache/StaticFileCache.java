@@ -0,0 +1,377 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of static file contents with W-TinyLFU admission and eviction.
+ *
+ * <p>File bytes are kept off-heap in direct buffers, so a large cache does not grow GC pressure,
+ * and responses write them to the socket without another copy. The byte budget is split into:
+ *
+ * <ul>
+ *   <li><strong>Window</strong> (1%) - small LRU that absorbs new entries and recency bursts
+ *   <li><strong>Probation</strong> - main-space LRU for entries that won admission once
+ *   <li><strong>Protected</strong> (80% of main) - entries hit again while on probation
+ * </ul>
+ *
+ * <p>An entry leaving the window only enters the main space if its estimated access frequency
+ * ({@link FrequencySketch}) beats every main-space entry it would displace. A one-off scan of large
+ * files therefore passes through the window without flushing hot assets.
+ *
+ * <p><strong>Admission before loading:</strong> On a miss the same test is run before the file is
+ * read, unless the file fits the window as is. A file that would lose against the current
+ * main-space victims is served from disk without allocating a direct buffer; it is loaded once it
+ * has been requested often enough to win.
+ *
+ * <p><strong>Invalidation:</strong> Callers pass the attributes they already read for the request;
+ * an entry whose size or modification time differs is dropped and reloaded. This costs no extra
+ * syscall and needs no background watcher thread.
+ *
+ * <p><strong>Thread Safety:</strong> Hits read a {@link ConcurrentHashMap} without locking and
+ * record the access in a bounded buffer; the sketch and the LRU order are updated from that buffer
+ * under the eviction lock, which misses take anyway and hits only try to take once it fills up.
+ * When the buffer is full, further hits go unrecorded until it is drained - frequency estimates
+ * are approximate already. File reads happen outside the lock, so a slow disk never blocks hits.
+ */
+public final class StaticFileCache {
+  private static final long WINDOW_PERCENT = 1;
+  private static final long PROTECTED_PERCENT = 80;
+  // Used to size the frequency sketch; typical static assets are a few KiB
+  private static final long AVERAGE_ENTRY_BYTES = 4096;
+  // Power of two; hits try to drain once half of it is pending
+  private static final int READ_BUFFER_SIZE = 128;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  private static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+  private final long maxFileBytes;
+  private final long windowMaxBytes;
+  private final long mainMaxBytes;
+  private final long protectedMaxBytes;
+  private final HttpMetrics metrics;
+
+  // Every cached entry, readable without the lock; written only under evictionLock
+  private final ConcurrentHashMap<Path, CachedFile> data = new ConcurrentHashMap<>();
+
+  // Hits recorded since the last drain; slots [readHead, readTail) are pending
+  private final AtomicReferenceArray<Path> readBuffer =
+      new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+  private final AtomicLong readTail = new AtomicLong();
+  private volatile long readHead;
+
+  // Guards everything below as well as writes to data and readHead
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final FrequencySketch sketch;
+  // Access-ordered: iteration starts at the least recently used entry
+  private final LinkedHashMap<Path, CachedFile> window = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<Path, CachedFile> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<Path, CachedFile> protectedSegment =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long windowBytes;
+  private long probationBytes;
+  private long protectedBytes;
+
+  /**
+   * Constructs a StaticFileCache.
+   *
+   * @param maxBytes total byte budget for cached file contents
+   * @param maxFileBytes largest file that is cached; bigger files are always served from disk
+   * @param metrics sink for hit, miss and eviction counts (nullable)
+   */
+  public StaticFileCache(final long maxBytes, final long maxFileBytes, final HttpMetrics metrics) {
+    if (maxBytes <= 0 || maxFileBytes <= 0) {
+      throw new IllegalArgumentException(
+          "Cache limits must be positive: maxBytes=" + maxBytes + ", maxFileBytes=" + maxFileBytes);
+    }
+    this.maxFileBytes = Math.min(maxFileBytes, Math.min(maxBytes, Integer.MAX_VALUE));
+    this.windowMaxBytes = maxBytes * WINDOW_PERCENT / 100;
+    this.mainMaxBytes = maxBytes - windowMaxBytes;
+    this.protectedMaxBytes = mainMaxBytes * PROTECTED_PERCENT / 100;
+    this.metrics = metrics;
+    this.sketch =
+        new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_ENTRY_BYTES));
+  }
+
+  /** Returns true if a file of the given size is small enough to be cached. */
+  public boolean isCacheable(final long size) {
+    return size <= maxFileBytes;
+  }
+
+  /**
+   * Returns the cached contents of a file, loading it on a miss if it would be admitted.
+   *
+   * @param file the absolute, normalized file path
+   * @param attributes attributes of the file read for this request
+   * @param contentTypeResolver computes the MIME type when the file is loaded
+   * @return the cached file, or null if it is not cacheable, not (yet) worth caching, or changed
+   *     while being read
+   * @throws IOException if the file cannot be read
+   */
+  public CachedFile get(
+      final Path file,
+      final BasicFileAttributes attributes,
+      final Function<Path, String> contentTypeResolver)
+      throws IOException {
+    if (!isCacheable(attributes.size())) {
+      return null;
+    }
+    final CachedFile cached = data.get(file);
+    if (cached != null && !isStale(cached, attributes)) {
+      recordRead(file);
+      if (metrics != null) {
+        metrics.recordCacheHit();
+      }
+      return cached;
+    }
+    if (metrics != null) {
+      metrics.recordCacheMiss();
+    }
+
+    if (!shouldLoad(file, attributes)) {
+      return null;
+    }
+    final CachedFile loaded = load(file, attributes, contentTypeResolver);
+    if (loaded != null) {
+      admit(file, loaded);
+    }
+    return loaded;
+  }
+
+  /** Returns the number of bytes currently held across all segments. */
+  public long weightedSize() {
+    evictionLock.lock();
+    try {
+      return windowBytes + probationBytes + protectedBytes;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /** Returns true if the file is currently cached. */
+  public boolean contains(final Path file) {
+    return data.containsKey(file);
+  }
+
+  /**
+   * Appends a hit to the read buffer, dropping it if the buffer is full.
+   *
+   * <p>WHY a buffer: Updating the sketch and the LRU order needs the lock; queueing the key costs
+   * one compare-and-set, so concurrent hits on hot files never wait for each other.
+   */
+  private void recordRead(final Path file) {
+    final long head = readHead;
+    final long tail = readTail.get();
+    final long pending = tail - head;
+    if (pending < READ_BUFFER_SIZE && readTail.compareAndSet(tail, tail + 1)) {
+      readBuffer.lazySet((int) (tail & READ_BUFFER_MASK), file);
+    }
+    if (pending >= READ_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+      try {
+        drainReads();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  /** Replays buffered hits into the sketch and the segments. Caller holds the lock. */
+  private void drainReads() {
+    long head = readHead;
+    final long tail = readTail.get();
+    while (head < tail) {
+      final int index = (int) (head & READ_BUFFER_MASK);
+      final Path file = readBuffer.get(index);
+      if (file == null) {
+        // Claimed but not yet published; the next drain picks it up
+        break;
+      }
+      readBuffer.lazySet(index, null);
+      head++;
+      onAccess(file);
+    }
+    readHead = head;
+  }
+
+  private void onAccess(final Path file) {
+    sketch.increment(file);
+    if (window.get(file) != null || protectedSegment.get(file) != null) {
+      return;
+    }
+    final CachedFile cached = probation.remove(file);
+    if (cached == null) {
+      // Evicted since the hit; only the frequency counts
+      return;
+    }
+    probationBytes -= cached.size();
+    // Second hit in the main space: promote, demoting protected overflow back to probation
+    protectedSegment.put(file, cached);
+    protectedBytes += cached.size();
+    while (protectedBytes > protectedMaxBytes) {
+      final Map.Entry<Path, CachedFile> demoted = removeEldest(protectedSegment);
+      protectedBytes -= demoted.getValue().size();
+      probation.put(demoted.getKey(), demoted.getValue());
+      probationBytes += demoted.getValue().size();
+    }
+  }
+
+  /**
+   * Records a miss and decides whether the file is worth reading into the cache.
+   *
+   * <p>WHY before loading: A file that loses admission would be read into a fresh direct buffer
+   * only to be dropped again; during a scan that is one allocation and one full read per request.
+   */
+  private boolean shouldLoad(final Path file, final BasicFileAttributes attributes) {
+    evictionLock.lock();
+    try {
+      drainReads();
+      final CachedFile cached = data.get(file);
+      if (cached != null && isStale(cached, attributes)) {
+        remove(file);
+      }
+      sketch.increment(file);
+      final long size = attributes.size();
+      return windowBytes + size <= windowMaxBytes || selectVictims(file, size) != null;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void admit(final Path file, final CachedFile loaded) {
+    evictionLock.lock();
+    try {
+      // Another thread may have loaded the same file concurrently; keep the newest copy only
+      remove(file);
+
+      window.put(file, loaded);
+      windowBytes += loaded.size();
+      data.put(file, loaded);
+      while (windowBytes > windowMaxBytes && !window.isEmpty()) {
+        final Map.Entry<Path, CachedFile> candidate = removeEldest(window);
+        windowBytes -= candidate.getValue().size();
+        admitToMain(candidate.getKey(), candidate.getValue());
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * TinyLFU admission: the window's eldest entry enters probation only if it is accessed more
+   * often than each entry that has to be evicted to make room for it.
+   */
+  private void admitToMain(final Path file, final CachedFile candidate) {
+    final List<Path> victims = selectVictims(file, candidate.size());
+    if (victims == null) {
+      data.remove(file);
+      recordEvictions(1);
+      return;
+    }
+    for (final Path victim : victims) {
+      remove(victim);
+    }
+    recordEvictions(victims.size());
+    probation.put(file, candidate);
+    probationBytes += candidate.size();
+  }
+
+  /**
+   * Returns the main-space entries a candidate would displace, least recently used first, or null
+   * if one of them is accessed at least as often as the candidate.
+   */
+  private List<Path> selectVictims(final Path file, final long size) {
+    long excess = probationBytes + protectedBytes + size - mainMaxBytes;
+    if (excess <= 0) {
+      return List.of();
+    }
+    final int candidateFrequency = sketch.frequency(file);
+    final List<Path> victims = new ArrayList<>();
+    for (final Map<Path, CachedFile> segment : List.of(probation, protectedSegment)) {
+      final Iterator<Map.Entry<Path, CachedFile>> eldest = segment.entrySet().iterator();
+      while (excess > 0 && eldest.hasNext()) {
+        final Map.Entry<Path, CachedFile> victim = eldest.next();
+        if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+          return null;
+        }
+        victims.add(victim.getKey());
+        excess -= victim.getValue().size();
+      }
+    }
+    // Still positive if the candidate is larger than the whole main space
+    return excess > 0 ? null : victims;
+  }
+
+  private void remove(final Path file) {
+    data.remove(file);
+    CachedFile removed = window.remove(file);
+    if (removed != null) {
+      windowBytes -= removed.size();
+    }
+    removed = probation.remove(file);
+    if (removed != null) {
+      probationBytes -= removed.size();
+    }
+    removed = protectedSegment.remove(file);
+    if (removed != null) {
+      protectedBytes -= removed.size();
+    }
+  }
+
+  private void recordEvictions(final int count) {
+    if (metrics != null && count > 0) {
+      metrics.recordCacheEvictions(count);
+    }
+  }
+
+  private static Map.Entry<Path, CachedFile> removeEldest(final Map<Path, CachedFile> segment) {
+    final Iterator<Map.Entry<Path, CachedFile>> iterator = segment.entrySet().iterator();
+    final Map.Entry<Path, CachedFile> eldest = iterator.next();
+    final Map.Entry<Path, CachedFile> copy = Map.entry(eldest.getKey(), eldest.getValue());
+    iterator.remove();
+    return copy;
+  }
+
+  private static boolean isStale(final CachedFile cached, final BasicFileAttributes attributes) {
+    return !cached.matches(attributes);
+  }
+
+  /**
+   * Reads the file into a direct buffer.
+   *
+   * <p>WHY null on short read: The file changed between stat and read; serving a partial snapshot
+   * under the old attributes would poison the cache, so the caller falls back to disk.
+   */
+  private static CachedFile load(
+      final Path file,
+      final BasicFileAttributes attributes,
+      final Function<Path, String> contentTypeResolver)
+      throws IOException {
+    final ByteBuffer content = ByteBuffer.allocateDirect((int) attributes.size());
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (content.hasRemaining()) {
+        if (channel.read(content) < 0) {
+          return null;
+        }
+      }
+      if (channel.size() != attributes.size()) {
+        return null;
+      }
+    }
+    content.flip();
+    return new CachedFile(content, contentTypeResolver.apply(file), attributes.lastModifiedTime());
+  }
+}
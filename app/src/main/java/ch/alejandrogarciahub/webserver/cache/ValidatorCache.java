@@ -0,0 +1,90 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import ch.alejandrogarciahub.webserver.http.EntityTag;
+import ch.alejandrogarciahub.webserver.http.HttpDate;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rendered ETag and Last-Modified values of files that are served from disk.
+ *
+ * <p>Files in {@link StaticFileCache} or {@link MappedFileCache} carry their validators in {@link
+ * CachedFile}; every other file would otherwise hash its tag and format its HTTP-date on each
+ * request. Entries are keyed by path and reused only while the file keeps the size and
+ * modification time they were rendered for, so a changed file gets fresh validators at once.
+ *
+ * <p>WHY cleared when full: Validators are cheap to render again, so a full map simply starts over
+ * instead of paying for recency tracking on every hit.
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe; lookups do not lock.
+ */
+public final class ValidatorCache {
+  private final int maxEntries;
+  private final ConcurrentHashMap<Path, Validators> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a ValidatorCache.
+   *
+   * @param maxEntries number of files whose validators are kept
+   */
+  public ValidatorCache(final int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the validators of the file version described by the attributes.
+   *
+   * @param file the absolute, normalized file path
+   * @param attributes attributes of the file read for this request
+   * @return the validators, rendered now if the file is new or changed
+   */
+  public Validators get(final Path file, final BasicFileAttributes attributes) {
+    final long size = attributes.size();
+    final long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+    final Validators cached = entries.get(file);
+    if (cached != null && cached.size == size && cached.lastModifiedMillis == lastModifiedMillis) {
+      return cached;
+    }
+
+    final Validators rendered = new Validators(size, lastModifiedMillis);
+    if (cached == null && entries.size() >= maxEntries) {
+      entries.clear();
+    }
+    entries.put(file, rendered);
+    return rendered;
+  }
+
+  /** Returns the number of files whose validators are currently kept. */
+  public int size() {
+    return entries.size();
+  }
+
+  /** ETag and Last-Modified header values of one file version. */
+  public static final class Validators {
+    private final long size;
+    private final long lastModifiedMillis;
+    private final String etag;
+    private final String lastModifiedDate;
+
+    private Validators(final long size, final long lastModifiedMillis) {
+      this.size = size;
+      this.lastModifiedMillis = lastModifiedMillis;
+      this.etag = EntityTag.forFile(size, lastModifiedMillis);
+      this.lastModifiedDate = HttpDate.format(lastModifiedMillis);
+    }
+
+    /** Returns the entity tag of this file version. */
+    public String etag() {
+      return etag;
+    }
+
+    /** Returns the modification time formatted as an HTTP-date for the Last-Modified header. */
+    public String lastModifiedDate() {
+      return lastModifiedDate;
+    }
+  }
+}
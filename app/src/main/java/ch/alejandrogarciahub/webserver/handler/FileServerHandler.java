@@ -1,12 +1,27 @@
 package ch.alejandrogarciahub.webserver.handler;
 
+import ch.alejandrogarciahub.webserver.cache.CachedFile;
+import ch.alejandrogarciahub.webserver.cache.MappedFileCache;
+import ch.alejandrogarciahub.webserver.cache.StaticFileCache;
+import ch.alejandrogarciahub.webserver.cache.ValidatorCache;
+import ch.alejandrogarciahub.webserver.cache.ValidatorCache.Validators;
+import ch.alejandrogarciahub.webserver.http.ByteRange;
+import ch.alejandrogarciahub.webserver.http.EntityTag;
+import ch.alejandrogarciahub.webserver.http.HttpDate;
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpRequest;
 import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpResponse.BodySegment;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,7 +33,11 @@ import org.slf4j.LoggerFactory;
  * <ul>
  *   <li>GET and HEAD methods
  *   <li>Automatic MIME type detection based on file extension
+ *   <li>Conditional GET: ETag / Last-Modified validators and 304 Not Modified
+ *   <li>Range requests (single and multipart/byteranges) with If-Range
  *   <li>Index file serving (index.html for directory requests)
+ *   <li>Optional in-memory content cache for small files ({@link StaticFileCache})
+ *   <li>Optional shared memory mappings for hot large files ({@link MappedFileCache})
  *   <li>Path traversal prevention (security)
  *   <li>404 Not Found for missing files
  *   <li>405 Method Not Allowed for unsupported methods
@@ -43,15 +62,44 @@ public final class FileServerHandler implements HttpRequestHandler {
   private static final Logger logger = LoggerFactory.getLogger(FileServerHandler.class);
 
   private final Path documentRoot;
+  private final StaticFileCache cache;
+  private final MappedFileCache mappedFiles;
+  private final ValidatorCache validators = new ValidatorCache(VALIDATOR_CACHE_ENTRIES);
   private static final String DEFAULT_INDEX = "index.html";
+  // Files served from disk whose ETag and Last-Modified values are kept rendered
+  private static final int VALIDATOR_CACHE_ENTRIES = 4096;
 
   /**
-   * Constructs a FileServerHandler with explicit document root.
+   * Constructs a FileServerHandler with explicit document root and no content cache.
    *
    * @param documentRoot the root directory for serving files
    */
   public FileServerHandler(final Path documentRoot) {
+    this(documentRoot, null, null);
+  }
+
+  /**
+   * Constructs a FileServerHandler with explicit document root and no memory mappings.
+   *
+   * @param documentRoot the root directory for serving files
+   * @param cache content cache for small files (nullable to always read from disk)
+   */
+  public FileServerHandler(final Path documentRoot, final StaticFileCache cache) {
+    this(documentRoot, cache, null);
+  }
+
+  /**
+   * Constructs a FileServerHandler with explicit document root.
+   *
+   * @param documentRoot the root directory for serving files
+   * @param cache content cache for small files (nullable to always read from disk)
+   * @param mappedFiles shared mappings for hot large files (nullable to use sendfile only)
+   */
+  public FileServerHandler(
+      final Path documentRoot, final StaticFileCache cache, final MappedFileCache mappedFiles) {
     this.documentRoot = documentRoot.toAbsolutePath().normalize();
+    this.cache = cache;
+    this.mappedFiles = mappedFiles;
     logger.info("Serving files from: {}", this.documentRoot);
 
     // Create document root if it doesn't exist
@@ -72,8 +120,11 @@ public final class FileServerHandler implements HttpRequestHandler {
    *
    * <ul>
    *   <li>200 OK - File found and served
+   *   <li>206 Partial Content - Satisfiable Range request
+   *   <li>304 Not Modified - Client copy matches If-None-Match / If-Modified-Since
    *   <li>404 Not Found - File doesn't exist or outside document root
    *   <li>405 Method Not Allowed - Method other than GET/HEAD
+   *   <li>416 Range Not Satisfiable - No requested range overlaps the file
    * </ul>
    *
    * @param request the HTTP request
@@ -97,41 +148,216 @@ public final class FileServerHandler implements HttpRequestHandler {
       return HttpResponse.notFound();
     }
 
-    // Check if path exists
-    if (!Files.exists(requestedPath)) {
+    // WHY one attribute read: exists/isDirectory/size were three stat calls per request, and the
+    // same attributes validate cache entries
+    final BasicFileAttributes requestedAttributes = readAttributes(requestedPath);
+    if (requestedAttributes == null) {
       logger.debug("File not found: {}", requestedPath);
       return HttpResponse.notFound();
     }
 
     // Handle directory requests - serve index.html
     final Path targetFile;
-    if (Files.isDirectory(requestedPath)) {
+    final BasicFileAttributes attributes;
+    if (requestedAttributes.isDirectory()) {
       targetFile = requestedPath.resolve(DEFAULT_INDEX);
-      if (!Files.exists(targetFile)) {
+      attributes = readAttributes(targetFile);
+      if (attributes == null) {
         logger.debug("Directory index not found: {}", targetFile);
         return HttpResponse.notFound();
       }
     } else {
       targetFile = requestedPath;
+      attributes = requestedAttributes;
     }
 
-    // Read file content
-    final long contentLength = Files.size(targetFile);
-    final String contentType = detectContentType(targetFile);
+    final long contentLength = attributes.size();
+    // Small files come from the heap-free content cache, hot large files from a shared mapping;
+    // everything else (and anything that changed while being loaded) falls through to sendfile
+    CachedFile cached = null;
+    if (cache != null && cache.isCacheable(contentLength)) {
+      cached = cache.get(targetFile, attributes, this::detectContentType);
+    } else if (mappedFiles != null && mappedFiles.isMappable(contentLength)) {
+      cached = mappedFiles.get(targetFile, attributes, this::detectContentType);
+    }
+    final long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+    final String etag;
+    final String lastModified;
+    if (cached != null) {
+      etag = cached.etag();
+      lastModified = cached.lastModifiedDate();
+    } else {
+      final Validators rendered = validators.get(targetFile, attributes);
+      etag = rendered.etag();
+      lastModified = rendered.lastModifiedDate();
+    }
+
+    if (isNotModified(request, etag, lastModifiedMillis)) {
+      logger.debug("Not modified: {}", targetFile);
+      // WHY no Content-Length: 304 has no body, and the validators are all the client needs
+      return new HttpResponse()
+          .status(HttpStatus.NOT_MODIFIED)
+          .header("ETag", etag)
+          .header("Last-Modified", lastModified);
+    }
+
+    final String contentType =
+        cached != null ? cached.contentType() : detectContentType(targetFile);
+
+    // WHY GET only: Range semantics are only defined for GET (RFC 9110 Section 14.2)
+    final List<ByteRange> ranges =
+        method == HttpMethod.GET
+            ? requestedRanges(request, etag, lastModifiedMillis, contentLength)
+            : null;
+    if (ranges != null) {
+      return partialContent(targetFile, cached, contentType, contentLength, ranges)
+          .header("ETag", etag)
+          .header("Last-Modified", lastModified);
+    }
+
+    final HttpResponse response =
+        new HttpResponse()
+            .status(HttpStatus.OK)
+            .contentType(contentType)
+            .header("Accept-Ranges", "bytes")
+            .header("ETag", etag)
+            .header("Last-Modified", lastModified);
+
+    if (cached != null) {
+      logger.debug("Serving cached file: {} ({} bytes)", targetFile, contentLength);
+      return response.body(cached.content());
+    }
 
     logger.debug("Serving file: {} ({} bytes, {})", targetFile, contentLength, contentType);
 
+    // Zero-copy file body: Instead of loading the entire file into memory with
+    // Files.readAllBytes() or pumping it through a heap buffer, the response carries a file region
+    // that is opened when HttpResponse.writeTo() is called and handed to the socket with
+    // FileChannel.transferTo(). On Linux this becomes sendfile, so large files (videos, images,
+    // archives) are served without user-space copies or risk of OutOfMemoryError.
+    return response.bodyFile(targetFile, 0L, contentLength);
+  }
+
+  /**
+   * Returns the ranges to serve, or null to send the full representation.
+   *
+   * <p>WHY If-Range: A client resuming a download only wants the missing bytes if its partial copy
+   * is still current; otherwise it needs the whole new file in a single 200 (RFC 9110 Section
+   * 13.1.5). Entity tags are compared strongly, dates must equal Last-Modified exactly.
+   */
+  private static List<ByteRange> requestedRanges(
+      final HttpRequest request,
+      final String etag,
+      final long lastModifiedMillis,
+      final long contentLength) {
+    final String range = request.getHeader("Range");
+    if (range == null) {
+      return null;
+    }
+    final String ifRange = request.getHeader("If-Range");
+    if (ifRange != null) {
+      final String validator = ifRange.trim();
+      final boolean current =
+          validator.startsWith("\"") || validator.startsWith("W/")
+              ? EntityTag.strongMatchesAny(validator, etag)
+              : HttpDate.parse(validator) == lastModifiedMillis / 1000 * 1000;
+      if (!current) {
+        return null;
+      }
+    }
+    return ByteRange.parse(range, contentLength);
+  }
+
+  /**
+   * Builds a 206 response for one or more ranges, or 416 if none is satisfiable.
+   *
+   * <p>Each range is a positioned segment of the file (or a slice of the cached buffer), so the
+   * bytes before it are never read. Multiple ranges are framed as {@code multipart/byteranges}.
+   */
+  private static HttpResponse partialContent(
+      final Path file,
+      final CachedFile cached,
+      final String contentType,
+      final long contentLength,
+      final List<ByteRange> ranges) {
+    if (ranges.isEmpty()) {
+      return new HttpResponse()
+          .status(HttpStatus.RANGE_NOT_SATISFIABLE)
+          .header("Content-Range", "bytes */" + contentLength)
+          .body(new byte[0]);
+    }
+
     final HttpResponse response =
-        new HttpResponse().status(HttpStatus.OK).contentType(contentType).bodyLength(contentLength);
-
-    // Lazy file streaming: Instead of loading the entire file into memory with
-    // Files.readAllBytes(),
-    // we provide a supplier that opens an InputStream when HttpResponse.writeTo() is called.
-    // This allows serving large files (videos, images, archives) efficiently without risk of
-    // OutOfMemoryError, especially under concurrent load. The file is streamed directly from
-    // disk to socket using InputStream.transferTo().
-    response.setBodySupplier(() -> Files.newInputStream(targetFile));
-    return response;
+        new HttpResponse().status(HttpStatus.PARTIAL_CONTENT).header("Accept-Ranges", "bytes");
+    if (ranges.size() == 1) {
+      final ByteRange range = ranges.get(0);
+      return response
+          .contentType(contentType)
+          .header("Content-Range", range.contentRange(contentLength))
+          .body(List.of(segment(file, cached, range)));
+    }
+
+    final String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    final List<BodySegment> parts = new ArrayList<>(ranges.size() * 2 + 1);
+    for (final ByteRange range : ranges) {
+      final String partHeader =
+          "\r\n--"
+              + boundary
+              + "\r\nContent-Type: "
+              + contentType
+              + "\r\nContent-Range: "
+              + range.contentRange(contentLength)
+              + "\r\n\r\n";
+      parts.add(BodySegment.of(partHeader.getBytes(StandardCharsets.ISO_8859_1)));
+      parts.add(segment(file, cached, range));
+    }
+    parts.add(
+        BodySegment.of(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+    return response.contentType("multipart/byteranges; boundary=" + boundary).body(parts);
+  }
+
+  private static BodySegment segment(
+      final Path file, final CachedFile cached, final ByteRange range) {
+    if (cached != null) {
+      return BodySegment.of(cached.content().slice((int) range.first(), (int) range.length()));
+    }
+    return BodySegment.ofFile(file, range.first(), range.length());
+  }
+
+  /**
+   * Evaluates the conditional GET preconditions (RFC 9110 Section 13.2.2).
+   *
+   * <p>If-None-Match takes precedence; If-Modified-Since is only consulted when it is absent and is
+   * ignored if it is not a valid HTTP-date.
+   *
+   * @return true if the client's cached copy is current and a 304 should be sent
+   */
+  private static boolean isNotModified(
+      final HttpRequest request, final String etag, final long lastModifiedMillis) {
+    final String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      return EntityTag.weakMatchesAny(ifNoneMatch, etag);
+    }
+    final long since = HttpDate.parse(request.getHeader("If-Modified-Since"));
+    // HTTP-dates have one-second resolution, so compare whole seconds
+    return since >= 0 && lastModifiedMillis / 1000 <= since / 1000;
+  }
+
+  /**
+   * Reads the file attributes in a single call.
+   *
+   * @param path the file path
+   * @return the attributes, or null if the file does not exist or cannot be read
+   */
+  private BasicFileAttributes readAttributes(final Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (final NoSuchFileException e) {
+      return null;
+    } catch (final IOException e) {
+      logger.debug("Failed to read attributes of {}: {}", path, e.getMessage());
+      return null;
+    }
   }
 
   /**
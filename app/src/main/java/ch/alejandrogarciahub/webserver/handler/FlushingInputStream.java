@@ -0,0 +1,43 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Socket input that flushes the connection's buffered responses before a read would block.
+ *
+ * <p>Responses to pipelined requests are coalesced in the output buffer. Holding them is only
+ * worth it while more request bytes can be read right away; once the socket has nothing to read,
+ * the client may be waiting for exactly those responses before sending the rest of the next
+ * request. This stream sits below the connection's {@link java.io.BufferedInputStream}, so it sees
+ * every refill - whether the parser needs the next request line, the rest of a partially buffered
+ * request, or a handler streams the body.
+ */
+final class FlushingInputStream extends FilterInputStream {
+  private final OutputStream output;
+
+  FlushingInputStream(final InputStream socketInput, final OutputStream output) {
+    super(socketInput);
+    this.output = output;
+  }
+
+  @Override
+  public int read() throws IOException {
+    flushIfBlocking();
+    return super.read();
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    flushIfBlocking();
+    return super.read(b, off, len);
+  }
+
+  private void flushIfBlocking() throws IOException {
+    if (in.available() == 0) {
+      output.flush();
+    }
+  }
+}
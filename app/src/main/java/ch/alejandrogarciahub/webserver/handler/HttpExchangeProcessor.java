@@ -0,0 +1,612 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import ch.alejandrogarciahub.webserver.http.CoarseClock;
+import ch.alejandrogarciahub.webserver.http.HeaderNames;
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import ch.alejandrogarciahub.webserver.limit.ConcurrencyLimiter;
+import ch.alejandrogarciahub.webserver.observability.AccessLogger;
+import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
+import ch.alejandrogarciahub.webserver.observability.LogThrottle;
+import ch.alejandrogarciahub.webserver.observability.ObservabilityConfig;
+import ch.alejandrogarciahub.webserver.parser.HttpParseException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Per-request HTTP pipeline shared by all connection engines.
+ *
+ * <p>Given a request that has already been parsed, this class runs the {@link HttpRequestHandler},
+ * decides connection persistence, serializes the response and emits access logs and metrics. The
+ * failure paths (parse errors, timeouts, I/O errors) go through the same observability hooks, so
+ * the thread-per-connection engine ({@link HttpConnectionHandler}) and the NIO event-loop engine
+ * report identical data.
+ *
+ * <p><strong>Thread Safety:</strong> This class holds no per-connection state and a single instance
+ * is shared by every connection.
+ */
+public final class HttpExchangeProcessor {
+  private static final Logger logger = LoggerFactory.getLogger(HttpExchangeProcessor.class);
+
+  private static final String REQUEST_ID_MDC_KEY = "request_id";
+
+  // Seconds a shed client should wait; the limit adapts within a few hundred samples
+  private static final String SHED_RETRY_AFTER_SECONDS = "1";
+
+  private final HttpRequestHandler requestHandler;
+  private final HttpMetrics metrics;
+  private final ObservabilityConfig observabilityConfig;
+  private final AccessLogger accessLogger;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final LogThrottle parseErrorLogs;
+  // Metrics endpoints bypass admission; null when metrics are disabled
+  private final String metricsPath;
+  private final String prometheusPath;
+
+  /**
+   * Constructs an HttpExchangeProcessor.
+   *
+   * @param requestHandler the strategy for handling HTTP requests
+   * @param metrics metrics sink (nullable when metrics are disabled)
+   * @param observabilityConfig observability configuration (defaults to environment when null)
+   * @param accessLogger access logger (nullable)
+   */
+  public HttpExchangeProcessor(
+      final HttpRequestHandler requestHandler,
+      final HttpMetrics metrics,
+      final ObservabilityConfig observabilityConfig,
+      final AccessLogger accessLogger) {
+    this(requestHandler, metrics, observabilityConfig, accessLogger, null);
+  }
+
+  /**
+   * Constructs an HttpExchangeProcessor with admission control.
+   *
+   * <p>Requests the limiter does not admit are answered with {@code 503 Service Unavailable} and
+   * {@code Retry-After} without reaching the handler. Requests for the metrics endpoints are always
+   * admitted, so scrapes keep working while the server sheds load.
+   *
+   * @param requestHandler the strategy for handling HTTP requests
+   * @param metrics metrics sink (nullable when metrics are disabled)
+   * @param observabilityConfig observability configuration (defaults to environment when null)
+   * @param accessLogger access logger (nullable)
+   * @param concurrencyLimiter admission controller (nullable to admit every request)
+   */
+  public HttpExchangeProcessor(
+      final HttpRequestHandler requestHandler,
+      final HttpMetrics metrics,
+      final ObservabilityConfig observabilityConfig,
+      final AccessLogger accessLogger,
+      final ConcurrencyLimiter concurrencyLimiter) {
+    this.requestHandler = requestHandler;
+    this.metrics = metrics;
+    this.observabilityConfig =
+        observabilityConfig != null ? observabilityConfig : ObservabilityConfig.fromEnvironment();
+    this.accessLogger = accessLogger;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.parseErrorLogs = new LogThrottle(this.observabilityConfig.getMaxParseErrorLogsPerMinute());
+    if (this.observabilityConfig.isMetricsEnabled()) {
+      final String path = this.observabilityConfig.getMetricsEndpointPath();
+      this.metricsPath = path;
+      this.prometheusPath = (path.endsWith("/") ? path : path + "/") + "prometheus";
+    } else {
+      this.metricsPath = null;
+      this.prometheusPath = null;
+    }
+    if (concurrencyLimiter != null && metricsEnabled()) {
+      metrics.registerConcurrencyGauges(
+          concurrencyLimiter::getLimit, concurrencyLimiter::getInFlight);
+    }
+  }
+
+  /** Records that a client connection was accepted. */
+  public void connectionOpened() {
+    if (metricsEnabled()) {
+      metrics.connectionOpened();
+    }
+  }
+
+  /**
+   * Records that a client connection was closed.
+   *
+   * @param requestsServed requests parsed and answered on the connection
+   * @param openedNanos when the connection was accepted
+   */
+  public void connectionClosed(final int requestsServed, final long openedNanos) {
+    if (metricsEnabled()) {
+      metrics.connectionClosed(requestsServed, elapsedNanos(openedNanos) / 1_000_000L);
+    }
+  }
+
+  /**
+   * Seeds a fresh request identifier into the MDC.
+   *
+   * <p>WHY seed ID before parsing: Correlates logs/metrics even when parsing fails. Replaced with
+   * the client's X-Request-Id header after a successful parse (see {@link #serve}).
+   *
+   * @return the generated request ID
+   */
+  public String beginExchange() {
+    final String requestId = UUID.randomUUID().toString();
+    MDC.put(REQUEST_ID_MDC_KEY, requestId);
+    return requestId;
+  }
+
+  /** Clears the request identifier seeded by {@link #beginExchange()}. */
+  public void endExchange() {
+    MDC.remove(REQUEST_ID_MDC_KEY);
+  }
+
+  /**
+   * Serves a parsed request: runs the handler, writes the response and emits observability.
+   *
+   * <p>Handler and write failures are handled here (500 response, logs and metrics), so callers
+   * only need to react to the returned persistence decision.
+   *
+   * @param request the parsed request
+   * @param output the connection output stream
+   * @param clientAddress the remote address used in logs
+   * @param startNanos timestamp taken when the exchange started
+   * @param seededRequestId the ID generated by {@link #beginExchange()}
+   * @return true if the connection should be kept alive for another request
+   */
+  public boolean serve(
+      final HttpRequest request,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String seededRequestId) {
+    return serve(request, output, clientAddress, startNanos, seededRequestId, false);
+  }
+
+  /**
+   * Serves a parsed request, optionally as the last one of its connection.
+   *
+   * @param request the parsed request
+   * @param output the connection output stream
+   * @param clientAddress the remote address used in logs
+   * @param startNanos timestamp taken when the exchange started
+   * @param seededRequestId the ID generated by {@link #beginExchange()}
+   * @param lastRequest true if the {@link KeepAlivePolicy} ends the connection after this request;
+   *     the response then carries {@code Connection: close} whatever the client or handler asked
+   * @return true if the connection should be kept alive for another request
+   */
+  public boolean serve(
+      final HttpRequest request,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String seededRequestId,
+      final boolean lastRequest) {
+    // WHY replace ID: Prefer client's X-Request-Id for distributed tracing across services
+    final String requestId = ensureRequestId(request, seededRequestId);
+    MDC.put(REQUEST_ID_MDC_KEY, requestId);
+
+    final ConcurrencyLimiter limiter = isMetricsRequest(request) ? null : concurrencyLimiter;
+    if (limiter != null && !limiter.tryAcquire()) {
+      return shed(request, output, clientAddress, startNanos, requestId, lastRequest);
+    }
+    final long admittedNanos = limiter != null ? CoarseClock.system().nanoTime() : 0L;
+    // Latency fed to the limiter, or -1 while there is no sample
+    long serviceNanos = -1L;
+    boolean completed = false;
+
+    HttpResponse response = null;
+    try {
+      // WHY debug: The access log already records every request, off the request thread
+      if (logger.isDebugEnabled()) {
+        logger.debug(
+            "{} {} {} from {}",
+            request.getMethod(),
+            request.getPath(),
+            request.getVersion(),
+            clientAddress);
+      }
+
+      // Handle the request
+      response = requestHandler.handle(request);
+      // WHY sample before the write: Writing the body runs at the client's pace, so a few slow
+      // downloads would read as server latency and shrink the limit for everyone else
+      if (limiter != null) {
+        serviceNanos = elapsedNanos(admittedNanos);
+      }
+
+      // Set response version to match request version
+      response.version(request.getVersion());
+
+      // Handler directive priority: If the handler explicitly set a Connection directive
+      // (e.g., forcing close on error, rate limiting), respect it. Otherwise, use the
+      // client's request preference (Connection header or HTTP version defaults).
+      final boolean handlerHasDirective = response.hasConnectionDirective();
+      // WHY: A close-delimited body (streamed on HTTP/1.0) only ends when the connection does
+      final boolean closeDelimited =
+          response.isCloseDelimited() && request.getMethod() != HttpMethod.HEAD;
+      final boolean keepAlive =
+          !lastRequest
+              && !closeDelimited
+              && (handlerHasDirective ? response.isConnectionPersistent() : request.isKeepAlive());
+
+      if (!handlerHasDirective || closeDelimited || lastRequest) {
+        // Only stamp a Connection header if the handler didn't already do so.
+        response.keepAlive(keepAlive);
+      }
+
+      // WHY different write for HEAD: RFC 9110 requires same headers as GET but no body
+      if (request.getMethod() == HttpMethod.HEAD) {
+        response.writeHeadersOnly(output);
+      } else {
+        response.writeTo(output);
+      }
+
+      final long durationNanos = elapsedNanos(startNanos);
+      logger.debug("Response: {} - Keep-Alive: {}", response, keepAlive);
+      // WHY here: Emit metrics/logs after write; duration covers parse + handle + write
+      finalizeObservability(clientAddress, request, response, durationNanos, requestId);
+      completed = true;
+      return keepAlive;
+
+    } catch (final Exception e) {
+      if (response != null && response.isCommitted()) {
+        // WHY no 500: The head is already on the wire, so an error response would be read as body
+        // bytes; closing the connection is the only way to tell the client the body is cut short
+        logger.warn(
+            "Response to {} failed after the head was sent: {}", clientAddress, e.toString());
+        finalizeObservability(
+            clientAddress, request, response, elapsedNanos(startNanos), requestId);
+        return false;
+      }
+      if (e instanceof HttpParseException parseError) {
+        // WHY not 500: Bodies are streamed, so body framing errors (oversized chunked body, bad
+        // chunk size, truncation) surface from the handler's reads and keep their own status
+        reject(request, parseError, output, clientAddress, startNanos, requestId);
+        return false;
+      }
+      // WHY pass request: I/O error during handle/write, the request is known at this point
+      fail(request, e, output, clientAddress, startNanos, requestId);
+      return false;
+    } finally {
+      if (limiter != null) {
+        // WHY no sample on failure: A broken connection or handler bug is not a load signal
+        if (completed && serviceNanos >= 0) {
+          limiter.release(serviceNanos);
+        } else {
+          limiter.releaseWithoutSample();
+        }
+      }
+    }
+  }
+
+  /** Returns true if the request targets one of the metrics endpoints. */
+  private boolean isMetricsRequest(final HttpRequest request) {
+    if (metricsPath == null) {
+      return false;
+    }
+    final String path = request.getPath();
+    return path.equals(metricsPath) || path.equals(prometheusPath);
+  }
+
+  /**
+   * Rejects a request the concurrency limiter did not admit.
+   *
+   * <p>WHY keep the connection: The rejection is cheap and the client is expected to retry; a new
+   * connection would cost the overloaded server more than reusing this one.
+   */
+  private boolean shed(
+      final HttpRequest request,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String requestId,
+      final boolean lastRequest) {
+    logger.debug(
+        "Shedding {} {} from {}: {} requests in flight",
+        request.getMethod(),
+        request.getPath(),
+        clientAddress,
+        concurrencyLimiter.getInFlight());
+    final boolean keepAlive = !lastRequest && request.isKeepAlive();
+    // WHY version first: keepAlive(true) only stamps "Connection: keep-alive" on HTTP/1.0
+    final HttpResponse response =
+        HttpResponse.errorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE, "The server is at capacity, please retry shortly.")
+            .header(HeaderNames.RETRY_AFTER, SHED_RETRY_AFTER_SECONDS)
+            .version(request.getVersion())
+            .keepAlive(keepAlive);
+    writeResponse(output, clientAddress, response);
+    if (metricsEnabled()) {
+      metrics.recordRejectedRequest();
+    }
+    finalizeObservability(clientAddress, request, response, elapsedNanos(startNanos), requestId);
+    return keepAlive;
+  }
+
+  /**
+   * Answers a malformed request with the status carried by the parse exception.
+   *
+   * <p>WHY close: Malformed request = unclear HTTP state (potential attack). Callers must close the
+   * connection after this call.
+   *
+   * <p>WHY throttle: Garbage traffic would otherwise write one WARN line per request. At most
+   * {@link ObservabilityConfig#getMaxParseErrorLogsPerMinute()} lines are written per minute; the
+   * rest are counted and the next line written reports how many were dropped.
+   */
+  public void rejectMalformed(
+      final HttpParseException e,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String requestId) {
+    // WHY null request: Parsing failed, access logs use "-" placeholders
+    reject(null, e, output, clientAddress, startNanos, requestId);
+  }
+
+  /**
+   * Answers a parse error with its status and {@code Connection: close}.
+   *
+   * @param request the request whose body failed to parse, or null if its head did
+   */
+  private void reject(
+      final HttpRequest request,
+      final HttpParseException e,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String requestId) {
+    logParseError(e, clientAddress);
+    final HttpResponse response = HttpResponse.errorResponse(e.getStatus(), e.getMessage());
+    writeResponse(output, clientAddress, response);
+    final long durationNanos = elapsedNanos(startNanos);
+    finalizeObservability(clientAddress, request, response, durationNanos, requestId);
+  }
+
+  private void logParseError(final HttpParseException e, final String clientAddress) {
+    if (!logger.isWarnEnabled()) {
+      return;
+    }
+    if (!parseErrorLogs.tryAcquire(CoarseClock.system().nanoTime())) {
+      if (metricsEnabled()) {
+        metrics.recordSuppressedParseErrorLog();
+      }
+      return;
+    }
+    final long suppressed = parseErrorLogs.takeSuppressed();
+    if (suppressed > 0) {
+      logger.warn(
+          "Parse error from {}: {} ({} more suppressed by the log rate limit)",
+          clientAddress,
+          e.getMessage(),
+          suppressed);
+    } else {
+      logger.warn("Parse error from {}: {}", clientAddress, e.getMessage());
+    }
+  }
+
+  /**
+   * Records a client read timeout.
+   *
+   * <p>WHY synthetic: Can't write to dead socket, but still need metrics/logs.
+   */
+  public void recordTimeout(
+      final String clientAddress, final long startNanos, final String requestId) {
+    logger.debug("Read timeout from {}", clientAddress);
+    final HttpResponse response = syntheticResponse(HttpStatus.REQUEST_TIMEOUT);
+    final long durationNanos = elapsedNanos(startNanos);
+    finalizeObservability(clientAddress, null, response, durationNanos, requestId);
+  }
+
+  /**
+   * Answers a failed exchange with a 500 response and records it.
+   *
+   * @param request the request if parsing succeeded (nullable)
+   * @param e the failure
+   * @param output the connection output stream
+   * @param clientAddress the remote address used in logs
+   * @param startNanos timestamp taken when the exchange started
+   * @param requestId the request ID
+   */
+  public void fail(
+      final HttpRequest request,
+      final Exception e,
+      final OutputStream output,
+      final String clientAddress,
+      final long startNanos,
+      final String requestId) {
+    if (e instanceof IOException) {
+      logger.warn("I/O error from {}: {}", clientAddress, e.getMessage());
+    } else {
+      // WHY catch all: Prevents thread death from unexpected bugs; still emit observability
+      logger.error("Unexpected error handling request from {}", clientAddress, e);
+    }
+    final HttpResponse response = HttpResponse.internalServerError();
+    writeResponse(output, clientAddress, response);
+    final long durationNanos = elapsedNanos(startNanos);
+    finalizeObservability(clientAddress, request, response, durationNanos, requestId);
+  }
+
+  /**
+   * Writes an HTTP response to the client.
+   *
+   * <p>Helper method for error handling that swallows IOException to prevent cascading errors.
+   *
+   * @param output the shared output stream for the connection
+   * @param response the HTTP response to write
+   */
+  private void writeResponse(
+      final OutputStream output, final String clientAddress, final HttpResponse response) {
+    try {
+      response.writeTo(output);
+    } catch (final IOException e) {
+      logger.error("Failed to write response to {}: {}", clientAddress, e.getMessage());
+    }
+  }
+
+  /** Returns the time elapsed since {@code startNanos}, read from the shared clock. */
+  private static long elapsedNanos(final long startNanos) {
+    return CoarseClock.system().nanoTime() - startNanos;
+  }
+
+  private boolean metricsEnabled() {
+    return metrics != null && observabilityConfig.isMetricsEnabled();
+  }
+
+  /**
+   * Ensures every request has a unique identifier for tracing.
+   *
+   * <p>WHY this pattern: We generate a UUID before parsing (for error correlation), but prefer
+   * client-provided X-Request-Id if present (for distributed tracing across services). This method
+   * safely handles null requests (parsing failures) by returning the fallback UUID.
+   *
+   * @param request the parsed HTTP request (may be null if parsing failed)
+   * @param fallbackId the pre-generated UUID to use if request is null or lacks X-Request-Id
+   * @return the final request ID to use for observability
+   */
+  private String ensureRequestId(final HttpRequest request, final String fallbackId) {
+    if (request == null) {
+      return fallbackId;
+    }
+    final String header = request.getHeader("X-Request-Id");
+    if (header != null && !header.isBlank()) {
+      return header;
+    }
+    return fallbackId;
+  }
+
+  /**
+   * Emits logging and metrics for a completed request lifecycle (success or failure).
+   *
+   * <p>WHY centralized method: Previously, observability logic was duplicated across success and
+   * error handlers (5 different locations). Centralizing ensures consistent observability coverage
+   * for all code paths and makes it easier to add new observability features (e.g., distributed
+   * tracing spans).
+   *
+   * <p>WHY accept null request: Parse errors and timeouts don't have a valid HttpRequest object.
+   * Access logs handle this by using "-" placeholders; metrics record null method to track
+   * failures.
+   *
+   * @param request the HTTP request (null if parsing failed)
+   * @param response the HTTP response (must not be null)
+   */
+  private void finalizeObservability(
+      final String clientAddress,
+      final HttpRequest request,
+      final HttpResponse response,
+      final long durationNanos,
+      final String requestId) {
+    if (response == null) {
+      return;
+    }
+    emitAccessLog(clientAddress, request, response, durationNanos, requestId);
+    updateMetrics(request, response, durationNanos);
+  }
+
+  /**
+   * Builds a lightweight response structure used solely for logging/metrics when no payload is
+   * emitted (e.g. socket timeouts).
+   *
+   * <p>WHY synthetic responses: Some failures (socket timeout, client disconnect) prevent us from
+   * writing a response back to the client. But we still need to record the event in logs/metrics
+   * for monitoring. This creates a minimal HttpResponse with the status code and metadata needed
+   * for observability, without attempting network I/O.
+   *
+   * <p>WHY bodyLength(0L): Indicates no bytes were sent (failure before response write).
+   *
+   * @param status the HTTP status code representing the failure type
+   * @return a non-serialized response object for observability only
+   */
+  private HttpResponse syntheticResponse(final HttpStatus status) {
+    return new HttpResponse().status(status).keepAlive(false).bodyLength(0L);
+  }
+
+  private void emitAccessLog(
+      final String clientAddress,
+      final HttpRequest request,
+      final HttpResponse response,
+      final long durationNanos,
+      final String requestId) {
+    if (accessLogger == null || !observabilityConfig.isAccessLogEnabled()) {
+      return;
+    }
+
+    final long durationMillis = durationNanos / 1_000_000L;
+    // WHY null-safe method extraction: Request can be null for parse errors/timeouts. We still
+    // log the event but use "-" for method and path (common in access log formats like Apache).
+    final HttpMethod method = request != null ? request.getMethod() : null;
+    // WHY special handling for HEAD: RFC 9110 requires HEAD responses to omit body but include
+    // Content-Length header. We log 0 bytes written for HEAD to accurately reflect network I/O.
+    final boolean headRequest = method == HttpMethod.HEAD;
+
+    final AccessLogger.Entry entry =
+        new AccessLogger.Entry(
+            clientAddress,
+            method != null ? method.name() : "-",
+            request != null ? request.getPath() : "-",
+            request != null ? rawQuery(request) : null,
+            determineHttpVersion(request, response),
+            response.getStatus().getCode(),
+            request != null ? request.getContentLength() : 0L,
+            headRequest ? 0L : response.getBytesWritten(),
+            durationMillis,
+            response.isConnectionPersistent(),
+            requestId);
+
+    accessLogger.log(entry);
+  }
+
+  /**
+   * Determines HTTP version for access logs.
+   *
+   * <p>WHY prefer request version: In normal cases, log the version the client used (from the
+   * request line). For parse errors where we have no request object, fall back to the response
+   * version (which defaults to HTTP/1.1 in error responses).
+   */
+  private String determineHttpVersion(final HttpRequest request, final HttpResponse response) {
+    if (request != null && request.getVersion() != null) {
+      return request.getVersion().getValue();
+    }
+    return response.getVersion().getValue();
+  }
+
+  /**
+   * Records HTTP metrics for request lifecycle.
+   *
+   * <p>WHY null method parameter: When parsing fails (parse error, timeout), we have no HttpRequest
+   * so method is null. Metrics implementations track this separately (e.g., as "PARSE_ERROR"
+   * category) to distinguish infrastructure failures from application-level errors.
+   *
+   * <p>WHY HEAD request special case: HEAD responses don't include body content, so we record 0
+   * bytes written even though Content-Length header may indicate a larger size (what GET would
+   * return). This accurately reflects actual network traffic.
+   */
+  private void updateMetrics(
+      final HttpRequest request, final HttpResponse response, final long durationNanos) {
+    if (!metricsEnabled() || response == null) {
+      return;
+    }
+
+    final HttpMethod method = request != null ? request.getMethod() : null;
+    final boolean headRequest = method == HttpMethod.HEAD;
+    metrics.recordRequest(
+        method,
+        request != null ? request.getRouteId() : HttpRequest.NO_ROUTE,
+        response.getStatus(),
+        durationNanos / 1_000L,
+        headRequest ? 0L : response.getBytesWritten());
+  }
+
+  /**
+   * Returns the query exactly as received.
+   *
+   * <p>WHY raw: Logging the original bytes avoids decoding and re-joining the parameters on every
+   * request, and shows what the client actually sent.
+   */
+  private String rawQuery(final HttpRequest request) {
+    final String query = request.getRawQuery();
+    return query == null || query.isEmpty() ? null : query;
+  }
+}
@@ -0,0 +1,121 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on how long a persistent connection is kept open, shared by both connection engines.
+ *
+ * <ul>
+ *   <li><strong>Idle timeout:</strong> how long the server waits for the next request once a
+ *       response has been sent. A stalled request in progress is governed by the client read
+ *       timeout instead.
+ *   <li><strong>Max requests:</strong> requests served on one connection; the response to the last
+ *       one carries {@code Connection: close}.
+ *   <li><strong>Max age:</strong> time since the connection was accepted after which the next
+ *       response carries {@code Connection: close}, and an idle connection is closed.
+ * </ul>
+ *
+ * <p>WHY bound connection lifetime: Behind an L4 balancer a client keeps the node it first reached
+ * for as long as its connection lives. Closing connections gracefully after a number of requests or
+ * an age makes clients reconnect and spreads them across nodes again, and idle connections hand
+ * their resources back sooner than the read timeout would.
+ *
+ * <p><strong>Thread Safety:</strong> Instances are immutable.
+ */
+public final class KeepAlivePolicy {
+  private final int idleTimeoutMs;
+  private final int maxRequests;
+  private final long maxAgeMs;
+  private final long idleTimeoutNanos;
+  private final long maxAgeNanos;
+
+  /**
+   * Creates a policy.
+   *
+   * @param idleTimeoutMs time to wait for the next request on a persistent connection
+   * @param maxRequests requests served per connection, 0 for no limit
+   * @param maxAgeMs connection age after which it is closed, 0 for no limit
+   * @throws IllegalArgumentException if the idle timeout is not positive or a limit is negative
+   */
+  public KeepAlivePolicy(final int idleTimeoutMs, final int maxRequests, final long maxAgeMs) {
+    if (idleTimeoutMs < 1 || maxRequests < 0 || maxAgeMs < 0) {
+      throw new IllegalArgumentException(
+          "Idle timeout must be positive and limits non-negative, got idleTimeoutMs="
+              + idleTimeoutMs
+              + " maxRequests="
+              + maxRequests
+              + " maxAgeMs="
+              + maxAgeMs);
+    }
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.maxRequests = maxRequests;
+    this.maxAgeMs = maxAgeMs;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+    this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+  }
+
+  /**
+   * Creates a policy that only closes idle connections.
+   *
+   * @param idleTimeoutMs time to wait for the next request on a persistent connection
+   */
+  public static KeepAlivePolicy idleTimeoutOnly(final int idleTimeoutMs) {
+    return new KeepAlivePolicy(idleTimeoutMs, 0, 0);
+  }
+
+  public int getIdleTimeoutMs() {
+    return idleTimeoutMs;
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public long getMaxAgeMs() {
+    return maxAgeMs;
+  }
+
+  /**
+   * Decides whether a connection may stay open after the response it is about to send.
+   *
+   * @param requestsServed requests on the connection, including the current one
+   * @param openedNanos when the connection was accepted
+   * @param nowNanos current time
+   * @return false if the current response must carry {@code Connection: close}
+   */
+  public boolean allowsAnotherRequest(
+      final int requestsServed, final long openedNanos, final long nowNanos) {
+    if (maxRequests > 0 && requestsServed >= maxRequests) {
+      return false;
+    }
+    return maxAgeNanos == 0 || nowNanos - openedNanos < maxAgeNanos;
+  }
+
+  /**
+   * Returns how much longer an idle connection may wait for its next request.
+   *
+   * @param openedNanos when the connection was accepted
+   * @param lastActivityNanos when the last response was sent
+   * @param nowNanos current time
+   * @return remaining wait in nanoseconds; zero or less if the connection should be closed
+   */
+  public long remainingIdleNanos(
+      final long openedNanos, final long lastActivityNanos, final long nowNanos) {
+    final long idleRemaining = lastActivityNanos + idleTimeoutNanos - nowNanos;
+    if (maxAgeNanos == 0) {
+      return idleRemaining;
+    }
+    return Math.min(idleRemaining, openedNanos + maxAgeNanos - nowNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "KeepAlivePolicy{idleTimeoutMs="
+        + idleTimeoutMs
+        + ", maxRequests="
+        + maxRequests
+        + ", maxAgeMs="
+        + maxAgeMs
+        + "}";
+  }
+}
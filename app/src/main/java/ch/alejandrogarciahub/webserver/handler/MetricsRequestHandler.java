@@ -1,27 +1,69 @@
 package ch.alejandrogarciahub.webserver.handler;
 
+import ch.alejandrogarciahub.webserver.http.HeaderNames;
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpRequest;
 import ch.alejandrogarciahub.webserver.http.HttpResponse;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
 import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
 import ch.alejandrogarciahub.webserver.observability.HttpMetricsSnapshot;
+import ch.alejandrogarciahub.webserver.observability.LatencyHistogram;
+import ch.alejandrogarciahub.webserver.observability.PrometheusWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
-/** Serves a JSON representation of the current {@link HttpMetrics} snapshot. */
+/**
+ * Serves the current {@link HttpMetrics} as JSON or in the Prometheus text format.
+ *
+ * <p>The format follows the {@code Accept} header: {@code application/openmetrics-text} gets
+ * OpenMetrics, {@code text/plain} the Prometheus 0.0.4 text format (both offered by Prometheus
+ * scrapers), anything else JSON. A handler created for Prometheus only never answers with JSON.
+ *
+ * <p>WHY one shared writer per format: Scrapes are rare and short, so they take turns on a buffer
+ * that outlives connections, instead of rebuilding it for every scrape.
+ */
 public final class MetricsRequestHandler implements HttpRequestHandler {
+  private static final String OPEN_METRICS_TYPE = "application/openmetrics-text";
+  private static final String TEXT_TYPE = "text/plain";
+  // WHY cap: An unusually large exposition must not stay pinned to the handler
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
 
   private final HttpMetrics metrics;
+  private final boolean prometheusOnly;
+  private final ReentrantLock writerLock = new ReentrantLock();
+  private final PrometheusWriter textWriter = new PrometheusWriter(false);
+  private final PrometheusWriter openMetricsWriter = new PrometheusWriter(true);
 
   public MetricsRequestHandler(final HttpMetrics metrics) {
+    this(metrics, false);
+  }
+
+  /**
+   * Creates a metrics handler.
+   *
+   * @param metrics the metrics to expose (nullable, exposing nothing)
+   * @param prometheusOnly true to answer in a Prometheus format whatever the client accepts
+   */
+  public MetricsRequestHandler(final HttpMetrics metrics, final boolean prometheusOnly) {
     this.metrics = metrics;
+    this.prometheusOnly = prometheusOnly;
   }
 
   @Override
   public HttpResponse handle(final HttpRequest request) throws IOException {
-    if (request.getMethod() != HttpMethod.GET) {
-      return HttpResponse.methodNotAllowed("GET");
+    if (request.getMethod() != HttpMethod.GET && request.getMethod() != HttpMethod.HEAD) {
+      return HttpResponse.methodNotAllowed("GET, HEAD");
+    }
+
+    final String accept = request.getHeader(HeaderNames.ACCEPT);
+    if (accept != null && accept.contains(OPEN_METRICS_TYPE)) {
+      return prometheus(openMetricsWriter);
+    }
+    if (prometheusOnly || (accept != null && accept.contains(TEXT_TYPE))) {
+      return prometheus(textWriter);
     }
 
     final HttpMetricsSnapshot snapshot = metrics != null ? metrics.snapshot() : emptySnapshot();
@@ -34,8 +76,28 @@ public final class MetricsRequestHandler implements HttpRequestHandler {
         .body(json);
   }
 
+  private HttpResponse prometheus(final PrometheusWriter writer) {
+    final byte[] body;
+    writerLock.lock();
+    try {
+      writer.reset(MAX_RETAINED_CAPACITY);
+      if (metrics != null) {
+        metrics.writePrometheus(writer);
+      }
+      writer.finish();
+      body = writer.toByteArray();
+    } finally {
+      writerLock.unlock();
+    }
+    return new HttpResponse()
+        .status(HttpStatus.OK)
+        .contentType(writer.contentType())
+        .keepAlive(true)
+        .body(ByteBuffer.wrap(body));
+  }
+
   private HttpMetricsSnapshot emptySnapshot() {
-    return new HttpMetricsSnapshot(0, 0, 0, Map.of(), Map.of());
+    return new HttpMetricsSnapshot(0, 0, 0, Map.of(), LatencyHistogram.Snapshot.empty(), Map.of());
   }
 
   private String toJson(final HttpMetricsSnapshot snapshot) {
@@ -47,12 +109,72 @@ public final class MetricsRequestHandler implements HttpRequestHandler {
     builder.append("\"statusCounts\":");
     appendMap(builder, snapshot.statusCounts());
     builder.append(',');
-    builder.append("\"latencyBuckets\":");
-    appendMap(builder, snapshot.latencyBuckets());
+    builder.append("\"latency\":");
+    appendMap(builder, latencySummary(snapshot.latency()));
+    builder.append(',');
+    builder.append("\"cache\":");
+    appendMap(builder, snapshot.cacheCounts());
+    builder.append(',');
+    builder.append("\"concurrency\":");
+    appendMap(builder, snapshot.concurrency());
+    builder.append(',');
+    builder.append("\"requestsPerConnection\":");
+    appendMap(builder, snapshot.requestsPerConnection());
+    builder.append(',');
+    builder.append("\"connectionLifetimes\":");
+    appendMap(builder, snapshot.connectionLifetimes());
+    builder.append(',');
+    builder.append("\"routes\":{");
+    boolean first = true;
+    for (final HttpMetricsSnapshot.RouteStats route : snapshot.routes()) {
+      if (!first) {
+        builder.append(',');
+      }
+      first = false;
+      appendString(builder, route.route());
+      builder.append(':');
+      appendMap(builder, routeSummary(route));
+    }
+    builder.append('}');
     builder.append('}');
     return builder.toString();
   }
 
+  /** Summarizes the histogram as the percentiles operators look at, in microseconds. */
+  private Map<String, Long> latencySummary(final LatencyHistogram.Snapshot latency) {
+    final Map<String, Long> summary = new LinkedHashMap<>();
+    summary.put("count", latency.getTotalCount());
+    summary.put("p50_us", latency.getValueAtPercentile(50.0));
+    summary.put("p90_us", latency.getValueAtPercentile(90.0));
+    summary.put("p99_us", latency.getValueAtPercentile(99.0));
+    summary.put("p999_us", latency.getValueAtPercentile(99.9));
+    summary.put("max_us", latency.getMaxValue());
+    return summary;
+  }
+
+  private Map<String, Long> routeSummary(final HttpMetricsSnapshot.RouteStats route) {
+    final Map<String, Long> summary = new LinkedHashMap<>();
+    summary.put("requests", route.requests());
+    summary.put("bytesSent", route.bytesSent());
+    summary.put("p50_us", route.latency().getValueAtPercentile(50.0));
+    summary.put("p99_us", route.latency().getValueAtPercentile(99.0));
+    summary.put("max_us", route.latency().getMaxValue());
+    return summary;
+  }
+
+  /** Appends a quoted JSON string; route names are router patterns, but may hold quotes. */
+  private void appendString(final StringBuilder builder, final String value) {
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\');
+      }
+      builder.append(c);
+    }
+    builder.append('"');
+  }
+
   private void appendMap(final StringBuilder builder, final Map<String, Long> map) {
     builder.append('{');
     boolean first = true;
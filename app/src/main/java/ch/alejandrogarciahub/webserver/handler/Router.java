@@ -0,0 +1,527 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Dispatches requests to handlers by path and method.
+ *
+ * <p>Three kinds of paths can be registered:
+ *
+ * <ul>
+ *   <li>Exact paths, e.g. {@code /health}
+ *   <li>Paths with parameters, e.g. {@code /users/{id}/posts/{postId}}; a parameter captures one
+ *       whole, non-empty path segment and is read through {@link PathParams}
+ *   <li>Mounts, e.g. {@code /static}, which match the prefix and everything below it for every
+ *       method; the mounted handler answers methods itself
+ * </ul>
+ *
+ * <p>Static segments take precedence over parameters, and both over mounts; among mounts the
+ * longest prefix wins. A path that matches a route but not its method is answered with {@code 405
+ * Method Not Allowed} and an {@code Allow} header listing the route's methods. {@code HEAD} is
+ * served by the {@code GET} handler unless a {@code HEAD} handler is registered. Paths matching
+ * nothing go to the fallback handler (404 by default).
+ *
+ * <p>Every route and mount gets a dense ID when the router is built, in registration order, and a
+ * matched request carries it ({@link HttpRequest#getRouteId()}); {@link #routeNames()} names the
+ * IDs. Per-route metrics index their counters by it, so recording a request needs no second lookup
+ * of the path.
+ *
+ * <p>WHY radix tree: Routes are compiled into a tree whose edges are the longest shared literal
+ * runs of the patterns, so matching walks the path once, comparing it in place against edge labels,
+ * instead of testing every route in turn. Parameters are located lazily from their segment
+ * position, so a match allocates nothing unless the route has parameters, and then a single small
+ * {@link PathParams} view.
+ *
+ * <p><strong>Thread Safety:</strong> A built router is immutable and safe to share.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-405-method-not-allowed">RFC 9110
+ *     - 405 Method Not Allowed</a>
+ */
+public final class Router implements HttpRequestHandler {
+
+  /** Handler of a routed request, receiving the parameters captured from the path. */
+  @FunctionalInterface
+  public interface RouteHandler {
+    /**
+     * Handles a request that matched the route.
+     *
+     * @param request the HTTP request
+     * @param params the path parameters of the route (empty if it has none)
+     * @return the HTTP response
+     * @throws IOException if an I/O error occurs during request handling
+     */
+    HttpResponse handle(HttpRequest request, PathParams params) throws IOException;
+  }
+
+  private final Node root;
+  private final HttpRequestHandler fallback;
+  private final List<String> routeNames;
+
+  private Router(
+      final Node root, final HttpRequestHandler fallback, final List<String> routeNames) {
+    this.root = root;
+    this.fallback = fallback;
+    this.routeNames = routeNames;
+  }
+
+  /**
+   * Creates a builder for a router.
+   *
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the name of each route ID: the pattern of a route, or the prefix of a mount followed by
+   * {@code /*}.
+   *
+   * @return unmodifiable list indexed by route ID
+   */
+  public List<String> routeNames() {
+    return routeNames;
+  }
+
+  @Override
+  public HttpResponse handle(final HttpRequest request) throws IOException {
+    final String path = request.getPath();
+    final Route route = find(root, path, 0);
+    if (route == null) {
+      return fallback.handle(request);
+    }
+    // WHY keep an assigned ID: Below a mount of an outer router, the outer router's IDs are the
+    // ones the request is counted by
+    if (request.getRouteId() == HttpRequest.NO_ROUTE) {
+      request.setRouteId(route.id);
+    }
+    if (route.mount != null) {
+      return route.mount.handle(request);
+    }
+    final HttpMethod method = request.getMethod();
+    RouteHandler handler = route.handlers[method.ordinal()];
+    if (handler == null && method == HttpMethod.HEAD) {
+      // RFC 9110 Section 9.3.2: HEAD is GET without a body; the connection drops the body
+      handler = route.handlers[HttpMethod.GET.ordinal()];
+    }
+    if (handler == null) {
+      return HttpResponse.methodNotAllowed(route.allow);
+    }
+    return handler.handle(request, route.params(path));
+  }
+
+  /**
+   * Finds the route for the path below a node.
+   *
+   * <p>Tries the static child, then the parameter child, then the node's own mount, so the most
+   * specific route wins and a dead end in one branch falls back to the next. The recursion depth is
+   * bounded by the number of nodes on the path.
+   *
+   * @param start index of the first path character the node's label must match
+   * @return the matching route or mount, or null
+   */
+  private static Route find(final Node node, final String path, final int start) {
+    if (!path.startsWith(node.label, start)) {
+      return null;
+    }
+    final int position = start + node.label.length();
+    final int length = path.length();
+    if (position == length && node.route != null) {
+      return node.route;
+    }
+    if (position < length) {
+      final char next = path.charAt(position);
+      for (int i = 0; i < node.indices.length; i++) {
+        if (node.indices[i] == next) {
+          final Route match = find(node.children[i], path, position);
+          if (match != null) {
+            return match;
+          }
+          break;
+        }
+      }
+      if (node.param != null) {
+        final int end = segmentEnd(path, position);
+        if (end > position) {
+          final Route match = find(node.param, path, end);
+          if (match != null) {
+            return match;
+          }
+        }
+      }
+    }
+    if (node.mount != null
+        && (position == length
+            || path.charAt(position) == '/'
+            || (position > 0 && path.charAt(position - 1) == '/'))) {
+      return node.mount;
+    }
+    return null;
+  }
+
+  private static int segmentEnd(final String path, final int from) {
+    final int slash = path.indexOf('/', from);
+    return slash < 0 ? path.length() : slash;
+  }
+
+  /**
+   * Path parameters captured by a route, extracted from the path on access.
+   *
+   * <p>Values are segments of the decoded path ({@link HttpRequest#getPath()}).
+   */
+  public static final class PathParams {
+    private static final PathParams NONE = new PathParams("", new String[0], new int[0]);
+
+    private final String path;
+    private final String[] names;
+    // Index of the segment each parameter occupies, i.e. the number of '/' before it
+    private final int[] segments;
+
+    private PathParams(final String path, final String[] names, final int[] segments) {
+      this.path = path;
+      this.names = names;
+      this.segments = segments;
+    }
+
+    /**
+     * Returns a parameter value.
+     *
+     * @param name the parameter name as written in the pattern, without braces
+     * @return the captured segment, or null if the route has no such parameter
+     */
+    public String get(final String name) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return segment(segments[i]);
+        }
+      }
+      return null;
+    }
+
+    /** Returns the number of parameters of the route. */
+    public int size() {
+      return names.length;
+    }
+
+    private String segment(final int index) {
+      int start = 0;
+      for (int i = 0; i < index; i++) {
+        start = path.indexOf('/', start) + 1;
+      }
+      return path.substring(start, segmentEnd(path, start));
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder text = new StringBuilder("{");
+      for (int i = 0; i < names.length; i++) {
+        text.append(i == 0 ? "" : ", ").append(names[i]).append('=').append(segment(segments[i]));
+      }
+      return text.append('}').toString();
+    }
+  }
+
+  /** Target of a pattern: per-method handlers of a route, or the handler of a mount. */
+  private static final class Route {
+    private final String pattern;
+    private final String[] paramNames;
+    private final int[] paramSegments;
+    private final RouteHandler[] handlers = new RouteHandler[HttpMethod.values().length];
+    private final HttpRequestHandler mount;
+    private String allow;
+    private int id;
+
+    private Route(
+        final String pattern,
+        final String[] paramNames,
+        final int[] paramSegments,
+        final HttpRequestHandler mount) {
+      this.pattern = pattern;
+      this.paramNames = paramNames;
+      this.paramSegments = paramSegments;
+      this.mount = mount;
+    }
+
+    private PathParams params(final String path) {
+      return paramNames.length == 0
+          ? PathParams.NONE
+          : new PathParams(path, paramNames, paramSegments);
+    }
+
+    /** Renders the Allow header once the route table is complete. */
+    private void compileAllow() {
+      final StringBuilder methods = new StringBuilder();
+      for (final HttpMethod method : HttpMethod.values()) {
+        final boolean implicitHead =
+            method == HttpMethod.HEAD && handlers[HttpMethod.GET.ordinal()] != null;
+        if (handlers[method.ordinal()] != null || implicitHead) {
+          methods.append(methods.isEmpty() ? "" : ", ").append(method.name());
+        }
+      }
+      allow = methods.toString();
+    }
+  }
+
+  /** Compiled tree node; immutable once built. */
+  private static final class Node {
+    // Literal path characters matched on entering the node (empty for parameter nodes)
+    private final String label;
+    // First character of each static child's label, parallel to children
+    private final char[] indices;
+    private final Node[] children;
+    // Child matching one whole path segment, or null
+    private final Node param;
+    private final Route route;
+    private final Route mount;
+
+    private Node(
+        final String label,
+        final char[] indices,
+        final Node[] children,
+        final Node param,
+        final Route route,
+        final Route mount) {
+      this.label = label;
+      this.indices = indices;
+      this.children = children;
+      this.param = param;
+      this.route = route;
+      this.mount = mount;
+    }
+  }
+
+  /** Builder for {@link Router}. */
+  public static final class Builder {
+    private final TrieNode root = new TrieNode();
+    // Routes and mounts in registration order; the index becomes the route ID
+    private final List<Route> routes = new ArrayList<>();
+    private HttpRequestHandler fallback = request -> HttpResponse.notFound();
+
+    private Builder() {}
+
+    /**
+     * Registers a handler for a method and path pattern.
+     *
+     * @param method the HTTP method
+     * @param pattern the path, starting with '/'; {@code {name}} captures a whole segment
+     * @param handler the handler
+     * @return this builder
+     * @throws IllegalArgumentException if the pattern is malformed, or the method is already
+     *     registered for it
+     */
+    public Builder route(
+        final HttpMethod method, final String pattern, final RouteHandler handler) {
+      Objects.requireNonNull(method, "method");
+      Objects.requireNonNull(handler, "handler");
+      final Route route = insertRoute(pattern);
+      if (route.handlers[method.ordinal()] != null) {
+        throw new IllegalArgumentException("Duplicate route: " + method + " " + pattern);
+      }
+      route.handlers[method.ordinal()] = handler;
+      return this;
+    }
+
+    /**
+     * Registers a handler that does not use path parameters.
+     *
+     * @param method the HTTP method
+     * @param pattern the path, starting with '/'
+     * @param handler the handler
+     * @return this builder
+     * @throws IllegalArgumentException if the pattern is malformed, or the method is already
+     *     registered for it
+     */
+    public Builder route(
+        final HttpMethod method, final String pattern, final HttpRequestHandler handler) {
+      Objects.requireNonNull(handler, "handler");
+      return route(method, pattern, (request, params) -> handler.handle(request));
+    }
+
+    /**
+     * Mounts a handler at a path prefix, for every method.
+     *
+     * <p>The mount matches the prefix itself and every path below it ({@code /static} matches
+     * {@code /static} and {@code /static/css/site.css}, not {@code /statics}).
+     *
+     * @param prefix the literal path prefix, starting with '/'
+     * @param handler the handler
+     * @return this builder
+     * @throws IllegalArgumentException if the prefix is malformed or already mounted
+     */
+    public Builder mount(final String prefix, final HttpRequestHandler handler) {
+      Objects.requireNonNull(handler, "handler");
+      validateStart(prefix);
+      if (prefix.indexOf('{') >= 0 || prefix.indexOf('}') >= 0) {
+        throw new IllegalArgumentException("Mount prefix must be literal: " + prefix);
+      }
+      final String normalized =
+          prefix.length() > 1 && prefix.endsWith("/")
+              ? prefix.substring(0, prefix.length() - 1)
+              : prefix;
+      TrieNode node = root;
+      for (int i = 0; i < normalized.length(); i++) {
+        node = node.child(normalized.charAt(i));
+      }
+      if (node.mount != null) {
+        throw new IllegalArgumentException("Duplicate mount: " + prefix);
+      }
+      node.mount = new Route(normalized, new String[0], new int[0], handler);
+      routes.add(node.mount);
+      return this;
+    }
+
+    /**
+     * Sets the handler for paths that match no route or mount.
+     *
+     * @param fallback the handler (default: 404 Not Found)
+     * @return this builder
+     */
+    public Builder fallback(final HttpRequestHandler fallback) {
+      this.fallback = Objects.requireNonNull(fallback, "fallback");
+      return this;
+    }
+
+    /**
+     * Compiles the registered routes.
+     *
+     * @return the router
+     */
+    public Router build() {
+      final String[] names = new String[routes.size()];
+      for (int i = 0; i < names.length; i++) {
+        final Route route = routes.get(i);
+        route.id = i;
+        if (route.mount != null) {
+          names[i] = route.pattern.endsWith("/") ? route.pattern + "*" : route.pattern + "/*";
+        } else {
+          route.compileAllow();
+          names[i] = route.pattern;
+        }
+      }
+      return new Router(compile("", root), fallback, List.of(names));
+    }
+
+    /** Adds the pattern to the trie, returning its route (shared by all methods). */
+    private Route insertRoute(final String pattern) {
+      validateStart(pattern);
+      final List<String> names = new ArrayList<>();
+      final List<Integer> segments = new ArrayList<>();
+      TrieNode node = root;
+      int segment = 0;
+      for (int i = 0; i < pattern.length(); i++) {
+        final char c = pattern.charAt(i);
+        if (c == '}') {
+          throw new IllegalArgumentException("Unbalanced '}' in pattern: " + pattern);
+        }
+        if (c != '{') {
+          if (c == '/') {
+            segment++;
+          }
+          node = node.child(c);
+          continue;
+        }
+        final int close = pattern.indexOf('}', i);
+        final String name = close < 0 ? "" : pattern.substring(i + 1, close);
+        if (pattern.charAt(i - 1) != '/'
+            || close < 0
+            || (close + 1 < pattern.length() && pattern.charAt(close + 1) != '/')) {
+          throw new IllegalArgumentException(
+              "Parameter must span a whole path segment: " + pattern);
+        }
+        if (!isParamName(name)) {
+          throw new IllegalArgumentException("Invalid parameter name '" + name + "': " + pattern);
+        }
+        if (names.contains(name)) {
+          throw new IllegalArgumentException("Duplicate parameter '" + name + "': " + pattern);
+        }
+        names.add(name);
+        segments.add(segment);
+        if (node.param == null) {
+          node.param = new TrieNode();
+        }
+        node = node.param;
+        i = close;
+      }
+
+      final String[] paramNames = names.toArray(new String[0]);
+      if (node.route == null) {
+        final int[] paramSegments = segments.stream().mapToInt(Integer::intValue).toArray();
+        node.route = new Route(pattern, paramNames, paramSegments, null);
+        routes.add(node.route);
+      } else if (!Arrays.equals(node.route.paramNames, paramNames)) {
+        throw new IllegalArgumentException(
+            "Pattern " + pattern + " conflicts with " + node.route.pattern);
+      }
+      return node.route;
+    }
+
+    private static void validateStart(final String pattern) {
+      Objects.requireNonNull(pattern, "pattern");
+      if (pattern.isEmpty() || pattern.charAt(0) != '/') {
+        throw new IllegalArgumentException("Pattern must start with '/': " + pattern);
+      }
+    }
+
+    private static boolean isParamName(final String name) {
+      if (name.isEmpty()) {
+        return false;
+      }
+      for (int i = 0; i < name.length(); i++) {
+        final char c = name.charAt(i);
+        if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Compiles a trie node into a tree node, folding chains of plain single-child nodes into one
+     * label.
+     */
+    private static Node compile(final String label, final TrieNode start) {
+      final StringBuilder text = new StringBuilder(label);
+      TrieNode node = start;
+      while (node.route == null
+          && node.mount == null
+          && node.param == null
+          && node.children.size() == 1) {
+        final Map.Entry<Character, TrieNode> only = node.children.firstEntry();
+        text.append(only.getKey().charValue());
+        node = only.getValue();
+      }
+
+      final char[] indices = new char[node.children.size()];
+      final Node[] children = new Node[indices.length];
+      int i = 0;
+      for (final Map.Entry<Character, TrieNode> child : node.children.entrySet()) {
+        indices[i] = child.getKey();
+        children[i] = compile(String.valueOf(child.getKey().charValue()), child.getValue());
+        i++;
+      }
+      final Node param = node.param != null ? compile("", node.param) : null;
+      return new Node(text.toString(), indices, children, param, node.route, node.mount);
+    }
+  }
+
+  /** Uncompressed build-time trie node: one edge per character. */
+  private static final class TrieNode {
+    private final TreeMap<Character, TrieNode> children = new TreeMap<>();
+    private TrieNode param;
+    private Route route;
+    private Route mount;
+
+    private TrieNode child(final char c) {
+      return children.computeIfAbsent(c, key -> new TrieNode());
+    }
+  }
+}
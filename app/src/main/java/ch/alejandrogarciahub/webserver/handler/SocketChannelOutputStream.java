@@ -0,0 +1,70 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import ch.alejandrogarciahub.webserver.http.MappedBuffers;
+import ch.alejandrogarciahub.webserver.http.ZeroCopyOutput;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Buffered output of a blocking-engine connection whose socket has a {@link SocketChannel}.
+ *
+ * <p>Small writes are coalesced exactly as in a plain {@link BufferedOutputStream}. File bodies are
+ * handed to the socket with {@link FileChannel#transferTo}, so the kernel can use sendfile, and
+ * large off-heap bodies are written from their own buffer instead of being copied through a heap
+ * array. Pending bytes (typically the response head) are written first, so the stream order is
+ * preserved.
+ *
+ * <p>The channel must be in blocking mode; one instance is created per connection.
+ */
+final class SocketChannelOutputStream extends BufferedOutputStream implements ZeroCopyOutput {
+  private final SocketChannel channel;
+
+  SocketChannelOutputStream(
+      final OutputStream socketOutput, final SocketChannel channel, final int bufferSize) {
+    super(socketOutput, bufferSize);
+    this.channel = channel;
+  }
+
+  @Override
+  public void transferFrom(final FileChannel file, final long position, final long count)
+      throws IOException {
+    flush();
+    long offset = position;
+    final long end = position + count;
+    while (offset < end) {
+      final long sent = file.transferTo(offset, end - offset, channel);
+      if (sent <= 0) {
+        // WHY fail: Content-Length was already sent, a short body would desync the connection
+        throw new EOFException("File ended before declared length");
+      }
+      offset += sent;
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of the buffer.
+   *
+   * <p>Bytes that fit in the coalescing buffer are copied there; larger buffers go straight to the
+   * socket, gathered with the pending bytes so the head does not cost a write of its own.
+   *
+   * @param source the bytes to write
+   * @throws IOException if the channel fails
+   */
+  @Override
+  public void write(final ByteBuffer source) throws IOException {
+    final int length = source.remaining();
+    if (length <= buf.length - count) {
+      MappedBuffers.get(source, buf, count);
+      source.position(source.limit());
+      count += length;
+      return;
+    }
+    MappedBuffers.write(channel, ByteBuffer.wrap(buf, 0, count), source);
+    count = 0;
+  }
+}
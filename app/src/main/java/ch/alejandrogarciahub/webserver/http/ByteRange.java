@@ -0,0 +1,106 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A satisfiable byte range of a representation, with inclusive bounds.
+ *
+ * @param first offset of the first byte
+ * @param last offset of the last byte (inclusive)
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-byte-ranges">RFC 9110 - Byte
+ *     Ranges</a>
+ */
+public record ByteRange(long first, long last) {
+  private static final String BYTES_UNIT = "bytes=";
+
+  /**
+   * Upper bound on ranges per request. Many tiny or overlapping ranges are a known amplification
+   * vector (RFC 9110 Section 14.2), so such requests get the full representation instead.
+   */
+  public static final int MAX_RANGES = 16;
+
+  /** Returns the number of bytes in the range. */
+  public long length() {
+    return last - first + 1;
+  }
+
+  /** Formats the Content-Range value for this range, e.g. {@code bytes 0-499/1234}. */
+  public String contentRange(final long size) {
+    return "bytes " + first + '-' + last + '/' + size;
+  }
+
+  /**
+   * Parses a Range header against a representation of the given size.
+   *
+   * <p>Returns null when the header must be ignored (not the {@code bytes} unit, invalid syntax or
+   * too many ranges) so the full representation is sent, and an empty list when the header is
+   * valid but no range overlaps the representation (416). Ranges extending past the end are
+   * clipped.
+   *
+   * @param fieldValue the Range header value (nullable)
+   * @param size representation length in bytes
+   * @return satisfiable ranges in request order, empty if none, or null to ignore the header
+   */
+  public static List<ByteRange> parse(final String fieldValue, final long size) {
+    if (fieldValue == null || !fieldValue.regionMatches(true, 0, BYTES_UNIT, 0, 6)) {
+      return null;
+    }
+    final List<ByteRange> ranges = new ArrayList<>();
+    int specs = 0;
+    int i = BYTES_UNIT.length();
+    final int length = fieldValue.length();
+    while (i < length) {
+      final int comma = fieldValue.indexOf(',', i);
+      final int end = comma < 0 ? length : comma;
+      final String spec = fieldValue.substring(i, end).trim();
+      i = end + 1;
+      if (spec.isEmpty()) {
+        continue; // Empty list elements are allowed
+      }
+      if (++specs > MAX_RANGES) {
+        return null;
+      }
+      final int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      final long first = parseNumber(spec, 0, dash);
+      final long last = parseNumber(spec, dash + 1, spec.length());
+      if (dash == 0) {
+        // Suffix range: the last N bytes
+        if (last < 0) {
+          return null;
+        }
+        if (last > 0 && size > 0) {
+          ranges.add(new ByteRange(Math.max(0, size - last), size - 1));
+        }
+      } else {
+        final boolean openEnded = dash == spec.length() - 1;
+        if (first < 0 || (!openEnded && (last < 0 || last < first))) {
+          return null;
+        }
+        if (first < size) {
+          ranges.add(new ByteRange(first, openEnded ? size - 1 : Math.min(last, size - 1)));
+        }
+      }
+    }
+    return specs == 0 ? null : ranges;
+  }
+
+  /** Parses a non-empty run of digits, saturating at Long.MAX_VALUE; returns -1 if invalid. */
+  private static long parseNumber(final String text, final int from, final int to) {
+    if (from >= to) {
+      return -1L;
+    }
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      final char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1L;
+      }
+      value = value > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : value * 10 + (c - '0');
+    }
+    return value;
+  }
+}
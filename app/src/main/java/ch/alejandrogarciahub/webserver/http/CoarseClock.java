@@ -0,0 +1,118 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.function.LongSupplier;
+
+/**
+ * Shared clock for timestamps that only change once per second.
+ *
+ * <p>The {@code Date} header (RFC 9110 Section 6.6.1) and access log timestamps have one-second
+ * resolution, yet every response needs them. They are rendered once when the wall clock enters a
+ * new second and shared by every thread until the next one, so a response costs a clock read and a
+ * comparison instead of a {@link DateTimeFormatter} run.
+ *
+ * <p>Durations use {@link #nanoTime()}, which is not cached: latency needs sub-millisecond
+ * resolution, and {@link System#nanoTime()} is already a cheap, monotonic read.
+ *
+ * <p><strong>Thread Safety:</strong> All methods are thread-safe. The rendered second is published
+ * as one immutable value; threads racing on a new second render identical values, so the last
+ * writer wins harmlessly.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-date">RFC 9110 - Date</a>
+ */
+public final class CoarseClock {
+  private static final CoarseClock SYSTEM = new CoarseClock(System::currentTimeMillis);
+
+  private final LongSupplier wallClock;
+  private volatile Second current;
+
+  /** Everything rendered for one second of wall-clock time. */
+  private record Second(long epochSecond, String httpDate, byte[] dateLine, String logTimestamp) {}
+
+  /**
+   * Creates a clock over a wall-clock source.
+   *
+   * @param wallClock returns milliseconds since the epoch (package-private for tests)
+   */
+  CoarseClock(final LongSupplier wallClock) {
+    this.wallClock = wallClock;
+    this.current = render(Math.floorDiv(wallClock.getAsLong(), 1000L));
+  }
+
+  /**
+   * Returns the clock shared by the whole server.
+   *
+   * @return the system clock
+   */
+  public static CoarseClock system() {
+    return SYSTEM;
+  }
+
+  /**
+   * Returns a monotonic timestamp for measuring durations.
+   *
+   * @return nanoseconds from an arbitrary origin, as {@link System#nanoTime()}
+   */
+  public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Returns the wall-clock time.
+   *
+   * @return milliseconds since the epoch
+   */
+  public long currentTimeMillis() {
+    return wallClock.getAsLong();
+  }
+
+  /**
+   * Returns the current time as an IMF-fixdate, e.g. {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+   *
+   * @return the HTTP-date of the current second
+   */
+  public String httpDate() {
+    return second().httpDate();
+  }
+
+  /**
+   * Returns the current time as an ISO-8601 UTC timestamp with second resolution, e.g. {@code
+   * 1994-11-06T08:49:37Z}, for log lines.
+   *
+   * @return the timestamp of the current second
+   */
+  public String logTimestamp() {
+    return second().logTimestamp();
+  }
+
+  /**
+   * Returns the complete {@code Date} header field line of the current second, CRLF included.
+   *
+   * @return shared ASCII bytes; must not be modified
+   */
+  byte[] dateHeaderLine() {
+    return second().dateLine();
+  }
+
+  private Second second() {
+    final long epochSecond = Math.floorDiv(wallClock.getAsLong(), 1000L);
+    final Second cached = current;
+    if (cached.epochSecond() == epochSecond) {
+      return cached;
+    }
+    final Second rendered = render(epochSecond);
+    current = rendered;
+    return rendered;
+  }
+
+  private static Second render(final long epochSecond) {
+    final String httpDate = HttpDate.format(epochSecond * 1000L);
+    final byte[] dateLine =
+        (HeaderNames.DATE + ": " + httpDate + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    final String logTimestamp =
+        DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(epochSecond));
+    return new Second(epochSecond, httpDate, dateLine, logTimestamp);
+  }
+}
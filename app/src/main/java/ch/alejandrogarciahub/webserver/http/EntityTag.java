@@ -0,0 +1,105 @@
+package ch.alejandrogarciahub.webserver.http;
+
+/**
+ * Generation and comparison of entity tags (ETag header values).
+ *
+ * <p>File tags are derived from the modification time and size, so they cost two hex conversions
+ * instead of hashing the content, and stay stable across restarts and server instances that share
+ * the same files.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-etag">RFC 9110 - ETag</a>
+ */
+public final class EntityTag {
+  private static final String WEAK_PREFIX = "W/";
+
+  private EntityTag() {}
+
+  /**
+   * Builds a strong entity tag for a file version.
+   *
+   * @param size file size in bytes
+   * @param lastModifiedMillis modification time in milliseconds since the epoch
+   * @return the quoted tag, e.g. {@code "18c5f0e2a40-1f4"}
+   */
+  public static String forFile(final long size, final long lastModifiedMillis) {
+    return '"' + Long.toHexString(lastModifiedMillis) + '-' + Long.toHexString(size) + '"';
+  }
+
+  /**
+   * Evaluates an If-None-Match field value against the current tag using weak comparison.
+   *
+   * @param fieldValue the If-None-Match value, {@code *} or a list of entity tags
+   * @param etag the current entity tag
+   * @return true if any listed tag matches, i.e. the client's copy is current
+   */
+  public static boolean weakMatchesAny(final String fieldValue, final String etag) {
+    return matchesAny(fieldValue, etag, false);
+  }
+
+  /**
+   * Evaluates an If-Match or If-Range entity tag list against the current tag using strong
+   * comparison: weak tags never match.
+   *
+   * @param fieldValue the field value, {@code *} or a list of entity tags
+   * @param etag the current entity tag
+   * @return true if any listed tag strongly matches
+   */
+  public static boolean strongMatchesAny(final String fieldValue, final String etag) {
+    return matchesAny(fieldValue, etag, true);
+  }
+
+  private static boolean matchesAny(
+      final String fieldValue, final String etag, final boolean strong) {
+    if (fieldValue == null || etag == null) {
+      return false;
+    }
+    if ("*".equals(fieldValue.trim())) {
+      return true;
+    }
+    if (strong && isWeak(etag)) {
+      return false;
+    }
+    final String opaque = opaqueTag(etag);
+    final int length = fieldValue.length();
+    int i = 0;
+    while (i < length) {
+      // Skip list separators and whitespace
+      while (i < length && (fieldValue.charAt(i) == ',' || isWhitespace(fieldValue.charAt(i)))) {
+        i++;
+      }
+      if (i >= length) {
+        break;
+      }
+      final boolean weak = fieldValue.startsWith(WEAK_PREFIX, i);
+      final int open = weak ? i + WEAK_PREFIX.length() : i;
+      if (open >= length || fieldValue.charAt(open) != '"') {
+        return false; // Malformed list: treat as no match
+      }
+      // Commas are legal inside an opaque tag, so scan to the closing quote
+      final int close = fieldValue.indexOf('"', open + 1);
+      if (close < 0) {
+        return false;
+      }
+      final boolean sameOpaqueTag =
+          close + 1 - open == opaque.length()
+              && fieldValue.regionMatches(open, opaque, 0, opaque.length());
+      if (sameOpaqueTag && (!strong || !weak)) {
+        return true;
+      }
+      i = close + 1;
+    }
+    return false;
+  }
+
+  private static boolean isWeak(final String etag) {
+    return etag.startsWith(WEAK_PREFIX);
+  }
+
+  private static String opaqueTag(final String etag) {
+    return isWeak(etag) ? etag.substring(WEAK_PREFIX.length()) : etag;
+  }
+
+  private static boolean isWhitespace(final char c) {
+    return c == ' ' || c == '\t';
+  }
+}
@@ -0,0 +1,198 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Well-known HTTP header field names.
+ *
+ * <p>Besides the canonical constants, this class holds a lookup table used by the request parser
+ * to map header name bytes to a shared {@code String} instance, so common headers never allocate a
+ * name per request. Matching is ASCII case-insensitive as required by RFC 9110.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-field-names">RFC 9110 - Field
+ *     Names</a>
+ */
+public final class HeaderNames {
+  public static final String ACCEPT = "Accept";
+  public static final String ACCEPT_CHARSET = "Accept-Charset";
+  public static final String ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String ACCEPT_LANGUAGE = "Accept-Language";
+  public static final String ACCEPT_RANGES = "Accept-Ranges";
+  public static final String ALLOW = "Allow";
+  public static final String AUTHORIZATION = "Authorization";
+  public static final String CACHE_CONTROL = "Cache-Control";
+  public static final String CONNECTION = "Connection";
+  public static final String CONTENT_ENCODING = "Content-Encoding";
+  public static final String CONTENT_LENGTH = "Content-Length";
+  public static final String CONTENT_RANGE = "Content-Range";
+  public static final String CONTENT_TYPE = "Content-Type";
+  public static final String COOKIE = "Cookie";
+  public static final String DATE = "Date";
+  public static final String DNT = "DNT";
+  public static final String ETAG = "ETag";
+  public static final String EXPECT = "Expect";
+  public static final String HOST = "Host";
+  public static final String IF_MATCH = "If-Match";
+  public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  public static final String IF_NONE_MATCH = "If-None-Match";
+  public static final String IF_RANGE = "If-Range";
+  public static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
+  public static final String KEEP_ALIVE = "Keep-Alive";
+  public static final String LAST_MODIFIED = "Last-Modified";
+  public static final String LOCATION = "Location";
+  public static final String ORIGIN = "Origin";
+  public static final String PRAGMA = "Pragma";
+  public static final String RANGE = "Range";
+  public static final String REFERER = "Referer";
+  public static final String RETRY_AFTER = "Retry-After";
+  public static final String SEC_FETCH_DEST = "Sec-Fetch-Dest";
+  public static final String SEC_FETCH_MODE = "Sec-Fetch-Mode";
+  public static final String SEC_FETCH_SITE = "Sec-Fetch-Site";
+  public static final String SERVER = "Server";
+  public static final String TE = "TE";
+  public static final String TRANSFER_ENCODING = "Transfer-Encoding";
+  public static final String UPGRADE = "Upgrade";
+  public static final String UPGRADE_INSECURE_REQUESTS = "Upgrade-Insecure-Requests";
+  public static final String USER_AGENT = "User-Agent";
+  public static final String VARY = "Vary";
+  public static final String X_FORWARDED_FOR = "X-Forwarded-For";
+  public static final String X_FORWARDED_PROTO = "X-Forwarded-Proto";
+  public static final String X_REAL_IP = "X-Real-IP";
+  public static final String X_REQUEST_ID = "X-Request-Id";
+
+  private static final String[] WELL_KNOWN = {
+    ACCEPT, ACCEPT_CHARSET, ACCEPT_ENCODING, ACCEPT_LANGUAGE, ACCEPT_RANGES, ALLOW, AUTHORIZATION,
+    CACHE_CONTROL, CONNECTION, CONTENT_ENCODING, CONTENT_LENGTH, CONTENT_RANGE, CONTENT_TYPE,
+    COOKIE, DATE, DNT, ETAG, EXPECT, HOST, IF_MATCH, IF_MODIFIED_SINCE, IF_NONE_MATCH, IF_RANGE,
+    IF_UNMODIFIED_SINCE, KEEP_ALIVE, LAST_MODIFIED, LOCATION, ORIGIN, PRAGMA, RANGE, REFERER,
+    RETRY_AFTER, SEC_FETCH_DEST, SEC_FETCH_MODE, SEC_FETCH_SITE, SERVER, TE, TRANSFER_ENCODING,
+    UPGRADE, UPGRADE_INSECURE_REQUESTS, USER_AGENT, VARY, X_FORWARDED_FOR, X_FORWARDED_PROTO,
+    X_REAL_IP, X_REQUEST_ID
+  };
+
+  // Wire bytes of each canonical name, used by the response serializer
+  private static final Map<String, byte[]> ENCODED = new HashMap<>();
+
+  // Canonical spelling to shared instance, the fast path of canonical(String)
+  private static final Map<String, String> CANONICAL = new HashMap<>();
+
+  // Candidates bucketed by length; bytes are stored lower-cased for case-insensitive matching
+  private static final String[][] NAMES_BY_LENGTH;
+  private static final byte[][][] LOWER_BY_LENGTH;
+
+  static {
+    int maxLength = 0;
+    for (final String name : WELL_KNOWN) {
+      maxLength = Math.max(maxLength, name.length());
+      ENCODED.put(name, name.getBytes(StandardCharsets.US_ASCII));
+      CANONICAL.put(name, name);
+    }
+    final List<List<String>> buckets = new ArrayList<>();
+    for (int i = 0; i <= maxLength; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (final String name : WELL_KNOWN) {
+      buckets.get(name.length()).add(name);
+    }
+
+    NAMES_BY_LENGTH = new String[maxLength + 1][];
+    LOWER_BY_LENGTH = new byte[maxLength + 1][][];
+    for (int length = 0; length <= maxLength; length++) {
+      final List<String> bucket = buckets.get(length);
+      NAMES_BY_LENGTH[length] = bucket.toArray(new String[0]);
+      LOWER_BY_LENGTH[length] = new byte[bucket.size()][];
+      for (int i = 0; i < bucket.size(); i++) {
+        LOWER_BY_LENGTH[length][i] = toLowerAscii(bucket.get(i));
+      }
+    }
+  }
+
+  private HeaderNames() {}
+
+  /**
+   * Maps raw header name bytes to the canonical well-known name.
+   *
+   * @param source the buffer holding the header name
+   * @param offset start of the name
+   * @param length length of the name
+   * @return the shared canonical name, or null if the name is not well known
+   */
+  public static String lookup(final byte[] source, final int offset, final int length) {
+    if (length >= NAMES_BY_LENGTH.length) {
+      return null;
+    }
+    final byte[][] candidates = LOWER_BY_LENGTH[length];
+    for (int c = 0; c < candidates.length; c++) {
+      final byte[] candidate = candidates[c];
+      int i = 0;
+      while (i < length && toLowerAscii(source[offset + i]) == candidate[i]) {
+        i++;
+      }
+      if (i == length) {
+        return NAMES_BY_LENGTH[length][c];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Maps a header name in any letter case to the shared canonical instance.
+   *
+   * <p>Used by {@link HttpHeaders} so that well-known fields can be compared by reference.
+   *
+   * @param name the header name
+   * @return the shared canonical name, or null if the name is not well known
+   */
+  static String canonical(final String name) {
+    final String exact = CANONICAL.get(name);
+    if (exact != null || name.length() >= NAMES_BY_LENGTH.length) {
+      return exact;
+    }
+    final int length = name.length();
+    final byte[][] candidates = LOWER_BY_LENGTH[length];
+    for (int c = 0; c < candidates.length; c++) {
+      final byte[] candidate = candidates[c];
+      int i = 0;
+      while (i < length && toLowerAscii(name.charAt(i)) == candidate[i]) {
+        i++;
+      }
+      if (i == length) {
+        return NAMES_BY_LENGTH[length][c];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the pre-encoded bytes of a well-known header name.
+   *
+   * <p>The lookup is case-sensitive: only the canonical spelling is pre-encoded, which is what
+   * responses built with these constants use.
+   *
+   * @param name the header name
+   * @return the shared ASCII bytes (must not be modified), or null if the name is not well known
+   */
+  static byte[] encoded(final String name) {
+    return ENCODED.get(name);
+  }
+
+  private static byte[] toLowerAscii(final String name) {
+    final byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = toLowerAscii(bytes[i]);
+    }
+    return bytes;
+  }
+
+  private static byte toLowerAscii(final byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+  }
+
+  private static int toLowerAscii(final char c) {
+    return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+  }
+}
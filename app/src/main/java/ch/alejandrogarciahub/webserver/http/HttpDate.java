@@ -0,0 +1,76 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+
+/**
+ * Formatting and parsing of HTTP-date values (Date, Last-Modified, If-Modified-Since, ...).
+ *
+ * <p>Dates are always generated in the preferred IMF-fixdate format. Parsing also accepts the two
+ * obsolete formats recipients are required to support.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-date-time-formats">RFC 9110 -
+ *     Date/Time Formats</a>
+ */
+public final class HttpDate {
+  // Sun, 06 Nov 1994 08:49:37 GMT
+  private static final DateTimeFormatter IMF_FIXDATE =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+          .withZone(ZoneOffset.UTC);
+
+  // Sunday, 06-Nov-94 08:49:37 GMT
+  private static final DateTimeFormatter RFC_850 =
+      new DateTimeFormatterBuilder()
+          .appendPattern("EEEE, dd-MMM-")
+          .appendValueReduced(ChronoField.YEAR, 2, 2, 1970)
+          .appendPattern(" HH:mm:ss 'GMT'")
+          .toFormatter(Locale.US);
+
+  // Sun Nov  6 08:49:37 1994
+  private static final DateTimeFormatter ASCTIME =
+      DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US);
+
+  private HttpDate() {}
+
+  /**
+   * Formats a timestamp as an IMF-fixdate, truncated to whole seconds.
+   *
+   * @param epochMillis milliseconds since the epoch
+   * @return the HTTP-date
+   */
+  public static String format(final long epochMillis) {
+    return IMF_FIXDATE.format(Instant.ofEpochMilli(epochMillis));
+  }
+
+  /**
+   * Parses an HTTP-date in any of the three formats.
+   *
+   * @param value the header value (nullable)
+   * @return milliseconds since the epoch, or -1 if the value is absent or not a valid HTTP-date
+   */
+  public static long parse(final String value) {
+    if (value == null) {
+      return -1L;
+    }
+    final String trimmed = value.trim();
+    try {
+      return Instant.from(IMF_FIXDATE.parse(trimmed)).toEpochMilli();
+    } catch (final DateTimeParseException ignore) {
+      // Fall through to the obsolete formats
+    }
+    for (final DateTimeFormatter obsolete : new DateTimeFormatter[] {RFC_850, ASCTIME}) {
+      try {
+        return LocalDateTime.parse(trimmed, obsolete).toInstant(ZoneOffset.UTC).toEpochMilli();
+      } catch (final DateTimeParseException ignore) {
+        // Try the next format
+      }
+    }
+    return -1L;
+  }
+}
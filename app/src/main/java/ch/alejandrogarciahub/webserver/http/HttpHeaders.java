@@ -1,46 +1,85 @@
 package ch.alejandrogarciahub.webserver.http;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 /**
- * Case-insensitive HTTP header map.
+ * Case-insensitive, insertion-ordered HTTP header fields.
  *
- * <p>HTTP header field names are case-insensitive per RFC 9110. This class provides a wrapper
- * around a TreeMap with case-insensitive key comparison.
+ * <p>HTTP header field names are case-insensitive per RFC 9110. Fields are kept in two parallel
+ * arrays in the order they were added, and repeated fields (e.g. several {@code Cache-Control}
+ * lines) are preserved rather than overwritten.
+ *
+ * <p>WHY arrays: A request carries a handful of fields, so a linear scan over a few contiguous
+ * slots beats a tree walk with case-folding comparisons, and a field costs no node object.
+ * Well-known names are stored as the shared {@link HeaderNames} instance whatever case they were
+ * given in, so looking one up compares references only.
  *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc9110.html#name-field-names">RFC 9110 - Field
  *     Names</a>
  */
 public final class HttpHeaders {
-  private final Map<String, String> headers;
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private String[] names;
+  private String[] values;
+  private int size;
 
   /** Constructs an empty HttpHeaders instance. */
   public HttpHeaders() {
-    this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    this.names = new String[DEFAULT_CAPACITY];
+    this.values = new String[DEFAULT_CAPACITY];
   }
 
   /**
    * Constructs HttpHeaders from an existing map.
    *
-   * @param headers the headers map (will be copied with case-insensitive keys)
+   * @param headers the headers map (copied in iteration order)
    */
   public HttpHeaders(final Map<String, String> headers) {
-    this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-    this.headers.putAll(headers);
+    this();
+    headers.forEach(this::set);
   }
 
   /**
-   * Sets a header field.
+   * Sets a header field, replacing every existing field with the same name.
+   *
+   * <p>The field keeps the position of its first occurrence.
    *
    * @param name the header field name (case-insensitive)
    * @param value the header field value
    * @return this HttpHeaders instance for method chaining
    */
   public HttpHeaders set(final String name, final String value) {
-    headers.put(name, value);
+    final String known = HeaderNames.canonical(name);
+    final String key = known != null ? known : name;
+    final int index = indexOf(key, known != null, 0);
+    if (index < 0) {
+      append(key, value);
+      return this;
+    }
+    values[index] = value;
+    removeFrom(key, known != null, index + 1);
+    return this;
+  }
+
+  /**
+   * Adds a header field, keeping existing fields with the same name.
+   *
+   * @param name the header field name (case-insensitive)
+   * @param value the header field value
+   * @return this HttpHeaders instance for method chaining
+   */
+  public HttpHeaders add(final String name, final String value) {
+    final String known = HeaderNames.canonical(name);
+    append(known != null ? known : name, value);
     return this;
   }
 
@@ -48,10 +87,32 @@ public final class HttpHeaders {
    * Gets a header field value.
    *
    * @param name the header field name (case-insensitive)
-   * @return the header field value, or null if not present
+   * @return the value of the first field with that name, or null if not present
    */
   public String get(final String name) {
-    return headers.get(name);
+    final int index = indexOf(name, 0);
+    return index >= 0 ? values[index] : null;
+  }
+
+  /**
+   * Gets every value of a repeated header field, in the order received.
+   *
+   * @param name the header field name (case-insensitive)
+   * @return the values, empty if the field is not present
+   */
+  public List<String> getAll(final String name) {
+    final String known = HeaderNames.canonical(name);
+    final String key = known != null ? known : name;
+    int index = indexOf(key, known != null, 0);
+    if (index < 0) {
+      return List.of();
+    }
+    final List<String> all = new ArrayList<>(2);
+    while (index >= 0) {
+      all.add(values[index]);
+      index = indexOf(key, known != null, index + 1);
+    }
+    return Collections.unmodifiableList(all);
   }
 
   /**
@@ -62,7 +123,8 @@ public final class HttpHeaders {
    * @return the header field value, or defaultValue if not present
    */
   public String getOrDefault(final String name, final String defaultValue) {
-    return headers.getOrDefault(name, defaultValue);
+    final String value = get(name);
+    return value != null ? value : defaultValue;
   }
 
   /**
@@ -72,26 +134,52 @@ public final class HttpHeaders {
    * @return true if the header is present
    */
   public boolean contains(final String name) {
-    return headers.containsKey(name);
+    return indexOf(name, 0) >= 0;
+  }
+
+  /**
+   * Counts the fields with the given name.
+   *
+   * @param name the header field name (case-insensitive)
+   * @return how many times the field occurs
+   */
+  public int count(final String name) {
+    final String known = HeaderNames.canonical(name);
+    final String key = known != null ? known : name;
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (matches(names[i], key, known != null)) {
+        count++;
+      }
+    }
+    return count;
   }
 
   /**
-   * Removes a header field.
+   * Removes every field with the given name.
    *
    * @param name the header field name (case-insensitive)
-   * @return the previous value, or null if not present
+   * @return the first removed value, or null if not present
    */
   public String remove(final String name) {
-    return headers.remove(name);
+    final String known = HeaderNames.canonical(name);
+    final String key = known != null ? known : name;
+    final int index = indexOf(key, known != null, 0);
+    if (index < 0) {
+      return null;
+    }
+    final String previous = values[index];
+    removeFrom(key, known != null, index);
+    return previous;
   }
 
   /**
-   * Returns the number of headers.
+   * Returns the number of header fields, counting each repetition.
    *
    * @return the header count
    */
   public int size() {
-    return headers.size();
+    return size;
   }
 
   /**
@@ -100,34 +188,136 @@ public final class HttpHeaders {
    * @return true if there are no headers
    */
   public boolean isEmpty() {
-    return headers.isEmpty();
+    return size == 0;
   }
 
   /**
-   * Returns all header field names.
+   * Returns the name of the field at the given position.
+   *
+   * @param index position in insertion order, from 0 to {@link #size()} - 1
+   * @return the field name
+   */
+  public String nameAt(final int index) {
+    checkIndex(index);
+    return names[index];
+  }
+
+  /**
+   * Returns the value of the field at the given position.
+   *
+   * @param index position in insertion order, from 0 to {@link #size()} - 1
+   * @return the field value
+   */
+  public String valueAt(final int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  /**
+   * Returns all distinct header field names in insertion order.
    *
    * @return unmodifiable set of header names
    */
   public Set<String> names() {
-    return Collections.unmodifiableSet(headers.keySet());
+    final Set<String> distinct = new LinkedHashSet<>();
+    for (int i = 0; i < size; i++) {
+      // Spelled as first added, so "X-Id" and "x-id" count once
+      distinct.add(names[indexOf(names[i], 0)]);
+    }
+    return Collections.unmodifiableSet(distinct);
+  }
+
+  /**
+   * Passes every header field to the action in insertion order, repeated fields included.
+   *
+   * @param action receives each field name and value
+   */
+  public void forEach(final BiConsumer<? super String, ? super String> action) {
+    for (int i = 0; i < size; i++) {
+      action.accept(names[i], values[i]);
+    }
   }
 
   /**
-   * Returns an unmodifiable view of the headers map.
+   * Returns a snapshot of the headers as a map.
    *
-   * @return unmodifiable map of headers
+   * <p>Repeated fields are combined into one comma-separated value, as allowed by RFC 9110
+   * Section 5.3.
+   *
+   * @return unmodifiable map of headers in insertion order
    */
   public Map<String, String> asMap() {
-    return Collections.unmodifiableMap(headers);
+    final Map<String, String> map = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      map.merge(names[indexOf(names[i], 0)], values[i], (first, next) -> first + ", " + next);
+    }
+    return Collections.unmodifiableMap(map);
   }
 
   /** Clears all headers. */
   public void clear() {
-    headers.clear();
+    Arrays.fill(names, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    size = 0;
   }
 
   @Override
   public String toString() {
-    return headers.toString();
+    return asMap().toString();
+  }
+
+  private int indexOf(final String name, final int from) {
+    final String known = HeaderNames.canonical(name);
+    return known != null ? indexOf(known, true, from) : indexOf(name, false, from);
+  }
+
+  /**
+   * Finds the next field named {@code key}.
+   *
+   * @param known true if {@code key} is a shared well-known instance, compared by reference
+   */
+  private int indexOf(final String key, final boolean known, final int from) {
+    for (int i = from; i < size; i++) {
+      if (matches(names[i], key, known)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(final String stored, final String key, final boolean known) {
+    // Stored well-known names are always the shared instance, so a reference check is exact
+    return known ? stored == key : stored.equalsIgnoreCase(key);
+  }
+
+  private void append(final String key, final String value) {
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    names[size] = key;
+    values[size] = value;
+    size++;
+  }
+
+  /** Removes the fields named {@code key} at or after {@code from}, compacting the arrays. */
+  private void removeFrom(final String key, final boolean known, final int from) {
+    int kept = from;
+    for (int i = from; i < size; i++) {
+      if (!matches(names[i], key, known)) {
+        names[kept] = names[i];
+        values[kept] = values[i];
+        kept++;
+      }
+    }
+    Arrays.fill(names, kept, size, null);
+    Arrays.fill(values, kept, size, null);
+    size = kept;
+  }
+
+  private void checkIndex(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Header index " + index + " out of range: " + size);
+    }
   }
 }
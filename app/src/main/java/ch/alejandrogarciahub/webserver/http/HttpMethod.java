@@ -1,5 +1,7 @@
 package ch.alejandrogarciahub.webserver.http;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * HTTP request methods as defined in RFC 9110.
  *
@@ -36,6 +38,11 @@ public enum HttpMethod {
   /** Partially modify a resource */
   PATCH;
 
+  private static final HttpMethod[] VALUES = values();
+
+  // Token bytes matched by the parser without materializing a String
+  private final byte[] token = name().getBytes(StandardCharsets.US_ASCII);
+
   /**
    * Parses an HTTP method from a string.
    *
@@ -54,6 +61,33 @@ public enum HttpMethod {
     }
   }
 
+  /**
+   * Looks up a method from raw request-line bytes.
+   *
+   * <p>Matches ASCII case-insensitively, like {@link #parse(String)}, without allocating.
+   *
+   * @param source the buffer holding the method token
+   * @param offset start of the token
+   * @param length length of the token
+   * @return the matching method, or null if the token is not a known method
+   */
+  public static HttpMethod fromBytes(final byte[] source, final int offset, final int length) {
+    for (final HttpMethod method : VALUES) {
+      final byte[] candidate = method.token;
+      if (candidate.length != length) {
+        continue;
+      }
+      int i = 0;
+      while (i < length && (source[offset + i] & ~0x20) == candidate[i]) {
+        i++;
+      }
+      if (i == length) {
+        return method;
+      }
+    }
+    return null;
+  }
+
   /**
    * Checks if this method is safe (does not modify server state).
    *
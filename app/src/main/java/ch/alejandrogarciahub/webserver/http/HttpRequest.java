@@ -1,6 +1,10 @@
 package ch.alejandrogarciahub.webserver.http;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
@@ -13,18 +17,45 @@ import java.util.Map;
  * Immutable representation of an HTTP/1.1 request.
  *
  * <p>This class encapsulates all components of an HTTP request: method, URI, headers, and body. All
- * fields are final and the class is thread-safe.
+ * fields are final or lazily derived from final fields, and the class is thread-safe. The one
+ * exception is the route ID, which the router sets on the thread handling the request.
+ *
+ * <p>WHY lazy URI views: Most requests are static file GETs that only need the path, never the
+ * query. The request-target is validated once in the constructor with a cheap scan, and the path
+ * and query parameters are only extracted (and percent-decoded, if they contain escapes) on first
+ * access.
+ *
+ * <p>WHY streamed bodies: The body may be handed over as a stream that reads from the connection on
+ * demand, so an upload is never held in memory unless the handler asks for it with {@link
+ * #readBody()}. Such a stream can be consumed only once, by the thread serving the request.
  *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc9112.html">RFC 9112 - HTTP/1.1</a>
  */
 public final class HttpRequest {
+  /** Route ID of a request that no router has matched (yet). */
+  public static final int NO_ROUTE = -1;
+
+  // Shared by bodyless requests; never handed out without a copy
+  private static final byte[] NO_BODY = new byte[0];
+
   private final HttpMethod method;
   private final String requestTarget;
-  private final String path;
-  private final Map<String, String> queryParams;
   private final HttpVersion version;
   private final HttpHeaders headers;
-  private final byte[] body;
+  private final InetAddress remoteAddress;
+  // A streamed body is buffered into body on the first readBody() call
+  private final InputStream bodyStream;
+  private byte[] body;
+
+  // Set for targets outside the plain origin-form fast path, which are parsed up front by URI
+  private final URI uri;
+
+  // Lazily computed views. Racy single-check: every thread computes the same immutable value, so a
+  // duplicate computation is harmless and no lock is needed.
+  private String path;
+  private Map<String, String> queryParams;
+
+  private int routeId = NO_ROUTE;
 
   /**
    * Constructs an HttpRequest.
@@ -34,6 +65,7 @@ public final class HttpRequest {
    * @param version the HTTP version
    * @param headers the HTTP headers
    * @param body the request body (empty array if no body)
+   * @throws IllegalArgumentException if the request-target is not a valid URI reference
    */
   public HttpRequest(
       final HttpMethod method,
@@ -41,52 +73,209 @@ public final class HttpRequest {
       final HttpVersion version,
       final HttpHeaders headers,
       final byte[] body) {
+    this(method, requestTarget, version, headers, null, body.clone(), null); // Defensive copy
+  }
+
+  /**
+   * Constructs an HttpRequest whose body is read from a stream on demand.
+   *
+   * @param method the HTTP method
+   * @param requestTarget the raw request-target (URI)
+   * @param version the HTTP version
+   * @param headers the HTTP headers
+   * @param body the request body stream, ending where the body ends
+   * @throws IllegalArgumentException if the request-target is not a valid URI reference
+   */
+  public HttpRequest(
+      final HttpMethod method,
+      final String requestTarget,
+      final HttpVersion version,
+      final HttpHeaders headers,
+      final InputStream body) {
+    this(method, requestTarget, version, headers, body, null, null);
+  }
+
+  /**
+   * Constructs an HttpRequest received from a client.
+   *
+   * @param method the HTTP method
+   * @param requestTarget the raw request-target (URI)
+   * @param version the HTTP version
+   * @param headers the HTTP headers
+   * @param body the request body stream, ending where the body ends, or null if there is no body
+   * @param remoteAddress the client's IP address (nullable)
+   * @throws IllegalArgumentException if the request-target is not a valid URI reference
+   */
+  public HttpRequest(
+      final HttpMethod method,
+      final String requestTarget,
+      final HttpVersion version,
+      final HttpHeaders headers,
+      final InputStream body,
+      final InetAddress remoteAddress) {
+    this(
+        method,
+        requestTarget,
+        version,
+        headers,
+        body,
+        body == null ? NO_BODY : null,
+        remoteAddress);
+  }
+
+  private HttpRequest(
+      final HttpMethod method,
+      final String requestTarget,
+      final HttpVersion version,
+      final HttpHeaders headers,
+      final InputStream bodyStream,
+      final byte[] body,
+      final InetAddress remoteAddress) {
     this.method = method;
     this.requestTarget = requestTarget;
     this.version = version;
     this.headers = headers;
-    this.body = body.clone(); // Defensive copy
+    this.remoteAddress = remoteAddress;
+    this.bodyStream = bodyStream;
+    this.body = body;
 
-    // Parse URI components
+    if (isPlainOriginForm(requestTarget)) {
+      this.uri = null;
+      return;
+    }
+    // Absolute-form, asterisk-form or unusual characters: let java.net.URI decide
     try {
-      final URI uri = new URI(requestTarget);
-      this.path = uri.getPath() != null ? uri.getPath() : "/";
-      this.queryParams = parseQueryString(uri.getRawQuery());
+      this.uri = new URI(requestTarget);
     } catch (final URISyntaxException e) {
       throw new IllegalArgumentException("Invalid request-target: " + requestTarget, e);
     }
   }
 
+  /**
+   * Checks that the target is an origin-form path made only of characters RFC 3986 allows
+   * unencoded in a path, query or fragment, with well-formed percent escapes.
+   *
+   * <p>Such targets are accepted by {@link URI} as well, so both paths agree on validity; anything
+   * else goes through {@link URI} itself.
+   */
+  private static boolean isPlainOriginForm(final String target) {
+    if (target.isEmpty() || target.charAt(0) != '/') {
+      return false;
+    }
+    boolean inFragment = false;
+    final int length = target.length();
+    for (int i = 0; i < length; i++) {
+      final char c = target.charAt(i);
+      if (c == '%') {
+        if (i + 2 >= length
+            || !isHexDigit(target.charAt(i + 1))
+            || !isHexDigit(target.charAt(i + 2))) {
+          return false;
+        }
+        i += 2;
+      } else if (c == '#') {
+        if (inFragment) {
+          return false;
+        }
+        inFragment = true;
+      } else if (!isUriChar(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isUriChar(final char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || "-._~!$&'()*+,;=:@/?".indexOf(c) >= 0;
+  }
+
+  private static boolean isHexDigit(final char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  /** Index where the path ends in the raw origin-form target. */
+  private int pathEnd() {
+    for (int i = 0; i < requestTarget.length(); i++) {
+      final char c = requestTarget.charAt(i);
+      if (c == '?' || c == '#') {
+        return i;
+      }
+    }
+    return requestTarget.length();
+  }
+
+  private String parsePath() {
+    if (uri != null) {
+      return uri.getPath() != null ? uri.getPath() : "/";
+    }
+    final String rawPath = requestTarget.substring(0, pathEnd());
+    // WHY skip: Without escapes the raw path already is the decoded path
+    return rawPath.indexOf('%') < 0 ? rawPath : decode(rawPath, false);
+  }
+
+  /**
+   * Returns the raw (still percent-encoded) query component, for logging.
+   *
+   * @return the query without the leading '?', or null if the target has none
+   */
+  public String getRawQuery() {
+    if (uri != null) {
+      return uri.getRawQuery();
+    }
+    final int queryStart = pathEnd();
+    if (queryStart == requestTarget.length() || requestTarget.charAt(queryStart) != '?') {
+      return null;
+    }
+    final int fragment = requestTarget.indexOf('#', queryStart);
+    final int queryEnd = fragment < 0 ? requestTarget.length() : fragment;
+    return requestTarget.substring(queryStart + 1, queryEnd);
+  }
+
   /**
    * Parses query string into parameter map.
    *
    * @param query the raw query string (null if no query)
    * @return unmodifiable map of query parameters
    */
-  private Map<String, String> parseQueryString(final String query) {
+  private static Map<String, String> parseQueryString(final String query) {
     if (query == null || query.isEmpty()) {
       return Collections.emptyMap();
     }
 
     final Map<String, String> params = new LinkedHashMap<>();
-    for (final String pair : query.split("&")) {
-      final int idx = pair.indexOf('=');
-      if (idx > 0) {
-        try {
-          final String key =
-              URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.name());
-          final String value =
-              URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name());
-          params.put(key, value);
-        } catch (final UnsupportedEncodingException e) {
-          // UTF-8 is always supported
-          throw new AssertionError("UTF-8 encoding not supported", e);
-        }
+    int start = 0;
+    while (start <= query.length()) {
+      int end = query.indexOf('&', start);
+      if (end < 0) {
+        end = query.length();
+      }
+      final int idx = query.indexOf('=', start);
+      if (idx > start && idx < end) {
+        params.put(
+            decode(query.substring(start, idx), true), decode(query.substring(idx + 1, end), true));
       }
+      start = end + 1;
     }
     return Collections.unmodifiableMap(params);
   }
 
+  /**
+   * Percent-decodes a URI component as UTF-8.
+   *
+   * @param formEncoded true for query components, where '+' stands for a space
+   */
+  private static String decode(final String component, final boolean formEncoded) {
+    if (component.indexOf('%') < 0 && (!formEncoded || component.indexOf('+') < 0)) {
+      return component;
+    }
+    // URLDecoder always maps '+' to a space, which is wrong inside a path
+    final String escaped = formEncoded ? component : component.replace("+", "%2B");
+    return URLDecoder.decode(escaped, StandardCharsets.UTF_8);
+  }
+
   /**
    * Returns the HTTP method.
    *
@@ -111,7 +300,12 @@ public final class HttpRequest {
    * @return the path (e.g., "/index.html")
    */
   public String getPath() {
-    return path;
+    String value = path;
+    if (value == null) {
+      value = parsePath();
+      path = value;
+    }
+    return value;
   }
 
   /**
@@ -120,7 +314,12 @@ public final class HttpRequest {
    * @return unmodifiable map of query parameters
    */
   public Map<String, String> getQueryParams() {
-    return queryParams;
+    Map<String, String> value = queryParams;
+    if (value == null) {
+      value = parseQueryString(getRawQuery());
+      queryParams = value;
+    }
+    return value;
   }
 
   /**
@@ -130,7 +329,7 @@ public final class HttpRequest {
    * @return the parameter value, or null if not present
    */
   public String getQueryParam(final String name) {
-    return queryParams.get(name);
+    return getQueryParams().get(name);
   }
 
   /**
@@ -142,6 +341,35 @@ public final class HttpRequest {
     return version;
   }
 
+  /**
+   * Returns the address of the client that sent the request.
+   *
+   * <p>This is the peer of the connection, which may be a proxy rather than the original client.
+   *
+   * @return the client's IP address, or null if unknown
+   */
+  public InetAddress getRemoteAddress() {
+    return remoteAddress;
+  }
+
+  /**
+   * Returns the ID of the route that matched the request, which per-route metrics count it by.
+   *
+   * @return the dense ID assigned by the router, or {@link #NO_ROUTE}
+   */
+  public int getRouteId() {
+    return routeId;
+  }
+
+  /**
+   * Records the route that matched the request.
+   *
+   * @param routeId the route's ID, as assigned by the router
+   */
+  public void setRouteId(final int routeId) {
+    this.routeId = routeId;
+  }
+
   /**
    * Returns the HTTP headers.
    *
@@ -162,14 +390,54 @@ public final class HttpRequest {
   }
 
   /**
-   * Returns the request body.
+   * Returns the request body as a stream.
+   *
+   * <p>A streamed body is read from the connection as it is consumed and can be read only once.
+   * Whatever the handler leaves unread is discarded before the next request on the connection.
+   *
+   * @return the body stream
+   */
+  public InputStream getBodyStream() {
+    synchronized (this) {
+      if (body != null) {
+        return new ByteArrayInputStream(body);
+      }
+    }
+    return bodyStream;
+  }
+
+  /**
+   * Reads the whole request body into memory.
+   *
+   * <p>WHY opt-in: A buffered body costs up to {@code HTTP_MAX_CONTENT_LENGTH} bytes per request,
+   * so only handlers that need it as a whole should ask for it. The first call reads whatever is
+   * left of a streamed body; later calls return the same bytes.
    *
    * @return defensive copy of the body bytes
+   * @throws IOException if reading fails, or the body is malformed or truncated
    */
-  public byte[] getBody() {
+  public synchronized byte[] readBody() throws IOException {
+    if (body == null) {
+      body = bodyStream.readAllBytes();
+    }
     return body.clone();
   }
 
+  /**
+   * Returns the request body, reading it into memory first if it is streamed.
+   *
+   * @return defensive copy of the body bytes
+   * @throws UncheckedIOException if reading a streamed body fails
+   * @see #readBody()
+   */
+  public byte[] getBody() {
+    try {
+      return readBody();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /**
    * Returns the Content-Length header value.
    *
@@ -210,9 +478,9 @@ public final class HttpRequest {
   }
 
   @Override
-  public String toString() {
+  public synchronized String toString() {
     return String.format(
-        "HttpRequest{method=%s, path=%s, version=%s, headers=%d, bodySize=%d}",
-        method, path, version, headers.size(), body.length);
+        "HttpRequest{method=%s, path=%s, version=%s, headers=%d, bodySize=%s}",
+        method, path, version, headers.size(), body != null ? body.length : "streamed");
   }
 }
@@ -1,11 +1,18 @@
 package ch.alejandrogarciahub.webserver.http;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Builder for constructing HTTP/1.1 responses.
@@ -16,6 +23,23 @@ import java.nio.charset.StandardCharsets;
  * @see <a href="https://www.rfc-editor.org/rfc/rfc9112.html">RFC 9112 - HTTP/1.1</a>
  */
 public final class HttpResponse {
+  private static final String ERROR_CONTENT_TYPE = "text/html; charset=UTF-8";
+  // Error pages by status ordinal: the part before the optional message, and the whole page
+  private static final byte[][] ERROR_PAGE_HEADS = new byte[HttpStatus.values().length][];
+  private static final byte[] ERROR_PAGE_TAIL =
+      "</body>\n</html>\n".getBytes(StandardCharsets.UTF_8);
+  private static final ByteBuffer[] ERROR_PAGES = new ByteBuffer[HttpStatus.values().length];
+
+  static {
+    for (final HttpStatus status : HttpStatus.values()) {
+      final byte[] head = errorPageHead(status);
+      final byte[] page = Arrays.copyOf(head, head.length + ERROR_PAGE_TAIL.length);
+      System.arraycopy(ERROR_PAGE_TAIL, 0, page, head.length, ERROR_PAGE_TAIL.length);
+      ERROR_PAGE_HEADS[status.ordinal()] = head;
+      ERROR_PAGES[status.ordinal()] = ByteBuffer.wrap(page).asReadOnlyBuffer();
+    }
+  }
+
   private HttpStatus status = HttpStatus.OK;
   private HttpVersion version = HttpVersion.HTTP_1_1;
   private final HttpHeaders headers = new HttpHeaders();
@@ -25,6 +49,20 @@ public final class HttpResponse {
   // The supplier is called when writeTo() is invoked, enabling efficient streaming.
   private InputStreamSupplier bodySupplier;
 
+  // Segmented body: File regions are written with FileChannel.transferTo so the kernel copies file
+  // pages straight to the socket (sendfile on Linux) when the output supports it; shared buffers
+  // (e.g. cached file content) are written from a private view so concurrent responses can serve
+  // the same off-heap bytes.
+  private List<BodySegment> segments;
+
+  // Streamed body: The handler writes while the response is sent, with chunked framing on HTTP/1.1
+  // and a close-delimited body on HTTP/1.0, so neither the length nor the content is known upfront
+  private BodyWriter bodyWriter;
+  private long streamedBytes;
+
+  // Set once the head is on the wire; from then on a failure can only end the connection
+  private boolean committed;
+
   // Connection directive tracking: These fields allow the handler to explicitly control
   // connection persistence, overriding default HTTP version behavior when needed
   // (e.g., forcing close on errors, rate limiting, resource exhaustion).
@@ -89,6 +127,22 @@ public final class HttpResponse {
     return this;
   }
 
+  /**
+   * Adds a header field without replacing existing fields of the same name (e.g. several {@code
+   * Set-Cookie} or {@code Vary} lines).
+   *
+   * @param name the header name
+   * @param value the header value
+   * @return this HttpResponse for method chaining
+   */
+  public HttpResponse addHeader(final String name, final String value) {
+    if ("Connection".equalsIgnoreCase(name)) {
+      return header(name, value);
+    }
+    headers.add(name, value);
+    return this;
+  }
+
   /**
    * Sets the response body.
    *
@@ -101,9 +155,45 @@ public final class HttpResponse {
     this.body = body.clone(); // Defensive copy
     headers.set("Content-Length", String.valueOf(body.length));
     this.bodySupplier = null;
+    this.segments = null;
+    this.bodyWriter = null;
     return this;
   }
 
+  /**
+   * Sets the response body from a buffer without copying it.
+   *
+   * <p>The remaining bytes of the buffer are sent and Content-Length is set to their count. The
+   * buffer is not modified, so the same (typically read-only, direct) buffer may back many
+   * responses at once.
+   *
+   * @param content the bytes to send
+   * @return this HttpResponse for method chaining
+   */
+  public HttpResponse body(final ByteBuffer content) {
+    return body(List.of(BodySegment.of(content)));
+  }
+
+  /**
+   * Sets a body made of consecutive segments and sets Content-Length to their total size.
+   *
+   * <p>Used for bodies that interleave generated bytes with file content, such as {@code
+   * multipart/byteranges}. Consecutive segments of the same file share one open channel.
+   *
+   * @param segments the body segments in wire order
+   * @return this HttpResponse for method chaining
+   */
+  public HttpResponse body(final List<BodySegment> segments) {
+    long length = 0;
+    for (final BodySegment segment : segments) {
+      length += segment.count();
+    }
+    this.segments = List.copyOf(segments);
+    this.bodySupplier = null;
+    this.bodyWriter = null;
+    return bodyLength(length);
+  }
+
   /**
    * Sets the response body from a string.
    *
@@ -141,9 +231,69 @@ public final class HttpResponse {
    */
   public HttpResponse setBodySupplier(final InputStreamSupplier supplier) {
     this.bodySupplier = supplier;
+    this.segments = null;
+    this.bodyWriter = null;
+    return this;
+  }
+
+  /**
+   * Streams the response body from a writer that runs while the response is sent.
+   *
+   * <p>No Content-Length is sent. On HTTP/1.1 the body goes out with {@code Transfer-Encoding:
+   * chunked}; on HTTP/1.0 it is delimited by closing the connection. Bytes leave as the writer's
+   * buffers fill or when it calls {@link OutputStream#flush()}, so the client sees the first bytes
+   * before the body is complete and the body is never held in memory as a whole.
+   *
+   * @param writer writes the body; the stream it receives must not be used after it returns
+   * @return this HttpResponse for method chaining
+   */
+  public HttpResponse streamBody(final BodyWriter writer) {
+    this.bodyWriter = writer;
+    this.body = new byte[0];
+    this.bodySupplier = null;
+    this.segments = null;
+    headers.remove("Content-Length");
     return this;
   }
 
+  /**
+   * Reports whether the body ends only when the connection closes.
+   *
+   * <p>True for a streamed body on HTTP/1.0, which has no chunked transfer coding. The connection
+   * must not be reused after such a response.
+   *
+   * @return true if the connection has to be closed after this response
+   */
+  public boolean isCloseDelimited() {
+    return bodyWriter != null && version != HttpVersion.HTTP_1_1 && status.allowsBody();
+  }
+
+  /**
+   * Reports whether the head has been written, after which the response can no longer be replaced
+   * by an error response.
+   *
+   * @return true once the status line and headers are on the wire
+   */
+  public boolean isCommitted() {
+    return committed;
+  }
+
+  /**
+   * Uses a region of a file as the response body and sets Content-Length to its size.
+   *
+   * <p>The file is opened only when the response is written. If the output is a {@link
+   * ZeroCopyOutput} the region is sent with {@link FileChannel#transferTo}, letting the kernel move
+   * the bytes without copying them through the JVM heap; other outputs receive a channel copy.
+   *
+   * @param file the file to serve
+   * @param position offset of the first byte to send
+   * @param count number of bytes to send
+   * @return this HttpResponse for method chaining
+   */
+  public HttpResponse bodyFile(final Path file, final long position, final long count) {
+    return body(List.of(BodySegment.ofFile(file, position, count)));
+  }
+
   /**
    * Sets the Connection header based on HTTP version and keep-alive decision.
    *
@@ -204,47 +354,131 @@ public final class HttpResponse {
    *
    * <p>Format: Status-Line CRLF *(Header-Field CRLF) CRLF [Message-Body]
    *
+   * <p>The stream is not flushed: the connection flushes once per batch of pipelined responses, so
+   * back-to-back responses leave in as few writes as possible.
+   *
+   * <p>A small in-memory body is written together with the head in one call; larger bodies follow
+   * immediately, and a {@link ZeroCopyOutput} may gather them with the head into one syscall.
+   *
    * @param output the output stream to write to
    * @throws IOException if an I/O error occurs
    */
   public void writeTo(final OutputStream output) throws IOException {
-    final PrintWriter writer =
-        new PrintWriter(new OutputStreamWriter(output, StandardCharsets.ISO_8859_1), false);
-
-    // Status line: HTTP-Version SP Status-Code SP Reason-Phrase CRLF
-    writer.print(version.getValue());
-    writer.print(" ");
-    writer.print(status.getCode());
-    writer.print(" ");
-    writer.print(status.getReasonPhrase());
-    writer.print("\r\n");
-
-    // Header fields
-    for (final String name : headers.names()) {
-      writer.print(name);
-      writer.print(": ");
-      writer.print(headers.get(name));
-      writer.print("\r\n");
+    if (!status.allowsBody()) {
+      // WHY: 1xx/204/304 end after the headers; a body would be read as the next response
+      writeHeadersOnly(output);
+      return;
     }
 
-    // Empty line separating headers from body
-    writer.print("\r\n");
-    writer.flush();
+    final ByteBuffer inlineBody = inlineBody();
+    writeHead(output, inlineBody);
+    if (inlineBody != null) {
+      return;
+    }
 
     // Message body (if present)
     // Lazy streaming: When bodySupplier is set, the file is opened here (not when response was
     // built), allowing efficient streaming of large files without loading into memory.
-    if (bodySupplier != null) {
+    if (bodyWriter != null) {
+      writeStreamedBody(output);
+    } else if (segments != null) {
+      writeSegments(output);
+    } else if (bodySupplier != null) {
       try (InputStream stream = bodySupplier.get()) {
         stream.transferTo(output);
       }
-      output.flush();
     } else if (body.length > 0) {
       output.write(body);
-      output.flush();
     }
   }
 
+  /**
+   * Returns the body if it is small and in memory, so it can share the head's write.
+   *
+   * @return a view of the body bytes, or null if the body is written separately
+   */
+  private ByteBuffer inlineBody() {
+    if (bodyWriter != null || bodySupplier != null) {
+      return null;
+    }
+    if (segments != null) {
+      if (segments.size() != 1) {
+        return null;
+      }
+      final BodySegment only = segments.get(0);
+      return only.file() == null && only.count() <= ResponseHeadEncoder.MAX_INLINE_BODY
+          ? only.buffer().duplicate()
+          : null;
+    }
+    return body.length <= ResponseHeadEncoder.MAX_INLINE_BODY ? ByteBuffer.wrap(body) : null;
+  }
+
+  private void writeStreamedBody(final OutputStream output) throws IOException {
+    final ResponseBodyOutputStream sink =
+        new ResponseBodyOutputStream(output, version == HttpVersion.HTTP_1_1);
+    try {
+      bodyWriter.writeTo(sink);
+      sink.finish();
+    } finally {
+      streamedBytes = sink.count();
+    }
+  }
+
+  private void writeSegments(final OutputStream output) throws IOException {
+    FileChannel file = null;
+    Path openPath = null;
+    try {
+      for (final BodySegment segment : segments) {
+        if (segment.file() == null) {
+          writeBuffer(output, segment.buffer().duplicate());
+          continue;
+        }
+        if (!segment.file().equals(openPath)) {
+          if (file != null) {
+            file.close();
+          }
+          file = FileChannel.open(segment.file(), StandardOpenOption.READ);
+          openPath = segment.file();
+        }
+        writeFileRegion(output, file, segment);
+      }
+    } finally {
+      if (file != null) {
+        file.close();
+      }
+    }
+  }
+
+  private static void writeFileRegion(
+      final OutputStream output, final FileChannel file, final BodySegment segment)
+      throws IOException {
+    if (output instanceof ZeroCopyOutput zeroCopy) {
+      zeroCopy.transferFrom(file, segment.position(), segment.count());
+      return;
+    }
+    // Fallback for plain streams: still avoids materialising the file, but copies in user space
+    final WritableByteChannel channel = Channels.newChannel(output);
+    long position = segment.position();
+    final long end = position + segment.count();
+    while (position < end) {
+      final long sent = file.transferTo(position, end - position, channel);
+      if (sent <= 0) {
+        // WHY fail: Content-Length was already sent, a short body would desync the connection
+        throw new EOFException("File ended before declared length: " + segment.file());
+      }
+      position += sent;
+    }
+  }
+
+  private static void writeBuffer(final OutputStream output, final ByteBuffer buffer)
+      throws IOException {
+    if (output instanceof ZeroCopyOutput zeroCopy) {
+      zeroCopy.write(buffer);
+      return;
+    }
+    MappedBuffers.write(Channels.newChannel(output), buffer);
+  }
+
   /**
    * Returns true if the response already contains a Connection header set explicitly by the
    * handler.
@@ -285,9 +519,16 @@ public final class HttpResponse {
     }
   }
 
-  /** Convenience accessor for observability hooks to report body size. */
+  /**
+   * Convenience accessor for observability hooks to report body size.
+   *
+   * <p>For a streamed body this is the number of bytes actually sent, excluding chunk framing.
+   */
   public long getBytesWritten() {
-    return getDeclaredContentLength();
+    if (bodyWriter != null) {
+      return streamedBytes;
+    }
+    return status.allowsBody() ? getDeclaredContentLength() : 0L;
   }
 
   /**
@@ -300,28 +541,29 @@ public final class HttpResponse {
    * @throws IOException if an I/O error occurs
    */
   public void writeHeadersOnly(final OutputStream output) throws IOException {
-    final PrintWriter writer =
-        new PrintWriter(new OutputStreamWriter(output, StandardCharsets.ISO_8859_1), false);
-
-    // Status line
-    writer.print(version.getValue());
-    writer.print(" ");
-    writer.print(status.getCode());
-    writer.print(" ");
-    writer.print(status.getReasonPhrase());
-    writer.print("\r\n");
-
-    // Header fields
-    for (final String name : headers.names()) {
-      writer.print(name);
-      writer.print(": ");
-      writer.print(headers.get(name));
-      writer.print("\r\n");
-    }
+    writeHead(output, null);
+  }
 
-    // Empty line (no body follows)
-    writer.print("\r\n");
-    writer.flush();
+  /**
+   * Writes the status line, header fields and the empty line ending the head in a single call.
+   *
+   * <p>WHY pre-encoded: Status lines and common header names are constant bytes, so the head is
+   * assembled in a reused per-thread buffer without a writer, charset encoder or per-token write.
+   *
+   * @param inlineBody small body to send in the same write, or null
+   */
+  private void writeHead(final OutputStream output, final ByteBuffer inlineBody)
+      throws IOException {
+    if (bodyWriter != null && status.allowsBody()) {
+      // Framing depends on the version, which is only final once the response is written
+      if (version == HttpVersion.HTTP_1_1) {
+        headers.set("Transfer-Encoding", "chunked");
+      } else {
+        headers.remove("Transfer-Encoding");
+      }
+    }
+    committed = true;
+    ResponseHeadEncoder.write(output, version, status, headers, inlineBody);
   }
 
   @Override
@@ -336,34 +578,53 @@ public final class HttpResponse {
    * <p>Generates an error response with HTML body containing the status code, reason phrase, and
    * optional custom message. Always sets Connection: close.
    *
+   * <p>WHY pre-rendered: Pages differ only by status and message, so each status's page is encoded
+   * once. A page without a message is a shared read-only buffer; a message costs one escaped copy
+   * between the pre-rendered head and tail, which keeps rejecting malformed requests cheap.
+   *
    * @param status the HTTP error status
    * @param message optional custom message (can be null)
    * @return configured HttpResponse ready to send
    */
   public static HttpResponse errorResponse(final HttpStatus status, final String message) {
-    final String errorBody =
-        String.format(
-            "<!DOCTYPE html>\n"
-                + "<html>\n"
-                + "<head><title>%d %s</title></head>\n"
-                + "<body>\n"
-                + "<h1>%d %s</h1>\n"
-                + "%s"
-                + "</body>\n"
-                + "</html>\n",
-            status.getCode(),
-            status.getReasonPhrase(),
-            status.getCode(),
-            status.getReasonPhrase(),
-            message != null ? "<p>" + escapeHtml(message) + "</p>\n" : "");
+    final ByteBuffer errorBody =
+        message != null
+            ? ByteBuffer.wrap(errorPage(status, message))
+            : ERROR_PAGES[status.ordinal()];
 
     return new HttpResponse()
         .status(status)
-        .contentType("text/html; charset=UTF-8")
+        .contentType(ERROR_CONTENT_TYPE)
         .body(errorBody)
         .keepAlive(false);
   }
 
+  private static byte[] errorPage(final HttpStatus status, final String message) {
+    final byte[] head = ERROR_PAGE_HEADS[status.ordinal()];
+    final byte[] paragraph =
+        ("<p>" + escapeHtml(message) + "</p>\n").getBytes(StandardCharsets.UTF_8);
+    final byte[] page =
+        Arrays.copyOf(head, head.length + paragraph.length + ERROR_PAGE_TAIL.length);
+    System.arraycopy(paragraph, 0, page, head.length, paragraph.length);
+    System.arraycopy(
+        ERROR_PAGE_TAIL, 0, page, head.length + paragraph.length, ERROR_PAGE_TAIL.length);
+    return page;
+  }
+
+  private static byte[] errorPageHead(final HttpStatus status) {
+    final String title = status.getCode() + " " + status.getReasonPhrase();
+    return ("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head><title>"
+            + title
+            + "</title></head>\n"
+            + "<body>\n"
+            + "<h1>"
+            + title
+            + "</h1>\n")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
   /**
    * Creates a 404 Not Found error response.
    *
@@ -407,6 +668,42 @@ public final class HttpResponse {
         .replace("'", "&#x27;");
   }
 
+  /**
+   * A piece of a response body: either in-memory bytes or a region of a file.
+   *
+   * @param buffer bytes to send (null for file segments)
+   * @param file file to read (null for buffer segments)
+   * @param position file offset of the first byte (0 for buffer segments)
+   * @param count number of bytes the segment contributes to the body
+   */
+  public record BodySegment(ByteBuffer buffer, Path file, long position, long count) {
+
+    /** Creates a segment over the remaining bytes of a buffer; the buffer is not modified. */
+    public static BodySegment of(final ByteBuffer buffer) {
+      return new BodySegment(buffer.duplicate(), null, 0L, buffer.remaining());
+    }
+
+    /** Creates a segment over a byte array without copying it. */
+    public static BodySegment of(final byte[] bytes) {
+      return of(ByteBuffer.wrap(bytes));
+    }
+
+    /** Creates a segment over a region of a file, which is opened when the body is written. */
+    public static BodySegment ofFile(final Path file, final long position, final long count) {
+      if (position < 0 || count < 0) {
+        throw new IllegalArgumentException(
+            "Invalid file region: position=" + position + ", count=" + count);
+      }
+      return new BodySegment(null, file, position, count);
+    }
+  }
+
+  /** Writes a streamed response body; see {@link #streamBody(BodyWriter)}. */
+  @FunctionalInterface
+  public interface BodyWriter {
+    void writeTo(OutputStream body) throws IOException;
+  }
+
   /** Functional interface mirroring Supplier but allowing checked IOExceptions. */
   @FunctionalInterface
   public interface InputStreamSupplier {
@@ -14,6 +14,7 @@ public enum HttpStatus {
   OK(200, "OK"),
   CREATED(201, "Created"),
   NO_CONTENT(204, "No Content"),
+  PARTIAL_CONTENT(206, "Partial Content"),
   NOT_MODIFIED(304, "Not Modified"),
 
   // 4xx Client Error
@@ -24,6 +25,8 @@ public enum HttpStatus {
   REQUEST_TIMEOUT(408, "Request Timeout"),
   PAYLOAD_TOO_LARGE(413, "Payload Too Large"),
   URI_TOO_LONG(414, "URI Too Long"),
+  RANGE_NOT_SATISFIABLE(416, "Range Not Satisfiable"),
+  TOO_MANY_REQUESTS(429, "Too Many Requests"),
 
   // 5xx Server Error
   INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
@@ -66,6 +69,18 @@ public enum HttpStatus {
     return code >= 200 && code < 300;
   }
 
+  /**
+   * Checks if a response with this status may carry content.
+   *
+   * <p>1xx, 204 and 304 responses end after the header section (RFC 9110 Section 6.4.1), so no body
+   * is written for them even if one was set.
+   *
+   * @return false for 1xx, 204 and 304
+   */
+  public boolean allowsBody() {
+    return code >= 200 && code != 204 && code != 304;
+  }
+
   /**
    * Checks if this status indicates a client error (4xx).
    *
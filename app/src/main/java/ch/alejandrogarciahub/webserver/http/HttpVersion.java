@@ -1,5 +1,8 @@
 package ch.alejandrogarciahub.webserver.http;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * HTTP protocol versions as defined in RFC 9112.
  *
@@ -15,10 +18,14 @@ public enum HttpVersion {
   /** HTTP/1.1 - Persistent connections by default, chunked encoding support */
   HTTP_1_1("HTTP/1.1");
 
+  private static final HttpVersion[] VALUES = values();
+
   private final String value;
+  private final byte[] bytes;
 
   HttpVersion(final String value) {
     this.value = value;
+    this.bytes = value.getBytes(StandardCharsets.US_ASCII);
   }
 
   /**
@@ -48,6 +55,23 @@ public enum HttpVersion {
     throw new IllegalArgumentException("Unsupported HTTP version: " + version);
   }
 
+  /**
+   * Looks up a version from raw request-line bytes without allocating.
+   *
+   * @param source the buffer holding the version token
+   * @param offset start of the token
+   * @param length length of the token
+   * @return the matching version, or null if the version is not supported
+   */
+  public static HttpVersion fromBytes(final byte[] source, final int offset, final int length) {
+    for (final HttpVersion v : VALUES) {
+      if (Arrays.equals(v.bytes, 0, v.bytes.length, source, offset, offset + length)) {
+        return v;
+      }
+    }
+    return null;
+  }
+
   /**
    * Checks if this version defaults to persistent connections (keep-alive).
    *
@@ -0,0 +1,84 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Copies and writes response body buffers that may be memory-mapped files.
+ *
+ * <p>WHY: Reading a mapping whose file was truncated underneath faults (SIGBUS), which the JVM
+ * reports as {@link InternalError}. Every access to such a buffer goes through here, so the fault
+ * surfaces as a failed write like any other I/O error and only ends the affected connection.
+ */
+public final class MappedBuffers {
+
+  private MappedBuffers() {}
+
+  /**
+   * Copies the remaining bytes of the source into the target, advancing both.
+   *
+   * @throws IOException if the source cannot be read
+   */
+  public static void put(final ByteBuffer target, final ByteBuffer source) throws IOException {
+    try {
+      target.put(source);
+    } catch (final InternalError e) {
+      throw readFault(e);
+    }
+  }
+
+  /**
+   * Copies the remaining bytes of the source into the array, leaving the source unchanged.
+   *
+   * @param offset index in the target of the first copied byte
+   * @throws IOException if the source cannot be read
+   */
+  public static void get(final ByteBuffer source, final byte[] target, final int offset)
+      throws IOException {
+    try {
+      source.get(source.position(), target, offset, source.remaining());
+    } catch (final InternalError e) {
+      throw readFault(e);
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of the source to a blocking channel.
+   *
+   * @throws IOException if the source cannot be read or the channel fails
+   */
+  public static void write(final WritableByteChannel channel, final ByteBuffer source)
+      throws IOException {
+    try {
+      while (source.hasRemaining()) {
+        channel.write(source);
+      }
+    } catch (final InternalError e) {
+      throw readFault(e);
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of the sources, in order, to a blocking channel.
+   *
+   * @throws IOException if a source cannot be read or the channel fails
+   */
+  public static void write(final GatheringByteChannel channel, final ByteBuffer... sources)
+      throws IOException {
+    final ByteBuffer last = sources[sources.length - 1];
+    try {
+      // Gathering writes drain the sources in order, so the last one empties last
+      while (last.hasRemaining()) {
+        channel.write(sources);
+      }
+    } catch (final InternalError e) {
+      throw readFault(e);
+    }
+  }
+
+  private static IOException readFault(final InternalError e) {
+    return new IOException("Failed to read response body buffer", e);
+  }
+}
@@ -0,0 +1,160 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sink handed to a {@link HttpResponse.BodyWriter} for a streamed response body.
+ *
+ * <p>With chunked framing, written bytes are collected in a small buffer and sent as one chunk
+ * when the buffer fills, when the writer flushes, or when the body ends; large writes become a
+ * chunk of their own. Without framing (close-delimited HTTP/1.0 bodies) bytes pass straight
+ * through.
+ *
+ * <p>Closing the stream ends the body but never closes the connection. Body bytes are counted as
+ * they are passed to the connection, so observability reports what was actually sent rather than a
+ * declared length.
+ *
+ * <p><strong>Thread Safety:</strong> This stream is <em>not</em> thread-safe. It belongs to the
+ * thread writing the response.
+ */
+final class ResponseBodyOutputStream extends OutputStream {
+  // WHY buffer: Writers often emit many small pieces; one chunk each would double the bytes sent
+  private static final int CHUNK_BUFFER_SIZE = 8192;
+
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream output;
+  private final boolean chunked;
+  private final byte[] buffer;
+  // Chunk size line: up to 8 hex digits plus CRLF
+  private final byte[] sizeLine = new byte[10];
+
+  private int buffered;
+  private long count;
+  private boolean finished;
+
+  /**
+   * Creates a body sink over the connection output.
+   *
+   * @param output the connection output, positioned after the response head
+   * @param chunked true to frame the body with chunked transfer coding
+   */
+  ResponseBodyOutputStream(final OutputStream output, final boolean chunked) {
+    this.output = output;
+    this.chunked = chunked;
+    this.buffer = chunked ? new byte[CHUNK_BUFFER_SIZE] : null;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    ensureOpen();
+    if (!chunked) {
+      output.write(b);
+      count++;
+      return;
+    }
+    if (buffered == buffer.length) {
+      writeBufferedChunk();
+    }
+    buffer[buffered++] = (byte) b;
+  }
+
+  @Override
+  public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+    ensureOpen();
+    if (length == 0) {
+      return;
+    }
+    if (!chunked) {
+      output.write(bytes, offset, length);
+      count += length;
+    } else if (length <= buffer.length - buffered) {
+      System.arraycopy(bytes, offset, buffer, buffered, length);
+      buffered += length;
+    } else {
+      writeBufferedChunk();
+      if (length < buffer.length) {
+        System.arraycopy(bytes, offset, buffer, 0, length);
+        buffered = length;
+      } else {
+        writeChunk(bytes, offset, length);
+      }
+    }
+  }
+
+  /**
+   * Sends the bytes written so far to the client.
+   *
+   * <p>WHY: This is how a writer controls time to first byte; without it, bytes leave when the
+   * chunk or connection buffers fill.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (!finished) {
+      writeBufferedChunk();
+    }
+    output.flush();
+  }
+
+  /** Ends the body; the connection stays open. */
+  @Override
+  public void close() throws IOException {
+    finish();
+  }
+
+  /**
+   * Ends the body: sends any buffered chunk and the last chunk. Further calls do nothing.
+   *
+   * @throws IOException if the output fails
+   */
+  void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    if (chunked) {
+      writeBufferedChunk();
+      // Last chunk with an empty trailer section
+      output.write(LAST_CHUNK);
+    }
+  }
+
+  /** Returns the number of body bytes passed to the connection, excluding chunk framing. */
+  long count() {
+    return count;
+  }
+
+  private void writeBufferedChunk() throws IOException {
+    if (buffered > 0) {
+      writeChunk(buffer, 0, buffered);
+      buffered = 0;
+    }
+  }
+
+  /** Writes one chunk: size in hex, CRLF, data, CRLF. */
+  private void writeChunk(final byte[] bytes, final int offset, final int length)
+      throws IOException {
+    int start = sizeLine.length - 2;
+    sizeLine[start] = '\r';
+    sizeLine[start + 1] = '\n';
+    int remaining = length;
+    do {
+      sizeLine[--start] = HEX_DIGITS[remaining & 0xF];
+      remaining >>>= 4;
+    } while (remaining != 0);
+    output.write(sizeLine, start, sizeLine.length - start);
+    output.write(bytes, offset, length);
+    output.write(CRLF);
+    count += length;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (finished) {
+      throw new IOException("Response body already ended");
+    }
+  }
+}
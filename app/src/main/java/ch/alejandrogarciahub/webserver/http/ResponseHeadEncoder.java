@@ -0,0 +1,157 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Serializes a response head (status line, header fields, empty line) into a reusable byte buffer.
+ *
+ * <p>Status lines are pre-encoded once per {@link HttpVersion} and {@link HttpStatus}, well-known
+ * header names come from {@link HeaderNames#encoded(String)}, and everything else is copied char by
+ * char as ISO-8859-1. Serializing a typical head therefore allocates nothing and reaches the output
+ * in a single write call.
+ *
+ * <p>The {@code Date} field is emitted first, copied from the line {@link CoarseClock} renders
+ * once per second.
+ *
+ * <p>A small in-memory body is appended to the same buffer, so head and body leave together: one
+ * write call, one syscall and (with {@code TCP_NODELAY}) one packet instead of two.
+ *
+ * <p><strong>Thread Safety:</strong> Each thread uses its own encoder. Connection threads (one per
+ * connection in the blocking engine, one per pipeline batch in the NIO engine) reuse it for every
+ * response they write.
+ */
+final class ResponseHeadEncoder implements BiConsumer<String, String> {
+  private static final int INITIAL_CAPACITY = 512;
+
+  // WHY cap: A response with huge headers must not pin a large array to its thread forever
+  private static final int MAX_RETAINED_CAPACITY = 8 * 1024;
+
+  /** Largest body that is copied next to the head rather than written on its own. */
+  static final int MAX_INLINE_BODY = 4 * 1024;
+
+  private static final byte[][][] STATUS_LINES = encodeStatusLines();
+
+  private static final ThreadLocal<ResponseHeadEncoder> ENCODERS =
+      ThreadLocal.withInitial(ResponseHeadEncoder::new);
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int length;
+
+  private ResponseHeadEncoder() {}
+
+  /**
+   * Writes a complete response head to the output with one write call.
+   *
+   * @param output the destination stream
+   * @param version the response version
+   * @param status the response status
+   * @param headers the header fields, written in iteration order
+   * @param body bytes to send right after the head in the same write (at most {@link
+   *     #MAX_INLINE_BODY}), or null; the buffer is not modified
+   * @throws IOException if the output fails
+   */
+  static void write(
+      final OutputStream output,
+      final HttpVersion version,
+      final HttpStatus status,
+      final HttpHeaders headers,
+      final ByteBuffer body)
+      throws IOException {
+    final ResponseHeadEncoder encoder = ENCODERS.get();
+    encoder.length = 0;
+    encoder.append(STATUS_LINES[version.ordinal()][status.ordinal()]);
+    // RFC 9110 Section 6.6.1: an origin server with a clock must send Date; a handler-set one wins
+    if (!headers.contains(HeaderNames.DATE)) {
+      encoder.append(CoarseClock.system().dateHeaderLine());
+    }
+    headers.forEach(encoder);
+    encoder.append((byte) '\r');
+    encoder.append((byte) '\n');
+    if (body != null) {
+      encoder.append(body);
+    }
+    try {
+      output.write(encoder.buffer, 0, encoder.length);
+    } finally {
+      if (encoder.buffer.length > MAX_RETAINED_CAPACITY) {
+        encoder.buffer = new byte[INITIAL_CAPACITY];
+      }
+    }
+  }
+
+  /** Appends one header field line; called for each header by {@link HttpHeaders#forEach}. */
+  @Override
+  public void accept(final String name, final String value) {
+    final byte[] encodedName = HeaderNames.encoded(name);
+    if (encodedName != null) {
+      append(encodedName);
+    } else {
+      append(name);
+    }
+    append((byte) ':');
+    append((byte) ' ');
+    append(value);
+    append((byte) '\r');
+    append((byte) '\n');
+  }
+
+  private void append(final byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  private void append(final ByteBuffer body) throws IOException {
+    final int count = body.remaining();
+    ensureCapacity(count);
+    MappedBuffers.get(body, buffer, length);
+    length += count;
+  }
+
+  private void append(final byte b) {
+    ensureCapacity(1);
+    buffer[length++] = b;
+  }
+
+  private void append(final String text) {
+    final int count = text.length();
+    ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      final char c = text.charAt(i);
+      // Same replacement as the ISO-8859-1 charset encoder for unmappable characters
+      buffer[length++] = c <= 0xFF ? (byte) c : (byte) '?';
+    }
+  }
+
+  private void ensureCapacity(final int extra) {
+    if (length + extra > buffer.length) {
+      final byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+      System.arraycopy(buffer, 0, grown, 0, length);
+      buffer = grown;
+    }
+  }
+
+  private static byte[][][] encodeStatusLines() {
+    final HttpVersion[] versions = HttpVersion.values();
+    final HttpStatus[] statuses = HttpStatus.values();
+    final byte[][][] lines = new byte[versions.length][statuses.length][];
+    for (final HttpVersion version : versions) {
+      for (final HttpStatus status : statuses) {
+        // Status line: HTTP-Version SP Status-Code SP Reason-Phrase CRLF
+        final String line =
+            version.getValue()
+                + ' '
+                + status.getCode()
+                + ' '
+                + status.getReasonPhrase()
+                + "\r\n";
+        lines[version.ordinal()][status.ordinal()] = line.getBytes(StandardCharsets.ISO_8859_1);
+      }
+    }
+    return lines;
+  }
+}
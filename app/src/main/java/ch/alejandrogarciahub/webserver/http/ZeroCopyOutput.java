@@ -0,0 +1,33 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output that can receive file content straight from a {@link FileChannel} or a direct buffer.
+ *
+ * <p>Implemented by connection outputs backed by a socket channel, so {@link HttpResponse} file
+ * bodies go through {@link FileChannel#transferTo} (sendfile on Linux) and cached off-heap bodies
+ * are written without an intermediate heap array. Other outputs fall back to a plain channel copy.
+ */
+public interface ZeroCopyOutput {
+
+  /**
+   * Writes {@code count} bytes of the file starting at {@code position}, blocking until done.
+   *
+   * @param file the source file, opened for reading
+   * @param position the file offset of the first byte
+   * @param count the number of bytes to write
+   * @throws IOException if the transfer fails or the file is shorter than expected
+   */
+  void transferFrom(FileChannel file, long position, long count) throws IOException;
+
+  /**
+   * Writes all remaining bytes of the buffer, blocking until done.
+   *
+   * @param buffer the bytes to write; its position is advanced
+   * @throws IOException if the write fails
+   */
+  void write(ByteBuffer buffer) throws IOException;
+}
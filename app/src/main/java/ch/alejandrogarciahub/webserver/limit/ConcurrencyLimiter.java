@@ -0,0 +1,153 @@
+package ch.alejandrogarciahub.webserver.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission controller that learns how many requests the server can work on at once.
+ *
+ * <p>The limit follows the gradient algorithm of Netflix's concurrency-limits library (Gradient2).
+ * Two moving averages of request latency are kept: a short one that tracks the current latency and
+ * a long one that serves as the no-queueing baseline. While they agree, the limit grows by a queue
+ * allowance of {@code sqrt(limit)} per update; once recent latency rises above the baseline, the
+ * limit shrinks in proportion, by at most half per update. Each step is smoothed, and the limit is
+ * kept within {@code [minLimit, maxLimit]}.
+ *
+ * <p>WHY latency instead of a fixed cap: The concurrency a server sustains depends on the hardware,
+ * the handlers and the mix of requests. Past that point extra requests only queue, so latency grows
+ * while throughput stays flat; rejecting them early keeps the latency of admitted requests bounded
+ * and gives clients a fast answer they can retry elsewhere.
+ *
+ * <p>Callers pair every successful {@link #tryAcquire()} with exactly one {@link #release(long)} or
+ * {@link #releaseWithoutSample()}.
+ *
+ * <p><strong>Thread Safety:</strong> All methods are thread-safe. Admission is a lock-free
+ * compare-and-set; latency samples update the limit under a lock that is only tried, so samples
+ * arriving while another one is applied are skipped rather than queued.
+ */
+public final class ConcurrencyLimiter {
+  // Averaging windows in samples, as exponential moving averages
+  private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+  private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+  // Recent latency may exceed the baseline by this factor before the limit shrinks
+  private static final double TOLERANCE = 1.5;
+  // Weight of a new estimate against the current limit
+  private static final double SMOOTHING = 0.2;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final ReentrantLock sampleLock = new ReentrantLock();
+
+  private volatile int limit;
+
+  // Guarded by sampleLock
+  private double estimatedLimit;
+  private double shortRttNanos;
+  private double longRttNanos;
+
+  /**
+   * Creates a limiter.
+   *
+   * @param initialLimit limit used until latency samples arrive
+   * @param minLimit lowest limit the algorithm may settle on (at least 1)
+   * @param maxLimit highest limit the algorithm may settle on
+   * @throws IllegalArgumentException if the limits are not ordered {@code 1 <= min <= initial <=
+   *     max}
+   */
+  public ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+    if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+      throw new IllegalArgumentException(
+          "Limits must satisfy 1 <= min <= initial <= max, got min="
+              + minLimit
+              + " initial="
+              + initialLimit
+              + " max="
+              + maxLimit);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+    this.estimatedLimit = initialLimit;
+  }
+
+  /**
+   * Admits a request if fewer than {@link #getLimit()} requests are in flight.
+   *
+   * @return true if admitted; the caller must release it
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      final int current = inFlight.get();
+      if (current >= limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases an admitted request and feeds its latency to the limit.
+   *
+   * @param rttNanos time from admission to completion
+   */
+  public void release(final long rttNanos) {
+    final int inFlightAtCompletion = inFlight.getAndDecrement();
+    if (rttNanos > 0) {
+      sample(rttNanos, inFlightAtCompletion);
+    }
+  }
+
+  /**
+   * Releases an admitted request whose latency says nothing about load, e.g. one that failed
+   * before its response was written.
+   */
+  public void releaseWithoutSample() {
+    inFlight.decrementAndGet();
+  }
+
+  /** Returns the current concurrency limit. */
+  public int getLimit() {
+    return limit;
+  }
+
+  /** Returns the number of admitted requests not yet released. */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private void sample(final long rttNanos, final int inFlightAtCompletion) {
+    if (!sampleLock.tryLock()) {
+      return;
+    }
+    try {
+      if (longRttNanos == 0) {
+        shortRttNanos = rttNanos;
+        longRttNanos = rttNanos;
+      } else {
+        shortRttNanos += (rttNanos - shortRttNanos) * SHORT_ALPHA;
+        longRttNanos += (rttNanos - longRttNanos) * LONG_ALPHA;
+      }
+      // WHY decay: After a latency drop the slow baseline would otherwise keep the limit inflated
+      if (longRttNanos / shortRttNanos > 2) {
+        longRttNanos *= 0.95;
+      }
+      // WHY skip: With the server mostly idle, latency says nothing about where the limit lies
+      if (inFlightAtCompletion < estimatedLimit / 2) {
+        return;
+      }
+
+      final double gradient =
+          Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+      final double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+      final double smoothed = estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING;
+      estimatedLimit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+      limit = (int) estimatedLimit;
+    } finally {
+      sampleLock.unlock();
+    }
+  }
+}
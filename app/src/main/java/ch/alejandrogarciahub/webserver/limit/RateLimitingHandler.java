@@ -0,0 +1,202 @@
+package ch.alejandrogarciahub.webserver.limit;
+
+import ch.alejandrogarciahub.webserver.handler.HttpRequestHandler;
+import ch.alejandrogarciahub.webserver.http.CoarseClock;
+import ch.alejandrogarciahub.webserver.http.HeaderNames;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Decorator that limits the request rate of each client with a token bucket.
+ *
+ * <p>Clients are keyed by their IP address or, if configured, by a request header such as {@code
+ * X-Forwarded-For} set by a trusted proxy (requests without the header fall back to the address).
+ * A client may send {@code burst} requests at once and {@code requestsPerSecond} on average; excess
+ * requests are answered with {@code 429 Too Many Requests} and a {@code Retry-After} header without
+ * reaching the wrapped handler.
+ *
+ * <p>Each bucket is one {@code long}, the "theoretical arrival time" of the generic cell rate
+ * algorithm (GCRA): admitting a request moves it one emission interval into the future, and a
+ * request is rejected while it lies more than the burst allowance ahead of now. This is
+ * equivalent to a token bucket without a refill step.
+ *
+ * <p>WHY striped LRU maps: Buckets are spread over independently locked stripes, so concurrent
+ * clients rarely contend, and a check costs a hash lookup and a few arithmetic operations. Each
+ * stripe holds a bounded number of clients in access order. A bucket whose arrival time has passed
+ * is full, indistinguishable from a new one, so idle clients are dropped as they reach the old end
+ * of a stripe, and the least recently seen client is dropped when a stripe is full.
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc6585.html#section-4">RFC 6585 - 429 Too Many
+ *     Requests</a>
+ */
+public final class RateLimitingHandler implements HttpRequestHandler {
+  // Power of two, well above the core count, so that contention stays rare
+  private static final int STRIPES = 64;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  // Idle buckets dropped per check at most, to keep the cost of a check bounded
+  private static final int MAX_EXPIRED_PER_CHECK = 2;
+
+  private final HttpRequestHandler delegate;
+  private final String keyHeader;
+  private final long emissionIntervalNanos;
+  private final long burstAllowanceNanos;
+  private final LongSupplier nanoClock;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /**
+   * Creates a rate limiter in front of a handler.
+   *
+   * @param delegate the handler serving admitted requests
+   * @param requestsPerSecond sustained rate allowed per client
+   * @param burst requests a client may send at once (at least 1)
+   * @param maxClients clients tracked at most; beyond this the least recently seen are forgotten
+   * @param keyHeader header identifying the client instead of its address (nullable)
+   * @throws IllegalArgumentException if the rate, burst or client count is not positive
+   */
+  public RateLimitingHandler(
+      final HttpRequestHandler delegate,
+      final double requestsPerSecond,
+      final int burst,
+      final int maxClients,
+      final String keyHeader) {
+    this(
+        delegate,
+        requestsPerSecond,
+        burst,
+        maxClients,
+        keyHeader,
+        CoarseClock.system()::nanoTime);
+  }
+
+  /** Package-private constructor for supplying a test clock. */
+  RateLimitingHandler(
+      final HttpRequestHandler delegate,
+      final double requestsPerSecond,
+      final int burst,
+      final int maxClients,
+      final String keyHeader,
+      final LongSupplier nanoClock) {
+    if (!(requestsPerSecond > 0) || burst < 1 || maxClients < 1) {
+      throw new IllegalArgumentException(
+          "Rate, burst and client count must be positive, got rate="
+              + requestsPerSecond
+              + " burst="
+              + burst
+              + " maxClients="
+              + maxClients);
+    }
+    this.delegate = delegate;
+    this.keyHeader = keyHeader;
+    this.emissionIntervalNanos = Math.max(1L, (long) (NANOS_PER_SECOND / requestsPerSecond));
+    this.burstAllowanceNanos = (burst - 1) * emissionIntervalNanos;
+    this.nanoClock = nanoClock;
+    final int stripeCapacity = Math.max(1, (maxClients + STRIPES - 1) / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(stripeCapacity);
+    }
+  }
+
+  @Override
+  public HttpResponse handle(final HttpRequest request) throws IOException {
+    final Object key = clientKey(request);
+    if (key == null) {
+      // No way to tell clients apart; limiting them together would punish everyone
+      return delegate.handle(request);
+    }
+    final long waitNanos = stripeFor(key).acquire(key, nanoClock.getAsLong());
+    if (waitNanos == 0) {
+      return delegate.handle(request);
+    }
+    // WHY round up: A client retrying after a truncated wait would be rejected again
+    final long retryAfterSeconds = (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+    return HttpResponse.errorResponse(
+            HttpStatus.TOO_MANY_REQUESTS, "Request rate limit exceeded, please slow down.")
+        .header(HeaderNames.RETRY_AFTER, Long.toString(retryAfterSeconds))
+        // WHY keep the connection: Closing would only make the client reconnect
+        .keepAlive(true);
+  }
+
+  private Object clientKey(final HttpRequest request) {
+    if (keyHeader != null) {
+      final String value = request.getHeader(keyHeader);
+      if (value != null && !value.isBlank()) {
+        return value;
+      }
+    }
+    return request.getRemoteAddress();
+  }
+
+  private Stripe stripeFor(final Object key) {
+    final int hash = key.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  /** Bucket state of one client. */
+  private static final class Bucket {
+    // Theoretical arrival time of the next request; at or before now means the bucket is full
+    private long arrivalNanos;
+  }
+
+  /** A lock and the buckets of the clients hashed to it, least recently seen first. */
+  private final class Stripe {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, Bucket> buckets;
+
+    private Stripe(final int capacity) {
+      this.buckets =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Bucket> eldest) {
+              return size() > capacity;
+            }
+          };
+    }
+
+    /**
+     * Takes a token for the client.
+     *
+     * @return 0 if admitted, otherwise the nanoseconds until a request would be admitted
+     */
+    private long acquire(final Object key, final long now) {
+      lock.lock();
+      try {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+          bucket = new Bucket();
+          bucket.arrivalNanos = now;
+          buckets.put(key, bucket);
+        }
+        final long arrival = bucket.arrivalNanos - now > 0 ? bucket.arrivalNanos : now;
+        final long ahead = arrival - now;
+        if (ahead > burstAllowanceNanos) {
+          return ahead - burstAllowanceNanos;
+        }
+        bucket.arrivalNanos = arrival + emissionIntervalNanos;
+        expireIdle(now);
+        return 0;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Drops buckets at the old end of the stripe that have refilled completely. */
+    private void expireIdle(final long now) {
+      final Iterator<Bucket> iterator = buckets.values().iterator();
+      for (int i = 0; i < MAX_EXPIRED_PER_CHECK && iterator.hasNext(); i++) {
+        if (iterator.next().arrivalNanos - now > 0) {
+          return;
+        }
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package ch.alejandrogarciahub.webserver.nio;
+
+import ch.alejandrogarciahub.webserver.http.MappedBuffers;
+import ch.alejandrogarciahub.webserver.http.ZeroCopyOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Blocking {@link OutputStream} view of a non-blocking socket channel.
+ *
+ * <p>Used by worker threads to write a response with the regular {@link
+ * ch.alejandrogarciahub.webserver.http.HttpResponse} serializers. When the socket send buffer is
+ * full, the worker parks until the owning event loop reports the channel writable again, so slow
+ * readers never spin a CPU. File bodies are handed to the socket with {@link
+ * FileChannel#transferTo}, so the kernel can use sendfile instead of copying through the heap.
+ *
+ * <p>Small writes (response heads, short bodies) are coalesced in a buffer that is written out when
+ * it fills, before a file transfer, and on {@link #flush()}. A batch of pipelined responses
+ * therefore costs a single socket write when it fits in the buffer. A large body is sent together
+ * with the pending bytes (typically its head) in one gathering write.
+ *
+ * <p>One instance is created per dispatched pipeline batch and discarded afterwards.
+ */
+final class ChannelOutputStream extends OutputStream implements ZeroCopyOutput {
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final NioConnection connection;
+  private final long writeTimeoutNanos;
+
+  // Allocated on the first small write; responses that are all file regions never need it
+  private ByteBuffer buffer;
+
+  ChannelOutputStream(final NioConnection connection, final long writeTimeoutNanos) {
+    this.connection = connection;
+    this.writeTimeoutNanos = writeTimeoutNanos;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    write(ByteBuffer.wrap(b, off, len));
+  }
+
+  /**
+   * Writes all remaining bytes of the buffer, waiting for writability when needed.
+   *
+   * <p>Bytes that fit in the coalescing buffer are copied there; larger buffers go straight to the
+   * socket, gathered with the pending bytes so the head does not cost a write of its own.
+   *
+   * @param source the bytes to write
+   * @throws IOException if the channel fails or the client stops reading
+   */
+  @Override
+  public void write(final ByteBuffer source) throws IOException {
+    if (source.remaining() >= BUFFER_SIZE) {
+      if (buffer != null && buffer.position() > 0) {
+        buffer.flip();
+        writeFully(buffer, source);
+        buffer.clear();
+      } else {
+        writeFully(source);
+      }
+      return;
+    }
+    if (buffer == null) {
+      buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    } else if (buffer.remaining() < source.remaining()) {
+      drain();
+    }
+    MappedBuffers.put(buffer, source);
+  }
+
+  /** Writes the coalesced bytes to the socket. */
+  @Override
+  public void flush() throws IOException {
+    drain();
+  }
+
+  @Override
+  public void transferFrom(final FileChannel file, final long position, final long count)
+      throws IOException {
+    // Pending head bytes must precede the file region on the wire
+    drain();
+    long offset = position;
+    final long end = position + count;
+    while (offset < end) {
+      final long sent = file.transferTo(offset, end - offset, connection.channel());
+      if (sent > 0) {
+        offset += sent;
+      } else if (offset >= file.size()) {
+        throw new EOFException("File ended before declared length");
+      } else {
+        connection.awaitWritable(writeTimeoutNanos);
+      }
+    }
+  }
+
+  private void drain() throws IOException {
+    if (buffer != null && buffer.position() > 0) {
+      buffer.flip();
+      writeFully(buffer);
+      buffer.clear();
+    }
+  }
+
+  private void writeFully(final ByteBuffer source) throws IOException {
+    while (source.hasRemaining()) {
+      if (connection.channel().write(source) == 0) {
+        connection.awaitWritable(writeTimeoutNanos);
+      }
+    }
+  }
+
+  /** Writes both buffers in order, with one gathering write per writable socket buffer. */
+  private void writeFully(final ByteBuffer pending, final ByteBuffer source) throws IOException {
+    final ByteBuffer[] sources = {pending, source};
+    while (source.hasRemaining()) {
+      if (connection.channel().write(sources) == 0) {
+        connection.awaitWritable(writeTimeoutNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,482 @@
+package ch.alejandrogarciahub.webserver.nio;
+
+import ch.alejandrogarciahub.webserver.handler.HttpExchangeProcessor;
+import ch.alejandrogarciahub.webserver.handler.KeepAlivePolicy;
+import ch.alejandrogarciahub.webserver.http.CoarseClock;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.parser.HttpParseException;
+import ch.alejandrogarciahub.webserver.parser.HttpRequestDecoder;
+import ch.alejandrogarciahub.webserver.parser.HttpRequestParser;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single-threaded selector loop owning a share of the server's connections.
+ *
+ * <p>The loop reads bytes from every readable connection, pushes them into a resumable {@link
+ * HttpRequestDecoder}, and dispatches complete requests to a worker thread. Pipelined requests that
+ * arrived together are dispatched as one batch whose responses are flushed together. While a batch
+ * is in flight its connection is removed from the read set, so responses leave in request order
+ * and further bytes simply wait on the connection until the worker reports back.
+ *
+ * <p>The loop also enforces the client read timeout and the {@link KeepAlivePolicy}: on every tick
+ * it walks its keys and closes connections that have been silent for longer than the read timeout
+ * while a request was arriving, or past the keep-alive idle timeout or max age between requests.
+ * The request that reaches the max request count or max age is answered with {@code Connection:
+ * close}.
+ *
+ * <p><strong>Thread Safety:</strong> Selection keys and connection state are only touched by the
+ * loop thread. Other threads interact with the loop through {@link #register} and {@link #execute},
+ * which enqueue tasks and wake the selector.
+ */
+final class EventLoop implements Runnable {
+  private static final Logger logger = LoggerFactory.getLogger(EventLoop.class);
+
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+  private static final long MIN_TICK_MS = 10;
+  private static final long MAX_TICK_MS = 1_000;
+  private static final int MAX_POOLED_DECODERS = 64;
+  private static final int MAX_PIPELINE_BATCH = 16;
+
+  private final Selector selector;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final HttpExchangeProcessor exchangeProcessor;
+  private final HttpRequestParser parser;
+  private final ExecutorService workers;
+  private final long clientReadTimeoutNanos;
+  private final KeepAlivePolicy keepAlivePolicy;
+  private final long tickMillis;
+  private final Thread thread;
+
+  // Shared by every connection of this loop: idle sockets never own a read buffer.
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+  // Decoders are only lent to connections with a partially received request.
+  private final Deque<HttpRequestDecoder> decoderPool = new ArrayDeque<>();
+
+  private volatile boolean running = true;
+
+  EventLoop(
+      final int index,
+      final HttpExchangeProcessor exchangeProcessor,
+      final HttpRequestParser parser,
+      final ExecutorService workers,
+      final int clientReadTimeoutMs,
+      final KeepAlivePolicy keepAlivePolicy)
+      throws IOException {
+    this.selector = Selector.open();
+    this.exchangeProcessor = exchangeProcessor;
+    this.parser = parser;
+    this.workers = workers;
+    this.clientReadTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(clientReadTimeoutMs);
+    this.keepAlivePolicy = keepAlivePolicy;
+    final long shortestTimeoutMs =
+        Math.min(clientReadTimeoutMs, keepAlivePolicy.getIdleTimeoutMs());
+    this.tickMillis = Math.max(MIN_TICK_MS, Math.min(MAX_TICK_MS, shortestTimeoutMs / 2));
+    this.thread = Thread.ofPlatform().name("http-event-loop-" + index).daemon(true).unstarted(this);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Hands a freshly accepted channel to this loop.
+   *
+   * @param channel a connected, non-blocking channel
+   */
+  void register(final SocketChannel channel) {
+    execute(
+        () -> {
+          try {
+            final NioConnection connection =
+                new NioConnection(
+                    channel,
+                    this,
+                    (InetSocketAddress) channel.getRemoteAddress(),
+                    System.nanoTime());
+            connection.attach(channel.register(selector, SelectionKey.OP_READ, connection));
+            exchangeProcessor.connectionOpened();
+            logger.debug("Accepted connection from {}", connection.clientAddress());
+          } catch (final IOException e) {
+            logger.error("Error registering connection: {}", e.getMessage());
+            closeQuietly(channel);
+          }
+        });
+  }
+
+  /** Runs a task on the loop thread. */
+  void execute(final Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  /**
+   * Stops the loop and closes every connection it still owns.
+   *
+   * @param timeoutMillis maximum time to wait for the loop thread to exit
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void shutdown(final long timeoutMillis) throws InterruptedException {
+    running = false;
+    selector.wakeup();
+    thread.join(timeoutMillis);
+  }
+
+  @Override
+  public void run() {
+    long nextExpiryCheck = System.nanoTime();
+    while (running) {
+      try {
+        selector.select(tickMillis);
+        runTasks();
+        processSelectedKeys();
+
+        final long now = System.nanoTime();
+        if (now - nextExpiryCheck >= 0) {
+          expireIdleConnections(now);
+          nextExpiryCheck = now + TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        }
+      } catch (final IOException e) {
+        logger.error("Event loop selector failure", e);
+      } catch (final RuntimeException e) {
+        // WHY catch all: A bug on one connection must not kill every connection of the loop
+        logger.error("Unexpected error in event loop", e);
+      }
+    }
+    closeAll();
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private void processSelectedKeys() {
+    final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+    while (iterator.hasNext()) {
+      final SelectionKey key = iterator.next();
+      iterator.remove();
+      final NioConnection connection = (NioConnection) key.attachment();
+      try {
+        if (key.isValid() && key.isWritable()) {
+          key.interestOps(0);
+          connection.signalWritable();
+        }
+        if (key.isValid() && key.isReadable()) {
+          read(connection);
+        }
+      } catch (final CancelledKeyException e) {
+        close(connection);
+      }
+    }
+  }
+
+  private void read(final NioConnection connection) {
+    final long now = System.nanoTime();
+    final int bytesRead;
+    readBuffer.clear();
+    try {
+      bytesRead = connection.channel().read(readBuffer);
+    } catch (final IOException e) {
+      logger.debug("Read error from {}: {}", connection.clientAddress(), e.getMessage());
+      close(connection);
+      return;
+    }
+
+    if (bytesRead < 0) {
+      onEndOfStream(connection);
+      return;
+    }
+    if (bytesRead > 0) {
+      readBuffer.flip();
+      connection.touch(now);
+      decode(connection, readBuffer, now);
+    }
+  }
+
+  /**
+   * Pushes received bytes into the connection's decoder and dispatches completed requests.
+   *
+   * <p>Every complete request already in {@code input} is decoded up front and handed to a single
+   * worker as a pipeline batch (up to {@value #MAX_PIPELINE_BATCH} requests), so the responses are
+   * written back to back and flushed together. Only one batch per connection is in flight at a
+   * time; bytes beyond a full batch are stashed on the connection and decoded when the worker
+   * reports completion.
+   *
+   * <p>Decoding stops at the request that exhausts the {@link KeepAlivePolicy}; it is answered
+   * with {@code Connection: close} and anything the client sent after it is dropped.
+   */
+  private void decode(final NioConnection connection, final ByteBuffer input, final long now) {
+    final List<HttpRequest> batch = new ArrayList<>(1);
+    HttpParseException error = null;
+    boolean closeAfterBatch = false;
+    long startNanos = now;
+    while (true) {
+      HttpRequestDecoder decoder = connection.decoder();
+      if (decoder == null) {
+        decoder = acquireDecoder();
+        // Pooled decoders move between connections
+        decoder.setRemoteAddress(connection.remoteAddress());
+        connection.decoder(decoder);
+        connection.requestStarted(now);
+      }
+
+      final HttpRequestDecoder.Result result = decoder.decode(input);
+      if (result == HttpRequestDecoder.Result.NEED_MORE) {
+        // A trailing partial request keeps its decoder and resumes once the batch is answered
+        break;
+      }
+      if (batch.isEmpty()) {
+        startNanos = connection.requestStartNanos();
+      }
+      if (result == HttpRequestDecoder.Result.ERROR) {
+        error = decoder.getError();
+        releaseDecoder(connection);
+        break;
+      }
+      batch.add(decoder.takeRequest());
+      releaseDecoder(connection);
+      if (!keepAlivePolicy.allowsAnotherRequest(
+          connection.countRequest(), connection.openedNanos(), now)) {
+        closeAfterBatch = true;
+        break;
+      }
+      if (!input.hasRemaining() || batch.size() == MAX_PIPELINE_BATCH) {
+        break;
+      }
+    }
+
+    if (batch.isEmpty() && error == null) {
+      enableReads(connection);
+      return;
+    }
+    if (!closeAfterBatch) {
+      connection.stash(input);
+    }
+    final HttpParseException rejection = error;
+    final long batchStartNanos = startNanos;
+    final boolean closeAfter = closeAfterBatch;
+    dispatch(connection, () -> serve(connection, batch, rejection, batchStartNanos, closeAfter));
+  }
+
+  /**
+   * Serves a pipeline batch on a worker thread and flushes the responses in one go.
+   *
+   * @param requests complete requests, in arrival order (may be empty)
+   * @param rejection parse error that followed the requests (nullable); closes the connection
+   * @param startNanos when the first request of the batch started arriving
+   * @param closeAfterBatch true if the last request exhausts the keep-alive policy
+   */
+  private void serve(
+      final NioConnection connection,
+      final List<HttpRequest> requests,
+      final HttpParseException rejection,
+      final long startNanos,
+      final boolean closeAfterBatch) {
+    final ChannelOutputStream output = new ChannelOutputStream(connection, clientReadTimeoutNanos);
+    boolean keepAlive = true;
+    try {
+      for (int i = 0; i < requests.size() && keepAlive; i++) {
+        // WHY restart the clock: A batched request waited for its predecessors, not for the client
+        final long requestStartNanos = i == 0 ? startNanos : CoarseClock.system().nanoTime();
+        final String requestId = exchangeProcessor.beginExchange();
+        try {
+          keepAlive =
+              exchangeProcessor.serve(
+                  requests.get(i),
+                  output,
+                  connection.clientAddress(),
+                  requestStartNanos,
+                  requestId,
+                  closeAfterBatch && i == requests.size() - 1);
+        } finally {
+          exchangeProcessor.endExchange();
+        }
+      }
+
+      if (keepAlive && rejection != null) {
+        final String requestId = exchangeProcessor.beginExchange();
+        try {
+          exchangeProcessor.rejectMalformed(
+              rejection,
+              output,
+              connection.clientAddress(),
+              requests.isEmpty() ? startNanos : CoarseClock.system().nanoTime(),
+              requestId);
+        } finally {
+          exchangeProcessor.endExchange();
+        }
+        keepAlive = false;
+      }
+      output.flush();
+    } catch (final IOException e) {
+      logger.debug("Flush error to {}: {}", connection.clientAddress(), e.getMessage());
+      keepAlive = false;
+    } finally {
+      final boolean persistent = keepAlive;
+      execute(() -> onExchangeComplete(connection, persistent));
+    }
+  }
+
+  private void dispatchRejection(
+      final NioConnection connection, final HttpParseException e, final long startNanos) {
+    dispatch(connection, () -> serve(connection, List.of(), e, startNanos, false));
+  }
+
+  private void dispatch(final NioConnection connection, final Runnable exchange) {
+    connection.inFlight(true);
+    connection.key().interestOps(0);
+    try {
+      workers.execute(exchange);
+    } catch (final RejectedExecutionException e) {
+      // Workers are shutting down: no new exchanges are accepted
+      close(connection);
+    }
+  }
+
+  private void onExchangeComplete(final NioConnection connection, final boolean keepAlive) {
+    connection.inFlight(false);
+    if (!keepAlive || connection.isClosed()) {
+      close(connection);
+      return;
+    }
+    final long now = System.nanoTime();
+    connection.touch(now);
+
+    final ByteBuffer pipelined = connection.takePending();
+    if (pipelined != null) {
+      // The next request is already here: its latency starts now
+      decode(connection, pipelined, now);
+    } else {
+      enableReads(connection);
+    }
+  }
+
+  private void onEndOfStream(final NioConnection connection) {
+    final HttpRequestDecoder decoder = connection.decoder();
+    final HttpParseException truncated = decoder != null ? decoder.endOfInput() : null;
+    if (truncated == null || connection.isInFlight()) {
+      // Graceful EOF between requests
+      close(connection);
+      return;
+    }
+    // Client closed mid-request: answer with the parser's error before closing
+    final long startNanos = connection.requestStartNanos();
+    releaseDecoder(connection);
+    dispatchRejection(connection, truncated, startNanos);
+  }
+
+  private HttpRequestDecoder acquireDecoder() {
+    final HttpRequestDecoder pooled = decoderPool.poll();
+    return pooled != null ? pooled : parser.newDecoder();
+  }
+
+  private void releaseDecoder(final NioConnection connection) {
+    final HttpRequestDecoder decoder = connection.decoder();
+    connection.decoder(null);
+    if (decoder != null && decoderPool.size() < MAX_POOLED_DECODERS) {
+      decoder.reset();
+      decoderPool.push(decoder);
+    }
+  }
+
+  /** Called on the loop thread when a worker is blocked on a full send buffer. */
+  void watchWritable(final NioConnection connection) {
+    final SelectionKey key = connection.key();
+    if (key.isValid()) {
+      key.interestOps(SelectionKey.OP_WRITE);
+    } else {
+      connection.markClosed();
+    }
+  }
+
+  private void enableReads(final NioConnection connection) {
+    final SelectionKey key = connection.key();
+    if (key.isValid()) {
+      key.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  private void expireIdleConnections(final long now) {
+    for (final SelectionKey key : selector.keys()) {
+      final NioConnection connection = (NioConnection) key.attachment();
+      if (connection == null || connection.isInFlight()) {
+        continue;
+      }
+      if (connection.isIdleBetweenRequests()) {
+        // WHY no timeout record: No request was started, the client simply did not reuse it
+        if (keepAlivePolicy.remainingIdleNanos(
+                connection.openedNanos(), connection.lastActivityNanos(), now)
+            <= 0) {
+          logger.debug("Keep-alive connection from {} idle, closing", connection.clientAddress());
+          close(connection);
+        }
+        continue;
+      }
+      if (now - connection.lastActivityNanos() >= clientReadTimeoutNanos) {
+        final String requestId = exchangeProcessor.beginExchange();
+        try {
+          exchangeProcessor.recordTimeout(
+              connection.clientAddress(), connection.requestStartNanos(), requestId);
+        } finally {
+          exchangeProcessor.endExchange();
+        }
+        close(connection);
+      }
+    }
+  }
+
+  private void close(final NioConnection connection) {
+    if (connection.isClosed()) {
+      return;
+    }
+    connection.markClosed();
+    releaseDecoder(connection);
+    connection.key().cancel();
+    closeQuietly(connection.channel());
+    exchangeProcessor.connectionClosed(connection.requestsServed(), connection.openedNanos());
+    logger.debug("Connection closed: {}", connection.clientAddress());
+  }
+
+  private void closeAll() {
+    for (final SelectionKey key : selector.keys()) {
+      final Object attachment = key.attachment();
+      if (attachment instanceof NioConnection connection) {
+        close(connection);
+      }
+    }
+    try {
+      selector.close();
+    } catch (final IOException e) {
+      logger.error("Error closing selector", e);
+    }
+  }
+
+  private static void closeQuietly(final SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (final IOException e) {
+      logger.debug("Error closing channel: {}", e.getMessage());
+    }
+  }
+}
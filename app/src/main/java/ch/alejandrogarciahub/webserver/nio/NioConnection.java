@@ -0,0 +1,210 @@
+package ch.alejandrogarciahub.webserver.nio;
+
+import ch.alejandrogarciahub.webserver.parser.HttpRequestDecoder;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * State of one client connection owned by an {@link EventLoop}.
+ *
+ * <p>An idle connection only holds its channel, selection key and a few scalars: a decoder is
+ * borrowed from the event loop when bytes of a partial request arrive and returned as soon as the
+ * request is complete, and no thread or stream is attached to it while no request is in flight.
+ *
+ * <p><strong>Thread Safety:</strong> Buffer and lifecycle fields are confined to the event loop
+ * thread. The only method called by worker threads is {@link #awaitWritable(long)}, which hands
+ * control back to the event loop through its task queue.
+ */
+final class NioConnection {
+  private final SocketChannel channel;
+  private final EventLoop eventLoop;
+  private final String clientAddress;
+  private final InetAddress remoteAddress;
+  private SelectionKey key;
+
+  // Decoder borrowed from the event loop while a request is partially received (null when idle).
+  private HttpRequestDecoder decoder;
+
+  // Bytes of pipelined requests received while a request is in flight (null when none).
+  private byte[] pending;
+
+  private final long openedNanos;
+  private long lastActivityNanos;
+  private long requestStartNanos;
+  private int requestsServed;
+  private boolean inFlight;
+
+  // Write readiness hand-off between the event loop and the worker writing the response.
+  private volatile Thread writeWaiter;
+  private volatile boolean writable;
+  private volatile boolean closed;
+
+  NioConnection(
+      final SocketChannel channel,
+      final EventLoop eventLoop,
+      final InetSocketAddress remoteAddress,
+      final long nowNanos) {
+    this.channel = channel;
+    this.eventLoop = eventLoop;
+    this.clientAddress = remoteAddress.toString();
+    this.remoteAddress = remoteAddress.getAddress();
+    this.openedNanos = nowNanos;
+    this.lastActivityNanos = nowNanos;
+  }
+
+  SocketChannel channel() {
+    return channel;
+  }
+
+  String clientAddress() {
+    return clientAddress;
+  }
+
+  /** Returns the client's IP address. */
+  InetAddress remoteAddress() {
+    return remoteAddress;
+  }
+
+  SelectionKey key() {
+    return key;
+  }
+
+  void attach(final SelectionKey key) {
+    this.key = key;
+  }
+
+  HttpRequestDecoder decoder() {
+    return decoder;
+  }
+
+  void decoder(final HttpRequestDecoder decoder) {
+    this.decoder = decoder;
+  }
+
+  /** Keeps the unconsumed bytes of {@code source} for when the in-flight request completes. */
+  void stash(final ByteBuffer source) {
+    if (source.hasRemaining()) {
+      pending = new byte[source.remaining()];
+      source.get(pending);
+    }
+  }
+
+  /** Returns and clears the stashed bytes, or null if there are none. */
+  ByteBuffer takePending() {
+    if (pending == null) {
+      return null;
+    }
+    final ByteBuffer bytes = ByteBuffer.wrap(pending);
+    pending = null;
+    return bytes;
+  }
+
+  boolean hasPending() {
+    return pending != null;
+  }
+
+  /** Records when the first byte of a new request was received. */
+  void requestStarted(final long nowNanos) {
+    requestStartNanos = nowNanos;
+  }
+
+  long requestStartNanos() {
+    return decoder != null ? requestStartNanos : lastActivityNanos;
+  }
+
+  long lastActivityNanos() {
+    return lastActivityNanos;
+  }
+
+  void touch(final long nowNanos) {
+    lastActivityNanos = nowNanos;
+  }
+
+  /** Returns when the connection was accepted. */
+  long openedNanos() {
+    return openedNanos;
+  }
+
+  /** Counts a complete request and returns the requests received so far. */
+  int countRequest() {
+    return ++requestsServed;
+  }
+
+  int requestsServed() {
+    return requestsServed;
+  }
+
+  /** True while waiting for the first byte of a request that follows an answered one. */
+  boolean isIdleBetweenRequests() {
+    return requestsServed > 0 && decoder == null && !inFlight;
+  }
+
+  boolean isInFlight() {
+    return inFlight;
+  }
+
+  void inFlight(final boolean inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /** Marks the connection closed and releases a worker blocked in {@link #awaitWritable}. */
+  void markClosed() {
+    closed = true;
+    pending = null;
+    final Thread waiter = writeWaiter;
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  /**
+   * Blocks the calling worker until the socket accepts more bytes.
+   *
+   * <p>The socket send buffer is full, so the event loop is asked to watch {@code OP_WRITE} and to
+   * signal back once the peer has drained some data.
+   *
+   * @param timeoutNanos maximum time to wait
+   * @throws SocketTimeoutException if the client does not read within the timeout
+   * @throws ClosedChannelException if the connection was closed while waiting
+   */
+  void awaitWritable(final long timeoutNanos) throws IOException {
+    writable = false;
+    writeWaiter = Thread.currentThread();
+    try {
+      eventLoop.execute(() -> eventLoop.watchWritable(this));
+      final long deadline = System.nanoTime() + timeoutNanos;
+      while (!writable) {
+        if (closed) {
+          throw new ClosedChannelException();
+        }
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new SocketTimeoutException("Write timed out for " + clientAddress);
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+    } finally {
+      writeWaiter = null;
+    }
+  }
+
+  /** Called by the event loop once the socket is writable again. */
+  void signalWritable() {
+    writable = true;
+    final Thread waiter = writeWaiter;
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package ch.alejandrogarciahub.webserver.nio;
+
+import ch.alejandrogarciahub.webserver.handler.HttpExchangeProcessor;
+import ch.alejandrogarciahub.webserver.handler.KeepAlivePolicy;
+import ch.alejandrogarciahub.webserver.parser.HttpRequestParser;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector-based connection engine.
+ *
+ * <p>A fixed number of {@link EventLoop}s own all client connections. Idle keep-alive connections
+ * only cost a selection key and a small state object; a worker thread from the supplied executor is
+ * used only while a parsed request is being handled and its response written.
+ *
+ * <p>Lifecycle: {@link #start()} binds the listening socket and starts the event loops, {@link
+ * #acceptLoop()} blocks the calling thread accepting connections until {@link #stopAccepting()} is
+ * called, and {@link #stopEventLoops(long)} closes the remaining connections once in-flight
+ * exchanges have drained.
+ */
+public final class NioServerEngine {
+  private static final Logger logger = LoggerFactory.getLogger(NioServerEngine.class);
+
+  private final int port;
+  private final int backlog;
+  private final int clientReadTimeoutMs;
+  private final KeepAlivePolicy keepAlivePolicy;
+  private final EventLoop[] eventLoops;
+  private final HttpExchangeProcessor exchangeProcessor;
+  private final Supplier<HttpRequestParser> parserFactory;
+  private final ExecutorService workers;
+
+  private ServerSocketChannel serverChannel;
+  private int nextLoop;
+
+  private NioServerEngine(final Builder builder) {
+    if (builder.eventLoopThreads < 1) {
+      throw new IllegalArgumentException(
+          "eventLoopThreads must be positive: " + builder.eventLoopThreads);
+    }
+    this.port = builder.port;
+    this.backlog = builder.backlog;
+    this.clientReadTimeoutMs = builder.clientReadTimeoutMs;
+    this.keepAlivePolicy =
+        builder.keepAlivePolicy != null
+            ? builder.keepAlivePolicy
+            : KeepAlivePolicy.idleTimeoutOnly(builder.clientReadTimeoutMs);
+    this.eventLoops = new EventLoop[builder.eventLoopThreads];
+    this.exchangeProcessor =
+        Objects.requireNonNull(builder.exchangeProcessor, "exchangeProcessor");
+    this.parserFactory = Objects.requireNonNull(builder.parserFactory, "parserFactory");
+    this.workers = Objects.requireNonNull(builder.workers, "workers");
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Binds the listening socket and starts the event loop threads.
+   *
+   * @throws IOException if the socket cannot be bound or a selector cannot be opened
+   */
+  public void start() throws IOException {
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    serverChannel.bind(new InetSocketAddress(port), backlog);
+
+    for (int i = 0; i < eventLoops.length; i++) {
+      // Parsers are not thread-safe: each loop owns one
+      eventLoops[i] =
+          new EventLoop(
+              i,
+              exchangeProcessor,
+              parserFactory.get(),
+              workers,
+              clientReadTimeoutMs,
+              keepAlivePolicy);
+      eventLoops[i].start();
+    }
+    logger.info("NIO engine started with {} event loop(s)", eventLoops.length);
+  }
+
+  /**
+   * Accepts connections and distributes them round-robin across the event loops.
+   *
+   * <p>Blocks until {@link #stopAccepting()} closes the listening socket.
+   */
+  public void acceptLoop() {
+    while (serverChannel.isOpen()) {
+      try {
+        final SocketChannel channel = serverChannel.accept();
+        configureClientChannel(channel);
+        eventLoops[nextLoop].register(channel);
+        nextLoop = (nextLoop + 1) % eventLoops.length;
+      } catch (final ClosedChannelException e) {
+        // Listening socket closed during shutdown
+        break;
+      } catch (final IOException e) {
+        if (serverChannel.isOpen()) {
+          logger.error("Error accepting connection", e);
+        }
+      }
+    }
+  }
+
+  private static void configureClientChannel(final SocketChannel channel) throws IOException {
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Disable Nagle's algorithm
+    channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true); // Reap dead TCP peers
+    channel.configureBlocking(false);
+  }
+
+  /** Closes the listening socket; {@link #acceptLoop()} returns shortly after. */
+  public void stopAccepting() {
+    if (serverChannel != null && serverChannel.isOpen()) {
+      try {
+        serverChannel.close();
+      } catch (final IOException e) {
+        logger.error("Error closing server channel", e);
+      }
+    }
+  }
+
+  /**
+   * Stops the event loops, closing every connection they still own.
+   *
+   * @param timeoutMillis maximum time to wait for each loop thread to exit
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void stopEventLoops(final long timeoutMillis) throws InterruptedException {
+    for (final EventLoop eventLoop : eventLoops) {
+      if (eventLoop != null) {
+        eventLoop.shutdown(timeoutMillis);
+      }
+    }
+  }
+
+  /**
+   * Returns the port the engine is listening on, which differs from the configured port when the
+   * latter is 0.
+   *
+   * @return the bound port, or -1 before {@link #start()}
+   */
+  public int getLocalPort() {
+    if (serverChannel == null) {
+      return -1;
+    }
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /** Builder for {@link NioServerEngine}. */
+  public static final class Builder {
+    private int port;
+    private int backlog;
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+    private int clientReadTimeoutMs;
+    private KeepAlivePolicy keepAlivePolicy;
+    private HttpExchangeProcessor exchangeProcessor;
+    private Supplier<HttpRequestParser> parserFactory;
+    private ExecutorService workers;
+
+    public Builder port(final int port) {
+      this.port = port;
+      return this;
+    }
+
+    public Builder backlog(final int backlog) {
+      this.backlog = backlog;
+      return this;
+    }
+
+    public Builder eventLoopThreads(final int eventLoopThreads) {
+      this.eventLoopThreads = eventLoopThreads;
+      return this;
+    }
+
+    public Builder clientReadTimeoutMs(final int clientReadTimeoutMs) {
+      this.clientReadTimeoutMs = clientReadTimeoutMs;
+      return this;
+    }
+
+    /** Sets the keep-alive limits; by default idle connections close after the read timeout. */
+    public Builder keepAlivePolicy(final KeepAlivePolicy keepAlivePolicy) {
+      this.keepAlivePolicy = keepAlivePolicy;
+      return this;
+    }
+
+    public Builder exchangeProcessor(final HttpExchangeProcessor exchangeProcessor) {
+      this.exchangeProcessor = exchangeProcessor;
+      return this;
+    }
+
+    public Builder parserFactory(final Supplier<HttpRequestParser> parserFactory) {
+      this.parserFactory = parserFactory;
+      return this;
+    }
+
+    public Builder workers(final ExecutorService workers) {
+      this.workers = workers;
+      return this;
+    }
+
+    public NioServerEngine build() {
+      return new NioServerEngine(this);
+    }
+  }
+}
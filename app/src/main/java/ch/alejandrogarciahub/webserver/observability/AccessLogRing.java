@@ -0,0 +1,156 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring of preallocated access log records, filled by many request threads and drained by
+ * one writer thread.
+ *
+ * <p>Each slot carries a sequence number (Vyukov's bounded queue): a producer claims the next
+ * position with one compare-and-set, copies the entry's fields into the slot and publishes it by
+ * advancing the slot's sequence; the consumer hands a slot back by advancing it once more. When the
+ * consumer falls a full ring behind, {@link #tryPublish} fails at once instead of waiting.
+ *
+ * <p><strong>Thread Safety:</strong> {@link #tryPublish} may be called from any thread; {@link
+ * #drain} only from the single consumer thread.
+ *
+ * @see <a href="https://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue">
+ *     Bounded MPMC queue</a>
+ */
+final class AccessLogRing {
+
+  /** One fixed-layout record; the consumer reads it between publication and release. */
+  static final class Slot {
+    private volatile long sequence;
+
+    String time;
+    String remoteAddress;
+    String method;
+    String path;
+    String query;
+    String httpVersion;
+    int status;
+    long contentLength;
+    long bytesWritten;
+    long durationMillis;
+    boolean keepAlive;
+    String requestId;
+
+    private Slot(final long sequence) {
+      this.sequence = sequence;
+    }
+
+    private void fill(final AccessLogger.Entry entry, final String time) {
+      this.time = time;
+      remoteAddress = entry.remoteAddress();
+      method = entry.method();
+      path = entry.path();
+      query = entry.query();
+      httpVersion = entry.httpVersion();
+      status = entry.status();
+      contentLength = entry.contentLength();
+      bytesWritten = entry.bytesWritten();
+      durationMillis = entry.durationMillis();
+      keepAlive = entry.keepAlive();
+      requestId = entry.requestId();
+    }
+
+    /** Drops the references so that a drained slot does not keep request strings alive. */
+    private void clear() {
+      time = null;
+      remoteAddress = null;
+      method = null;
+      path = null;
+      query = null;
+      httpVersion = null;
+      requestId = null;
+    }
+  }
+
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  // Next position to drain; touched by the consumer only
+  private long head;
+
+  /**
+   * Creates a ring.
+   *
+   * @param capacity records held at most, rounded up to a power of two
+   */
+  AccessLogRing(final int capacity) {
+    final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new Slot[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Slot(i);
+    }
+    this.mask = size - 1;
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Copies an entry into the next free slot.
+   *
+   * @param entry the entry
+   * @param time the entry's timestamp
+   * @return false if the ring is full and the entry was not stored
+   */
+  boolean tryPublish(final AccessLogger.Entry entry, final String time) {
+    long position = tail.get();
+    while (true) {
+      final Slot slot = slots[(int) position & mask];
+      final long lag = slot.sequence - position;
+      if (lag == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slot.fill(entry, time);
+          slot.sequence = position + 1;
+          return true;
+        }
+        position = tail.get();
+      } else if (lag < 0) {
+        // The slot still holds the record from one lap earlier: the ring is full
+        return false;
+      } else {
+        // Another producer claimed this position first
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Hands published records to the consumer in order, then frees their slots.
+   *
+   * @param consumer reads a record; it must not keep the slot
+   * @param maxRecords records drained at most
+   * @return the number of records drained
+   */
+  int drain(final Consumer<Slot> consumer, final int maxRecords) {
+    int drained = 0;
+    while (drained < maxRecords) {
+      final Slot slot = slots[(int) head & mask];
+      if (slot.sequence != head + 1) {
+        break;
+      }
+      consumer.accept(slot);
+      slot.clear();
+      slot.sequence = head + slots.length;
+      head++;
+      drained++;
+    }
+    return drained;
+  }
+
+  /** Returns the number of positions claimed so far, published or not. */
+  long published() {
+    return tail.get();
+  }
+
+  /** Returns the number of records drained so far; consumer thread only. */
+  long drained() {
+    return head;
+  }
+}
@@ -1,13 +1,39 @@
 package ch.alejandrogarciahub.webserver.observability;
 
+import ch.alejandrogarciahub.webserver.http.CoarseClock;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Structured access logger that emits Apache-style key/value entries while preserving MDC
- * correlation IDs supplied by the connection handler.
+ * Structured access logger that emits Apache-style key/value entries, one line per request.
+ *
+ * <p>Each entry carries a {@code time} field with second resolution, taken from the {@link
+ * CoarseClock} so that logging a request never formats a date.
+ *
+ * <p>WHY asynchronous: {@link #log(Entry)} only copies the entry's fields into a slot of a bounded
+ * {@link AccessLogRing}; it never formats, locks or performs I/O, so logging adds no latency to a
+ * response. A single writer thread drains the ring, encodes entries into one byte buffer and hands
+ * it to a {@link Sink} in batches of up to {@value #BATCH_BYTES} bytes, i.e. few large sequential
+ * writes. When the writer falls a full ring behind, new entries are dropped and counted, and the
+ * writer reports the count.
+ *
+ * <p>Sinks: {@link #fileSink(Path)} appends to a file, {@link #loggerSink(Logger)} hands each line
+ * to SLF4J (the default {@code http.access} channel, routed by the Logback configuration).
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe.
  */
-public final class AccessLogger {
+public final class AccessLogger implements AutoCloseable {
 
   public record Entry(
       String remoteAddress,
@@ -22,8 +48,45 @@ public final class AccessLogger {
       boolean keepAlive,
       String requestId) {}
 
+  /** Destination of encoded access log lines; called from the writer thread only. */
+  @FunctionalInterface
+  public interface Sink extends Closeable {
+    /**
+     * Writes a batch of complete lines, each ending in {@code '\n'}.
+     *
+     * @param lines UTF-8 bytes; only valid during the call
+     * @param length number of bytes to write
+     * @throws IOException if the destination fails
+     */
+    void write(byte[] lines, int length) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+  }
+
+  /** Default number of entries buffered between request threads and the writer. */
+  public static final int DEFAULT_CAPACITY = 16_384;
+
+  private static final Logger logger = LoggerFactory.getLogger(AccessLogger.class);
+
+  private static final int BATCH_BYTES = 64 * 1024;
+  // WHY poll: Waking the writer from request threads would put a syscall on the request path
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+  private static final long FLUSH_TIMEOUT_MILLIS = 5_000;
+
   private final boolean enabled;
-  private final Logger logger;
+  private final Sink sink;
+  private final AccessLogRing ring;
+  private final Thread writer;
+  private final LongAdder dropped = new LongAdder();
+  private volatile boolean closed;
+  // Records the writer has handed to the sink
+  private volatile long written;
+
+  // Writer thread state
+  private byte[] buffer = new byte[BATCH_BYTES + 1024];
+  private int length;
+  private long reportedDrops;
 
   /**
    * Creates a logger that writes to the shared {@code http.access} SLF4J channel.
@@ -31,42 +94,269 @@ public final class AccessLogger {
    * @param enabled allows toggling logging without changing the call sites
    */
   public AccessLogger(final boolean enabled) {
-    this(enabled, LoggerFactory.getLogger("http.access"));
+    this(enabled, loggerSink(LoggerFactory.getLogger("http.access")), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a logger with its own writer thread when enabled.
+   *
+   * @param enabled allows toggling logging without changing the call sites
+   * @param sink destination of the encoded lines; closed by {@link #close()}
+   * @param capacity entries buffered at most, rounded up to a power of two
+   */
+  public AccessLogger(final boolean enabled, final Sink sink, final int capacity) {
+    this.enabled = enabled;
+    this.sink = sink;
+    if (!enabled) {
+      this.ring = null;
+      this.writer = null;
+      return;
+    }
+    this.ring = new AccessLogRing(capacity);
+    this.writer =
+        Thread.ofPlatform().name("access-log-writer").daemon(true).unstarted(this::runWriter);
+    writer.start();
   }
 
   /** Package-private constructor for supplying a custom logger (primarily used in tests). */
   AccessLogger(final boolean enabled, final Logger logger) {
-    this.enabled = enabled;
-    this.logger = logger;
+    this(enabled, loggerSink(logger), DEFAULT_CAPACITY);
   }
 
   /**
-   * Emits a single structured access log entry when logging is enabled.
+   * Returns a sink appending to a file, created if missing.
+   *
+   * @param file the log file
+   * @throws IOException if the file cannot be opened
+   */
+  public static Sink fileSink(final Path file) throws IOException {
+    final FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    return new Sink() {
+      @Override
+      public void write(final byte[] lines, final int length) throws IOException {
+        final ByteBuffer batch = ByteBuffer.wrap(lines, 0, length);
+        while (batch.hasRemaining()) {
+          channel.write(batch);
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+  /**
+   * Returns a sink logging each line as one INFO event.
+   *
+   * @param target the SLF4J logger
+   */
+  public static Sink loggerSink(final Logger target) {
+    return (lines, length) -> {
+      if (!target.isInfoEnabled()) {
+        return;
+      }
+      int start = 0;
+      for (int i = 0; i < length; i++) {
+        if (lines[i] == '\n') {
+          target.info(new String(lines, start, i - start, StandardCharsets.UTF_8));
+          start = i + 1;
+        }
+      }
+    };
+  }
+
+  /**
+   * Queues a single structured access log entry when logging is enabled.
+   *
+   * <p>Never blocks: if the buffer is full the entry is dropped and counted.
    *
    * @param entry immutable record describing the request/response lifecycle
    */
   public void log(final Entry entry) {
-    if (!enabled || !logger.isInfoEnabled() || entry == null) {
+    if (!enabled || entry == null || closed) {
       return;
     }
+    if (!ring.tryPublish(entry, CoarseClock.system().logTimestamp())) {
+      dropped.increment();
+    }
+  }
+
+  /** Returns the number of entries dropped because the buffer was full. */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
 
-    logger.info(
-        "remote={} method={} path={} query={} version={} status={} duration_ms={} bytes={} "
-            + "content_length={} keep_alive={} request_id={}",
-        defaultString(entry.remoteAddress()),
-        defaultString(entry.method()),
-        defaultString(entry.path()),
-        defaultString(entry.query()),
-        defaultString(entry.httpVersion()),
-        entry.status(),
-        entry.durationMillis(),
-        entry.bytesWritten(),
-        entry.contentLength(),
-        entry.keepAlive(),
-        defaultString(entry.requestId()));
-  }
-
-  private String defaultString(final String value) {
-    return value == null ? "-" : value;
+  /**
+   * Waits until the entries queued so far have been written, e.g. before shutdown.
+   *
+   * @return false if they were not written within five seconds
+   */
+  public boolean flush() {
+    if (!enabled) {
+      return true;
+    }
+    final long target = ring.published();
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MILLIS);
+    while (written < target) {
+      if (!writer.isAlive() || System.nanoTime() - deadline > 0) {
+        return false;
+      }
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(IDLE_PARK_NANOS);
+    }
+    return true;
+  }
+
+  /** Writes the queued entries, stops the writer thread and closes the sink. */
+  @Override
+  public void close() {
+    if (!enabled || closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(FLUSH_TIMEOUT_MILLIS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      sink.close();
+    } catch (final IOException e) {
+      logger.warn("Failed to close access log: {}", e.getMessage());
+    }
+  }
+
+  private void runWriter() {
+    while (true) {
+      // Read before draining, so that entries queued before close() are still written
+      final boolean stopping = closed;
+      while (ring.drain(this::encode, 256) > 0) {
+        if (length >= BATCH_BYTES) {
+          writeBatch();
+        }
+      }
+      writeBatch();
+      written = ring.drained();
+      reportDrops();
+      if (stopping) {
+        return;
+      }
+      LockSupport.parkNanos(IDLE_PARK_NANOS);
+    }
+  }
+
+  private void writeBatch() {
+    if (length == 0) {
+      return;
+    }
+    try {
+      sink.write(buffer, length);
+    } catch (final IOException | RuntimeException e) {
+      // WHY carry on: A failing log destination must not stop the server or the writer
+      logger.warn("Failed to write {} bytes of access log: {}", length, e.getMessage());
+    }
+    length = 0;
+    if (buffer.length > 4 * BATCH_BYTES) {
+      // An entry with huge fields grew the buffer; do not keep it for good
+      buffer = new byte[BATCH_BYTES + 1024];
+    }
+  }
+
+  private void reportDrops() {
+    final long drops = dropped.sum();
+    if (drops > reportedDrops) {
+      logger.warn(
+          "Dropped {} access log entries because the buffer was full ({} so far)",
+          drops - reportedDrops,
+          drops);
+      reportedDrops = drops;
+    }
+  }
+
+  private void encode(final AccessLogRing.Slot slot) {
+    appendField("time=", slot.time);
+    appendField(" remote=", slot.remoteAddress);
+    appendField(" method=", slot.method);
+    appendField(" path=", slot.path);
+    appendField(" query=", slot.query);
+    appendField(" version=", slot.httpVersion);
+    appendNumber(" status=", slot.status);
+    appendNumber(" duration_ms=", slot.durationMillis);
+    appendNumber(" bytes=", slot.bytesWritten);
+    appendNumber(" content_length=", slot.contentLength);
+    appendAscii(" keep_alive=");
+    appendAscii(slot.keepAlive ? "true" : "false");
+    appendField(" request_id=", slot.requestId);
+    append((byte) '\n');
+  }
+
+  private void appendField(final String key, final String value) {
+    appendAscii(key);
+    if (value == null) {
+      append((byte) '-');
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      final int c = value.codePointAt(i);
+      if (c < 0x20 || c == 0x7F) {
+        // WHY replace control characters: A path must not be able to forge extra log lines
+        append((byte) '?');
+      } else if (c < 0x80) {
+        append((byte) c);
+      } else if (c < 0x800) {
+        append((byte) (0xC0 | c >> 6));
+        append((byte) (0x80 | c & 0x3F));
+      } else if (c < 0x10000) {
+        append((byte) (0xE0 | c >> 12));
+        append((byte) (0x80 | c >> 6 & 0x3F));
+        append((byte) (0x80 | c & 0x3F));
+      } else {
+        append((byte) (0xF0 | c >> 18));
+        append((byte) (0x80 | c >> 12 & 0x3F));
+        append((byte) (0x80 | c >> 6 & 0x3F));
+        append((byte) (0x80 | c & 0x3F));
+        i++;
+      }
+    }
+  }
+
+  private void appendNumber(final String key, final long value) {
+    appendAscii(key);
+    if (value < 0) {
+      append((byte) '-');
+    }
+    final int start = length;
+    long remaining = Math.abs(value);
+    do {
+      append((byte) ('0' + remaining % 10));
+      remaining /= 10;
+    } while (remaining > 0);
+    // Digits were produced least significant first
+    for (int i = start, j = length - 1; i < j; i++, j--) {
+      final byte digit = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = digit;
+    }
+  }
+
+  private void appendAscii(final String text) {
+    for (int i = 0; i < text.length(); i++) {
+      append((byte) text.charAt(i));
+    }
+  }
+
+  private void append(final byte b) {
+    if (length == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[length++] = b;
   }
 }
@@ -2,23 +2,77 @@ package ch.alejandrogarciahub.webserver.observability;
 
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.util.List;
+import java.util.function.IntSupplier;
 
 /** Minimal interface for recording HTTP server metrics. Implementations should be thread-safe. */
 public interface HttpMetrics {
 
   void connectionOpened();
 
-  void connectionClosed();
+  /**
+   * Records that a connection was closed.
+   *
+   * @param requestsServed requests answered on the connection
+   * @param lifetimeMillis time from accept to close in milliseconds
+   */
+  void connectionClosed(int requestsServed, long lifetimeMillis);
 
   /**
    * Records a completed request.
    *
    * @param method HTTP method (nullable when the request failed before parsing)
+   * @param routeId ID of the route that matched the request, or {@link
+   *     ch.alejandrogarciahub.webserver.http.HttpRequest#NO_ROUTE} if none did or parsing failed
    * @param status response status (non-null)
-   * @param durationMillis processing time in milliseconds
+   * @param durationMicros processing time in microseconds
    * @param bytesWritten bytes written to the client (0 for HEAD / failures)
    */
-  void recordRequest(HttpMethod method, HttpStatus status, long durationMillis, long bytesWritten);
+  void recordRequest(
+      HttpMethod method, int routeId, HttpStatus status, long durationMicros, long bytesWritten);
+
+  /** Records a static file served from the in-memory content cache. */
+  void recordCacheHit();
+
+  /** Records a cacheable static file that had to be read from disk. */
+  void recordCacheMiss();
+
+  /**
+   * Records entries dropped or rejected by the content cache to stay within its byte budget.
+   *
+   * @param count number of evicted entries
+   */
+  void recordCacheEvictions(long count);
+
+  /** Records a request rejected by the concurrency limiter (load shedding). */
+  void recordRejectedRequest();
+
+  /** Records a parse-error log line dropped by the per-minute log throttle. */
+  void recordSuppressedParseErrorLog();
+
+  /**
+   * Exposes the concurrency limiter's gauges, read on every snapshot.
+   *
+   * @param limit current concurrency limit
+   * @param inFlight requests currently admitted
+   */
+  void registerConcurrencyGauges(IntSupplier limit, IntSupplier inFlight);
+
+  /**
+   * Names the routes requests are counted by, once the router has assigned their IDs.
+   *
+   * @param routeNames route names indexed by route ID
+   */
+  void registerRoutes(List<String> routeNames);
 
   HttpMetricsSnapshot snapshot();
+
+  /**
+   * Writes the current values as Prometheus or OpenMetrics metric families, including the per
+   * method and status code request counts that {@link #snapshot()} leaves out.
+   *
+   * @param writer the exposition to append to; {@link PrometheusWriter#finish()} is left to the
+   *     caller
+   */
+  void writePrometheus(PrometheusWriter writer);
 }
@@ -2,18 +2,34 @@ package ch.alejandrogarciahub.webserver.observability;
 
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
 
 /**
  * In-memory metrics recorder backed by {@link LongAdder}. Intended for lightweight deployments
- * where exporting metrics happens via snapshot polling.
+ * where exporting metrics happens via snapshot polling or Prometheus scrapes.
+ *
+ * <p>Requests are also counted per method and status code in a table indexed by the enum
+ * ordinals, created up front so that recording never allocates or looks anything up in a map.
+ * Likewise, requests, bytes and latency per route live in arrays indexed by the route ID the
+ * router assigned the request. Routes beyond the cap, requests no route matched and requests that
+ * failed to parse share the overflow route {@value #OVERFLOW_ROUTE}, so random paths such as 404
+ * scans cannot grow memory.
  */
 public final class HttpMetricsRecorder implements HttpMetrics {
 
+  /** Name of the route that requests without a tracked route are counted by. */
+  public static final String OVERFLOW_ROUTE = "other";
+
+  // Routes with their own metrics unless configured otherwise
+  static final int DEFAULT_MAX_ROUTES = 32;
+
   private enum StatusClass {
     SUCCESS,
     CLIENT_ERROR,
@@ -21,23 +37,90 @@ public final class HttpMetricsRecorder implements HttpMetrics {
     OTHER
   }
 
-  private static final long[] LATENCY_BUCKETS = {100, 500, 1_000};
+  // Upper bounds (inclusive) of the requests-per-connection buckets, plus one overflow bucket
+  private static final long[] REQUESTS_PER_CONNECTION_BOUNDS = {1, 10, 100, 1_000};
+  private static final String[] REQUESTS_PER_CONNECTION_KEYS = {
+    "le_1", "le_10", "le_100", "le_1000", "gt_1000"
+  };
+
+  // Upper bounds (inclusive) of the connection lifetime buckets in milliseconds, plus overflow
+  private static final long[] CONNECTION_LIFETIME_BOUNDS = {1_000, 10_000, 60_000, 600_000};
+  private static final String[] CONNECTION_LIFETIME_KEYS = {
+    "le_1s", "le_10s", "le_1m", "le_10m", "gt_10m"
+  };
+
+  // Prometheus bucket bounds of the request duration histogram, in microseconds and as labels
+  private static final long[] DURATION_BOUNDS_MICROS = {
+    1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000,
+    5_000_000, 10_000_000
+  };
+  private static final String[] DURATION_BOUND_LABELS = {
+    "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+  };
+  private static final String[] REQUESTS_PER_CONNECTION_LABELS = {"1", "10", "100", "1000"};
+  private static final String[] CONNECTION_LIFETIME_LABELS = {"1", "10", "60", "600"};
+
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+  private static final HttpStatus[] STATUSES = HttpStatus.values();
+  private static final String[] STATUS_CODE_LABELS = statusLabels(false);
+  private static final String[] STATUS_CLASS_LABELS = statusLabels(true);
+  // Requests that failed before their method was known
+  private static final String UNKNOWN_METHOD = "UNKNOWN";
+
+  // WHY few stripes: One histogram per route; routes split the recording threads among them
+  private static final int ROUTE_HISTOGRAM_CONCURRENCY = 2;
 
   private final LongAdder totalRequests = new LongAdder();
   private final LongAdder activeConnections = new LongAdder();
   private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final LongAdder cacheEvictions = new LongAdder();
+  private final LongAdder rejectedRequests = new LongAdder();
+  private final LongAdder suppressedParseErrorLogs = new LongAdder();
+
+  // Gauges owned by the concurrency limiter; zero until one is registered
+  private volatile IntSupplier concurrencyLimit = () -> 0;
+  private volatile IntSupplier concurrencyInFlight = () -> 0;
 
   private final Map<StatusClass, LongAdder> statusCounters = new EnumMap<>(StatusClass.class);
-  private final LongAdder[] latencyCounters =
-      new LongAdder[] {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+  private final LatencyHistogram latency = new LatencyHistogram();
+
+  private final LongAdder[] requestsPerConnection =
+      newCounters(REQUESTS_PER_CONNECTION_KEYS.length);
+  private final LongAdder[] connectionLifetimes = newCounters(CONNECTION_LIFETIME_KEYS.length);
+  private final LongAdder requestsPerConnectionSum = new LongAdder();
+  private final LongAdder connectionLifetimeMillisSum = new LongAdder();
+
+  // [method ordinal, or METHODS.length if unknown][status ordinal]
+  private final LongAdder[][] requestCounters = new LongAdder[METHODS.length + 1][];
 
-  private final Map<HttpMethod, LongAdder> methodCounters = new ConcurrentHashMap<>();
+  private final int maxRoutes;
+  // Replaced once the router has named its routes; until then every request counts as overflow
+  private volatile RouteTable routes = new RouteTable(List.of());
 
   /** Constructs a new recorder with zeroed counters. */
   public HttpMetricsRecorder() {
+    this(DEFAULT_MAX_ROUTES);
+  }
+
+  /**
+   * Constructs a new recorder with zeroed counters.
+   *
+   * @param maxRoutes routes with their own metrics at most, besides the overflow route
+   * @throws IllegalArgumentException if maxRoutes is negative
+   */
+  public HttpMetricsRecorder(final int maxRoutes) {
+    if (maxRoutes < 0) {
+      throw new IllegalArgumentException("maxRoutes must not be negative: " + maxRoutes);
+    }
+    this.maxRoutes = maxRoutes;
     for (final StatusClass statusClass : StatusClass.values()) {
       statusCounters.put(statusClass, new LongAdder());
     }
+    for (int i = 0; i < requestCounters.length; i++) {
+      requestCounters[i] = newCounters(STATUSES.length);
+    }
   }
 
   @Override
@@ -46,24 +129,76 @@ public final class HttpMetricsRecorder implements HttpMetrics {
   }
 
   @Override
-  public void connectionClosed() {
+  public void connectionClosed(final int requestsServed, final long lifetimeMillis) {
     activeConnections.decrement();
+    requestsPerConnection[bucketIndex(REQUESTS_PER_CONNECTION_BOUNDS, requestsServed)].increment();
+    connectionLifetimes[bucketIndex(CONNECTION_LIFETIME_BOUNDS, lifetimeMillis)].increment();
+    requestsPerConnectionSum.add(requestsServed);
+    connectionLifetimeMillisSum.add(lifetimeMillis);
   }
 
   @Override
   public void recordRequest(
       final HttpMethod method,
+      final int routeId,
       final HttpStatus status,
-      final long durationMillis,
+      final long durationMicros,
       final long bytesWritten) {
     totalRequests.increment();
     bytesSent.add(bytesWritten);
 
-    if (method != null) {
-      methodCounters.computeIfAbsent(method, key -> new LongAdder()).increment();
-    }
+    final int methodIndex = method != null ? method.ordinal() : METHODS.length;
+    requestCounters[methodIndex][status.ordinal()].increment();
     classifyStatus(status).increment();
-    classifyLatency(durationMillis).increment();
+    latency.record(durationMicros);
+
+    final RouteTable table = routes;
+    final int route = table.slot(routeId);
+    table.requests[route].increment();
+    table.bytes[route].add(bytesWritten);
+    table.latency[route].record(durationMicros);
+  }
+
+  @Override
+  public void recordCacheHit() {
+    cacheHits.increment();
+  }
+
+  @Override
+  public void recordCacheMiss() {
+    cacheMisses.increment();
+  }
+
+  @Override
+  public void recordCacheEvictions(final long count) {
+    cacheEvictions.add(count);
+  }
+
+  @Override
+  public void recordRejectedRequest() {
+    rejectedRequests.increment();
+  }
+
+  @Override
+  public void recordSuppressedParseErrorLog() {
+    suppressedParseErrorLogs.increment();
+  }
+
+  @Override
+  public void registerConcurrencyGauges(final IntSupplier limit, final IntSupplier inFlight) {
+    this.concurrencyLimit = limit;
+    this.concurrencyInFlight = inFlight;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Routes beyond the cap are counted as {@value #OVERFLOW_ROUTE}. Registering again starts the
+   * per-route figures from zero.
+   */
+  @Override
+  public void registerRoutes(final List<String> routeNames) {
+    this.routes = new RouteTable(routeNames.subList(0, Math.min(routeNames.size(), maxRoutes)));
   }
 
   @Override
@@ -72,14 +207,233 @@ public final class HttpMetricsRecorder implements HttpMetrics {
     statusCounters.forEach(
         (statusClass, counter) -> statuses.put(statusClass.name(), counter.sum()));
 
-    final Map<String, Long> latencies = new HashMap<>();
-    latencies.put("lt_100ms", latencyCounters[0].sum());
-    latencies.put("lt_500ms", latencyCounters[1].sum());
-    latencies.put("lt_1s", latencyCounters[2].sum());
-    latencies.put("gte_1s", latencyCounters[3].sum());
+    final Map<String, Long> cache = new HashMap<>();
+    cache.put("hits", cacheHits.sum());
+    cache.put("misses", cacheMisses.sum());
+    cache.put("evictions", cacheEvictions.sum());
+
+    final Map<String, Long> concurrency = new HashMap<>();
+    concurrency.put("limit", (long) concurrencyLimit.getAsInt());
+    concurrency.put("in_flight", (long) concurrencyInFlight.getAsInt());
+    concurrency.put("rejected", rejectedRequests.sum());
 
     return new HttpMetricsSnapshot(
-        totalRequests.sum(), activeConnections.sum(), bytesSent.sum(), statuses, latencies);
+        totalRequests.sum(),
+        activeConnections.sum(),
+        bytesSent.sum(),
+        statuses,
+        latency.snapshot(),
+        cache,
+        concurrency,
+        sums(REQUESTS_PER_CONNECTION_KEYS, requestsPerConnection),
+        sums(CONNECTION_LIFETIME_KEYS, connectionLifetimes),
+        routeStats());
+  }
+
+  private List<HttpMetricsSnapshot.RouteStats> routeStats() {
+    final RouteTable table = routes;
+    final List<HttpMetricsSnapshot.RouteStats> stats = new ArrayList<>(table.names.length);
+    for (int i = 0; i < table.names.length; i++) {
+      stats.add(
+          new HttpMetricsSnapshot.RouteStats(
+              table.names[i],
+              table.requests[i].sum(),
+              table.bytes[i].sum(),
+              table.latency[i].snapshot()));
+    }
+    return stats;
+  }
+
+  @Override
+  public void writePrometheus(final PrometheusWriter writer) {
+    writer.counter("http_server_requests_total", "Completed HTTP requests.");
+    for (int m = 0; m < requestCounters.length; m++) {
+      final String method = m < METHODS.length ? METHODS[m].name() : UNKNOWN_METHOD;
+      for (int s = 0; s < STATUSES.length; s++) {
+        final long count = requestCounters[m][s].sum();
+        if (count > 0) {
+          writer
+              .sample("http_server_requests_total")
+              .label("method", method)
+              .label("code", STATUS_CODE_LABELS[s])
+              .label("class", STATUS_CLASS_LABELS[s])
+              .value(count);
+        }
+      }
+    }
+
+    final long[] durationCounts = new long[DURATION_BOUNDS_MICROS.length];
+    writer.histogram("http_server_request_duration_seconds", "HTTP request duration.");
+    writeDurationHistogram(
+        writer, "http_server_request_duration_seconds", null, latency, durationCounts);
+
+    writer.counter("http_server_response_bytes_total", "Response bytes written.");
+    writer.sample("http_server_response_bytes_total").value(bytesSent.sum());
+
+    writer.gauge("http_server_active_connections", "Open client connections.");
+    writer.sample("http_server_active_connections").value(activeConnections.sum());
+
+    writer.histogram("http_server_connection_requests", "Requests served per closed connection.");
+    writeConnectionHistogram(
+        writer,
+        "http_server_connection_requests",
+        REQUESTS_PER_CONNECTION_LABELS,
+        requestsPerConnection,
+        requestsPerConnectionSum.sum(),
+        0);
+    writer.histogram("http_server_connection_duration_seconds", "Lifetime of closed connections.");
+    writeConnectionHistogram(
+        writer,
+        "http_server_connection_duration_seconds",
+        CONNECTION_LIFETIME_LABELS,
+        connectionLifetimes,
+        connectionLifetimeMillisSum.sum(),
+        3);
+
+    writer.counter("http_server_cache_hits_total", "Static files served from the content cache.");
+    writer.sample("http_server_cache_hits_total").value(cacheHits.sum());
+    writer.counter("http_server_cache_misses_total", "Cacheable static files read from disk.");
+    writer.sample("http_server_cache_misses_total").value(cacheMisses.sum());
+    writer.counter("http_server_cache_evictions_total", "Entries evicted from the content cache.");
+    writer.sample("http_server_cache_evictions_total").value(cacheEvictions.sum());
+
+    writer.gauge("http_server_concurrency_limit", "Current adaptive concurrency limit.");
+    writer.sample("http_server_concurrency_limit").value(concurrencyLimit.getAsInt());
+    writer.gauge("http_server_requests_in_flight", "Requests currently admitted.");
+    writer.sample("http_server_requests_in_flight").value(concurrencyInFlight.getAsInt());
+    writer.counter(
+        "http_server_rejected_requests_total", "Requests shed by the concurrency limiter.");
+    writer.sample("http_server_rejected_requests_total").value(rejectedRequests.sum());
+    writer.counter(
+        "http_server_parse_error_logs_suppressed_total",
+        "Parse-error log lines dropped by the log rate limit.");
+    writer
+        .sample("http_server_parse_error_logs_suppressed_total")
+        .value(suppressedParseErrorLogs.sum());
+
+    final RouteTable table = routes;
+    writer.counter("http_server_route_requests_total", "Completed HTTP requests per route.");
+    for (int i = 0; i < table.names.length; i++) {
+      writer
+          .sample("http_server_route_requests_total")
+          .label("route", table.names[i])
+          .value(table.requests[i].sum());
+    }
+    writer.counter("http_server_route_response_bytes_total", "Response bytes written per route.");
+    for (int i = 0; i < table.names.length; i++) {
+      writer
+          .sample("http_server_route_response_bytes_total")
+          .label("route", table.names[i])
+          .value(table.bytes[i].sum());
+    }
+    writer.histogram(
+        "http_server_route_request_duration_seconds", "HTTP request duration per route.");
+    for (int i = 0; i < table.names.length; i++) {
+      writeDurationHistogram(
+          writer,
+          "http_server_route_request_duration_seconds",
+          table.names[i],
+          table.latency[i],
+          durationCounts);
+    }
+  }
+
+  private static void writeDurationHistogram(
+      final PrometheusWriter writer,
+      final String name,
+      final String route,
+      final LatencyHistogram histogram,
+      final long[] counts) {
+    final long count = histogram.cumulativeCounts(DURATION_BOUNDS_MICROS, counts);
+    writeBuckets(writer, name, route, DURATION_BOUND_LABELS, counts);
+    writeTail(writer, name, route, count, histogram.sum(), 6);
+  }
+
+  /** Writes a histogram kept as per-bucket counters, accumulating them into Prometheus buckets. */
+  private static void writeConnectionHistogram(
+      final PrometheusWriter writer,
+      final String name,
+      final String[] boundLabels,
+      final LongAdder[] counters,
+      final long sum,
+      final int sumScale) {
+    final long[] cumulative = new long[boundLabels.length];
+    long total = 0;
+    for (int i = 0; i < counters.length; i++) {
+      total += counters[i].sum();
+      if (i < cumulative.length) {
+        cumulative[i] = total;
+      }
+    }
+    writeBuckets(writer, name, null, boundLabels, cumulative);
+    writeTail(writer, name, null, total, sum, sumScale);
+  }
+
+  private static void writeBuckets(
+      final PrometheusWriter writer,
+      final String name,
+      final String route,
+      final String[] boundLabels,
+      final long[] cumulativeCounts) {
+    for (int i = 0; i < boundLabels.length; i++) {
+      sample(writer, name, "_bucket", route).label("le", boundLabels[i]).value(cumulativeCounts[i]);
+    }
+  }
+
+  /** Writes the {@code +Inf} bucket, count and sum that close a histogram. */
+  private static void writeTail(
+      final PrometheusWriter writer,
+      final String name,
+      final String route,
+      final long count,
+      final long sum,
+      final int sumScale) {
+    sample(writer, name, "_bucket", route).label("le", "+Inf").value(count);
+    sample(writer, name, "_count", route).value(count);
+    sample(writer, name, "_sum", route).value(sum, sumScale);
+  }
+
+  /** Starts a histogram sample, labelled with its route unless it is server-wide. */
+  private static PrometheusWriter sample(
+      final PrometheusWriter writer, final String name, final String suffix, final String route) {
+    writer.sample(name, suffix);
+    return route != null ? writer.label("route", route) : writer;
+  }
+
+  /** Renders the code ("404") or class ("4xx") label of each status once. */
+  private static String[] statusLabels(final boolean classOnly) {
+    final String[] labels = new String[STATUSES.length];
+    for (int i = 0; i < labels.length; i++) {
+      final int code = STATUSES[i].getCode();
+      labels[i] = classOnly ? (code / 100) + "xx" : Integer.toString(code);
+    }
+    return labels;
+  }
+
+  private static LongAdder[] newCounters(final int count) {
+    final LongAdder[] counters = new LongAdder[count];
+    for (int i = 0; i < count; i++) {
+      counters[i] = new LongAdder();
+    }
+    return counters;
+  }
+
+  /** Returns the index of the first bound not below {@code value}, or the overflow bucket. */
+  private static int bucketIndex(final long[] bounds, final long value) {
+    for (int i = 0; i < bounds.length; i++) {
+      if (value <= bounds[i]) {
+        return i;
+      }
+    }
+    return bounds.length;
+  }
+
+  private static Map<String, Long> sums(final String[] keys, final LongAdder[] counters) {
+    final Map<String, Long> values = new LinkedHashMap<>();
+    for (int i = 0; i < keys.length; i++) {
+      values.put(keys[i], counters[i].sum());
+    }
+    return values;
   }
 
   private LongAdder classifyStatus(final HttpStatus status) {
@@ -94,14 +448,28 @@ public final class HttpMetricsRecorder implements HttpMetrics {
     return statusCounters.get(StatusClass.OTHER);
   }
 
-  private LongAdder classifyLatency(final long durationMillis) {
-    if (durationMillis < LATENCY_BUCKETS[0]) {
-      return latencyCounters[0];
-    } else if (durationMillis < LATENCY_BUCKETS[1]) {
-      return latencyCounters[1];
-    } else if (durationMillis < LATENCY_BUCKETS[2]) {
-      return latencyCounters[2];
+  /** Per-route counters, indexed by route ID with the overflow route last. */
+  private static final class RouteTable {
+    private final String[] names;
+    private final LongAdder[] requests;
+    private final LongAdder[] bytes;
+    private final LatencyHistogram[] latency;
+
+    private RouteTable(final List<String> routeNames) {
+      names = routeNames.toArray(new String[routeNames.size() + 1]);
+      names[routeNames.size()] = OVERFLOW_ROUTE;
+      requests = newCounters(names.length);
+      bytes = newCounters(names.length);
+      latency = new LatencyHistogram[names.length];
+      for (int i = 0; i < latency.length; i++) {
+        latency[i] = new LatencyHistogram(ROUTE_HISTOGRAM_CONCURRENCY);
+      }
+    }
+
+    /** Returns the slot of a route ID, counting unknown and untracked IDs as overflow. */
+    private int slot(final int routeId) {
+      final int overflow = names.length - 1;
+      return routeId >= 0 && routeId < overflow ? routeId : overflow;
     }
-    return latencyCounters[3];
   }
 }
@@ -1,5 +1,6 @@
 package ch.alejandrogarciahub.webserver.observability;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -9,11 +10,55 @@ import java.util.Map;
  * @param activeConnections currently open connections (gauge)
  * @param bytesSent total bytes written across all responses
  * @param statusCounts counts grouped by status class (e.g., SUCCESS, CLIENT_ERROR)
- * @param latencyBuckets counts grouped by latency bucket (lt_100ms, lt_500ms, etc.)
+ * @param latency request latency histogram in microseconds
+ * @param cacheCounts static file cache counters (hits, misses, evictions)
+ * @param concurrency admission control: current limit and in-flight requests (gauges), and
+ *     requests rejected so far
+ * @param requestsPerConnection closed connections grouped by requests served (le_1, le_10, etc.)
+ * @param connectionLifetimes closed connections grouped by lifetime (le_1s, le_10s, etc.)
+ * @param routes per-route figures, in route ID order with the overflow route last
  */
 public record HttpMetricsSnapshot(
     long totalRequests,
     long activeConnections,
     long bytesSent,
     Map<String, Long> statusCounts,
-    Map<String, Long> latencyBuckets) {}
+    LatencyHistogram.Snapshot latency,
+    Map<String, Long> cacheCounts,
+    Map<String, Long> concurrency,
+    Map<String, Long> requestsPerConnection,
+    Map<String, Long> connectionLifetimes,
+    List<RouteStats> routes) {
+
+  /**
+   * Requests of one route.
+   *
+   * @param route the route name, or {@link HttpMetricsRecorder#OVERFLOW_ROUTE}
+   * @param requests completed requests
+   * @param bytesSent bytes written in responses
+   * @param latency request latency histogram in microseconds
+   */
+  public record RouteStats(
+      String route, long requests, long bytesSent, LatencyHistogram.Snapshot latency) {}
+
+  /** Creates a snapshot without admission control figures. */
+  public HttpMetricsSnapshot(
+      final long totalRequests,
+      final long activeConnections,
+      final long bytesSent,
+      final Map<String, Long> statusCounts,
+      final LatencyHistogram.Snapshot latency,
+      final Map<String, Long> cacheCounts) {
+    this(
+        totalRequests,
+        activeConnections,
+        bytesSent,
+        statusCounts,
+        latency,
+        cacheCounts,
+        Map.of(),
+        Map.of(),
+        Map.of(),
+        List.of());
+  }
+}
@@ -0,0 +1,261 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in microseconds, in the style of HdrHistogram.
+ *
+ * <p>Values below {@value #SUB_BUCKET_COUNT} microseconds get a bucket each. Above that, every
+ * power-of-two range is split into {@value #SUB_BUCKET_COUNT} equal sub-buckets, so a bucket is at
+ * most 1/{@value #SUB_BUCKET_COUNT} (about 1.6%) of its values wide at any magnitude. Values up to
+ * about 19 hours are resolved; larger ones land in the last bucket. The exact maximum is tracked
+ * separately.
+ *
+ * <p>WHY striped counters: Every request records one value. Counters are split into stripes chosen
+ * by thread, so concurrent recorders rarely hit the same cache line, and recording is an index
+ * computation plus one atomic increment: no locks and no allocation. Snapshots sum the stripes.
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe. Snapshots taken while values are
+ * recorded may miss the values recorded concurrently, but never count one twice.
+ *
+ * @see <a href="https://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a>
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Values of 2^36 microseconds (~19 hours) and above share the last bucket
+  private static final int MAX_MAGNITUDE = 35;
+  private static final long MAX_TRACKABLE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+  private static final int BUCKET_COUNT =
+      SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+  private static final int MAX_STRIPES = 16;
+  // Longs per 64-byte cache line, so that the totals of two stripes never share a line
+  private static final int TOTALS_STRIDE = 8;
+  private static final int MAX_OFFSET = 0;
+  private static final int SUM_OFFSET = 1;
+  private static final long STRIPE_HASH = 0x9E3779B97F4A7C15L;
+
+  private final AtomicLongArray[] stripes;
+  // Per stripe: largest value and sum of values
+  private final AtomicLongArray totals;
+  private final int stripeMask;
+
+  /** Creates an empty histogram striped for the available processors. */
+  public LatencyHistogram() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates an empty histogram.
+   *
+   * @param concurrency expected number of concurrent recorders, rounded to a power of two
+   */
+  LatencyHistogram(final int concurrency) {
+    final int stripeCount =
+        concurrency <= 1
+            ? 1
+            : Math.min(MAX_STRIPES, Integer.highestOneBit(concurrency - 1) << 1);
+    this.stripes = new AtomicLongArray[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+    }
+    this.totals = new AtomicLongArray(stripeCount * TOTALS_STRIDE);
+    this.stripeMask = stripeCount - 1;
+  }
+
+  /**
+   * Records one value.
+   *
+   * @param micros the latency in microseconds; negative values count as zero
+   */
+  public void record(final long micros) {
+    final long value = Math.max(0L, micros);
+    final int stripe = stripeIndex();
+    stripes[stripe].getAndIncrement(bucketIndex(value));
+
+    final int base = stripe * TOTALS_STRIDE;
+    totals.getAndAdd(base + SUM_OFFSET, value);
+    long currentMax = totals.get(base + MAX_OFFSET);
+    while (value > currentMax && !totals.compareAndSet(base + MAX_OFFSET, currentMax, value)) {
+      currentMax = totals.get(base + MAX_OFFSET);
+    }
+  }
+
+  /** Returns the counts recorded so far. */
+  public Snapshot snapshot() {
+    final long[] counts = new long[BUCKET_COUNT];
+    long maxValue = 0;
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      final AtomicLongArray stripeCounts = stripes[stripe];
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        counts[i] += stripeCounts.get(i);
+      }
+      maxValue = Math.max(maxValue, totals.get(stripe * TOTALS_STRIDE + MAX_OFFSET));
+    }
+    return new Snapshot(counts, maxValue);
+  }
+
+  /** Returns the sum of all recorded values in microseconds. */
+  public long sum() {
+    long sum = 0;
+    for (int stripe = 0; stripe < stripes.length; stripe++) {
+      sum += totals.get(stripe * TOTALS_STRIDE + SUM_OFFSET);
+    }
+    return sum;
+  }
+
+  /**
+   * Counts the recorded values at or below each bound, as the cumulative buckets of an exported
+   * histogram, without copying the counts into a snapshot.
+   *
+   * <p>A bound counts its whole bucket, so the result may include values up to one bucket width
+   * (about 1.6%) above the bound.
+   *
+   * @param boundsMicros ascending upper bounds in microseconds
+   * @param cumulativeCounts receives the count for each bound; same length as the bounds
+   * @return the total number of recorded values
+   */
+  public long cumulativeCounts(final long[] boundsMicros, final long[] cumulativeCounts) {
+    Arrays.fill(cumulativeCounts, 0L);
+    long total = 0;
+    int bound = 0;
+    int boundIndex = boundsMicros.length > 0 ? bucketIndex(boundsMicros[0]) : BUCKET_COUNT;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      while (i > boundIndex) {
+        cumulativeCounts[bound++] = total;
+        boundIndex = bound < boundsMicros.length ? bucketIndex(boundsMicros[bound]) : BUCKET_COUNT;
+      }
+      for (final AtomicLongArray stripeCounts : stripes) {
+        total += stripeCounts.get(i);
+      }
+    }
+    while (bound < boundsMicros.length) {
+      cumulativeCounts[bound++] = total;
+    }
+    return total;
+  }
+
+  private int stripeIndex() {
+    // WHY hash the thread ID: Virtual thread IDs are sequential, so low bits alone would cluster
+    return (int) ((Thread.currentThread().threadId() * STRIPE_HASH) >>> 32) & stripeMask;
+  }
+
+  static int bucketIndex(final long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    final long bounded = Math.min(value, MAX_TRACKABLE);
+    final int magnitude = 63 - Long.numberOfLeadingZeros(bounded);
+    final int shift = magnitude - SUB_BUCKET_BITS;
+    final int subBucket = (int) (bounded >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** Returns the largest value that falls into the bucket. */
+  static long highestValueIn(final int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+    final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+    final long lowest = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Immutable histogram counts at one point in time.
+   *
+   * <p>Snapshots of different histograms can be merged, and the snapshot of an interval is the
+   * difference of the cumulative snapshots that bound it, so recording never has to be reset.
+   */
+  public static final class Snapshot {
+    private static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0);
+
+    private final long[] counts;
+    private final long totalCount;
+    private final long maxValue;
+
+    private Snapshot(final long[] counts, final long maxValue) {
+      this.counts = counts;
+      this.totalCount = Arrays.stream(counts).sum();
+      this.maxValue = maxValue;
+    }
+
+    /** Returns a snapshot without values. */
+    public static Snapshot empty() {
+      return EMPTY;
+    }
+
+    /** Returns the number of recorded values. */
+    public long getTotalCount() {
+      return totalCount;
+    }
+
+    /** Returns the largest recorded value in microseconds, or 0 if there is none. */
+    public long getMaxValue() {
+      return maxValue;
+    }
+
+    /**
+     * Returns the value below or at which the given share of values lies.
+     *
+     * <p>Like HdrHistogram, the result is the highest value of the bucket the percentile falls in
+     * (never above the maximum), so it overstates the exact value by less than a bucket width.
+     *
+     * @param percentile between 0 and 100
+     * @return the value in microseconds, or 0 if the snapshot is empty
+     */
+    public long getValueAtPercentile(final double percentile) {
+      if (totalCount == 0) {
+        return 0;
+      }
+      final double share = Math.min(100.0, Math.max(0.0, percentile)) / 100.0;
+      final long rank = Math.max(1L, (long) Math.ceil(share * totalCount));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValueIn(i), maxValue);
+        }
+      }
+      return maxValue;
+    }
+
+    /**
+     * Combines the values of two snapshots, e.g. of histograms kept per server.
+     *
+     * @param other the snapshot to add
+     * @return a snapshot holding the values of both
+     */
+    public Snapshot merge(final Snapshot other) {
+      final long[] merged = new long[BUCKET_COUNT];
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        merged[i] = counts[i] + other.counts[i];
+      }
+      return new Snapshot(merged, Math.max(maxValue, other.maxValue));
+    }
+
+    /**
+     * Returns the values recorded after an earlier snapshot of the same histogram.
+     *
+     * <p>The exact maximum of the interval is not known; the highest value of the highest non-empty
+     * bucket stands in for it.
+     *
+     * @param earlier a snapshot taken before this one
+     * @return a snapshot of the interval between the two
+     */
+    public Snapshot since(final Snapshot earlier) {
+      final long[] interval = new long[BUCKET_COUNT];
+      long intervalMax = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        interval[i] = Math.max(0L, counts[i] - earlier.counts[i]);
+        if (interval[i] > 0) {
+          intervalMax = highestValueIn(i);
+        }
+      }
+      return new Snapshot(interval, Math.min(intervalMax, maxValue));
+    }
+  }
+}
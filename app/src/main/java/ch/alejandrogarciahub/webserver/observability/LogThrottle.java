@@ -0,0 +1,82 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many lines of one kind of log message are written per minute.
+ *
+ * <p>Minutes are fixed windows of {@link System#nanoTime()}: the first {@code maxPerMinute} calls
+ * to {@link #tryAcquire} in a window are allowed, the rest are suppressed and counted. The next
+ * allowed line can report how many were suppressed before it via {@link #takeSuppressed()}, so a
+ * flood of bad requests costs a handful of log lines a minute instead of one per request.
+ *
+ * <p>WHY one packed word: The window number and the lines allowed in it share a single {@link
+ * AtomicLong}, so a decision is one read plus at most one compare-and-set, without locks. Once the
+ * window's budget is spent, a call is a read and a {@link LongAdder} increment.
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe.
+ */
+public final class LogThrottle {
+  private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final int maxPerMinute;
+  // Window number in the high 32 bits, lines allowed in that window in the low 32 bits
+  private final AtomicLong state = new AtomicLong();
+  private final LongAdder suppressed = new LongAdder();
+  private final AtomicLong reported = new AtomicLong();
+
+  /**
+   * Creates a throttle.
+   *
+   * @param maxPerMinute lines allowed per minute; negative for no limit, 0 to suppress every line
+   */
+  public LogThrottle(final int maxPerMinute) {
+    this.maxPerMinute = maxPerMinute;
+  }
+
+  /** Returns true if lines are never suppressed. */
+  public boolean isUnlimited() {
+    return maxPerMinute < 0;
+  }
+
+  /**
+   * Decides whether a line may be written.
+   *
+   * @param nowNanos the current {@link System#nanoTime()}
+   * @return true if the line is within the budget of the current minute
+   */
+  public boolean tryAcquire(final long nowNanos) {
+    if (maxPerMinute < 0) {
+      return true;
+    }
+    final int window = (int) Math.floorDiv(nowNanos, WINDOW_NANOS);
+    while (true) {
+      final long current = state.get();
+      final int allowed = (int) (current >>> 32) == window ? (int) current : 0;
+      if (allowed >= maxPerMinute) {
+        suppressed.increment();
+        return false;
+      }
+      if (state.compareAndSet(current, (long) window << 32 | (allowed + 1))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of lines suppressed since the last call, e.g. to mention them in the next
+   * line that is written.
+   */
+  public long takeSuppressed() {
+    final long total = suppressed.sum();
+    final long previous = reported.getAndAccumulate(total, Math::max);
+    return Math.max(0L, total - previous);
+  }
+
+  /** Returns the number of lines suppressed so far. */
+  public long getSuppressedCount() {
+    return suppressed.sum();
+  }
+}
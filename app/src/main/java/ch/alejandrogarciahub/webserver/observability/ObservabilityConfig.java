@@ -1,5 +1,8 @@
 package ch.alejandrogarciahub.webserver.observability;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Central configuration for observability features such as access logging and HTTP metrics.
  *
@@ -7,14 +10,15 @@ package ch.alejandrogarciahub.webserver.observability;
  * safely across threads.
  */
 public final class ObservabilityConfig {
-
   private final boolean accessLogEnabled;
   private final boolean metricsEnabled;
   private final int maxParseErrorLogsPerMinute;
   private final String metricsEndpointPath;
+  private final List<String> metricsRoutes;
+  private final int maxMetricsRoutes;
 
   /**
-   * Creates a configuration snapshot.
+   * Creates a configuration snapshot without per-route metrics beyond the metrics endpoint.
    *
    * @param accessLogEnabled whether access logging should be emitted
    * @param metricsEnabled whether HTTP metrics should be collected
@@ -25,6 +29,31 @@ public final class ObservabilityConfig {
       final boolean metricsEnabled,
       final int maxParseErrorLogsPerMinute,
       final String metricsEndpointPath) {
+    this(
+        accessLogEnabled,
+        metricsEnabled,
+        maxParseErrorLogsPerMinute,
+        metricsEndpointPath,
+        List.of(),
+        HttpMetricsRecorder.DEFAULT_MAX_ROUTES);
+  }
+
+  /**
+   * Creates a configuration snapshot.
+   *
+   * @param accessLogEnabled whether access logging should be emitted
+   * @param metricsEnabled whether HTTP metrics should be collected
+   * @param maxParseErrorLogsPerMinute throttle for parse-error logging (-1 disables)
+   * @param metricsRoutes static path prefixes that get routes, and so metrics, of their own
+   * @param maxMetricsRoutes routes tracked at most (at least 1); see {@link HttpMetricsRecorder}
+   */
+  public ObservabilityConfig(
+      final boolean accessLogEnabled,
+      final boolean metricsEnabled,
+      final int maxParseErrorLogsPerMinute,
+      final String metricsEndpointPath,
+      final List<String> metricsRoutes,
+      final int maxMetricsRoutes) {
     this.accessLogEnabled = accessLogEnabled;
     this.metricsEnabled = metricsEnabled;
     this.maxParseErrorLogsPerMinute = maxParseErrorLogsPerMinute;
@@ -32,6 +61,8 @@ public final class ObservabilityConfig {
         metricsEndpointPath != null && !metricsEndpointPath.isBlank()
             ? metricsEndpointPath
             : "/metrics";
+    this.metricsRoutes = List.copyOf(metricsRoutes);
+    this.maxMetricsRoutes = Math.max(1, maxMetricsRoutes);
   }
 
   /** Creates a config snapshot by reading environment variables. */
@@ -41,9 +72,17 @@ public final class ObservabilityConfig {
     final int maxParseErrorLogsPerMinute = readIntEnv("OBS_PARSE_ERROR_LOGS_PER_MINUTE", -1);
     final String metricsEndpointPath =
         System.getenv().getOrDefault("OBS_METRICS_ENDPOINT_PATH", "/metrics");
+    final List<String> metricsRoutes = readListEnv("OBS_METRICS_ROUTES");
+    final int maxMetricsRoutes =
+        readIntEnv("OBS_METRICS_MAX_ROUTES", HttpMetricsRecorder.DEFAULT_MAX_ROUTES);
 
     return new ObservabilityConfig(
-        accessLogEnabled, metricsEnabled, maxParseErrorLogsPerMinute, metricsEndpointPath);
+        accessLogEnabled,
+        metricsEnabled,
+        maxParseErrorLogsPerMinute,
+        metricsEndpointPath,
+        metricsRoutes,
+        maxMetricsRoutes);
   }
 
   public boolean isAccessLogEnabled() {
@@ -68,6 +107,33 @@ public final class ObservabilityConfig {
     return metricsEndpointPath;
   }
 
+  /**
+   * @return static path prefixes mounted as routes of their own, so metrics are broken down by them
+   */
+  public List<String> getMetricsRoutes() {
+    return metricsRoutes;
+  }
+
+  /**
+   * @return maximum number of routes with their own metrics, besides the overflow route
+   */
+  public int getMaxMetricsRoutes() {
+    return maxMetricsRoutes;
+  }
+
+  private static List<String> readListEnv(final String key) {
+    final String value = System.getenv(key);
+    final List<String> items = new ArrayList<>();
+    if (value != null) {
+      for (final String item : value.split(",")) {
+        if (!item.isBlank()) {
+          items.add(item.trim());
+        }
+      }
+    }
+    return items;
+  }
+
   private static boolean readBooleanEnv(final String key, final boolean defaultValue) {
     final String value = System.getenv(key);
     if (value == null || value.isBlank()) {
@@ -0,0 +1,260 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import java.util.Arrays;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4) or in OpenMetrics 1.0
+ * into a growable byte buffer.
+ *
+ * <p>A metric family starts with {@link #counter}, {@link #gauge} or {@link #histogram}, followed
+ * by its samples:
+ *
+ * <pre>{@code
+ * writer.counter("http_server_requests_total", "Completed requests.");
+ * writer.sample("http_server_requests_total").label("method", "GET").value(7);
+ * }</pre>
+ *
+ * <p>WHY bytes: Numbers and names are written as ASCII straight into the buffer, without
+ * intermediate strings or maps, and the buffer is kept between scrapes via {@link #reset(int)}, so
+ * a scrape allocates little beyond the copy of the finished body.
+ *
+ * <p><strong>Thread Safety:</strong> Not thread-safe. Each writer serves one scrape at a time.
+ *
+ * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus
+ *     exposition formats</a>
+ * @see <a href="https://github.com/OpenObservability/OpenMetrics">OpenMetrics</a>
+ */
+public final class PrometheusWriter {
+  private static final int INITIAL_CAPACITY = 4 * 1024;
+  private static final String TOTAL_SUFFIX = "_total";
+  private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+  private final boolean openMetrics;
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int length;
+  private boolean labelsOpen;
+
+  /**
+   * Creates a writer.
+   *
+   * @param openMetrics true for OpenMetrics 1.0, false for the Prometheus text format
+   */
+  public PrometheusWriter(final boolean openMetrics) {
+    this.openMetrics = openMetrics;
+  }
+
+  public boolean isOpenMetrics() {
+    return openMetrics;
+  }
+
+  /** Returns the media type of the output, for the Content-Type header. */
+  public String contentType() {
+    return openMetrics
+        ? "application/openmetrics-text; version=1.0.0; charset=utf-8"
+        : "text/plain; version=0.0.4; charset=utf-8";
+  }
+
+  /**
+   * Starts a counter family.
+   *
+   * @param name sample name ending in {@code _total}
+   * @param help description of the counter
+   */
+  public void counter(final String name, final String help) {
+    // OpenMetrics names the family without the suffix its samples carry
+    final String family =
+        openMetrics && name.endsWith(TOTAL_SUFFIX)
+            ? name.substring(0, name.length() - TOTAL_SUFFIX.length())
+            : name;
+    family(family, "counter", help);
+  }
+
+  /** Starts a gauge family. */
+  public void gauge(final String name, final String help) {
+    family(name, "gauge", help);
+  }
+
+  /**
+   * Starts a histogram family; its samples are {@code name_bucket} (one per {@code le} bound, the
+   * last one {@code +Inf}), {@code name_count} and {@code name_sum}.
+   */
+  public void histogram(final String name, final String help) {
+    family(name, "histogram", help);
+  }
+
+  /**
+   * Starts a sample line; add labels with {@link #label} and end it with a {@code value} call.
+   *
+   * @param name the sample name
+   * @return this writer
+   */
+  public PrometheusWriter sample(final String name) {
+    append(name);
+    labelsOpen = false;
+    return this;
+  }
+
+  /**
+   * Starts a sample line whose name is a family name plus a suffix such as {@code _bucket}.
+   *
+   * @param name the family name
+   * @param suffix appended to the name
+   * @return this writer
+   */
+  public PrometheusWriter sample(final String name, final String suffix) {
+    append(name);
+    return sample(suffix);
+  }
+
+  /**
+   * Adds a label to the current sample.
+   *
+   * @param name the label name
+   * @param value the label value, escaped as required
+   * @return this writer
+   */
+  public PrometheusWriter label(final String name, final String value) {
+    append(labelsOpen ? (byte) ',' : (byte) '{');
+    labelsOpen = true;
+    append(name);
+    append((byte) '=');
+    append((byte) '"');
+    appendEscaped(value, true);
+    append((byte) '"');
+    return this;
+  }
+
+  /** Ends the current sample with an integer value. */
+  public void value(final long value) {
+    closeLabels();
+    appendLong(value);
+    append((byte) '\n');
+  }
+
+  /**
+   * Ends the current sample with a fixed-point value, e.g. microseconds as seconds.
+   *
+   * @param units the value in units of 10^-scale
+   * @param scale decimal places, at most 6
+   */
+  public void value(final long units, final int scale) {
+    closeLabels();
+    final long divisor = POWERS_OF_TEN[scale];
+    if (units < 0) {
+      append((byte) '-');
+    }
+    final long magnitude = Math.abs(units);
+    appendLong(magnitude / divisor);
+    if (scale > 0) {
+      append((byte) '.');
+      final long fraction = magnitude % divisor;
+      for (long digit = divisor / 10; digit > 0; digit /= 10) {
+        append((byte) ('0' + fraction / digit % 10));
+      }
+    }
+    append((byte) '\n');
+  }
+
+  /** Ends the output; OpenMetrics requires an explicit end marker. */
+  public void finish() {
+    if (openMetrics) {
+      append("# EOF\n");
+    }
+  }
+
+  /** Returns a copy of the bytes written since the last reset. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * Clears the output so the writer can serve the next scrape.
+   *
+   * @param maxRetainedCapacity buffer size kept at most; a larger buffer is released
+   */
+  public void reset(final int maxRetainedCapacity) {
+    length = 0;
+    labelsOpen = false;
+    if (buffer.length > maxRetainedCapacity) {
+      buffer = new byte[Math.min(INITIAL_CAPACITY, maxRetainedCapacity)];
+    }
+  }
+
+  private void family(final String name, final String type, final String help) {
+    append("# HELP ");
+    append(name);
+    append((byte) ' ');
+    appendEscaped(help, false);
+    append("\n# TYPE ");
+    append(name);
+    append((byte) ' ');
+    append(type);
+    append((byte) '\n');
+  }
+
+  private void closeLabels() {
+    if (labelsOpen) {
+      append((byte) '}');
+      labelsOpen = false;
+    }
+    append((byte) ' ');
+  }
+
+  private void appendEscaped(final String text, final boolean quoted) {
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '\\') {
+        append("\\\\");
+      } else if (c == '\n') {
+        append("\\n");
+      } else if (c == '"' && quoted) {
+        append("\\\"");
+      } else {
+        // Names and label values written here are ASCII; anything else is replaced
+        append(c < 0x80 ? (byte) c : (byte) '?');
+      }
+    }
+  }
+
+  private void appendLong(final long value) {
+    if (value == Long.MIN_VALUE) {
+      append(Long.toString(value));
+      return;
+    }
+    if (value < 0) {
+      append((byte) '-');
+    }
+    final long magnitude = Math.abs(value);
+    // Digits are produced backwards into the reserved space
+    int digits = 1;
+    for (long rest = magnitude / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    ensureCapacity(digits);
+    long remaining = magnitude;
+    for (int i = length + digits - 1; i >= length; i--) {
+      buffer[i] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    length += digits;
+  }
+
+  private void append(final String text) {
+    final int count = text.length();
+    ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      buffer[length++] = (byte) text.charAt(i);
+    }
+  }
+
+  private void append(final byte b) {
+    ensureCapacity(1);
+    buffer[length++] = b;
+  }
+
+  private void ensureCapacity(final int extra) {
+    if (length + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+  }
+}
@@ -9,6 +9,14 @@ import java.io.IOException;
  * <p>This exception encapsulates HTTP parsing errors and associates them with appropriate HTTP
  * status codes for error responses.
  *
+ * <p>WHY stackless: A parse error describes the client's bytes, not a fault in the server, and its
+ * message and status say everything a response or log line needs. Skipping the stack walk makes a
+ * rejection cheap when garbage traffic floods the server.
+ *
+ * <p>WHY not shared: Even stackless, an instance stays mutable through {@link #addSuppressed} and
+ * {@link #setStackTrace}, so a shared one escaping through a try-with-resources would collect state
+ * across connections. Allocating a fresh, stackless instance per error is cheap enough.
+ *
  * @see <a href="https://www.rfc-editor.org/rfc/rfc9112.html">RFC 9112 - HTTP/1.1</a>
  */
 public class HttpParseException extends IOException {
@@ -37,6 +45,12 @@ public class HttpParseException extends IOException {
     this.status = status;
   }
 
+  /** Records no stack trace; see the class comment. */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
   /**
    * Returns the HTTP status code associated with this parse error.
    *
@@ -0,0 +1,728 @@
+package ch.alejandrogarciahub.webserver.parser;
+
+import ch.alejandrogarciahub.webserver.http.HeaderNames;
+import ch.alejandrogarciahub.webserver.http.HttpHeaders;
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import ch.alejandrogarciahub.webserver.http.HttpVersion;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resumable, push-style HTTP/1.1 request decoder.
+ *
+ * <p>Bytes are pushed in arbitrary fragments through {@link #decode(ByteBuffer)}. The decoder
+ * consumes as much of each fragment as belongs to the current request, remembers where it stopped,
+ * and reports one of three outcomes without ever blocking:
+ *
+ * <ul>
+ *   <li>{@link Result#NEED_MORE} - the fragment was fully consumed and the request is incomplete
+ *   <li>{@link Result#COMPLETE} - a request is available through {@link #takeRequest()}; bytes
+ *       that belong to the next (pipelined) request are left in the buffer
+ *   <li>{@link Result#ERROR} - the request is malformed; see {@link #getError()}
+ * </ul>
+ *
+ * <p>Validation, limits and {@link HttpParseException} statuses are identical to {@link
+ * HttpRequestParser}, which drives this decoder from a blocking stream.
+ *
+ * <p>Lines are accumulated in a reusable buffer and scanned in place: method and version are
+ * matched from bytes, well-known header names resolve to shared constants, and a typical request
+ * only materializes its request-target and header values as strings.
+ *
+ * <p>By default the body is collected before the request completes, so a request is never handed
+ * over while its bytes are still arriving. A blocking caller can instead {@linkplain
+ * #streamBodiesFrom(InputStream) stream bodies}: the request then completes after its header
+ * section and the body is read from the caller's stream on demand.
+ *
+ * <p><strong>Thread Safety:</strong> This decoder is <em>not</em> thread-safe. Each connection
+ * should use its own instance (or borrow one while it has a partial request).
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9112.html">RFC 9112 - HTTP/1.1</a>
+ */
+public final class HttpRequestDecoder {
+
+  /** Outcome of a {@link #decode(ByteBuffer)} call. */
+  public enum Result {
+    /** All bytes were consumed; the request needs more input. */
+    NEED_MORE,
+    /** A complete request is available. */
+    COMPLETE,
+    /** The request is malformed or exceeds a limit. */
+    ERROR
+  }
+
+  private enum State {
+    REQUEST_LINE,
+    HEADERS,
+    BODY,
+    CHUNK_SIZE,
+    CHUNK_DATA,
+    CHUNK_DATA_END,
+    TRAILERS,
+    COMPLETE,
+    FAILED
+  }
+
+  // Chunk size lines are short: hex digits plus optional extensions
+  private static final int MAX_CHUNK_SIZE_LINE_LENGTH = 1024;
+  private static final int INITIAL_LINE_CAPACITY = 256;
+  private static final int INITIAL_CHUNKED_BODY_CAPACITY = 1024;
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte SP = ' ';
+  private static final byte COLON = ':';
+  private static final byte SEMICOLON = ';';
+
+  private static final String ROOT_TARGET = "/";
+
+  // Messages of the parse errors that never vary
+  private static final String MALFORMED_LINE_ENDING = "Malformed line ending: expected LF after CR";
+  private static final String MISSING_CHUNK_DATA_CRLF = "Missing CRLF after chunk data";
+  private static final String EMPTY_REQUEST_LINE = "Empty request line";
+  private static final String INVALID_REQUEST_LINE =
+      "Invalid request line format: expected 'METHOD URI VERSION'";
+  private static final String EMPTY_REQUEST_TARGET = "Empty request-target";
+  private static final String MISSING_COLON = "Invalid header format: missing colon";
+  private static final String EMPTY_HEADER_NAME = "Empty header field name";
+  private static final String MISSING_HOST = "Missing required Host header in HTTP/1.1";
+  private static final String MULTIPLE_HOST = "Multiple Host headers";
+  private static final String MULTIPLE_TRANSFER_ENCODING = "Multiple Transfer-Encoding headers";
+  private static final String CONFLICTING_CONTENT_LENGTH = "Conflicting Content-Length headers";
+  private static final String EMPTY_CHUNK_SIZE_LINE = "Empty chunk size line";
+  private static final String TRUNCATED_LINE = "Unexpected end of stream while reading line";
+  private static final String TRUNCATED_HEADERS = "Unexpected end of stream while reading headers";
+  private static final String TRUNCATED_BEFORE_CHUNK_SIZE =
+      "Unexpected end of stream before chunk size";
+  private static final String TRUNCATED_AFTER_CHUNK_DATA =
+      "Unexpected end of stream after chunk data";
+  private static final String TRUNCATED_TRAILERS = "Unexpected end of stream in chunk trailers";
+  private static final String TRUNCATED = "Unexpected end of stream";
+
+  // Configurable limits
+  private final int maxRequestLineLength;
+  private final int maxHeaderSize;
+  private final int maxHeadersCount;
+  private final long maxContentLength;
+
+  private State state = State.REQUEST_LINE;
+
+  // Source of streamed bodies, positioned after the header section once a request completes
+  private InputStream bodySource;
+  // Peer of the connection the bytes come from; kept across requests
+  private InetAddress remoteAddress;
+
+  // Current line (without CR/LF), kept across fragments
+  private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+  private int lineLength;
+  private boolean lineStarted;
+  private boolean sawCr;
+
+  // Request under construction
+  private HttpMethod method;
+  private String requestTarget;
+  private HttpVersion version;
+  private HttpHeaders headers;
+  private int totalHeaderSize;
+  private int headerCount;
+  // Fixed-length bodies are sized up front; chunked bodies grow in place, chunk by chunk
+  private byte[] body;
+  private int bodyPosition;
+  private long chunkedBodySize;
+  private int chunkRemaining;
+
+  private HttpRequest request;
+  private HttpParseException error;
+
+  /**
+   * Constructs an HttpRequestDecoder with specified limits.
+   *
+   * @param maxRequestLineLength maximum request line length in bytes
+   * @param maxHeaderSize maximum total header section size in bytes
+   * @param maxHeadersCount maximum number of header fields
+   * @param maxContentLength maximum request body size in bytes
+   */
+  public HttpRequestDecoder(
+      final int maxRequestLineLength,
+      final int maxHeaderSize,
+      final int maxHeadersCount,
+      final long maxContentLength) {
+    this.maxRequestLineLength = maxRequestLineLength;
+    this.maxHeaderSize = maxHeaderSize;
+    this.maxHeadersCount = maxHeadersCount;
+    this.maxContentLength = maxContentLength;
+  }
+
+  /**
+   * Completes requests after their header section and reads bodies from {@code source} on demand.
+   *
+   * <p>The caller must hand every byte after the header section back to {@code source} before the
+   * body is read, and must discard any unread body before decoding the next request.
+   *
+   * @param source the stream the decoded bytes come from, or null to collect bodies again
+   */
+  void streamBodiesFrom(final InputStream source) {
+    this.bodySource = source;
+  }
+
+  /**
+   * Sets the client address recorded on decoded requests (see {@link
+   * HttpRequest#getRemoteAddress()}). It is kept across {@link #reset()}.
+   *
+   * @param remoteAddress the peer of the connection (nullable)
+   */
+  public void setRemoteAddress(final InetAddress remoteAddress) {
+    this.remoteAddress = remoteAddress;
+  }
+
+  /**
+   * Consumes bytes of the current request from {@code input}.
+   *
+   * <p>On {@link Result#COMPLETE} the buffer position is left at the first byte after the request.
+   * Once complete or failed, further calls return the same result without consuming input until
+   * {@link #takeRequest()} or {@link #reset()} is called.
+   *
+   * @param input the received bytes (read from position to limit)
+   * @return the decoding outcome
+   */
+  public Result decode(final ByteBuffer input) {
+    try {
+      while (state != State.COMPLETE) {
+        if (state == State.FAILED) {
+          return Result.ERROR;
+        }
+        if (!input.hasRemaining()) {
+          return Result.NEED_MORE;
+        }
+        step(input);
+      }
+      return Result.COMPLETE;
+    } catch (final HttpParseException e) {
+      error = e;
+      state = State.FAILED;
+      return Result.ERROR;
+    }
+  }
+
+  /**
+   * Returns the decoded request and resets the decoder for the next one.
+   *
+   * @return the request decoded by the last {@link #decode} call that returned {@link
+   *     Result#COMPLETE}
+   * @throws IllegalStateException if no request is complete
+   */
+  public HttpRequest takeRequest() {
+    if (state != State.COMPLETE) {
+      throw new IllegalStateException("No complete request available");
+    }
+    final HttpRequest complete = request;
+    reset();
+    return complete;
+  }
+
+  /**
+   * Returns the parse error after {@link Result#ERROR}.
+   *
+   * @return the parse error, or null if decoding has not failed
+   */
+  public HttpParseException getError() {
+    return error;
+  }
+
+  /**
+   * Reports whether any byte of a request has been consumed since the last reset.
+   *
+   * @return true if the decoder is in the middle of a request
+   */
+  public boolean isMidRequest() {
+    return state != State.REQUEST_LINE || lineStarted;
+  }
+
+  /**
+   * Signals that the peer closed its side of the connection.
+   *
+   * <p>EOF between requests is a graceful close. EOF inside a request is reported with the same
+   * message {@link HttpRequestParser} uses for a truncated stream.
+   *
+   * @return null on graceful close, otherwise the error describing the truncated request
+   */
+  public HttpParseException endOfInput() {
+    if (state == State.FAILED) {
+      return error;
+    }
+    if (!isMidRequest() || state == State.COMPLETE) {
+      return null;
+    }
+    final HttpParseException truncated = truncationError();
+    error = truncated;
+    state = State.FAILED;
+    return truncated;
+  }
+
+  /** Discards any partial request so the decoder can start afresh. */
+  public void reset() {
+    state = State.REQUEST_LINE;
+    clearLine();
+    method = null;
+    requestTarget = null;
+    version = null;
+    headers = null;
+    totalHeaderSize = 0;
+    headerCount = 0;
+    body = null;
+    bodyPosition = 0;
+    chunkedBodySize = 0;
+    chunkRemaining = 0;
+    request = null;
+    error = null;
+  }
+
+  private void step(final ByteBuffer input) throws HttpParseException {
+    switch (state) {
+      case REQUEST_LINE -> {
+        if (readLine(input, maxRequestLineLength)) {
+          onRequestLine();
+          clearLine();
+        }
+      }
+      case HEADERS -> {
+        if (readLine(input, maxHeaderSize - totalHeaderSize)) {
+          onHeaderLine();
+          clearLine();
+        }
+      }
+      case BODY -> readBody(input);
+      case CHUNK_SIZE -> {
+        if (readLine(input, MAX_CHUNK_SIZE_LINE_LENGTH)) {
+          onChunkSizeLine();
+          clearLine();
+        }
+      }
+      case CHUNK_DATA -> readChunkData(input);
+      case CHUNK_DATA_END -> {
+        if (readLine(input, 2)) {
+          if (lineLength != 0) {
+            throw HttpParseException.badRequest(MISSING_CHUNK_DATA_CRLF);
+          }
+          clearLine();
+          state = State.CHUNK_SIZE;
+        }
+      }
+      case TRAILERS -> {
+        if (readLine(input, maxHeaderSize)) {
+          final boolean endOfTrailers = lineLength == 0;
+          clearLine();
+          // Trailer headers are currently ignored
+          if (endOfTrailers) {
+            complete(new ByteArrayInputStream(body, 0, bodyPosition));
+          }
+        }
+      }
+      default -> throw new IllegalStateException("Unexpected decoder state: " + state);
+    }
+  }
+
+  /**
+   * Accumulates bytes of the current line until CRLF.
+   *
+   * <p>CR sets a flag but is not stored; LF after CR completes the line. The line length excludes
+   * CRLF and is checked against {@code maxLength} as each byte arrives.
+   *
+   * @return true once the line is complete, false if the input ran out first
+   */
+  private boolean readLine(final ByteBuffer input, final int maxLength)
+      throws HttpParseException {
+    while (input.hasRemaining()) {
+      final byte b = input.get();
+      lineStarted = true;
+
+      if (sawCr) {
+        if (b == LF) {
+          sawCr = false;
+          return true;
+        }
+        throw HttpParseException.badRequest(MALFORMED_LINE_ENDING);
+      }
+
+      if (b == CR) {
+        sawCr = true;
+        continue;
+      }
+
+      if (lineLength >= maxLength) {
+        throw HttpParseException.uriTooLong(
+            "Line exceeds maximum length of " + maxLength + " bytes (excluding CRLF)");
+      }
+
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, line.length * 2);
+      }
+      line[lineLength++] = b;
+    }
+    return false;
+  }
+
+  private void clearLine() {
+    lineLength = 0;
+    lineStarted = false;
+    sawCr = false;
+  }
+
+  /**
+   * Parses the request line in place: Method SP Request-URI SP HTTP-Version.
+   *
+   * <p>Method and version are matched against constant tables; only the request-target becomes a
+   * {@code String}.
+   */
+  private void onRequestLine() throws HttpParseException {
+    if (lineLength == 0) {
+      throw HttpParseException.badRequest(EMPTY_REQUEST_LINE);
+    }
+
+    final int firstSpace = indexOf(SP, 0, lineLength);
+    final int secondSpace = firstSpace < 0 ? -1 : indexOf(SP, firstSpace + 1, lineLength);
+    if (secondSpace < 0 || indexOf(SP, secondSpace + 1, lineLength) >= 0) {
+      throw HttpParseException.badRequest(INVALID_REQUEST_LINE);
+    }
+
+    method = HttpMethod.fromBytes(line, 0, firstSpace);
+    if (method == null) {
+      throw new HttpParseException(
+          "Unknown HTTP method: " + lineString(0, firstSpace), HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    final int targetStart = firstSpace + 1;
+    if (secondSpace == targetStart) {
+      throw HttpParseException.badRequest(EMPTY_REQUEST_TARGET);
+    }
+
+    final int versionStart = secondSpace + 1;
+    version = HttpVersion.fromBytes(line, versionStart, lineLength - versionStart);
+    if (version == null) {
+      throw HttpParseException.httpVersionNotSupported(
+          "Unsupported HTTP version: " + lineString(versionStart, lineLength));
+    }
+
+    // The root path is by far the most common target
+    requestTarget =
+        secondSpace - targetStart == 1 && line[targetStart] == '/'
+            ? ROOT_TARGET
+            : lineString(targetStart, secondSpace);
+
+    headers = new HttpHeaders();
+    state = State.HEADERS;
+  }
+
+  /**
+   * Parses one header field in place, or finishes the header section on an empty line.
+   *
+   * <p>Well-known names resolve to shared constants ({@link HeaderNames}); the value is trimmed by
+   * index and materialized once.
+   */
+  private void onHeaderLine() throws HttpParseException {
+    totalHeaderSize += lineLength + 2; // +2 for CRLF
+
+    // Empty line signals end of headers
+    if (lineLength == 0) {
+      onHeadersComplete();
+      return;
+    }
+
+    // Check header count limit
+    if (++headerCount > maxHeadersCount) {
+      throw HttpParseException.badRequest("Too many headers: exceeds limit of " + maxHeadersCount);
+    }
+
+    // Parse header field: Name: Value
+    final int colonIndex = indexOf(COLON, 0, lineLength);
+    if (colonIndex <= 0) {
+      throw HttpParseException.badRequest(MISSING_COLON);
+    }
+
+    final int nameStart = skipWhitespace(0, colonIndex);
+    final int nameEnd = trimWhitespace(nameStart, colonIndex);
+    if (nameStart == nameEnd) {
+      throw HttpParseException.badRequest(EMPTY_HEADER_NAME);
+    }
+
+    // Validate header field name (RFC 9110: token characters only)
+    if (!isValidHeaderName(nameStart, nameEnd)) {
+      throw HttpParseException.badRequest(
+          "Invalid header field name: " + lineString(nameStart, nameEnd));
+    }
+
+    final int valueStart = skipWhitespace(colonIndex + 1, lineLength);
+    final int valueEnd = trimWhitespace(valueStart, lineLength);
+
+    final String knownName = HeaderNames.lookup(line, nameStart, nameEnd - nameStart);
+    final String name = knownName != null ? knownName : lineString(nameStart, nameEnd);
+    // WHY add: Repeated fields are kept; framing fields are checked for conflicts once complete
+    headers.add(name, lineString(valueStart, valueEnd));
+  }
+
+  /** Validates the header section and selects how the body is framed. */
+  private void onHeadersComplete() throws HttpParseException {
+    // Check total header size limit
+    if (totalHeaderSize > maxHeaderSize) {
+      throw HttpParseException.badRequest(
+          "Headers too large: exceeds limit of " + maxHeaderSize + " bytes");
+    }
+
+    // Validate Host header (required in HTTP/1.1)
+    if (version == HttpVersion.HTTP_1_1 && !headers.contains("Host")) {
+      throw HttpParseException.badRequest(MISSING_HOST);
+    }
+    validateFramingFields();
+
+    // Check for Transfer-Encoding: chunked
+    final String transferEncoding = headers.get("Transfer-Encoding");
+    if ("chunked".equalsIgnoreCase(transferEncoding)) {
+      if (bodySource != null) {
+        complete(RequestBodyInputStream.chunked(bodySource, maxContentLength, maxHeaderSize));
+        return;
+      }
+      body = new byte[INITIAL_CHUNKED_BODY_CAPACITY];
+      state = State.CHUNK_SIZE;
+      return;
+    }
+
+    // Check for Content-Length
+    final String contentLengthStr = headers.get("Content-Length");
+    if (contentLengthStr == null) {
+      complete(null); // No body
+      return;
+    }
+
+    final long contentLength;
+    try {
+      contentLength = Long.parseLong(contentLengthStr);
+    } catch (final NumberFormatException e) {
+      throw HttpParseException.badRequest("Invalid Content-Length header: " + contentLengthStr);
+    }
+
+    if (contentLength < 0) {
+      throw HttpParseException.badRequest("Negative Content-Length: " + contentLength);
+    }
+
+    if (contentLength > maxContentLength) {
+      throw HttpParseException.payloadTooLarge(
+          "Content-Length " + contentLength + " exceeds limit of " + maxContentLength);
+    }
+
+    if (contentLength == 0) {
+      complete(null);
+      return;
+    }
+    if (bodySource != null) {
+      complete(RequestBodyInputStream.fixedLength(bodySource, contentLength));
+      return;
+    }
+    body = new byte[(int) contentLength];
+    state = State.BODY;
+  }
+
+  /**
+   * Rejects repeated fields that would make the request target or body length ambiguous.
+   *
+   * <p>WHY: Intermediaries may pick a different copy than we do, which is the basis of request
+   * smuggling (RFC 9112 Sections 3.2 and 6.3).
+   */
+  private void validateFramingFields() throws HttpParseException {
+    if (headers.count(HeaderNames.HOST) > 1) {
+      throw HttpParseException.badRequest(MULTIPLE_HOST);
+    }
+    if (headers.count(HeaderNames.TRANSFER_ENCODING) > 1) {
+      throw HttpParseException.badRequest(MULTIPLE_TRANSFER_ENCODING);
+    }
+    if (headers.count(HeaderNames.CONTENT_LENGTH) > 1) {
+      final List<String> lengths = headers.getAll(HeaderNames.CONTENT_LENGTH);
+      for (final String length : lengths) {
+        if (!length.equals(lengths.get(0))) {
+          throw HttpParseException.badRequest(CONFLICTING_CONTENT_LENGTH);
+        }
+      }
+    }
+  }
+
+  private void readBody(final ByteBuffer input) throws HttpParseException {
+    final int count = Math.min(input.remaining(), body.length - bodyPosition);
+    input.get(body, bodyPosition, count);
+    bodyPosition += count;
+    if (bodyPosition == body.length) {
+      complete(new ByteArrayInputStream(body));
+    }
+  }
+
+  /** Parses a chunk size line (hex, may include chunk extensions separated by semicolon). */
+  private void onChunkSizeLine() throws HttpParseException {
+    if (lineLength == 0) {
+      throw HttpParseException.badRequest(EMPTY_CHUNK_SIZE_LINE);
+    }
+
+    final int semicolonIndex = indexOf(SEMICOLON, 0, lineLength);
+    final int sizeEnd = semicolonIndex > 0 ? semicolonIndex : lineLength;
+    final int chunkSize = parseHex(skipWhitespace(0, sizeEnd), trimWhitespace(0, sizeEnd));
+    if (chunkSize < 0) {
+      throw HttpParseException.badRequest("Invalid chunk size: " + lineString(0, sizeEnd));
+    }
+
+    // Last chunk (size 0) signals end of body; trailer section follows
+    if (chunkSize == 0) {
+      state = State.TRAILERS;
+      return;
+    }
+
+    // Check total size limit
+    chunkedBodySize += chunkSize;
+    if (chunkedBodySize > maxContentLength) {
+      throw HttpParseException.payloadTooLarge(
+          "Chunked body size " + chunkedBodySize + " exceeds limit of " + maxContentLength);
+    }
+
+    // WHY grow here: Chunk data is copied once, straight into the body, instead of per chunk
+    if (chunkedBodySize > body.length) {
+      body = Arrays.copyOf(body, (int) Math.max(chunkedBodySize, (long) body.length * 2));
+    }
+    chunkRemaining = chunkSize;
+    state = State.CHUNK_DATA;
+  }
+
+  private void readChunkData(final ByteBuffer input) {
+    final int count = Math.min(input.remaining(), chunkRemaining);
+    input.get(body, bodyPosition, count);
+    bodyPosition += count;
+    chunkRemaining -= count;
+    if (chunkRemaining == 0) {
+      state = State.CHUNK_DATA_END;
+    }
+  }
+
+  /**
+   * Builds the request.
+   *
+   * @param requestBody the body, handed over without copying, or null if the request has none
+   */
+  private void complete(final InputStream requestBody) throws HttpParseException {
+    try {
+      request =
+          new HttpRequest(method, requestTarget, version, headers, requestBody, remoteAddress);
+    } catch (final IllegalArgumentException e) {
+      throw new HttpParseException(e.getMessage(), HttpStatus.BAD_REQUEST, e);
+    }
+    state = State.COMPLETE;
+  }
+
+  private HttpParseException truncationError() {
+    if (lineStarted) {
+      return HttpParseException.badRequest(TRUNCATED_LINE);
+    }
+    return switch (state) {
+      case HEADERS -> HttpParseException.badRequest(TRUNCATED_HEADERS);
+      case BODY ->
+          HttpParseException.badRequest(
+              "Unexpected end of stream: expected " + body.length + " bytes, got " + bodyPosition);
+      case CHUNK_SIZE -> HttpParseException.badRequest(TRUNCATED_BEFORE_CHUNK_SIZE);
+      case CHUNK_DATA ->
+          HttpParseException.badRequest(
+              "Unexpected end of stream reading chunk data: "
+                  + chunkRemaining
+                  + " bytes of the chunk missing");
+      case CHUNK_DATA_END -> HttpParseException.badRequest(TRUNCATED_AFTER_CHUNK_DATA);
+      case TRAILERS -> HttpParseException.badRequest(TRUNCATED_TRAILERS);
+      default -> HttpParseException.badRequest(TRUNCATED);
+    };
+  }
+
+  /**
+   * Validates header field name per RFC 9110.
+   *
+   * <p>Header field names must be tokens (RFC 9110 Section 5.1): tchar = "!" / "#" / "$" / "%" /
+   * "&" / "'" / "*" / "+" / "-" / "." / "^" / "_" / "`" / "|" / "~" / DIGIT / ALPHA
+   *
+   * @param from start of the name in the line buffer
+   * @param to end of the name (exclusive)
+   * @return true if valid token
+   */
+  private boolean isValidHeaderName(final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (!isTokenChar((char) (line[i] & 0xFF))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses a hexadecimal chunk size from the line buffer.
+   *
+   * @return the size, or -1 if the digits are missing, invalid or overflow an int
+   */
+  private int parseHex(final int from, final int to) {
+    if (from >= to || to - from > 8) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      final int digit = Character.digit(line[i], 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value > Integer.MAX_VALUE ? -1 : (int) value;
+  }
+
+  private int indexOf(final byte b, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (line[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the first index in [from, to) that is not whitespace, like {@link String#trim()}. */
+  private int skipWhitespace(final int from, final int to) {
+    int i = from;
+    while (i < to && (line[i] & 0xFF) <= ' ') {
+      i++;
+    }
+    return i;
+  }
+
+  /** Returns the end of [from, to) with trailing whitespace removed, like {@link String#trim()}. */
+  private int trimWhitespace(final int from, final int to) {
+    int i = to;
+    while (i > from && (line[i - 1] & 0xFF) <= ' ') {
+      i--;
+    }
+    return i;
+  }
+
+  private String lineString(final int from, final int to) {
+    return new String(line, from, to - from, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Checks if character is a valid token character per RFC 9110.
+   *
+   * @param c the character
+   * @return true if valid token character
+   */
+  private boolean isTokenChar(final char c) {
+    // ALPHA / DIGIT
+    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+      return true;
+    }
+    // Special characters
+    return c == '!' || c == '#' || c == '$' || c == '%' || c == '&' || c == '\'' || c == '*'
+        || c == '+' || c == '-' || c == '.' || c == '^' || c == '_' || c == '`' || c == '|'
+        || c == '~';
+  }
+}
@@ -0,0 +1,286 @@
+package ch.alejandrogarciahub.webserver.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Request body read from the connection on demand.
+ *
+ * <p>The stream is bounded by the body framing: it ends after {@code Content-Length} bytes, or
+ * after the last chunk and trailer section of a chunked body, and never reads into the next
+ * pipelined request. Chunked framing is decoded incrementally, so the body is never held in memory
+ * as a whole.
+ *
+ * <p>Malformed framing, a truncated body and an oversized chunked body are reported as {@link
+ * HttpParseException} with the same messages as {@link HttpRequestDecoder}. Once failed, every
+ * further read reports the same error.
+ *
+ * <p><strong>Thread Safety:</strong> This stream is <em>not</em> thread-safe. It belongs to the
+ * thread serving its request.
+ */
+final class RequestBodyInputStream extends InputStream {
+
+  private enum State {
+    FIXED,
+    CHUNK_SIZE,
+    CHUNK_DATA,
+    CHUNK_DATA_END,
+    TRAILERS,
+    END,
+    FAILED
+  }
+
+  // Chunk size lines are short: hex digits plus optional extensions
+  private static final int MAX_CHUNK_SIZE_LINE_LENGTH = 1024;
+  private static final int SKIP_BUFFER_SIZE = 2048;
+
+  private static final int CR = '\r';
+  private static final int LF = '\n';
+
+  private final InputStream source;
+  // Content-Length of a fixed-length body, or the size limit of a chunked body
+  private final long maxContentLength;
+  private final int maxTrailerSize;
+  private final byte[] single = new byte[1];
+
+  private State state;
+  // Bytes left in the fixed-length body or the current chunk
+  private long remaining;
+  private long chunkedBodySize;
+  private int trailerSize;
+  private HttpParseException error;
+
+  private byte[] line = new byte[64];
+  private int lineLength;
+
+  private RequestBodyInputStream(
+      final InputStream source,
+      final State state,
+      final long remaining,
+      final long maxContentLength,
+      final int maxTrailerSize) {
+    this.source = source;
+    this.state = state;
+    this.remaining = remaining;
+    this.maxContentLength = maxContentLength;
+    this.maxTrailerSize = maxTrailerSize;
+  }
+
+  /**
+   * Creates a body of exactly {@code length} bytes.
+   *
+   * @param source the connection input, positioned at the first body byte
+   * @param length the Content-Length, already checked against the limit
+   * @return the body stream
+   */
+  static RequestBodyInputStream fixedLength(final InputStream source, final long length) {
+    return new RequestBodyInputStream(source, State.FIXED, length, length, 0);
+  }
+
+  /**
+   * Creates a chunked body.
+   *
+   * @param source the connection input, positioned at the first chunk size line
+   * @param maxContentLength maximum decoded body size in bytes
+   * @param maxTrailerSize maximum trailer section size in bytes
+   * @return the body stream
+   */
+  static RequestBodyInputStream chunked(
+      final InputStream source, final long maxContentLength, final int maxTrailerSize) {
+    return new RequestBodyInputStream(
+        source, State.CHUNK_SIZE, 0, maxContentLength, maxTrailerSize);
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    try {
+      while (true) {
+        switch (state) {
+          case FIXED, CHUNK_DATA -> {
+            return readData(buffer, offset, length);
+          }
+          case CHUNK_SIZE -> readChunkSize();
+          case CHUNK_DATA_END -> {
+            if (readLine(2) != 0) {
+              throw HttpParseException.badRequest("Missing CRLF after chunk data");
+            }
+            state = State.CHUNK_SIZE;
+          }
+          case TRAILERS -> readTrailer();
+          case END -> {
+            return -1;
+          }
+          default -> throw error;
+        }
+      }
+    } catch (final HttpParseException e) {
+      error = e;
+      state = State.FAILED;
+      throw e;
+    }
+  }
+
+  @Override
+  public long skip(final long count) throws IOException {
+    if (count <= 0) {
+      return 0;
+    }
+    final byte[] scratch = new byte[(int) Math.min(count, SKIP_BUFFER_SIZE)];
+    long skipped = 0;
+    while (skipped < count) {
+      final int read = read(scratch, 0, (int) Math.min(count - skipped, scratch.length));
+      if (read == -1) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (state != State.FIXED && state != State.CHUNK_DATA) {
+      return 0;
+    }
+    return (int) Math.min(source.available(), remaining);
+  }
+
+  /**
+   * Reads and discards the rest of the body, leaving the connection at the next request.
+   *
+   * @throws IOException if the body is malformed or truncated, or reading fails
+   */
+  void discardRemaining() throws IOException {
+    if (state == State.END) {
+      return;
+    }
+    skip(Long.MAX_VALUE);
+  }
+
+  private int readData(final byte[] buffer, final int offset, final int length)
+      throws IOException {
+    final int read = source.read(buffer, offset, (int) Math.min(length, remaining));
+    if (read == -1) {
+      throw truncationError();
+    }
+    remaining -= read;
+    if (remaining == 0) {
+      state = state == State.FIXED ? State.END : State.CHUNK_DATA_END;
+    }
+    return read;
+  }
+
+  /** Parses a chunk size line (hex, may include chunk extensions separated by semicolon). */
+  private void readChunkSize() throws IOException {
+    final int length = readLine(MAX_CHUNK_SIZE_LINE_LENGTH);
+    if (length == 0) {
+      throw HttpParseException.badRequest("Empty chunk size line");
+    }
+
+    int sizeEnd = 0;
+    while (sizeEnd < length && line[sizeEnd] != ';') {
+      sizeEnd++;
+    }
+    final String sizeText = new String(line, 0, sizeEnd, StandardCharsets.ISO_8859_1).trim();
+    final long chunkSize = parseHex(sizeText);
+    if (chunkSize < 0) {
+      throw HttpParseException.badRequest("Invalid chunk size: " + sizeText);
+    }
+
+    // Last chunk (size 0) signals end of body; trailer section follows
+    if (chunkSize == 0) {
+      state = State.TRAILERS;
+      return;
+    }
+
+    chunkedBodySize += chunkSize;
+    if (chunkedBodySize > maxContentLength) {
+      throw HttpParseException.payloadTooLarge(
+          "Chunked body size " + chunkedBodySize + " exceeds limit of " + maxContentLength);
+    }
+    remaining = chunkSize;
+    state = State.CHUNK_DATA;
+  }
+
+  /** Reads one trailer line; trailer fields are currently ignored. */
+  private void readTrailer() throws IOException {
+    final int length = readLine(maxTrailerSize - trailerSize);
+    trailerSize += length + 2; // +2 for CRLF
+    if (length == 0) {
+      state = State.END;
+    }
+  }
+
+  /**
+   * Reads a line terminated by CRLF into {@link #line}.
+   *
+   * @return the line length, excluding CRLF
+   */
+  private int readLine(final int maxLength) throws IOException {
+    lineLength = 0;
+    while (true) {
+      final int b = source.read();
+      if (b == -1) {
+        throw truncationError();
+      }
+      if (b == CR) {
+        if (source.read() != LF) {
+          throw HttpParseException.badRequest("Malformed line ending: expected LF after CR");
+        }
+        return lineLength;
+      }
+      if (lineLength >= maxLength) {
+        throw HttpParseException.badRequest(
+            "Line exceeds maximum length of " + maxLength + " bytes (excluding CRLF)");
+      }
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, line.length * 2);
+      }
+      line[lineLength++] = (byte) b;
+    }
+  }
+
+  /** Returns the chunk size, or -1 if the digits are missing, invalid or overflow an int. */
+  private static long parseHex(final String digits) {
+    if (digits.isEmpty() || digits.length() > 8) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = 0; i < digits.length(); i++) {
+      final int digit = Character.digit(digits.charAt(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value > Integer.MAX_VALUE ? -1 : value;
+  }
+
+  private HttpParseException truncationError() {
+    return switch (state) {
+      case FIXED ->
+          HttpParseException.badRequest(
+              "Unexpected end of stream: expected "
+                  + maxContentLength
+                  + " bytes, got "
+                  + (maxContentLength - remaining));
+      case CHUNK_SIZE ->
+          HttpParseException.badRequest("Unexpected end of stream before chunk size");
+      case CHUNK_DATA ->
+          HttpParseException.badRequest("Unexpected end of stream reading chunk data");
+      case CHUNK_DATA_END ->
+          HttpParseException.badRequest("Unexpected end of stream after chunk data");
+      default -> HttpParseException.badRequest("Unexpected end of stream in chunk trailers");
+    };
+  }
+}
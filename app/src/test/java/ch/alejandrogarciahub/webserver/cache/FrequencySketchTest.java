@@ -0,0 +1,48 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class FrequencySketchTest {
+
+  @Test
+  void shouldEstimateIncrementedFrequency() {
+    final FrequencySketch sketch = new FrequencySketch(512);
+
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("/hot.js");
+    }
+    sketch.increment("/cold.css");
+
+    assertThat(sketch.frequency("/hot.js")).isEqualTo(5);
+    assertThat(sketch.frequency("/cold.css")).isEqualTo(1);
+    assertThat(sketch.frequency("/never.png")).isEqualTo(0);
+  }
+
+  @Test
+  void shouldSaturateAtFifteen() {
+    final FrequencySketch sketch = new FrequencySketch(512);
+
+    for (int i = 0; i < 100; i++) {
+      sketch.increment("/hot.js");
+    }
+
+    assertThat(sketch.frequency("/hot.js")).isEqualTo(15);
+  }
+
+  @Test
+  void shouldAgeCountersAfterSamplePeriod() {
+    final FrequencySketch sketch = new FrequencySketch(16);
+    for (int i = 0; i < 8; i++) {
+      sketch.increment("/old.js");
+    }
+
+    // Sample size is ten times the table size (16), so this triggers at least one reset
+    for (int i = 0; i < 200; i++) {
+      sketch.increment("/key-" + i);
+    }
+
+    assertThat(sketch.frequency("/old.js")).isLessThan(8);
+  }
+}
@@ -0,0 +1,96 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link MappedFileCache} focusing on hotness gating, remapping and the size cap. */
+class MappedFileCacheTest {
+
+  private static final Function<Path, String> BINARY = path -> "application/octet-stream";
+
+  @TempDir Path tempDir;
+
+  @Test
+  void shouldMapOnlyFromSecondRequest() throws IOException {
+    final MappedFileCache cache = new MappedFileCache(100, 10_000);
+    final Path file = write("bundle.js", 'a', 1_000);
+
+    assertThat(get(cache, file)).isNull();
+    final CachedFile mapped = get(cache, file);
+
+    assertThat(mapped).isNotNull();
+    assertThat(text(mapped)).isEqualTo("a".repeat(1_000));
+    assertThat(get(cache, file) == mapped).isTrue();
+    assertThat(cache.mappedBytes()).isEqualTo(1_000);
+  }
+
+  @Test
+  void shouldRemapWhenFileChanges() throws IOException {
+    final MappedFileCache cache = new MappedFileCache(100, 10_000);
+    final Path file = write("bundle.js", 'a', 1_000);
+    get(cache, file);
+    final CachedFile before = get(cache, file);
+
+    write("bundle.js", 'b', 1_200);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+    final CachedFile after = get(cache, file);
+
+    assertThat(text(after)).isEqualTo("b".repeat(1_200));
+    assertThat(cache.mappedBytes()).isEqualTo(1_200);
+    // Old mapping stays readable for responses still writing it
+    assertThat(before.content().remaining()).isEqualTo(1_000);
+  }
+
+  @Test
+  void shouldDropLeastRecentlyUsedMappingsAboveCap() throws IOException {
+    final MappedFileCache cache = new MappedFileCache(100, 2_500);
+    final Path first = write("a.bin", 'a', 1_000);
+    final Path second = write("b.bin", 'b', 1_000);
+    final Path third = write("c.bin", 'c', 1_000);
+
+    for (final Path file : new Path[] {first, first, second, second, third, third}) {
+      get(cache, file);
+    }
+
+    assertThat(cache.contains(first)).isFalse();
+    assertThat(cache.contains(second)).isTrue();
+    assertThat(cache.contains(third)).isTrue();
+    assertThat(cache.mappedBytes()).isLessThanOrEqualTo(2_500);
+  }
+
+  @Test
+  void shouldIgnoreFilesBelowThreshold() throws IOException {
+    final MappedFileCache cache = new MappedFileCache(4_096, 10_000);
+    final Path file = write("small.css", 's', 100);
+
+    assertThat(cache.isMappable(100)).isFalse();
+    get(cache, file);
+    assertThat(get(cache, file)).isNull();
+  }
+
+  private Path write(final String name, final char fill, final int size) throws IOException {
+    return Files.writeString(
+        tempDir.resolve(name), String.valueOf(fill).repeat(size), StandardCharsets.US_ASCII);
+  }
+
+  private static CachedFile get(final MappedFileCache cache, final Path file) throws IOException {
+    return cache.get(file, Files.readAttributes(file, BasicFileAttributes.class), BINARY);
+  }
+
+  private static String text(final CachedFile cached) {
+    final ByteBuffer content = cached.content();
+    final byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,188 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.alejandrogarciahub.webserver.observability.HttpMetricsRecorder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link StaticFileCache} focusing on invalidation, byte budget and scan resistance.
+ */
+class StaticFileCacheTest {
+
+  private static final Function<Path, String> TEXT = path -> "text/plain";
+
+  @TempDir Path tempDir;
+
+  private HttpMetricsRecorder metrics;
+
+  @BeforeEach
+  void setUp() {
+    metrics = new HttpMetricsRecorder();
+  }
+
+  @Test
+  void shouldServeSecondRequestFromCache() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(10_000, 1_000, metrics);
+    final Path file = write("a.txt", "hello");
+
+    final CachedFile first = get(cache, file);
+    final CachedFile second = get(cache, file);
+
+    assertThat(text(first)).isEqualTo("hello");
+    assertThat(second == first).isTrue();
+    assertThat(second.contentType()).isEqualTo("text/plain");
+    assertThat(metrics.snapshot().cacheCounts().get("misses")).isEqualTo(1);
+    assertThat(metrics.snapshot().cacheCounts().get("hits")).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReloadWhenFileChanges() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(10_000, 1_000, metrics);
+    final Path file = write("a.txt", "v1");
+    get(cache, file);
+
+    Files.writeString(file, "version 2", StandardCharsets.US_ASCII);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+    assertThat(text(get(cache, file))).isEqualTo("version 2");
+    assertThat(metrics.snapshot().cacheCounts().get("misses")).isEqualTo(2);
+  }
+
+  @Test
+  void shouldNotCacheFilesAboveSizeLimit() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(10_000, 4, metrics);
+    final Path file = write("big.txt", "too large");
+
+    assertThat(cache.isCacheable(Files.size(file))).isFalse();
+    assertThat(get(cache, file)).isNull();
+    assertThat(cache.weightedSize()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldStayWithinByteBudget() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(5_000, 1_000, metrics);
+
+    for (int i = 0; i < 40; i++) {
+      final Path file = write("f" + i + ".txt", "x".repeat(900));
+      get(cache, file);
+      get(cache, file);
+    }
+    // Once full, a file is only loaded when it is requested more often than the entries it evicts
+    final Path popular = write("popular.txt", "p".repeat(900));
+    for (int i = 0; i < 5; i++) {
+      get(cache, popular);
+    }
+
+    assertThat(cache.contains(popular)).isTrue();
+
+    assertThat(cache.weightedSize()).isLessThanOrEqualTo(5_000);
+    assertThat(metrics.snapshot().cacheCounts().get("evictions")).isGreaterThan(0);
+  }
+
+  @Test
+  void shouldKeepHotEntryDuringOneOffScan() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(10_000, 2_000, metrics);
+    final Path hot = write("hot.js", "h".repeat(1_000));
+    for (int i = 0; i < 10; i++) {
+      get(cache, hot);
+    }
+
+    for (int i = 0; i < 50; i++) {
+      get(cache, write("scan" + i + ".bin", "s".repeat(1_500)));
+    }
+
+    assertThat(cache.contains(hot)).isTrue();
+    assertThat(text(get(cache, hot))).startsWith("hhh");
+  }
+
+  @Test
+  void shouldServeLosingCandidateFromDiskWithoutLoadingIt() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(5_000, 1_000, metrics);
+    for (int i = 0; i < 5; i++) {
+      final Path file = write("f" + i + ".txt", "x".repeat(900));
+      get(cache, file);
+      get(cache, file);
+    }
+    final long sizeBefore = cache.weightedSize();
+
+    final Path oneOff = write("one-off.txt", "o".repeat(900));
+
+    assertThat(get(cache, oneOff)).isNull();
+    assertThat(cache.contains(oneOff)).isFalse();
+    assertThat(cache.weightedSize()).isEqualTo(sizeBefore);
+    assertThat(metrics.snapshot().cacheCounts().get("evictions")).isEqualTo(0);
+  }
+
+  @Test
+  void shouldServeConcurrentHitsFromOneEntry() throws Exception {
+    final StaticFileCache cache = new StaticFileCache(10_000, 1_000, metrics);
+    final Path file = write("a.txt", "hello");
+    final CachedFile loaded = get(cache, file);
+    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+    final Thread[] threads = new Thread[8];
+    final AtomicInteger mismatches = new AtomicInteger();
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 1_000; i++) {
+                      try {
+                        if (cache.get(file, attributes, TEXT) != loaded) {
+                          mismatches.incrementAndGet();
+                        }
+                      } catch (final IOException e) {
+                        mismatches.incrementAndGet();
+                      }
+                    }
+                  });
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(mismatches.get()).isEqualTo(0);
+    assertThat(metrics.snapshot().cacheCounts().get("hits")).isEqualTo(8 * 1_000);
+    assertThat(cache.weightedSize()).isEqualTo(5);
+  }
+
+  @Test
+  void shouldHandOutIndependentViews() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(10_000, 1_000, metrics);
+    final CachedFile cached = get(cache, write("a.txt", "shared"));
+
+    final ByteBuffer first = cached.content();
+    first.position(first.limit());
+
+    assertThat(first.isReadOnly()).isTrue();
+    assertThat(cached.content().remaining()).isEqualTo(6);
+  }
+
+  private Path write(final String name, final String content) throws IOException {
+    return Files.writeString(tempDir.resolve(name), content, StandardCharsets.US_ASCII);
+  }
+
+  private static CachedFile get(final StaticFileCache cache, final Path file) throws IOException {
+    return cache.get(file, Files.readAttributes(file, BasicFileAttributes.class), TEXT);
+  }
+
+  private static String text(final CachedFile cached) {
+    final ByteBuffer content = cached.content();
+    final byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
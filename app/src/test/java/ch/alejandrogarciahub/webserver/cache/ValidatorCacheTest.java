@@ -0,0 +1,82 @@
+package ch.alejandrogarciahub.webserver.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.alejandrogarciahub.webserver.cache.ValidatorCache.Validators;
+import ch.alejandrogarciahub.webserver.http.EntityTag;
+import ch.alejandrogarciahub.webserver.http.HttpDate;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link ValidatorCache} focusing on reuse per file version and the entry bound. */
+class ValidatorCacheTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void shouldRenderValidatorsOfFileVersion() throws IOException {
+    final ValidatorCache cache = new ValidatorCache(16);
+    final Path file = write("a.txt", "hello");
+    final long lastModifiedMillis = Files.getLastModifiedTime(file).toMillis();
+
+    final Validators validators = get(cache, file);
+
+    assertThat(validators.etag()).isEqualTo(EntityTag.forFile(5, lastModifiedMillis));
+    assertThat(validators.lastModifiedDate()).isEqualTo(HttpDate.format(lastModifiedMillis));
+  }
+
+  @Test
+  void shouldReuseValidatorsWhileFileIsUnchanged() throws IOException {
+    final ValidatorCache cache = new ValidatorCache(16);
+    final Path file = write("a.txt", "hello");
+
+    final Validators first = get(cache, file);
+
+    assertThat(get(cache, file) == first).isTrue();
+  }
+
+  @Test
+  void shouldRenderAgainWhenFileChanges() throws IOException {
+    final ValidatorCache cache = new ValidatorCache(16);
+    final Path file = write("a.txt", "v1");
+    final Validators first = get(cache, file);
+
+    Files.writeString(file, "version 2", StandardCharsets.US_ASCII);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+    final Validators second = get(cache, file);
+    assertThat(second.etag()).isNotEqualTo(first.etag());
+    assertThat(second.lastModifiedDate()).isNotEqualTo(first.lastModifiedDate());
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldStayWithinEntryBound() throws IOException {
+    final ValidatorCache cache = new ValidatorCache(4);
+
+    for (int i = 0; i < 10; i++) {
+      get(cache, write("f" + i + ".txt", "x"));
+      assertThat(cache.size()).isLessThanOrEqualTo(4);
+    }
+  }
+
+  @Test
+  void shouldRejectNonPositiveBound() {
+    assertThatThrownBy(() -> new ValidatorCache(0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private Path write(final String name, final String content) throws IOException {
+    return Files.writeString(tempDir.resolve(name), content, StandardCharsets.US_ASCII);
+  }
+
+  private static Validators get(final ValidatorCache cache, final Path file) throws IOException {
+    return cache.get(file, Files.readAttributes(file, BasicFileAttributes.class));
+  }
+}
@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import ch.alejandrogarciahub.webserver.cache.MappedFileCache;
+import ch.alejandrogarciahub.webserver.cache.StaticFileCache;
 import ch.alejandrogarciahub.webserver.http.HttpHeaders;
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpRequest;
@@ -13,6 +15,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -285,6 +288,183 @@ class FileServerHandlerTest {
     assertThat(writeBody(response)).isEqualTo("Hello World");
   }
 
+  // Conditional GET
+
+  @Test
+  void shouldSendValidatorsWithFullResponse() throws IOException {
+    final HttpResponse response = handler.handle(createGetRequest("/test.txt"));
+
+    assertThat(getHeaders(response).get("ETag")).startsWith("\"");
+    assertThat(getHeaders(response).get("Last-Modified")).endsWith("GMT");
+  }
+
+  @Test
+  void shouldReturn304WhenEtagMatches() throws IOException {
+    final String etag = getHeaders(handler.handle(createGetRequest("/test.txt"))).get("ETag");
+
+    final HttpRequest conditional = createGetRequest("/test.txt");
+    when(conditional.getHeader("If-None-Match")).thenReturn("\"other\", " + etag);
+    final HttpResponse response = handler.handle(conditional);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(getHeaders(response).get("ETag")).isEqualTo(etag);
+    assertThat(getContentLength(response)).isNull();
+    assertThat(writeBody(response)).isEmpty();
+  }
+
+  @Test
+  void shouldReturn304WhenNotModifiedSince() throws IOException {
+    final String lastModified =
+        getHeaders(handler.handle(createGetRequest("/test.txt"))).get("Last-Modified");
+
+    final HttpRequest conditional = createGetRequest("/test.txt");
+    when(conditional.getHeader("If-Modified-Since")).thenReturn(lastModified);
+
+    assertThat(getStatus(handler.handle(conditional))).isEqualTo(HttpStatus.NOT_MODIFIED);
+  }
+
+  @Test
+  void shouldServeFullResponseWhenValidatorsDiffer() throws IOException {
+    final HttpRequest conditional = createGetRequest("/test.txt");
+    when(conditional.getHeader("If-None-Match")).thenReturn("\"stale\"");
+    // If-None-Match takes precedence, so a matching date must not produce 304
+    when(conditional.getHeader("If-Modified-Since")).thenReturn("Fri, 31 Dec 9999 23:59:59 GMT");
+
+    final HttpResponse response = handler.handle(conditional);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.OK);
+    assertThat(writeBody(response)).isEqualTo("Hello World");
+  }
+
+  // Range Requests
+
+  @Test
+  void shouldServeSingleRange() throws IOException {
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=6-");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    assertThat(getHeaders(response).get("Content-Range")).isEqualTo("bytes 6-10/11");
+    assertThat(getContentLength(response)).isEqualTo("5");
+    assertThat(writeBody(response)).isEqualTo("World");
+  }
+
+  @Test
+  void shouldServeMultipleRangesAsMultipart() throws IOException {
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=0-4, -5");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+    final String contentType = getContentType(response);
+    assertThat(contentType).startsWith("multipart/byteranges; boundary=");
+    final String boundary = contentType.substring(contentType.indexOf('=') + 1);
+    final String body = writeBody(response);
+    assertThat(body)
+        .contains("Content-Range: bytes 0-4/11\r\n\r\nHello\r\n--" + boundary)
+        .contains("Content-Range: bytes 6-10/11\r\n\r\nWorld\r\n--" + boundary + "--\r\n");
+    assertThat(getContentLength(response)).isEqualTo(String.valueOf(body.length()));
+  }
+
+  @Test
+  void shouldReturn416WhenNoRangeIsSatisfiable() throws IOException {
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=100-200");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.RANGE_NOT_SATISFIABLE);
+    assertThat(getHeaders(response).get("Content-Range")).isEqualTo("bytes */11");
+  }
+
+  @Test
+  void shouldServeFullResponseWhenIfRangeIsStale() throws IOException {
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=0-4");
+    when(request.getHeader("If-Range")).thenReturn("\"stale\"");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.OK);
+    assertThat(writeBody(response)).isEqualTo("Hello World");
+  }
+
+  @Test
+  void shouldServeRangeWhenIfRangeMatches() throws IOException {
+    final String etag = getHeaders(handler.handle(createGetRequest("/test.txt"))).get("ETag");
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=0-4");
+    when(request.getHeader("If-Range")).thenReturn(etag);
+
+    assertThat(writeBody(handler.handle(request))).isEqualTo("Hello");
+  }
+
+  @Test
+  void shouldServeRangeFromCache() throws IOException {
+    final FileServerHandler cachingHandler =
+        new FileServerHandler(tempDir, new StaticFileCache(64 * 1024, 4 * 1024, null));
+    cachingHandler.handle(createGetRequest("/test.txt"));
+    final HttpRequest request = createGetRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=-5");
+
+    assertThat(writeBody(cachingHandler.handle(request))).isEqualTo("World");
+  }
+
+  @Test
+  void shouldIgnoreRangeForHead() throws IOException {
+    final HttpRequest request = createHeadRequest("/test.txt");
+    when(request.getHeader("Range")).thenReturn("bytes=0-4");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(getStatus(response)).isEqualTo(HttpStatus.OK);
+    assertThat(getContentLength(response)).isEqualTo("11");
+    assertThat(getHeaders(response).get("Accept-Ranges")).isEqualTo("bytes");
+  }
+
+  // Content Cache
+
+  @Test
+  void shouldServeCachedFileAndPickUpChanges() throws IOException {
+    final StaticFileCache cache = new StaticFileCache(64 * 1024, 4 * 1024, null);
+    final FileServerHandler cachingHandler = new FileServerHandler(tempDir, cache);
+
+    final HttpResponse first = cachingHandler.handle(createGetRequest("/test.txt"));
+    assertThat(writeBody(first)).isEqualTo("Hello World");
+    assertThat(getContentType(first)).contains("text/plain");
+    assertThat(cache.contains(tempDir.toAbsolutePath().normalize().resolve("test.txt"))).isTrue();
+
+    // Modified file must not be served stale
+    final Path file = tempDir.resolve("test.txt");
+    Files.writeString(file, "Hello Again");
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+    final HttpResponse second = cachingHandler.handle(createGetRequest("/test.txt"));
+    assertThat(writeBody(second)).isEqualTo("Hello Again");
+    assertThat(getContentLength(second)).isEqualTo("11");
+  }
+
+  @Test
+  void shouldServeHotLargeFileFromSharedMapping() throws IOException {
+    final MappedFileCache mappedFiles = new MappedFileCache(512, 64 * 1024);
+    final StaticFileCache cache = new StaticFileCache(64 * 1024, 256, null);
+    final FileServerHandler mappingHandler = new FileServerHandler(tempDir, cache, mappedFiles);
+    Files.writeString(tempDir.resolve("bundle.js"), "b".repeat(2048));
+
+    // First request uses sendfile, the second maps the now-hot file
+    assertThat(writeBody(mappingHandler.handle(createGetRequest("/bundle.js"))))
+        .isEqualTo("b".repeat(2048));
+    final HttpResponse mapped = mappingHandler.handle(createGetRequest("/bundle.js"));
+
+    assertThat(writeBody(mapped)).isEqualTo("b".repeat(2048));
+    assertThat(getContentLength(mapped)).isEqualTo("2048");
+    assertThat(mappedFiles.contains(tempDir.toAbsolutePath().normalize().resolve("bundle.js")))
+        .isTrue();
+  }
+
   // Helper Methods
 
   private HttpRequest createGetRequest(final String path) {
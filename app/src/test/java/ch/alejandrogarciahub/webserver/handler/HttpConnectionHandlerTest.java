@@ -81,10 +81,11 @@ class HttpConnectionHandlerTest {
 
     verify(mockSocket).close();
     verify(mockMetrics).connectionOpened();
-    verify(mockMetrics).connectionClosed();
+    verify(mockMetrics).connectionClosed(Mockito.eq(1), Mockito.anyLong());
     verify(mockMetrics)
         .recordRequest(
             Mockito.eq(HttpMethod.GET),
+            Mockito.anyInt(),
             Mockito.eq(HttpStatus.OK),
             Mockito.anyLong(),
             Mockito.anyLong());
@@ -111,8 +112,9 @@ class HttpConnectionHandlerTest {
 
     verify(mockRequestHandler, Mockito.times(3)).handle(any());
     verify(mockSocket).close();
+    verify(mockMetrics).connectionClosed(Mockito.eq(3), Mockito.anyLong());
     verify(mockMetrics, Mockito.atLeastOnce())
-        .recordRequest(any(), any(), Mockito.anyLong(), Mockito.anyLong());
+        .recordRequest(any(), Mockito.anyInt(), any(), Mockito.anyLong(), Mockito.anyLong());
   }
 
   @Test
@@ -126,7 +128,7 @@ class HttpConnectionHandlerTest {
 
     verify(mockSocket).close();
     verify(mockMetrics).connectionOpened();
-    verify(mockMetrics).connectionClosed();
+    verify(mockMetrics).connectionClosed(Mockito.eq(0), Mockito.anyLong());
     verifyNoMoreInteractions(accessLogger);
   }
 
@@ -151,6 +153,7 @@ class HttpConnectionHandlerTest {
     verify(mockMetrics)
         .recordRequest(
             Mockito.eq(null),
+            Mockito.eq(HttpRequest.NO_ROUTE),
             Mockito.eq(HttpStatus.BAD_REQUEST),
             Mockito.anyLong(),
             Mockito.anyLong());
@@ -172,6 +175,7 @@ class HttpConnectionHandlerTest {
     verify(mockMetrics)
         .recordRequest(
             Mockito.eq(null),
+            Mockito.eq(HttpRequest.NO_ROUTE),
             Mockito.eq(HttpStatus.REQUEST_TIMEOUT),
             Mockito.anyLong(),
             Mockito.eq(0L));
@@ -194,6 +198,7 @@ class HttpConnectionHandlerTest {
     verify(mockMetrics)
         .recordRequest(
             Mockito.eq(null),
+            Mockito.eq(HttpRequest.NO_ROUTE),
             Mockito.eq(HttpStatus.INTERNAL_SERVER_ERROR),
             Mockito.anyLong(),
             Mockito.anyLong());
@@ -293,6 +298,60 @@ class HttpConnectionHandlerTest {
     verify(mockParser, Mockito.times(3)).parse(any(InputStream.class));
   }
 
+  @Test
+  void shouldCloseWhenUnreadBodyIsMalformed() throws IOException {
+    // The response is already written; a broken body must not be parsed as the next request
+    final HttpRequest request = createRequest(HttpMethod.POST, "/", HttpVersion.HTTP_1_1, true);
+    final HttpResponse response = new HttpResponse().status(HttpStatus.OK);
+
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream("requests".getBytes()));
+    when(mockParser.parse(any(InputStream.class))).thenReturn(request).thenReturn(request);
+    Mockito.doThrow(HttpParseException.badRequest("Missing CRLF after chunk data"))
+        .when(mockParser)
+        .discardUnreadBody();
+    when(mockRequestHandler.handle(request)).thenReturn(response);
+
+    handler.handle(mockSocket);
+
+    verify(mockParser, Mockito.times(1)).parse(any(InputStream.class));
+    assertThat(outputStream.toString()).startsWith("HTTP/1.1 200 OK").doesNotContain("Bad Request");
+    verify(mockSocket).close();
+  }
+
+  @Test
+  void shouldAnswerOversizedChunkedBodyReadByHandlerWith413() throws IOException {
+    // Bodies are streamed, so the limit is only hit while the handler reads the body
+    final HttpRequestParser parser = new HttpRequestParser(1024, 4096, 50, 16);
+    handler =
+        new HttpConnectionHandler(
+            request -> new HttpResponse().body(request.readBody()),
+            parser,
+            5000,
+            mockMetrics,
+            observabilityConfig,
+            accessLogger);
+    final String request =
+        "POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "20\r\n"
+            + "x".repeat(32)
+            + "\r\n0\r\n\r\n";
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream(request.getBytes()));
+
+    handler.handle(mockSocket);
+
+    assertThat(outputStream.toString())
+        .startsWith("HTTP/1.1 413 Payload Too Large")
+        .contains("Connection: close");
+    verify(mockSocket).close();
+    verify(mockMetrics)
+        .recordRequest(
+            Mockito.eq(HttpMethod.POST),
+            Mockito.eq(HttpRequest.NO_ROUTE),
+            Mockito.eq(HttpStatus.PAYLOAD_TOO_LARGE),
+            Mockito.anyLong(),
+            Mockito.anyLong());
+  }
+
   // Version Matching
 
   @Test
@@ -311,6 +370,128 @@ class HttpConnectionHandlerTest {
     assertThat(output).startsWith("HTTP/1.0");
   }
 
+  // Pipelining - Responses to buffered requests are coalesced
+
+  @Test
+  void shouldCoalesceResponsesWhileRequestsAreBuffered() throws IOException {
+    final WriteCountingStream socketOutput = new WriteCountingStream();
+    when(mockSocket.getOutputStream()).thenReturn(socketOutput);
+    // Parser is mocked, so the input never drains: every response stays in the pipeline buffer
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream("pipelined".getBytes()));
+    when(mockParser.parse(any(InputStream.class)))
+        .thenReturn(createRequest(HttpMethod.GET, "/a", HttpVersion.HTTP_1_1, true))
+        .thenReturn(createRequest(HttpMethod.GET, "/b", HttpVersion.HTTP_1_1, true))
+        .thenReturn(createRequest(HttpMethod.GET, "/c", HttpVersion.HTTP_1_1, false));
+    when(mockRequestHandler.handle(any()))
+        .thenAnswer(invocation -> new HttpResponse().status(HttpStatus.OK).body("ok"));
+
+    handler.handle(mockSocket);
+
+    assertThat(socketOutput.writes).isEqualTo(1);
+    assertThat(socketOutput.toString().split("HTTP/1.1 200 OK", -1)).hasSize(4);
+  }
+
+  @Test
+  void shouldFlushEachResponseWhenInputIsDrained() throws IOException {
+    final WriteCountingStream socketOutput = new WriteCountingStream();
+    when(mockSocket.getOutputStream()).thenReturn(socketOutput);
+    // Bytes of the next request only arrive once the handler waits for them
+    when(mockSocket.getInputStream()).thenReturn(new TrickleInputStream("requests".getBytes()));
+    when(mockParser.parse(any(InputStream.class)))
+        .thenReturn(createRequest(HttpMethod.GET, "/a", HttpVersion.HTTP_1_1, true))
+        .thenReturn(createRequest(HttpMethod.GET, "/b", HttpVersion.HTTP_1_1, true))
+        .thenReturn(null);
+    when(mockRequestHandler.handle(any()))
+        .thenAnswer(invocation -> new HttpResponse().status(HttpStatus.OK).body("ok"));
+
+    handler.handle(mockSocket);
+
+    assertThat(socketOutput.writes).isEqualTo(2);
+  }
+
+  @Test
+  void shouldFlushBufferedResponsesBeforeWaitingForRestOfRequest() throws IOException {
+    handler =
+        new HttpConnectionHandler(
+            request -> new HttpResponse().status(HttpStatus.OK).body("ok"),
+            new HttpRequestParser(1024, 4096, 50, 16),
+            5000,
+            mockMetrics,
+            observabilityConfig,
+            accessLogger);
+    // The first segment ends mid-request; the client sends the rest only after the first response
+    final SegmentedInputStream input =
+        new SegmentedInputStream(
+            outputStream,
+            "GET /a HTTP/1.1\r\nHost: localhost\r\n\r\nGET /b HTTP/1.1\r\nHo",
+            "st: localhost\r\nConnection: close\r\n\r\n");
+    when(mockSocket.getInputStream()).thenReturn(input);
+
+    handler.handle(mockSocket);
+
+    assertThat(input.outputBeforeSecondSegment)
+        .startsWith("HTTP/1.1 200 OK")
+        .doesNotContain("Connection: close");
+    assertThat(outputStream.toString().split("HTTP/1.1 200 OK", -1)).hasSize(3);
+  }
+
+  // Keep-Alive Limits
+
+  @Test
+  void shouldCloseAfterMaxRequestsWithConnectionClose() throws IOException {
+    handler =
+        new HttpConnectionHandler(
+            new HttpExchangeProcessor(
+                mockRequestHandler, mockMetrics, observabilityConfig, accessLogger),
+            mockParser,
+            5000,
+            new KeepAlivePolicy(5000, 2, 0));
+    final HttpRequest request = createRequest(HttpMethod.GET, "/", HttpVersion.HTTP_1_1, true);
+
+    when(mockSocket.getInputStream()).thenReturn(new ByteArrayInputStream("requests".getBytes()));
+    when(mockParser.parse(any(InputStream.class))).thenReturn(request);
+    when(mockRequestHandler.handle(request))
+        .thenAnswer(invocation -> new HttpResponse().status(HttpStatus.OK).body("ok"));
+
+    handler.handle(mockSocket);
+
+    verify(mockRequestHandler, Mockito.times(2)).handle(request);
+    final String[] responses = outputStream.toString().split("HTTP/1.1 200 OK");
+    assertThat(responses).hasSize(3);
+    assertThat(responses[1]).doesNotContain("Connection: close");
+    assertThat(responses[2]).contains("Connection: close");
+    verify(mockMetrics).connectionClosed(Mockito.eq(2), Mockito.anyLong());
+    verify(mockSocket).close();
+  }
+
+  @Test
+  void shouldCloseIdleConnectionWithoutRecordingTimeout() throws IOException {
+    final HttpRequest request = createRequest(HttpMethod.GET, "/", HttpVersion.HTTP_1_1, true);
+    final InputStream idle =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new SocketTimeoutException("idle");
+          }
+        };
+
+    when(mockSocket.getInputStream()).thenReturn(idle);
+    when(mockParser.parse(any(InputStream.class))).thenReturn(request);
+    when(mockRequestHandler.handle(request)).thenReturn(new HttpResponse().status(HttpStatus.OK));
+
+    handler.handle(mockSocket);
+
+    verify(mockRequestHandler, Mockito.times(1)).handle(request);
+    verify(mockMetrics, Mockito.never())
+        .recordRequest(
+            any(),
+            Mockito.anyInt(),
+            Mockito.eq(HttpStatus.REQUEST_TIMEOUT),
+            Mockito.anyLong(),
+            Mockito.anyLong());
+    verify(mockSocket).close();
+  }
+
   // Helper Methods
 
   private HttpRequest createRequest(
@@ -327,4 +508,72 @@ class HttpConnectionHandlerTest {
     when(request.getHeader("X-Request-Id")).thenReturn(null);
     return request;
   }
+
+  /** Hands out one byte per read and never reports bytes as available, like a slow client. */
+  private static final class TrickleInputStream extends ByteArrayInputStream {
+    TrickleInputStream(final byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len) {
+      return super.read(b, off, Math.min(1, len));
+    }
+
+    @Override
+    public synchronized int available() {
+      return 0;
+    }
+  }
+
+  /**
+   * Hands out each segment in one read and never reports bytes as available, like a client whose
+   * next segment is still in flight. Records what the server had written when the second segment
+   * was requested.
+   */
+  private static final class SegmentedInputStream extends InputStream {
+    private final ByteArrayOutputStream socketOutput;
+    private final String[] segments;
+    private int next;
+    private String outputBeforeSecondSegment;
+
+    SegmentedInputStream(final ByteArrayOutputStream socketOutput, final String... segments) {
+      this.socketOutput = socketOutput;
+      this.segments = segments;
+    }
+
+    @Override
+    public int read() {
+      throw new UnsupportedOperationException("Read through a buffer");
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+      if (next == segments.length) {
+        return -1;
+      }
+      if (next == 1) {
+        outputBeforeSecondSegment = socketOutput.toString();
+      }
+      final byte[] segment = segments[next++].getBytes();
+      System.arraycopy(segment, 0, b, off, segment.length);
+      return segment.length;
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+  }
+
+  /** Socket output that counts how many writes reach it. */
+  private static final class WriteCountingStream extends ByteArrayOutputStream {
+    private int writes;
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) {
+      writes++;
+      super.write(b, off, len);
+    }
+  }
 }
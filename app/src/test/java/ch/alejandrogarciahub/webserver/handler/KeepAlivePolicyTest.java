@@ -0,0 +1,49 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class KeepAlivePolicyTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  @Test
+  void shouldEndConnectionAtMaxRequests() {
+    final KeepAlivePolicy policy = new KeepAlivePolicy(1_000, 3, 0);
+
+    assertThat(policy.allowsAnotherRequest(2, 0, 0)).isTrue();
+    assertThat(policy.allowsAnotherRequest(3, 0, 0)).isFalse();
+  }
+
+  @Test
+  void shouldEndConnectionAtMaxAge() {
+    final KeepAlivePolicy policy = new KeepAlivePolicy(1_000, 0, 60_000);
+    final long opened = 5 * MILLIS;
+
+    assertThat(policy.allowsAnotherRequest(10_000, opened, opened + 59_999 * MILLIS)).isTrue();
+    assertThat(policy.allowsAnotherRequest(1, opened, opened + 60_000 * MILLIS)).isFalse();
+  }
+
+  @Test
+  void shouldBoundIdleWaitByIdleTimeoutAndRemainingAge() {
+    final KeepAlivePolicy unlimited = KeepAlivePolicy.idleTimeoutOnly(1_000);
+    final KeepAlivePolicy aged = new KeepAlivePolicy(1_000, 0, 1_500);
+
+    assertThat(unlimited.remainingIdleNanos(0, 800 * MILLIS, 1_000 * MILLIS))
+        .isEqualTo(800 * MILLIS);
+    assertThat(aged.remainingIdleNanos(0, 800 * MILLIS, 1_000 * MILLIS)).isEqualTo(500 * MILLIS);
+    assertThat(aged.remainingIdleNanos(0, 1_400 * MILLIS, 1_600 * MILLIS)).isLessThan(0L);
+  }
+
+  @Test
+  void shouldRejectInvalidLimits() {
+    assertThatThrownBy(() -> new KeepAlivePolicy(0, 0, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new KeepAlivePolicy(1_000, -1, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new KeepAlivePolicy(1_000, 0, -1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -9,7 +9,9 @@ import ch.alejandrogarciahub.webserver.http.HttpRequest;
 import ch.alejandrogarciahub.webserver.http.HttpResponse;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
 import ch.alejandrogarciahub.webserver.observability.HttpMetrics;
+import ch.alejandrogarciahub.webserver.observability.HttpMetricsRecorder;
 import ch.alejandrogarciahub.webserver.observability.HttpMetricsSnapshot;
+import ch.alejandrogarciahub.webserver.observability.LatencyHistogram;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
@@ -23,7 +25,12 @@ class MetricsRequestHandlerTest {
     when(metrics.snapshot())
         .thenReturn(
             new HttpMetricsSnapshot(
-                5, 1, 1024, Map.of("SUCCESS", 4L, "CLIENT_ERROR", 1L), Map.of("lt_100ms", 5L)));
+                5,
+                1,
+                1024,
+                Map.of("SUCCESS", 4L, "CLIENT_ERROR", 1L),
+                latency(800, 1_200, 90_000),
+                Map.of("hits", 3L)));
 
     final MetricsRequestHandler handler = new MetricsRequestHandler(metrics);
     final HttpRequest request = mock(HttpRequest.class);
@@ -35,6 +42,44 @@ class MetricsRequestHandlerTest {
     final String body = writeBody(response);
     assertThat(body).contains("\"totalRequests\":5");
     assertThat(body).contains("\"statusCounts\":{");
+    assertThat(body).contains("\"cache\":{\"hits\":3}");
+    assertThat(body)
+        .contains("\"latency\":{\"count\":3,\"p50_us\":")
+        .contains("\"max_us\":90000}");
+  }
+
+  @Test
+  void shouldServePrometheusTextWhenAccepted() throws IOException {
+    final HttpMetricsRecorder metrics = new HttpMetricsRecorder();
+    metrics.recordRequest(HttpMethod.GET, 0, HttpStatus.OK, 1_000, 10);
+    final MetricsRequestHandler handler = new MetricsRequestHandler(metrics);
+    final HttpRequest request = mock(HttpRequest.class);
+    when(request.getMethod()).thenReturn(HttpMethod.GET);
+    when(request.getHeader("Accept")).thenReturn("text/plain;version=0.0.4;q=0.5,*/*;q=0.1");
+
+    final HttpResponse response = handler.handle(request);
+
+    assertThat(writeResponse(response)).contains("Content-Type: text/plain; version=0.0.4");
+    assertThat(writeBody(response))
+        .contains("http_server_requests_total{method=\"GET\",code=\"200\"")
+        .doesNotContain("# EOF");
+  }
+
+  @Test
+  void shouldPreferOpenMetricsAndServePrometheusOnlyHandlerWithoutAccept() throws IOException {
+    final MetricsRequestHandler handler =
+        new MetricsRequestHandler(new HttpMetricsRecorder(), true);
+    final HttpRequest scrape = mock(HttpRequest.class);
+    when(scrape.getMethod()).thenReturn(HttpMethod.GET);
+    when(scrape.getHeader("Accept"))
+        .thenReturn("application/openmetrics-text;version=1.0.0,text/plain;version=0.0.4;q=0.5");
+    final HttpRequest plain = mock(HttpRequest.class);
+    when(plain.getMethod()).thenReturn(HttpMethod.GET);
+
+    assertThat(writeBody(handler.handle(scrape))).endsWith("# EOF\n");
+    assertThat(writeBody(handler.handle(plain)))
+        .startsWith("# HELP http_server_requests_total")
+        .doesNotContain("# EOF");
   }
 
   @Test
@@ -48,15 +93,27 @@ class MetricsRequestHandlerTest {
     assertThat(response.getStatus()).isEqualTo(HttpStatus.METHOD_NOT_ALLOWED);
   }
 
-  private String writeBody(final HttpResponse response) throws IOException {
+  private static LatencyHistogram.Snapshot latency(final long... micros) {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (final long value : micros) {
+      histogram.record(value);
+    }
+    return histogram.snapshot();
+  }
+
+  private String writeResponse(final HttpResponse response) throws IOException {
     try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
       response.writeTo(out);
-      final String output = out.toString();
-      final int bodyStart = output.indexOf("\r\n\r\n");
-      if (bodyStart < 0) {
-        return output;
-      }
-      return output.substring(bodyStart + 4);
+      return out.toString();
+    }
+  }
+
+  private String writeBody(final HttpResponse response) throws IOException {
+    final String output = writeResponse(response);
+    final int bodyStart = output.indexOf("\r\n\r\n");
+    if (bodyStart < 0) {
+      return output;
     }
+    return output.substring(bodyStart + 4);
   }
 }
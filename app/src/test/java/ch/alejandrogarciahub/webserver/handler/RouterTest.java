@@ -0,0 +1,220 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.alejandrogarciahub.webserver.http.HttpHeaders;
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import ch.alejandrogarciahub.webserver.http.HttpVersion;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class RouterTest {
+
+  @Test
+  void shouldDispatchExactPathsByMethod() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(HttpMethod.GET, "/health", reply("health"))
+            .route(HttpMethod.GET, "/users", reply("list"))
+            .route(HttpMethod.POST, "/users", reply("create"))
+            .build();
+
+    assertThat(serve(router, HttpMethod.GET, "/health")).endsWith("health");
+    assertThat(serve(router, HttpMethod.GET, "/users")).endsWith("list");
+    assertThat(serve(router, HttpMethod.POST, "/users")).endsWith("create");
+    assertThat(router.handle(request(HttpMethod.GET, "/user")).getStatus())
+        .isEqualTo(HttpStatus.NOT_FOUND);
+    assertThat(router.handle(request(HttpMethod.GET, "/users/")).getStatus())
+        .isEqualTo(HttpStatus.NOT_FOUND);
+  }
+
+  @Test
+  void shouldCapturePathParameters() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(
+                HttpMethod.GET,
+                "/users/{id}/posts/{postId}",
+                (request, params) -> text(params.get("id") + ":" + params.get("postId")))
+            .route(HttpMethod.GET, "/users/{id}", (request, params) -> text("user " + params))
+            .build();
+
+    assertThat(serve(router, HttpMethod.GET, "/users/42/posts/7")).endsWith("42:7");
+    assertThat(serve(router, HttpMethod.GET, "/users/42")).endsWith("user {id=42}");
+    assertThat(router.handle(request(HttpMethod.GET, "/users/42/posts")).getStatus())
+        .isEqualTo(HttpStatus.NOT_FOUND);
+  }
+
+  @Test
+  void shouldPreferStaticSegmentsOverParameters() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(HttpMethod.GET, "/users/me", reply("me"))
+            .route(HttpMethod.GET, "/users/{id}", (request, params) -> text(params.get("id")))
+            .route(HttpMethod.GET, "/users/{id}/settings", reply("settings"))
+            .build();
+
+    assertThat(serve(router, HttpMethod.GET, "/users/me")).endsWith("me");
+    assertThat(serve(router, HttpMethod.GET, "/users/mel")).endsWith("mel");
+    // Backtracks from the static branch when it dead-ends
+    assertThat(serve(router, HttpMethod.GET, "/users/me/settings")).endsWith("settings");
+  }
+
+  @Test
+  void shouldRouteBelowLongestMountPrefix() throws IOException {
+    final Router router =
+        Router.builder()
+            .mount("/", reply("root"))
+            .mount("/static/", reply("static"))
+            .route(HttpMethod.GET, "/static/version", reply("version"))
+            .build();
+
+    assertThat(serve(router, HttpMethod.GET, "/static")).endsWith("static");
+    assertThat(serve(router, HttpMethod.DELETE, "/static/css/site.css")).endsWith("static");
+    assertThat(serve(router, HttpMethod.GET, "/static/version")).endsWith("version");
+    assertThat(serve(router, HttpMethod.GET, "/statics")).endsWith("root");
+    assertThat(serve(router, HttpMethod.GET, "/")).endsWith("root");
+  }
+
+  @Test
+  void shouldAnswerUnknownMethodWith405AndAllowHeader() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(HttpMethod.GET, "/items/{id}", reply("get"))
+            .route(HttpMethod.DELETE, "/items/{id}", reply("delete"))
+            .build();
+
+    final HttpResponse response = router.handle(request(HttpMethod.POST, "/items/1"));
+
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.METHOD_NOT_ALLOWED);
+    assertThat(write(response)).contains("Allow: GET, HEAD, DELETE\r\n");
+  }
+
+  @Test
+  void shouldServeHeadWithGetHandler() throws IOException {
+    final Router router = Router.builder().route(HttpMethod.GET, "/page", reply("page")).build();
+
+    assertThat(router.handle(request(HttpMethod.HEAD, "/page")).getStatus())
+        .isEqualTo(HttpStatus.OK);
+  }
+
+  @Test
+  void shouldUseFallbackForUnmatchedPaths() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(HttpMethod.GET, "/a", reply("a"))
+            .fallback(reply("fallback"))
+            .build();
+
+    assertThat(serve(router, HttpMethod.GET, "/b")).endsWith("fallback");
+  }
+
+  @Test
+  void shouldRejectMalformedPatterns() {
+    final Router.Builder builder = Router.builder();
+
+    assertThatThrownBy(() -> builder.route(HttpMethod.GET, "users", reply("x")))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.route(HttpMethod.GET, "/users/x{id}", reply("x")))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.route(HttpMethod.GET, "/users/{id", reply("x")))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.route(HttpMethod.GET, "/a/{id}/b/{id}", reply("x")))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.mount("/files/{name}", reply("x")))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectConflictingRoutes() {
+    final Router.Builder builder =
+        Router.builder().route(HttpMethod.GET, "/users/{id}", reply("x"));
+
+    assertThatThrownBy(() -> builder.route(HttpMethod.GET, "/users/{id}", reply("y")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Duplicate route");
+    assertThatThrownBy(() -> builder.route(HttpMethod.PUT, "/users/{name}", reply("y")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("conflicts with");
+  }
+
+  // Helper Methods
+
+  @Test
+  void shouldTagRequestsWithDenseRouteIds() throws IOException {
+    final Router router =
+        Router.builder()
+            .route(HttpMethod.GET, "/metrics", reply("metrics"))
+            .route(HttpMethod.GET, "/users/{id}", reply("user"))
+            .route(HttpMethod.PUT, "/users/{id}", reply("update"))
+            .mount("/static/", reply("static"))
+            .mount("/", reply("file"))
+            .build();
+
+    assertThat(router.routeNames()).containsExactly("/metrics", "/users/{id}", "/static/*", "/*");
+    assertThat(routeId(router, HttpMethod.GET, "/metrics")).isEqualTo(0);
+    assertThat(routeId(router, HttpMethod.PUT, "/users/7")).isEqualTo(1);
+    // 405 on a matched route still counts for it
+    assertThat(routeId(router, HttpMethod.POST, "/users/7")).isEqualTo(1);
+    assertThat(routeId(router, HttpMethod.GET, "/static/app.css")).isEqualTo(2);
+    assertThat(routeId(router, HttpMethod.GET, "/wp-login.php")).isEqualTo(3);
+  }
+
+  @Test
+  void shouldLeaveRouteIdUnsetForFallback() throws IOException {
+    final Router router = Router.builder().route(HttpMethod.GET, "/health", reply("ok")).build();
+
+    assertThat(routeId(router, HttpMethod.GET, "/missing")).isEqualTo(HttpRequest.NO_ROUTE);
+  }
+
+  @Test
+  void shouldKeepRouteIdOfOuterRouter() throws IOException {
+    final Router inner =
+        Router.builder()
+            .route(HttpMethod.GET, "/api/a", reply("a"))
+            .route(HttpMethod.GET, "/api/b", reply("b"))
+            .build();
+    final Router outer =
+        Router.builder()
+            .route(HttpMethod.GET, "/health", reply("ok"))
+            .mount("/api", inner)
+            .build();
+
+    assertThat(routeId(outer, HttpMethod.GET, "/api/b")).isEqualTo(1);
+  }
+
+  private static HttpRequestHandler reply(final String text) {
+    return request -> text(text);
+  }
+
+  private static HttpResponse text(final String text) {
+    return new HttpResponse().contentType("text/plain").body(text);
+  }
+
+  private static HttpRequest request(final HttpMethod method, final String target) {
+    return new HttpRequest(method, target, HttpVersion.HTTP_1_1, new HttpHeaders(), new byte[0]);
+  }
+
+  private static int routeId(final Router router, final HttpMethod method, final String target)
+      throws IOException {
+    final HttpRequest request = request(method, target);
+    router.handle(request);
+    return request.getRouteId();
+  }
+
+  private static String serve(final Router router, final HttpMethod method, final String target)
+      throws IOException {
+    return write(router.handle(request(method, target)));
+  }
+
+  private static String write(final HttpResponse response) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    response.writeTo(output);
+    return output.toString();
+  }
+}
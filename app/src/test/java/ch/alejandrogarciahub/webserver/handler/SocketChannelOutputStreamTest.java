@@ -0,0 +1,111 @@
+package ch.alejandrogarciahub.webserver.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link SocketChannelOutputStream} over a loopback connection. */
+class SocketChannelOutputStreamTest {
+
+  @TempDir Path tempDir;
+
+  private ServerSocketChannel listener;
+  private SocketChannel client;
+  private SocketChannel server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    listener = ServerSocketChannel.open();
+    listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    client = SocketChannel.open(listener.getLocalAddress());
+    server = listener.accept();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+    listener.close();
+  }
+
+  @Test
+  void shouldKeepStreamOrderAcrossBufferedAndChannelWrites() throws IOException {
+    final Path file = Files.writeString(tempDir.resolve("body.txt"), "0123456789");
+    final String large = "L".repeat(100);
+
+    try (SocketChannelOutputStream output =
+            new SocketChannelOutputStream(server.socket().getOutputStream(), server, 64);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      output.write("head|".getBytes(StandardCharsets.US_ASCII));
+      output.transferFrom(channel, 2, 5);
+      output.write(ByteBuffer.wrap("|small|".getBytes(StandardCharsets.US_ASCII)));
+      output.write(directBuffer(large));
+      output.write("|tail".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    assertThat(readAll(client.socket().getInputStream()))
+        .isEqualTo("head|23456|small|" + large + "|tail");
+  }
+
+  @Test
+  void shouldCoalesceSmallBuffersUntilFlush() throws IOException {
+    final SocketChannelOutputStream output =
+        new SocketChannelOutputStream(server.socket().getOutputStream(), server, 64);
+
+    output.write(directBuffer("pending"));
+    client.configureBlocking(false);
+    assertThat(client.read(ByteBuffer.allocate(16))).isEqualTo(0);
+
+    output.flush();
+    client.configureBlocking(true);
+    final ByteBuffer received = ByteBuffer.allocate(16);
+    while (received.position() < "pending".length()) {
+      client.read(received);
+    }
+    assertThat(new String(received.array(), 0, received.position(), StandardCharsets.US_ASCII))
+        .isEqualTo("pending");
+  }
+
+  @Test
+  void shouldFailWhenFileIsShorterThanDeclared() throws IOException {
+    final Path file = Files.writeString(tempDir.resolve("short.txt"), "abc");
+    final SocketChannelOutputStream output =
+        new SocketChannelOutputStream(server.socket().getOutputStream(), server, 64);
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      assertThatThrownBy(() -> output.transferFrom(channel, 0, 10))
+          .isInstanceOf(EOFException.class);
+    }
+  }
+
+  private static ByteBuffer directBuffer(final String content) {
+    final byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    return buffer;
+  }
+
+  private static String readAll(final InputStream input) throws IOException {
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    input.transferTo(received);
+    return received.toString(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,62 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link ByteRange} parsing against a 1000-byte representation. */
+class ByteRangeTest {
+
+  private static final long SIZE = 1000;
+
+  @Test
+  void shouldParseSingleRange() {
+    assertThat(ByteRange.parse("bytes=0-499", SIZE)).containsExactly(new ByteRange(0, 499));
+    assertThat(new ByteRange(0, 499).length()).isEqualTo(500L);
+    assertThat(new ByteRange(0, 499).contentRange(SIZE)).isEqualTo("bytes 0-499/1000");
+  }
+
+  @Test
+  void shouldParseSuffixAndOpenEndedRanges() {
+    assertThat(ByteRange.parse("bytes=-200", SIZE)).containsExactly(new ByteRange(800, 999));
+    assertThat(ByteRange.parse("bytes=900-", SIZE)).containsExactly(new ByteRange(900, 999));
+    // Suffix longer than the representation selects all of it
+    assertThat(ByteRange.parse("bytes=-5000", SIZE)).containsExactly(new ByteRange(0, 999));
+  }
+
+  @Test
+  void shouldClipLastPositionAndKeepRequestOrder() {
+    final List<ByteRange> ranges = ByteRange.parse("bytes=500-99999999999999999999, 0-9", SIZE);
+
+    assertThat(ranges).containsExactly(new ByteRange(500, 999), new ByteRange(0, 9));
+  }
+
+  @Test
+  void shouldIgnoreInvalidHeaders() {
+    assertThat(ByteRange.parse(null, SIZE)).isNull();
+    assertThat(ByteRange.parse("items=0-1", SIZE)).isNull();
+    assertThat(ByteRange.parse("bytes=", SIZE)).isNull();
+    assertThat(ByteRange.parse("bytes=5", SIZE)).isNull();
+    assertThat(ByteRange.parse("bytes=9-1", SIZE)).isNull();
+    assertThat(ByteRange.parse("bytes=a-b", SIZE)).isNull();
+    assertThat(ByteRange.parse("bytes=-", SIZE)).isNull();
+  }
+
+  @Test
+  void shouldReturnEmptyListWhenNothingIsSatisfiable() {
+    assertThat(ByteRange.parse("bytes=1000-1999", SIZE)).isEmpty();
+    assertThat(ByteRange.parse("bytes=-0", SIZE)).isEmpty();
+    assertThat(ByteRange.parse("bytes=0-", 0)).isEmpty();
+  }
+
+  @Test
+  void shouldIgnoreTooManyRanges() {
+    final StringBuilder header = new StringBuilder("bytes=0-0");
+    for (int i = 1; i <= ByteRange.MAX_RANGES; i++) {
+      header.append(',').append(i).append('-').append(i);
+    }
+
+    assertThat(ByteRange.parse(header.toString(), SIZE)).isNull();
+  }
+}
@@ -0,0 +1,53 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CoarseClockTest {
+
+  // Sun, 06 Nov 1994 08:49:37 GMT
+  private static final long EPOCH_MILLIS = 784111777000L;
+
+  @Test
+  void shouldRenderDateHeaderAndLogTimestamp() {
+    final CoarseClock clock = new CoarseClock(() -> EPOCH_MILLIS + 250);
+
+    assertThat(clock.httpDate()).isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+    assertThat(clock.logTimestamp()).isEqualTo("1994-11-06T08:49:37Z");
+    assertThat(new String(clock.dateHeaderLine(), StandardCharsets.US_ASCII))
+        .isEqualTo("Date: Sun, 06 Nov 1994 08:49:37 GMT\r\n");
+  }
+
+  @Test
+  void shouldReuseRenderingWithinSameSecond() {
+    final AtomicLong now = new AtomicLong(EPOCH_MILLIS);
+    final CoarseClock clock = new CoarseClock(now::get);
+
+    final byte[] first = clock.dateHeaderLine();
+    now.set(EPOCH_MILLIS + 999);
+
+    assertThat(clock.dateHeaderLine()).isSameAs(first);
+  }
+
+  @Test
+  void shouldRenderAgainWhenSecondChanges() {
+    final AtomicLong now = new AtomicLong(EPOCH_MILLIS + 999);
+    final CoarseClock clock = new CoarseClock(now::get);
+
+    final byte[] first = clock.dateHeaderLine();
+    now.set(EPOCH_MILLIS + 1000);
+
+    assertThat(clock.dateHeaderLine()).isNotSameAs(first);
+    assertThat(clock.httpDate()).isEqualTo("Sun, 06 Nov 1994 08:49:38 GMT");
+    assertThat(clock.currentTimeMillis()).isEqualTo(EPOCH_MILLIS + 1000);
+  }
+
+  @Test
+  void shouldShareSystemClock() {
+    assertThat(CoarseClock.system()).isSameAs(CoarseClock.system());
+    assertThat(CoarseClock.system().nanoTime()).isLessThanOrEqualTo(System.nanoTime());
+  }
+}
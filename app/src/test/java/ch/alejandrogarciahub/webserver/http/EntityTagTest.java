@@ -0,0 +1,46 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link EntityTag} generation and If-None-Match / If-Range comparison. */
+class EntityTagTest {
+
+  private static final String ETAG = EntityTag.forFile(500, 1_700_000_000_000L);
+
+  @Test
+  void shouldDeriveQuotedTagFromSizeAndModificationTime() {
+    assertThat(ETAG).isEqualTo("\"18bcfe56800-1f4\"");
+    assertThat(EntityTag.forFile(501, 1_700_000_000_000L)).isNotEqualTo(ETAG);
+    assertThat(EntityTag.forFile(500, 1_700_000_000_001L)).isNotEqualTo(ETAG);
+  }
+
+  @Test
+  void shouldMatchWeaklyAgainstListAndWildcard() {
+    assertThat(EntityTag.weakMatchesAny(ETAG, ETAG)).isTrue();
+    assertThat(EntityTag.weakMatchesAny("W/" + ETAG, ETAG)).isTrue();
+    assertThat(EntityTag.weakMatchesAny("\"other\", " + ETAG, ETAG)).isTrue();
+    assertThat(EntityTag.weakMatchesAny("*", ETAG)).isTrue();
+    assertThat(EntityTag.weakMatchesAny("\"other\"", ETAG)).isFalse();
+  }
+
+  @Test
+  void shouldHandleCommasInsideOpaqueTags() {
+    assertThat(EntityTag.weakMatchesAny("\"a,b\", \"c\"", "\"a,b\"")).isTrue();
+    assertThat(EntityTag.weakMatchesAny("\"a,b\"", "\"a\"")).isFalse();
+  }
+
+  @Test
+  void shouldNeverMatchWeakTagsStrongly() {
+    assertThat(EntityTag.strongMatchesAny(ETAG, ETAG)).isTrue();
+    assertThat(EntityTag.strongMatchesAny("W/" + ETAG, ETAG)).isFalse();
+  }
+
+  @Test
+  void shouldTreatMalformedListAsNoMatch() {
+    assertThat(EntityTag.weakMatchesAny("unquoted", ETAG)).isFalse();
+    assertThat(EntityTag.weakMatchesAny("\"unterminated", ETAG)).isFalse();
+    assertThat(EntityTag.weakMatchesAny(null, ETAG)).isFalse();
+  }
+}
@@ -0,0 +1,45 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Tests for {@link HeaderNames} byte lookup used by the request parser. */
+class HeaderNamesTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"Content-Length", "content-length", "CONTENT-LENGTH", "cOnTeNt-LeNgTh"})
+  void shouldResolveWellKnownNameCaseInsensitively(final String name) {
+    // Same instance, not just an equal String: no allocation per request
+    assertThat(lookup(name) == HeaderNames.CONTENT_LENGTH).isTrue();
+  }
+
+  @Test
+  void shouldResolveNameInsideLargerBuffer() {
+    final byte[] line = "Host: example.com".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(HeaderNames.lookup(line, 0, 4)).isEqualTo(HeaderNames.HOST);
+  }
+
+  @Test
+  void shouldReturnNullForUnknownNames() {
+    assertThat(lookup("X-Custom-Header")).isNull();
+    assertThat(lookup("Hosts")).isNull();
+    assertThat(lookup("This-Header-Name-Is-Longer-Than-Any-Known-Name")).isNull();
+  }
+
+  @Test
+  void shouldExposeEncodedCanonicalNames() {
+    assertThat(new String(HeaderNames.encoded("Content-Length"), StandardCharsets.US_ASCII))
+        .isEqualTo("Content-Length");
+    assertThat(HeaderNames.encoded("X-Custom-Header")).isNull();
+  }
+
+  private static String lookup(final String name) {
+    final byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+    return HeaderNames.lookup(bytes, 0, bytes.length);
+  }
+}
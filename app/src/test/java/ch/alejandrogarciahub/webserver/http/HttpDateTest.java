@@ -0,0 +1,31 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link HttpDate} using the RFC 9110 example timestamp. */
+class HttpDateTest {
+
+  private static final long EXAMPLE_MILLIS = 784_111_777_000L; // Sun, 06 Nov 1994 08:49:37 GMT
+
+  @Test
+  void shouldFormatImfFixdate() {
+    assertThat(HttpDate.format(EXAMPLE_MILLIS)).isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+    assertThat(HttpDate.format(EXAMPLE_MILLIS + 999)).isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+  }
+
+  @Test
+  void shouldParseAllThreeFormats() {
+    assertThat(HttpDate.parse("Sun, 06 Nov 1994 08:49:37 GMT")).isEqualTo(EXAMPLE_MILLIS);
+    assertThat(HttpDate.parse("Sunday, 06-Nov-94 08:49:37 GMT")).isEqualTo(EXAMPLE_MILLIS);
+    assertThat(HttpDate.parse("Sun Nov  6 08:49:37 1994")).isEqualTo(EXAMPLE_MILLIS);
+  }
+
+  @Test
+  void shouldRejectInvalidDates() {
+    assertThat(HttpDate.parse("yesterday")).isEqualTo(-1L);
+    assertThat(HttpDate.parse("")).isEqualTo(-1L);
+    assertThat(HttpDate.parse(null)).isEqualTo(-1L);
+  }
+}
@@ -130,4 +130,67 @@ class HttpHeadersTest {
     headers.remove("test");
     assertThat(headers.isEmpty()).isTrue();
   }
+
+  @Test
+  void shouldKeepRepeatedFieldsInOrder() {
+    final HttpHeaders headers = new HttpHeaders();
+
+    headers.add("Cache-Control", "no-cache");
+    headers.add("X-Trace", "a");
+    headers.add("cache-control", "no-store");
+
+    assertThat(headers.get("Cache-Control")).isEqualTo("no-cache");
+    assertThat(headers.getAll("CACHE-CONTROL")).containsExactly("no-cache", "no-store");
+    assertThat(headers.count("cache-control")).isEqualTo(2);
+    assertThat(headers.size()).isEqualTo(3);
+    assertThat(headers.asMap().get("Cache-Control")).isEqualTo("no-cache, no-store");
+  }
+
+  @Test
+  void shouldReplaceAllRepeatedFieldsOnSet() {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.add("Vary", "Accept").add("Host", "example.com").add("Vary", "Origin");
+
+    headers.set("vary", "*");
+
+    assertThat(headers.getAll("Vary")).containsExactly("*");
+    assertThat(headers.nameAt(0)).isEqualTo("Vary");
+    assertThat(headers.nameAt(1)).isEqualTo("Host");
+    assertThat(headers.size()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldIterateInInsertionOrder() {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.set("X-B", "2").set("X-A", "1").set("Host", "example.com");
+
+    final StringBuilder order = new StringBuilder();
+    headers.forEach((name, value) -> order.append(name).append('=').append(value).append(';'));
+
+    assertThat(order.toString()).isEqualTo("X-B=2;X-A=1;Host=example.com;");
+    assertThat(headers.valueAt(1)).isEqualTo("1");
+  }
+
+  @Test
+  void shouldStoreWellKnownNamesAsSharedInstance() {
+    final HttpHeaders headers = new HttpHeaders();
+
+    headers.set("content-length", "5");
+
+    // Canonical spelling, same instance as the constant
+    assertThat(headers.nameAt(0) == HeaderNames.CONTENT_LENGTH).isTrue();
+    assertThat(headers.get("CONTENT-LENGTH")).isEqualTo("5");
+  }
+
+  @Test
+  void shouldRemoveEveryRepeatedField() {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.add("X-Id", "1").add("Host", "example.com").add("x-id", "2");
+
+    assertThat(headers.remove("X-ID")).isEqualTo("1");
+
+    assertThat(headers.size()).isEqualTo(1);
+    assertThat(headers.get("Host")).isEqualTo("example.com");
+    assertThat(headers.names()).containsExactly("Host");
+  }
 }
@@ -3,6 +3,7 @@ package ch.alejandrogarciahub.webserver.http;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -65,4 +66,12 @@ class HttpMethodTest {
     assertThat(HttpMethod.POST.isIdempotent()).isFalse();
     assertThat(HttpMethod.PATCH.isIdempotent()).isFalse();
   }
+
+  @Test
+  void shouldMatchMethodFromBytesWithoutAllocating() {
+    final byte[] line = "DELETE /items/1 HTTP/1.1".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(HttpMethod.fromBytes(line, 0, 6)).isEqualTo(HttpMethod.DELETE);
+    assertThat(HttpMethod.fromBytes(line, 0, 5)).isNull();
+  }
 }
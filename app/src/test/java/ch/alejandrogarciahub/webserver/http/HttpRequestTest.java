@@ -3,6 +3,8 @@ package ch.alejandrogarciahub.webserver.http;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -230,6 +232,43 @@ class HttpRequestTest {
     assertThat(request.getQueryParam("foo")).isEqualTo("third");
   }
 
+  @Test
+  void shouldExposeRawQueryWithoutDecoding() {
+    final HttpRequest request = request("/search?q=hello%20world&tag=a+b#top");
+
+    assertThat(request.getRawQuery()).isEqualTo("q=hello%20world&tag=a+b");
+    assertThat(request.getQueryParam("tag")).isEqualTo("a b");
+    assertThat(request("/index.html").getRawQuery()).isNull();
+    assertThat(request("/page?").getRawQuery()).isEmpty();
+  }
+
+  @Test
+  void shouldDecodePercentEscapesInPathButKeepPlus() {
+    final HttpRequest request = request("/my%20files/a+b.txt?x=1");
+
+    assertThat(request.getPath()).isEqualTo("/my files/a+b.txt");
+  }
+
+  @Test
+  void shouldReturnSamePathInstanceOnRepeatedAccess() {
+    final HttpRequest request = request("/static/app.js");
+
+    assertThat(request.getPath()).isSameAs(request.getPath());
+  }
+
+  @Test
+  void shouldFallBackToUriForUnusualCharacters() {
+    // Non-ASCII characters are outside the fast path but still accepted by java.net.URI
+    assertThat(request("/caf\u00e9?q=1").getPath()).isEqualTo("/caf\u00e9");
+    assertThat(request("/caf\u00e9?q=1").getQueryParam("q")).isEqualTo("1");
+  }
+
+  @Test
+  void shouldRejectMalformedPercentEscape() {
+    assertThatThrownBy(() -> request("/bad%zz")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> request("/bad%2")).isInstanceOf(IllegalArgumentException.class);
+  }
+
   // Body & Content Handling Tests
 
   @Test
@@ -259,6 +298,18 @@ class HttpRequestTest {
     assertThat(body2[0]).isNotEqualTo((byte) 'X');
   }
 
+  @Test
+  void shouldBufferStreamedBodyOnlyWhenRead() throws Exception {
+    final InputStream stream = new ByteArrayInputStream("streamed".getBytes());
+    final HttpRequest request =
+        new HttpRequest(HttpMethod.POST, "/api", HttpVersion.HTTP_1_1, new HttpHeaders(), stream);
+
+    assertThat(request.getBodyStream()).isSameAs(stream);
+    assertThat(request.readBody()).isEqualTo("streamed".getBytes());
+    assertThat(request.readBody()).isEqualTo("streamed".getBytes());
+    assertThat(request.getBodyStream().readAllBytes()).isEqualTo("streamed".getBytes());
+  }
+
   @Test
   void shouldDetectChunkedEncoding() {
     final HttpHeaders headers = new HttpHeaders();
@@ -294,4 +345,9 @@ class HttpRequestTest {
                     new byte[0]))
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  private static HttpRequest request(final String target) {
+    return new HttpRequest(
+        HttpMethod.GET, target, HttpVersion.HTTP_1_1, new HttpHeaders(), new byte[0]);
+  }
 }
@@ -6,7 +6,13 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Tests for {@link HttpResponse} focusing on builder pattern, lazy streaming, and connection
@@ -220,6 +226,145 @@ class HttpResponseTest {
     assertThat(output).doesNotContain("supplier");
   }
 
+  @Test
+  void shouldStreamChunkedBodyOnHttp11() {
+    final HttpResponse response =
+        new HttpResponse()
+            .body("declared")
+            .streamBody(
+                body -> {
+                  body.write("hello".getBytes(StandardCharsets.US_ASCII));
+                  body.flush();
+                  body.write(" world".getBytes(StandardCharsets.US_ASCII));
+                });
+
+    final String output = writeToString(response);
+
+    assertThat(output).contains("Transfer-Encoding: chunked\r\n").doesNotContain("Content-Length");
+    assertThat(output).endsWith("\r\n\r\n5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n");
+    assertThat(response.getBytesWritten()).isEqualTo(11);
+    assertThat(response.isCloseDelimited()).isFalse();
+  }
+
+  @Test
+  void shouldSendLargeStreamedWriteAsOneChunk() {
+    final byte[] large = new byte[10_000];
+    final HttpResponse response = new HttpResponse().streamBody(body -> body.write(large));
+
+    final String output = writeToString(response);
+
+    assertThat(output).contains("\r\n\r\n2710\r\n").endsWith("\r\n0\r\n\r\n");
+    assertThat(response.getBytesWritten()).isEqualTo(10_000);
+  }
+
+  @Test
+  void shouldStreamCloseDelimitedBodyOnHttp10() {
+    final HttpResponse response =
+        new HttpResponse()
+            .version(HttpVersion.HTTP_1_0)
+            .streamBody(body -> body.write("hello".getBytes(StandardCharsets.US_ASCII)));
+
+    final String output = writeToString(response);
+
+    assertThat(output).doesNotContain("Transfer-Encoding").endsWith("\r\n\r\nhello");
+    assertThat(response.isCloseDelimited()).isTrue();
+  }
+
+  @Test
+  void shouldCountOnlyBytesSentWhenStreamingFails() {
+    final HttpResponse response =
+        new HttpResponse()
+            .streamBody(
+                body -> {
+                  body.write("sent".getBytes(StandardCharsets.US_ASCII));
+                  body.flush();
+                  body.write("buffered".getBytes(StandardCharsets.US_ASCII));
+                  throw new IOException("boom");
+                });
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    assertThatThrownBy(() -> response.writeTo(output)).hasMessageContaining("boom");
+
+    // No last chunk: the client must see a truncated body, not a complete one
+    assertThat(output.toString(StandardCharsets.US_ASCII)).endsWith("4\r\nsent\r\n");
+    assertThat(response.isCommitted()).isTrue();
+    assertThat(response.getBytesWritten()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldWriteSharedBufferBodyWithoutConsumingIt() {
+    final ByteBuffer shared =
+        ByteBuffer.wrap("cached".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    final HttpResponse response = new HttpResponse().body(shared);
+
+    assertThat(writeToString(response)).contains("Content-Length: 6").endsWith("cached");
+    // Same buffer can back another response
+    assertThat(writeToString(new HttpResponse().body(shared))).endsWith("cached");
+    assertThat(shared.remaining()).isEqualTo(6);
+  }
+
+  @Test
+  void shouldWriteFileRegionBody(@TempDir final Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("data.txt");
+    Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+    final HttpResponse response = new HttpResponse().bodyFile(file, 2L, 5L);
+
+    final String output = writeToString(response);
+    assertThat(output).contains("Content-Length: 5").endsWith("\r\n\r\n23456");
+    assertThat(response.getBytesWritten()).isEqualTo(5L);
+  }
+
+  @Test
+  void shouldFailWhenFileIsShorterThanRegion(@TempDir final Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("short.txt");
+    Files.writeString(file, "abc", StandardCharsets.US_ASCII);
+    final HttpResponse response = new HttpResponse().bodyFile(file, 0L, 10L);
+
+    // Content-Length is already on the wire, so a short body must surface as an error
+    assertThatThrownBy(() -> response.writeTo(new ByteArrayOutputStream()))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldClearFileRegionWhenSettingConcreteBody(@TempDir final Path tempDir)
+      throws IOException {
+    final Path file = tempDir.resolve("data.txt");
+    Files.writeString(file, "from file", StandardCharsets.US_ASCII);
+    final HttpResponse response = new HttpResponse().bodyFile(file, 0L, 9L).body("concrete");
+
+    final String output = writeToString(response);
+    assertThat(output).endsWith("concrete").doesNotContain("from file");
+  }
+
+  @Test
+  void shouldWriteSegmentsInOrder(@TempDir final Path tempDir) throws IOException {
+    final Path file = tempDir.resolve("data.txt");
+    Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+    final HttpResponse response =
+        new HttpResponse()
+            .body(
+                List.of(
+                    HttpResponse.BodySegment.of("[".getBytes(StandardCharsets.US_ASCII)),
+                    HttpResponse.BodySegment.ofFile(file, 1L, 2L),
+                    HttpResponse.BodySegment.ofFile(file, 7L, 3L),
+                    HttpResponse.BodySegment.of("]".getBytes(StandardCharsets.US_ASCII))));
+
+    final String output = writeToString(response);
+    assertThat(output).contains("Content-Length: 7").endsWith("\r\n\r\n[12789]");
+    assertThat(response.getBytesWritten()).isEqualTo(7L);
+  }
+
+  @Test
+  void shouldOmitBodyForNotModified() {
+    final HttpResponse response =
+        new HttpResponse().status(HttpStatus.NOT_MODIFIED).header("ETag", "\"v1\"").body("stale");
+
+    final String output = writeToString(response);
+    assertThat(output).startsWith("HTTP/1.1 304 Not Modified").endsWith("\r\n\r\n");
+    assertThat(output).doesNotContain("stale");
+    assertThat(response.getBytesWritten()).isEqualTo(0L);
+  }
+
   // Error Response Factory Tests
 
   @Test
@@ -264,6 +409,24 @@ class HttpResponseTest {
     assertThat(output).doesNotContain("<script>");
   }
 
+  @Test
+  void shouldRenderErrorPageWithAndWithoutMessage() {
+    final String bare = writeToString(HttpResponse.errorResponse(HttpStatus.BAD_REQUEST, null));
+    final String withMessage =
+        writeToString(HttpResponse.errorResponse(HttpStatus.BAD_REQUEST, "Empty request line"));
+
+    final String page =
+        "<!DOCTYPE html>\n<html>\n<head><title>400 Bad Request</title></head>\n<body>\n"
+            + "<h1>400 Bad Request</h1>\n";
+    assertThat(bare)
+        .contains("Content-Length: " + (page.length() + "</body>\n</html>\n".length()))
+        .endsWith("\r\n\r\n" + page + "</body>\n</html>\n");
+    assertThat(withMessage).endsWith(page + "<p>Empty request line</p>\n</body>\n</html>\n");
+    // The shared page is not consumed by writing it
+    assertThat(writeToString(HttpResponse.errorResponse(HttpStatus.BAD_REQUEST, null)))
+        .isEqualTo(bare);
+  }
+
   // Write Operations Tests
 
   @Test
@@ -309,8 +472,122 @@ class HttpResponseTest {
     assertThat(output.split("\r\n")).hasSizeGreaterThan(3);
   }
 
+  @Test
+  void shouldWriteHeadInSingleWriteCall() throws IOException {
+    final int[] writes = {0};
+    final ByteArrayOutputStream output =
+        new ByteArrayOutputStream() {
+          @Override
+          public synchronized void write(final byte[] b, final int off, final int len) {
+            writes[0]++;
+            super.write(b, off, len);
+          }
+        };
+
+    new HttpResponse().header("Content-Type", "text/plain").header("X-Custom", "1").writeTo(output);
+
+    assertThat(writes[0]).isEqualTo(1);
+    assertThat(output.toString())
+        .matches(
+            "HTTP/1\\.1 200 OK\r\nDate: [^\r]+ GMT\r\nServer: Java-WebServer/1\\.0\r\n"
+                + "Content-Type: text/plain\r\nX-Custom: 1\r\n\r\n");
+  }
+
+  @Test
+  void shouldSendCurrentDateHeader() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final long before = System.currentTimeMillis();
+
+    new HttpResponse().writeTo(output);
+
+    final long sent = HttpDate.parse(headerValue(output.toString(), "Date"));
+    // HTTP-dates have one-second resolution
+    assertThat(sent).isBetween(before - 1000L, System.currentTimeMillis());
+  }
+
+  @Test
+  void shouldKeepDateHeaderSetByHandler() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    new HttpResponse().header("Date", "Sun, 06 Nov 1994 08:49:37 GMT").writeTo(output);
+
+    final String head = output.toString();
+    assertThat(head).contains("Date: Sun, 06 Nov 1994 08:49:37 GMT\r\n");
+    assertThat(head.split("Date: ", -1)).hasSize(2);
+  }
+
+  @Test
+  void shouldWriteSmallBodyInSameWriteAsHead() throws IOException {
+    final CallCountingStream output = new CallCountingStream();
+
+    new HttpResponse().body("hello").writeTo(output);
+    new HttpResponse().body(ByteBuffer.allocateDirect(100)).writeTo(output);
+
+    assertThat(output.writes).isEqualTo(2);
+    assertThat(output.toString()).contains("Content-Length: 5\r\n\r\nhello");
+  }
+
+  @Test
+  void shouldWriteLargeBodyRightAfterHeadWithoutFlushing() throws IOException {
+    final CallCountingStream output = new CallCountingStream();
+    final byte[] large = new byte[64 * 1024];
+
+    new HttpResponse().body(large).writeTo(output);
+
+    assertThat(output.writes).isEqualTo(2);
+    assertThat(output.flushes).isZero();
+    assertThat(output.size()).isGreaterThan(large.length);
+  }
+
+  @Test
+  void shouldWriteRepeatedHeaderFields() {
+    final HttpResponse response =
+        new HttpResponse().addHeader("Vary", "Accept").addHeader("Vary", "Origin");
+
+    assertThat(writeToString(response)).contains("Vary: Accept\r\nVary: Origin\r\n");
+  }
+
+  @Test
+  void shouldSerializeHeadsLargerThanEncoderBuffer() {
+    final String large = "v".repeat(20_000);
+
+    assertThat(writeToString(new HttpResponse().header("X-Large", large)))
+        .contains("X-Large: " + large + "\r\n");
+    // The next head on this thread starts from a clean buffer
+    final HttpResponse small =
+        new HttpResponse().status(HttpStatus.NOT_FOUND).version(HttpVersion.HTTP_1_0);
+    assertThat(writeToString(small))
+        .startsWith("HTTP/1.0 404 Not Found\r\n")
+        .doesNotContain("X-Large");
+  }
+
+  @Test
+  void shouldReplaceCharactersOutsideLatin1InHeaderValues() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new HttpResponse().header("X-Name", "caf\u00e9 \u2603").writeTo(output);
+
+    assertThat(output.toString(StandardCharsets.ISO_8859_1)).contains("X-Name: caf\u00e9 ?\r\n");
+  }
+
   // Helper Methods
 
+  /** Counts write and flush calls to check how a response reaches the connection. */
+  private static final class CallCountingStream extends ByteArrayOutputStream {
+    private int writes;
+    private int flushes;
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) {
+      writes++;
+      super.write(b, off, len);
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+
   private HttpHeaders getHeaders(final HttpResponse response) {
     // Use reflection to access private headers field
     try {
@@ -322,6 +599,16 @@ class HttpResponseTest {
     }
   }
 
+  /** Returns the value of the first header line with the given name in a serialized head. */
+  private static String headerValue(final String head, final String name) {
+    for (final String line : head.split("\r\n")) {
+      if (line.startsWith(name + ": ")) {
+        return line.substring(name.length() + 2);
+      }
+    }
+    return null;
+  }
+
   private String writeToString(final HttpResponse response) {
     try {
       final ByteArrayOutputStream output = new ByteArrayOutputStream();
@@ -53,4 +53,13 @@ class HttpStatusTest {
     assertThat(HttpStatus.NOT_IMPLEMENTED.getCode()).isEqualTo(501);
     assertThat(HttpStatus.HTTP_VERSION_NOT_SUPPORTED.getCode()).isEqualTo(505);
   }
+
+  @Test
+  void shouldForbidBodyForNotModifiedAndNoContent() {
+    // Critical: a body after 304/204 would be parsed as the next response on keep-alive
+    assertThat(HttpStatus.NOT_MODIFIED.allowsBody()).isFalse();
+    assertThat(HttpStatus.NO_CONTENT.allowsBody()).isFalse();
+    assertThat(HttpStatus.OK.allowsBody()).isTrue();
+    assertThat(HttpStatus.NOT_FOUND.allowsBody()).isTrue();
+  }
 }
@@ -3,6 +3,7 @@ package ch.alejandrogarciahub.webserver.http;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -62,4 +63,12 @@ class HttpVersionTest {
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("Unsupported HTTP version");
   }
+
+  @Test
+  void shouldMatchVersionFromBytes() {
+    final byte[] line = "GET / HTTP/1.1".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(HttpVersion.fromBytes(line, 6, 8)).isEqualTo(HttpVersion.HTTP_1_1);
+    assertThat(HttpVersion.fromBytes(line, 5, 8)).isNull();
+  }
 }
@@ -0,0 +1,51 @@
+package ch.alejandrogarciahub.webserver.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class MappedBuffersTest {
+
+  @Test
+  void shouldCopyIntoArrayWithoutMovingSource() throws IOException {
+    final ByteBuffer source = ascii("body");
+    final byte[] target = new byte[6];
+
+    MappedBuffers.get(source, target, 2);
+
+    assertThat(new String(target, 2, 4, StandardCharsets.US_ASCII)).isEqualTo("body");
+    assertThat(source.remaining()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldCopyIntoBufferAdvancingBoth() throws IOException {
+    final ByteBuffer source = ascii("body");
+    final ByteBuffer target = ByteBuffer.allocate(8);
+
+    MappedBuffers.put(target, source);
+
+    assertThat(source.hasRemaining()).isFalse();
+    assertThat(target.position()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldWriteAllRemainingBytes() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final ByteBuffer source = ascii("x".repeat(20_000));
+
+    MappedBuffers.write(Channels.newChannel(output), source);
+
+    assertThat(source.hasRemaining()).isFalse();
+    assertThat(output.size()).isEqualTo(20_000);
+  }
+
+  private static ByteBuffer ascii(final String content) {
+    final byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+    return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+  }
+}
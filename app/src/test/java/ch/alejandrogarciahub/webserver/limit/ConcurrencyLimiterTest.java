@@ -0,0 +1,79 @@
+package ch.alejandrogarciahub.webserver.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  @Test
+  void shouldAdmitUpToLimit() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isFalse();
+    assertThat(limiter.getInFlight()).isEqualTo(2);
+
+    limiter.releaseWithoutSample();
+
+    assertThat(limiter.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void shouldRaiseLimitWhileLatencyIsSteadyUnderLoad() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+
+    completeSaturated(limiter, 1 * MILLIS, 200);
+
+    assertThat(limiter.getLimit()).isGreaterThan(10).isLessThanOrEqualTo(100);
+  }
+
+  @Test
+  void shouldLowerLimitWhenLatencyRisesAboveBaseline() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 5, 100);
+    completeSaturated(limiter, 1 * MILLIS, 20);
+    final int before = limiter.getLimit();
+
+    completeSaturated(limiter, 20 * MILLIS, 100);
+
+    assertThat(limiter.getLimit()).isLessThan(before).isGreaterThanOrEqualTo(5);
+  }
+
+  @Test
+  void shouldKeepLimitWhileMostlyIdle() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+      limiter.release(i % 2 == 0 ? MILLIS : 50 * MILLIS);
+    }
+
+    assertThat(limiter.getLimit()).isEqualTo(10);
+    assertThat(limiter.getInFlight()).isZero();
+  }
+
+  @Test
+  void shouldRejectUnorderedLimits() {
+    assertThatThrownBy(() -> new ConcurrencyLimiter(5, 0, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ConcurrencyLimiter(5, 6, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ConcurrencyLimiter(11, 1, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Fills the limiter, then completes one request at a time, refilling before each. */
+  private static void completeSaturated(
+      final ConcurrencyLimiter limiter, final long rttNanos, final int completions) {
+    for (int i = 0; i < completions; i++) {
+      while (limiter.tryAcquire()) {
+        // Admit until the limit is reached
+      }
+      limiter.release(rttNanos);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package ch.alejandrogarciahub.webserver.limit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.alejandrogarciahub.webserver.handler.HttpRequestHandler;
+import ch.alejandrogarciahub.webserver.http.HttpHeaders;
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import ch.alejandrogarciahub.webserver.http.HttpVersion;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimitingHandlerTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  private final AtomicLong clock = new AtomicLong(42 * MILLIS);
+  private final AtomicInteger served = new AtomicInteger();
+  private HttpRequestHandler delegate;
+
+  @BeforeEach
+  void setUp() {
+    delegate =
+        request -> {
+          served.incrementAndGet();
+          return new HttpResponse().contentType("text/plain").body("ok");
+        };
+  }
+
+  @Test
+  void shouldAdmitBurstThenRejectWithRetryAfter() throws IOException {
+    final RateLimitingHandler limiter = limiter(1, 3, null);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.handle(request("10.0.0.1")).getStatus()).isEqualTo(HttpStatus.OK);
+    }
+    final HttpResponse rejected = limiter.handle(request("10.0.0.1"));
+
+    assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(write(rejected)).contains("Retry-After: 1\r\n");
+    assertThat(rejected.isConnectionPersistent()).isTrue();
+    assertThat(served.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldAdmitAgainAfterEmissionInterval() throws IOException {
+    final RateLimitingHandler limiter = limiter(10, 1, null);
+
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus()).isEqualTo(HttpStatus.OK);
+    clock.addAndGet(50 * MILLIS);
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus())
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    clock.addAndGet(50 * MILLIS);
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus()).isEqualTo(HttpStatus.OK);
+  }
+
+  @Test
+  void shouldLimitClientsIndependently() throws IOException {
+    final RateLimitingHandler limiter = limiter(1, 1, null);
+
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus()).isEqualTo(HttpStatus.OK);
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus())
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(limiter.handle(request("10.0.0.2")).getStatus()).isEqualTo(HttpStatus.OK);
+  }
+
+  @Test
+  void shouldKeyByHeaderAndFallBackToAddress() throws IOException {
+    final RateLimitingHandler limiter = limiter(1, 1, "X-Forwarded-For");
+
+    final HttpRequest first = request("10.0.0.1");
+    first.getHeaders().add("X-Forwarded-For", "203.0.113.7");
+    final HttpRequest second = request("10.0.0.1");
+    second.getHeaders().add("X-Forwarded-For", "203.0.113.8");
+
+    assertThat(limiter.handle(first).getStatus()).isEqualTo(HttpStatus.OK);
+    assertThat(limiter.handle(second).getStatus()).isEqualTo(HttpStatus.OK);
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus()).isEqualTo(HttpStatus.OK);
+    assertThat(limiter.handle(request("10.0.0.1")).getStatus())
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+  }
+
+  @Test
+  void shouldPassThroughRequestsWithoutClientKey() throws IOException {
+    final RateLimitingHandler limiter = limiter(1, 1, null);
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(limiter.handle(request(null)).getStatus()).isEqualTo(HttpStatus.OK);
+    }
+    assertThat(served.get()).isEqualTo(5);
+  }
+
+  @Test
+  void shouldRejectNonPositiveSettings() {
+    assertThatThrownBy(() -> new RateLimitingHandler(delegate, 0, 1, 1, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new RateLimitingHandler(delegate, 1, 0, 1, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new RateLimitingHandler(delegate, 1, 1, 0, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  // Helper Methods
+
+  private RateLimitingHandler limiter(
+      final double requestsPerSecond, final int burst, final String keyHeader) {
+    return new RateLimitingHandler(delegate, requestsPerSecond, burst, 1024, keyHeader, clock::get);
+  }
+
+  private static HttpRequest request(final String address) throws IOException {
+    return new HttpRequest(
+        HttpMethod.GET,
+        "/",
+        HttpVersion.HTTP_1_1,
+        new HttpHeaders(),
+        null,
+        address == null ? null : InetAddress.getByName(address));
+  }
+
+  private static String write(final HttpResponse response) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    response.writeTo(output);
+    return output.toString();
+  }
+}
@@ -0,0 +1,461 @@
+package ch.alejandrogarciahub.webserver.nio;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.alejandrogarciahub.webserver.handler.HttpExchangeProcessor;
+import ch.alejandrogarciahub.webserver.handler.KeepAlivePolicy;
+import ch.alejandrogarciahub.webserver.http.HttpResponse;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import ch.alejandrogarciahub.webserver.limit.ConcurrencyLimiter;
+import ch.alejandrogarciahub.webserver.observability.AccessLogger;
+import ch.alejandrogarciahub.webserver.observability.HttpMetricsRecorder;
+import ch.alejandrogarciahub.webserver.observability.ObservabilityConfig;
+import ch.alejandrogarciahub.webserver.parser.HttpRequestParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/** Integration tests for the selector-based engine over real sockets. */
+class NioServerEngineTest {
+
+  private static final int CLIENT_READ_TIMEOUT_MS = 500;
+  private static final int KEEP_ALIVE_TIMEOUT_MS = 200;
+  private static final int KEEP_ALIVE_MAX_REQUESTS = 3;
+  private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+  private NioServerEngine engine;
+  private ExecutorService workers;
+  private Thread acceptThread;
+  private HttpMetricsRecorder metrics;
+  private ConcurrencyLimiter limiter;
+  private CountDownLatch slowRelease;
+  private Path largeFile;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    metrics = new HttpMetricsRecorder();
+    largeFile = Files.createTempFile("nio-engine", ".bin");
+    Files.write(largeFile, fileContent());
+    workers = Executors.newVirtualThreadPerTaskExecutor();
+    // Tests run one request at a time; only the shedding test exceeds a single request in flight
+    limiter = new ConcurrencyLimiter(1, 1, 1);
+    slowRelease = new CountDownLatch(1);
+    final HttpExchangeProcessor processor =
+        new HttpExchangeProcessor(
+            request ->
+                switch (request.getPath()) {
+                  case "/file" -> new HttpResponse().bodyFile(largeFile, 0L, FILE_SIZE);
+                  case "/slow" -> {
+                    awaitQuietly(slowRelease);
+                    yield new HttpResponse().contentType("text/plain").body("path=/slow");
+                  }
+                  case "/stream" ->
+                      new HttpResponse()
+                          .streamBody(
+                              body -> {
+                                body.write("first,".getBytes(StandardCharsets.US_ASCII));
+                                body.flush();
+                                body.write("second".getBytes(StandardCharsets.US_ASCII));
+                              });
+                  default ->
+                      new HttpResponse()
+                          .status(HttpStatus.OK)
+                          .contentType("text/plain")
+                          .body("path=" + request.getPath());
+                },
+            metrics,
+            new ObservabilityConfig(false, true, -1, "/metrics"),
+            new AccessLogger(false),
+            limiter);
+    engine =
+        NioServerEngine.builder()
+            .port(0)
+            .backlog(50)
+            .eventLoopThreads(2)
+            .clientReadTimeoutMs(CLIENT_READ_TIMEOUT_MS)
+            .keepAlivePolicy(new KeepAlivePolicy(KEEP_ALIVE_TIMEOUT_MS, KEEP_ALIVE_MAX_REQUESTS, 0))
+            .exchangeProcessor(processor)
+            .parserFactory(() -> new HttpRequestParser(1024, 4096, 50, 1024))
+            .workers(workers)
+            .build();
+    engine.start();
+    acceptThread = Thread.ofPlatform().daemon(true).start(engine::acceptLoop);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    slowRelease.countDown();
+    engine.stopAccepting();
+    acceptThread.join(2000);
+    workers.shutdown();
+    engine.stopEventLoops(2000);
+    Files.deleteIfExists(largeFile);
+  }
+
+  @Test
+  @Timeout(10)
+  void servesMultipleRequestsOnKeepAliveConnection() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final OutputStream out = socket.getOutputStream();
+      final InputStream in = socket.getInputStream();
+
+      out.write(request("/first").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(in)).contains("HTTP/1.1 200 OK").contains("path=/first");
+
+      out.write(request("/second").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(in)).contains("HTTP/1.1 200 OK").contains("path=/second");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void answersPipelinedRequestsInOrder() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final String pipelined = request("/a") + request("/b") + request("/c");
+      socket.getOutputStream().write(pipelined.getBytes(StandardCharsets.US_ASCII));
+
+      final InputStream in = socket.getInputStream();
+      assertThat(readResponse(in)).contains("path=/a");
+      assertThat(readResponse(in)).contains("path=/b");
+      assertThat(readResponse(in)).contains("path=/c");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void keepsOrderWhenPipelinedBatchIncludesFileBody() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final String pipelined = request("/a") + request("/file") + request("/b");
+      socket.getOutputStream().write(pipelined.getBytes(StandardCharsets.US_ASCII));
+
+      final InputStream in = socket.getInputStream();
+      assertThat(readResponse(in)).contains("path=/a");
+      assertThat(Arrays.equals(readResponseBody(in), fileContent())).isTrue();
+      assertThat(readResponse(in)).contains("path=/b");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void answersPipelinedRequestsBeforeRejectingMalformedOne() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final String pipelined = request("/a") + request("/b") + "BROKEN\r\n\r\n";
+      socket.getOutputStream().write(pipelined.getBytes(StandardCharsets.US_ASCII));
+
+      final InputStream in = socket.getInputStream();
+      assertThat(readResponse(in)).contains("path=/a");
+      assertThat(readResponse(in)).contains("path=/b");
+      assertThat(readResponse(in)).contains("HTTP/1.1 400 Bad Request");
+      assertThat(in.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void streamsChunkedBodyAndKeepsConnectionAlive() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final OutputStream out = socket.getOutputStream();
+      final InputStream in = socket.getInputStream();
+
+      out.write(request("/stream").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readHead(in))
+          .contains("Transfer-Encoding: chunked")
+          .doesNotContain("Content-Length");
+      assertThat(readChunkedBody(in)).isEqualTo("first,second");
+
+      out.write(request("/next").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(in)).contains("path=/next");
+    }
+    waitForNoActiveConnections();
+    assertThat(metrics.snapshot().bytesSent()).isEqualTo(12 + "path=/next".length());
+  }
+
+  @Test
+  @Timeout(10)
+  void shedsRequestsBeyondConcurrencyLimit() throws Exception {
+    try (Socket slow = new Socket("localhost", engine.getLocalPort());
+        Socket other = new Socket("localhost", engine.getLocalPort())) {
+      slow.getOutputStream().write(request("/slow").getBytes(StandardCharsets.US_ASCII));
+      while (limiter.getInFlight() == 0) {
+        Thread.sleep(5);
+      }
+
+      other.getOutputStream().write(request("/a").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(other.getInputStream()))
+          .contains("HTTP/1.1 503 Service Unavailable")
+          .contains("Retry-After: 1\r\n");
+
+      slowRelease.countDown();
+      assertThat(readResponse(slow.getInputStream())).contains("path=/slow");
+      // The shed client keeps its connection and is served once capacity frees up
+      other.getOutputStream().write(request("/b").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(other.getInputStream())).contains("path=/b");
+    }
+    assertThat(metrics.snapshot().concurrency())
+        .containsEntry("rejected", 1L)
+        .containsEntry("limit", 1L);
+  }
+
+  @Test
+  @Timeout(10)
+  void admitsMetricsScrapesWhileShedding() throws Exception {
+    try (Socket slow = new Socket("localhost", engine.getLocalPort());
+        Socket scraper = new Socket("localhost", engine.getLocalPort())) {
+      slow.getOutputStream().write(request("/slow").getBytes(StandardCharsets.US_ASCII));
+      while (limiter.getInFlight() == 0) {
+        Thread.sleep(5);
+      }
+
+      scraper.getOutputStream().write(request("/metrics").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(scraper.getInputStream()))
+          .contains("HTTP/1.1 200 OK")
+          .contains("path=/metrics");
+      scraper
+          .getOutputStream()
+          .write(request("/metrics/prometheus").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(scraper.getInputStream())).contains("HTTP/1.1 200 OK");
+      slowRelease.countDown();
+      assertThat(readResponse(slow.getInputStream())).contains("path=/slow");
+    }
+    assertThat(metrics.snapshot().concurrency()).containsEntry("rejected", 0L);
+  }
+
+  @Test
+  @Timeout(10)
+  void keepsHttp10KeepAliveConnectionWhenShedding() throws Exception {
+    final String keepAlive10 = "GET /a HTTP/1.0\r\nConnection: keep-alive\r\n\r\n";
+    try (Socket slow = new Socket("localhost", engine.getLocalPort());
+        Socket other = new Socket("localhost", engine.getLocalPort())) {
+      slow.getOutputStream().write(request("/slow").getBytes(StandardCharsets.US_ASCII));
+      while (limiter.getInFlight() == 0) {
+        Thread.sleep(5);
+      }
+
+      other.getOutputStream().write(keepAlive10.getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(other.getInputStream()))
+          .contains("HTTP/1.0 503 Service Unavailable")
+          .contains("Connection: keep-alive\r\n");
+
+      slowRelease.countDown();
+      assertThat(readResponse(slow.getInputStream())).contains("path=/slow");
+      other.getOutputStream().write(keepAlive10.getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(other.getInputStream()))
+          .contains("HTTP/1.0 200 OK")
+          .contains("path=/a");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void assemblesRequestSplitAcrossPackets() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final OutputStream out = socket.getOutputStream();
+      out.write("POST /upload HTTP/1.1\r\nHost: localhost\r\n".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      Thread.sleep(50);
+      out.write("Content-Length: 5\r\n\r\nhel".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      Thread.sleep(50);
+      out.write("lo".getBytes(StandardCharsets.US_ASCII));
+
+      assertThat(readResponse(socket.getInputStream())).contains("path=/upload");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void rejectsMalformedRequestAndClosesConnection() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      socket.getOutputStream().write("BROKEN\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+      final InputStream in = socket.getInputStream();
+      assertThat(readResponse(in)).contains("HTTP/1.1 400 Bad Request");
+      assertThat(in.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void closesIdleConnectionAfterReadTimeout() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      socket.setSoTimeout(5000);
+      final long start = System.nanoTime();
+
+      assertThat(socket.getInputStream().read()).isEqualTo(-1);
+      final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+      assertThat(elapsedMs >= CLIENT_READ_TIMEOUT_MS / 2).isTrue();
+    }
+    waitForNoActiveConnections();
+  }
+
+  @Test
+  @Timeout(10)
+  void closesIdleKeepAliveConnectionBeforeReadTimeout() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      socket.setSoTimeout(5000);
+      socket.getOutputStream().write(request("/a").getBytes(StandardCharsets.US_ASCII));
+      final InputStream in = socket.getInputStream();
+      assertThat(readResponse(in)).contains("path=/a");
+      final long start = System.nanoTime();
+
+      assertThat(in.read()).isEqualTo(-1);
+      final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+      assertThat(elapsedMs < CLIENT_READ_TIMEOUT_MS).isTrue();
+    }
+    waitForNoActiveConnections();
+    // An unused keep-alive connection is not a timed out request
+    assertThat(metrics.snapshot().statusCounts()).containsEntry("CLIENT_ERROR", 0L);
+  }
+
+  @Test
+  @Timeout(10)
+  void closesConnectionAfterMaxRequests() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      final OutputStream out = socket.getOutputStream();
+      final InputStream in = socket.getInputStream();
+
+      for (int i = 1; i < KEEP_ALIVE_MAX_REQUESTS; i++) {
+        out.write(request("/" + i).getBytes(StandardCharsets.US_ASCII));
+        assertThat(readResponse(in)).doesNotContain("Connection: close");
+      }
+      out.write(request("/last").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(in)).contains("path=/last").contains("Connection: close\r\n");
+      assertThat(in.read()).isEqualTo(-1);
+    }
+    waitForNoActiveConnections();
+    assertThat(metrics.snapshot().requestsPerConnection()).containsEntry("le_10", 1L);
+  }
+
+  @Test
+  @Timeout(10)
+  void sendsFileBodyLargerThanSocketBuffer() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      socket.getOutputStream().write(request("/file").getBytes(StandardCharsets.US_ASCII));
+      final InputStream in = socket.getInputStream();
+      // Let the send buffer fill so the worker has to wait for writability mid-transfer
+      Thread.sleep(100);
+
+      final byte[] body = readResponseBody(in);
+      assertThat(Arrays.equals(body, fileContent())).isTrue();
+
+      // Connection stays usable after a file transfer
+      socket.getOutputStream().write(request("/next").getBytes(StandardCharsets.US_ASCII));
+      assertThat(readResponse(in)).contains("path=/next");
+    }
+  }
+
+  @Test
+  @Timeout(10)
+  void tracksConnectionLifecycleInMetrics() throws Exception {
+    try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+      socket.getOutputStream().write(request("/").getBytes(StandardCharsets.US_ASCII));
+      readResponse(socket.getInputStream());
+      assertThat(metrics.snapshot().activeConnections()).isEqualTo(1);
+    }
+    waitForNoActiveConnections();
+    assertThat(metrics.snapshot().totalRequests()).isEqualTo(1);
+  }
+
+  private static String request(final String path) {
+    return "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  }
+
+  private static byte[] fileContent() {
+    final byte[] content = new byte[FILE_SIZE];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+
+  /** Reads one response whose body is delimited by Content-Length. */
+  private static String readResponse(final InputStream in) throws IOException {
+    final String head = readHead(in);
+    return head + new String(in.readNBytes(contentLength(head)), StandardCharsets.US_ASCII);
+  }
+
+  private static byte[] readResponseBody(final InputStream in) throws IOException {
+    return in.readNBytes(contentLength(readHead(in)));
+  }
+
+  private static String readHead(final InputStream in) throws IOException {
+    final ByteArrayOutputStream head = new ByteArrayOutputStream();
+    int matched = 0;
+    while (matched < 4) {
+      final int b = in.read();
+      if (b < 0) {
+        throw new SocketTimeoutException("Connection closed before end of response head");
+      }
+      head.write(b);
+      matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+    }
+    return head.toString(StandardCharsets.US_ASCII);
+  }
+
+  private static String readChunkedBody(final InputStream in) throws IOException {
+    final StringBuilder body = new StringBuilder();
+    while (true) {
+      final String sizeLine = readLine(in);
+      final int size = Integer.parseInt(sizeLine, 16);
+      if (size == 0) {
+        assertThat(readLine(in)).isEmpty();
+        return body.toString();
+      }
+      body.append(new String(in.readNBytes(size), StandardCharsets.US_ASCII));
+      assertThat(readLine(in)).isEmpty();
+    }
+  }
+
+  private static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        throw new SocketTimeoutException("Connection closed inside chunked body");
+      }
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  private static int contentLength(final String head) {
+    for (final String line : head.split("\r\n")) {
+      if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+        return Integer.parseInt(line.substring(15).trim());
+      }
+    }
+    return 0;
+  }
+
+  private static void awaitQuietly(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void waitForNoActiveConnections() throws InterruptedException {
+    final long deadline = System.nanoTime() + 5_000_000_000L;
+    while (metrics.snapshot().activeConnections() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(metrics.snapshot().activeConnections()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,66 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class AccessLogRingTest {
+
+  @Test
+  void shouldDrainInOrderAndRejectWhenFull() {
+    final AccessLogRing ring = new AccessLogRing(3);
+    assertThat(ring.capacity()).isEqualTo(4);
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(ring.tryPublish(entry("/" + i), "t")).isTrue();
+    }
+    assertThat(ring.tryPublish(entry("/overflow"), "t")).isFalse();
+
+    final List<String> paths = new ArrayList<>();
+    assertThat(ring.drain(slot -> paths.add(slot.path), 3)).isEqualTo(3);
+    assertThat(ring.tryPublish(entry("/4"), "t")).isTrue();
+    assertThat(ring.drain(slot -> paths.add(slot.path), 10)).isEqualTo(2);
+
+    assertThat(paths).containsExactly("/0", "/1", "/2", "/3", "/4");
+    assertThat(ring.drained()).isEqualTo(5);
+  }
+
+  @Test
+  void shouldDeliverEveryEntryPublishedConcurrently() throws InterruptedException {
+    final AccessLogRing ring = new AccessLogRing(64);
+    final AtomicLong rejected = new AtomicLong();
+    final List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      producers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 5_000; i++) {
+                      if (!ring.tryPublish(entry("/p"), "t")) {
+                        rejected.incrementAndGet();
+                      }
+                    }
+                  }));
+    }
+
+    long consumed = 0;
+    while (producers.stream().anyMatch(Thread::isAlive)) {
+      consumed += ring.drain(slot -> assertThat(slot.path).isEqualTo("/p"), 32);
+    }
+    for (final Thread producer : producers) {
+      producer.join();
+    }
+    consumed += ring.drain(slot -> {}, Integer.MAX_VALUE);
+
+    assertThat(consumed + rejected.get()).isEqualTo(20_000);
+    assertThat(ring.published()).isEqualTo(consumed);
+  }
+
+  private static AccessLogger.Entry entry(final String path) {
+    return new AccessLogger.Entry(
+        "127.0.0.1", "GET", path, null, "HTTP/1.1", 200, 0, 10, 1, true, "req");
+  }
+}
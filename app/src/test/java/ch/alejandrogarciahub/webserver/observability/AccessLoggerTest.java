@@ -5,6 +5,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
@@ -38,13 +41,15 @@ class AccessLoggerTest {
             12,
             true,
             "req-1"));
+    accessLogger.close();
 
     assertThat(appender.list).hasSize(1);
     assertThat(appender.list.get(0).getFormattedMessage())
         .contains("method=GET")
         .contains("path=/index.html")
         .contains("status=200")
-        .contains("request_id=req-1");
+        .contains("request_id=req-1")
+        .containsPattern("^time=\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z ");
   }
 
   @Test
@@ -53,7 +58,63 @@ class AccessLoggerTest {
     accessLogger.log(
         new AccessLogger.Entry(
             "127.0.0.1", "GET", "/", null, "HTTP/1.1", 200, 0, 0, 0, true, null));
+    accessLogger.close();
 
     assertThat(appender.list).isEmpty();
   }
+
+  @Test
+  void shouldBatchEncodedLinesIntoSink() {
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    final AccessLogger accessLogger =
+        new AccessLogger(true, (lines, length) -> written.write(lines, 0, length), 64);
+
+    for (int i = 0; i < 3; i++) {
+      accessLogger.log(entry("/item/" + i));
+    }
+    assertThat(accessLogger.flush()).isTrue();
+    accessLogger.log(entry("/evil\nstatus=500 é"));
+    accessLogger.close();
+
+    final String[] lines = written.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(4);
+    assertThat(lines[0])
+        .startsWith("time=")
+        .contains(" remote=10.0.0.1 method=GET path=/item/0 query=- version=HTTP/1.1 status=200")
+        .endsWith(" duration_ms=7 bytes=256 content_length=0 keep_alive=true request_id=-");
+    assertThat(lines[3]).contains("path=/evil?status=500 é ");
+  }
+
+  @Test
+  void shouldDropAndCountEntriesWhileWriterIsBehind() throws InterruptedException {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AccessLogger accessLogger =
+        new AccessLogger(
+            true,
+            (lines, length) -> {
+              writing.countDown();
+              try {
+                release.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            4);
+
+    accessLogger.log(entry("/first"));
+    writing.await();
+    for (int i = 0; i < 100; i++) {
+      accessLogger.log(entry("/" + i));
+    }
+    release.countDown();
+    accessLogger.close();
+
+    assertThat(accessLogger.getDroppedCount()).isEqualTo(96);
+  }
+
+  private static AccessLogger.Entry entry(final String path) {
+    return new AccessLogger.Entry(
+        "10.0.0.1", "GET", path, null, "HTTP/1.1", 200, 0, 256, 7, true, null);
+  }
 }
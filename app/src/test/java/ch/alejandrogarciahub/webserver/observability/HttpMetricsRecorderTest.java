@@ -3,7 +3,10 @@ package ch.alejandrogarciahub.webserver.observability;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class HttpMetricsRecorderTest {
@@ -14,9 +17,9 @@ class HttpMetricsRecorderTest {
 
     recorder.connectionOpened();
     recorder.connectionOpened();
-    recorder.recordRequest(HttpMethod.GET, HttpStatus.OK, 42, 512);
-    recorder.recordRequest(HttpMethod.GET, HttpStatus.BAD_REQUEST, 250, 128);
-    recorder.connectionClosed();
+    recorder.recordRequest(HttpMethod.GET, 0, HttpStatus.OK, 42_000, 512);
+    recorder.recordRequest(HttpMethod.GET, 0, HttpStatus.BAD_REQUEST, 250_000, 128);
+    recorder.connectionClosed(2, 300);
 
     final HttpMetricsSnapshot snapshot = recorder.snapshot();
 
@@ -25,6 +28,140 @@ class HttpMetricsRecorderTest {
     assertThat(snapshot.bytesSent()).isEqualTo(640);
     assertThat(snapshot.statusCounts().get("SUCCESS")).isEqualTo(1);
     assertThat(snapshot.statusCounts().get("CLIENT_ERROR")).isEqualTo(1);
-    assertThat(snapshot.latencyBuckets().get("lt_500ms")).isGreaterThan(0);
+    assertThat(snapshot.latency().getTotalCount()).isEqualTo(2);
+    assertThat(snapshot.latency().getMaxValue()).isEqualTo(250_000);
+  }
+
+  @Test
+  void shouldTrackCacheCounters() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+
+    recorder.recordCacheHit();
+    recorder.recordCacheHit();
+    recorder.recordCacheMiss();
+    recorder.recordCacheEvictions(3);
+
+    final HttpMetricsSnapshot snapshot = recorder.snapshot();
+
+    assertThat(snapshot.cacheCounts().get("hits")).isEqualTo(2);
+    assertThat(snapshot.cacheCounts().get("misses")).isEqualTo(1);
+    assertThat(snapshot.cacheCounts().get("evictions")).isEqualTo(3);
+  }
+
+  @Test
+  void shouldExposeConcurrencyGaugesAndRejections() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+    assertThat(recorder.snapshot().concurrency()).containsEntry("limit", 0L);
+
+    recorder.registerConcurrencyGauges(() -> 40, () -> 7);
+    recorder.recordRejectedRequest();
+    recorder.recordRejectedRequest();
+
+    final HttpMetricsSnapshot snapshot = recorder.snapshot();
+
+    assertThat(snapshot.concurrency().get("limit")).isEqualTo(40);
+    assertThat(snapshot.concurrency().get("in_flight")).isEqualTo(7);
+    assertThat(snapshot.concurrency().get("rejected")).isEqualTo(2);
+  }
+
+  @Test
+  void shouldBucketClosedConnectionsByRequestsAndLifetime() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+
+    recorder.connectionOpened();
+    recorder.connectionOpened();
+    recorder.connectionOpened();
+    recorder.connectionClosed(1, 1_000);
+    recorder.connectionClosed(10, 1_001);
+    recorder.connectionClosed(5_000, 3_600_000);
+
+    final HttpMetricsSnapshot snapshot = recorder.snapshot();
+
+    assertThat(snapshot.requestsPerConnection())
+        .containsEntry("le_1", 1L)
+        .containsEntry("le_10", 1L)
+        .containsEntry("le_100", 0L)
+        .containsEntry("gt_1000", 1L);
+    assertThat(snapshot.connectionLifetimes())
+        .containsEntry("le_1s", 1L)
+        .containsEntry("le_10s", 1L)
+        .containsEntry("gt_10m", 1L);
+    assertThat(snapshot.activeConnections()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldWritePrometheusFamiliesWithMethodAndStatusLabels() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+    recorder.connectionOpened();
+    recorder.recordRequest(HttpMethod.GET, 0, HttpStatus.OK, 800, 512);
+    recorder.recordRequest(HttpMethod.GET, 1, HttpStatus.OK, 3_000, 512);
+    recorder.recordRequest(null, HttpRequest.NO_ROUTE, HttpStatus.BAD_REQUEST, 200, 0);
+    recorder.recordSuppressedParseErrorLog();
+    recorder.connectionClosed(3, 1_500);
+
+    final PrometheusWriter writer = new PrometheusWriter(false);
+    recorder.writePrometheus(writer);
+    final String text = new String(writer.toByteArray(), StandardCharsets.US_ASCII);
+
+    assertThat(text)
+        .contains("# TYPE http_server_requests_total counter\n")
+        .contains("http_server_requests_total{method=\"GET\",code=\"200\",class=\"2xx\"} 2\n")
+        .contains("{method=\"UNKNOWN\",code=\"400\",class=\"4xx\"} 1\n")
+        .doesNotContain("method=\"POST\"")
+        .contains("http_server_request_duration_seconds_bucket{le=\"0.001\"} 2\n")
+        .contains("http_server_request_duration_seconds_bucket{le=\"0.005\"} 3\n")
+        .contains("http_server_request_duration_seconds_bucket{le=\"+Inf\"} 3\n")
+        .contains("http_server_request_duration_seconds_sum 0.004000\n")
+        .contains("http_server_connection_requests_bucket{le=\"1\"} 0\n")
+        .contains("http_server_connection_requests_bucket{le=\"10\"} 1\n")
+        .contains("http_server_connection_duration_seconds_sum 1.500\n")
+        .contains("http_server_response_bytes_total 1024\n")
+        .contains("http_server_active_connections 0\n")
+        .contains("http_server_parse_error_logs_suppressed_total 1\n");
+  }
+
+  @Test
+  void shouldBreakRequestsDownByRouteWithOverflow() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder(8);
+    recorder.registerRoutes(List.of("/metrics", "/assets/*"));
+
+    recorder.recordRequest(HttpMethod.GET, 1, HttpStatus.OK, 2_000, 700);
+    recorder.recordRequest(HttpMethod.GET, 1, HttpStatus.OK, 4_000, 300);
+    recorder.recordRequest(HttpMethod.GET, HttpRequest.NO_ROUTE, HttpStatus.NOT_FOUND, 90, 20);
+    recorder.recordRequest(null, HttpRequest.NO_ROUTE, HttpStatus.BAD_REQUEST, 50, 10);
+
+    final List<HttpMetricsSnapshot.RouteStats> routes = recorder.snapshot().routes();
+
+    assertThat(routes.stream().map(HttpMetricsSnapshot.RouteStats::route).toList())
+        .containsExactly("/metrics", "/assets/*", HttpMetricsRecorder.OVERFLOW_ROUTE);
+    assertThat(routes.get(0).requests()).isEqualTo(0);
+    assertThat(routes.get(1).requests()).isEqualTo(2);
+    assertThat(routes.get(1).bytesSent()).isEqualTo(1_000);
+    assertThat(routes.get(1).latency().getMaxValue()).isEqualTo(4_000);
+    assertThat(routes.get(2).requests()).isEqualTo(2);
+
+    final PrometheusWriter writer = new PrometheusWriter(false);
+    recorder.writePrometheus(writer);
+    assertThat(new String(writer.toByteArray(), StandardCharsets.US_ASCII))
+        .contains("http_server_route_requests_total{route=\"/assets/*\"} 2\n")
+        .contains("http_server_route_requests_total{route=\"other\"} 2\n")
+        .contains("http_server_route_request_duration_seconds_count{route=\"/assets/*\"} 2\n");
+  }
+
+  @Test
+  void shouldCountRoutesBeyondCapAsOverflow() {
+    final HttpMetricsRecorder recorder = new HttpMetricsRecorder(1);
+    recorder.registerRoutes(List.of("/metrics", "/*"));
+
+    recorder.recordRequest(HttpMethod.GET, 0, HttpStatus.OK, 100, 10);
+    recorder.recordRequest(HttpMethod.GET, 1, HttpStatus.OK, 100, 10);
+    recorder.recordRequest(HttpMethod.GET, 7, HttpStatus.OK, 100, 10);
+
+    final List<HttpMetricsSnapshot.RouteStats> routes = recorder.snapshot().routes();
+
+    assertThat(routes.stream().map(HttpMetricsSnapshot.RouteStats::route).toList())
+        .containsExactly("/metrics", HttpMetricsRecorder.OVERFLOW_ROUTE);
+    assertThat(routes.get(0).requests()).isEqualTo(1);
+    assertThat(routes.get(1).requests()).isEqualTo(2);
   }
 }
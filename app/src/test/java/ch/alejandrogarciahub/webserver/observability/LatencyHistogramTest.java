@@ -0,0 +1,117 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldReportPercentilesWithinBucketPrecision() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 100_000; micros++) {
+      histogram.record(micros);
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getTotalCount()).isEqualTo(100_000);
+    assertThat(snapshot.getMaxValue()).isEqualTo(100_000);
+    assertThat(snapshot.getValueAtPercentile(50.0)).isBetween(50_000L, 50_800L);
+    assertThat(snapshot.getValueAtPercentile(99.0)).isBetween(99_000L, 100_000L);
+    assertThat(snapshot.getValueAtPercentile(99.9)).isBetween(99_900L, 100_000L);
+    assertThat(snapshot.getValueAtPercentile(100.0)).isEqualTo(100_000);
+  }
+
+  @Test
+  void shouldResolveSmallValuesExactly() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(7);
+    histogram.record(-5);
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getValueAtPercentile(0.0)).isEqualTo(0);
+    assertThat(snapshot.getValueAtPercentile(50.0)).isEqualTo(3);
+    assertThat(snapshot.getValueAtPercentile(100.0)).isEqualTo(7);
+  }
+
+  @Test
+  void shouldKeepBucketsNarrowAtEveryMagnitude() {
+    for (long value = 64; value < (1L << 36); value = value * 3 + 1) {
+      final long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketIndex(value));
+
+      assertThat(highest).isGreaterThanOrEqualTo(value);
+      assertThat(highest - value).isLessThanOrEqualTo(value / 64);
+    }
+    // Values beyond the range share the last bucket
+    assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE))
+        .isEqualTo(LatencyHistogram.bucketIndex((1L << 36) - 1));
+  }
+
+  @Test
+  void shouldMergeSnapshotsAndDeriveIntervals() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100);
+    final LatencyHistogram.Snapshot first = histogram.snapshot();
+    histogram.record(5_000);
+    histogram.record(6_000);
+    final LatencyHistogram.Snapshot second = histogram.snapshot();
+
+    final LatencyHistogram.Snapshot interval = second.since(first);
+    assertThat(interval.getTotalCount()).isEqualTo(2);
+    assertThat(interval.getValueAtPercentile(0.0)).isBetween(5_000L, 5_100L);
+    assertThat(interval.getMaxValue()).isBetween(6_000L, 6_100L);
+
+    final LatencyHistogram other = new LatencyHistogram();
+    other.record(20_000);
+    final LatencyHistogram.Snapshot merged = second.merge(other.snapshot());
+    assertThat(merged.getTotalCount()).isEqualTo(4);
+    assertThat(merged.getMaxValue()).isEqualTo(20_000);
+    assertThat(LatencyHistogram.Snapshot.empty().getValueAtPercentile(99.0)).isEqualTo(0);
+  }
+
+  @Test
+  void shouldCountEveryValueRecordedConcurrently() throws InterruptedException {
+    final LatencyHistogram histogram = new LatencyHistogram(4);
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final long offset = t;
+      threads.add(
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 10_000; i++) {
+                      histogram.record(offset * 1_000 + i % 1_000);
+                    }
+                  }));
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertThat(snapshot.getTotalCount()).isEqualTo(80_000);
+    assertThat(snapshot.getMaxValue()).isEqualTo(7_999);
+  }
+
+  @Test
+  void shouldCountCumulativelyUpToEachBoundAndSumValues() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(500);
+    histogram.record(1_000);
+    histogram.record(4_000);
+    histogram.record(90_000_000_000L);
+
+    final long[] counts = new long[4];
+    final long total = histogram.cumulativeCounts(new long[] {100, 1_000, 1_000, 5_000}, counts);
+
+    assertThat(total).isEqualTo(4);
+    assertThat(counts).containsExactly(0, 2, 2, 3);
+    assertThat(histogram.sum()).isEqualTo(90_000_005_500L);
+  }
+}
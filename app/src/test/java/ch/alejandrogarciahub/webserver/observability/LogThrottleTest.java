@@ -0,0 +1,90 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LogThrottleTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  @Test
+  void shouldAllowBudgetPerMinuteAndCountTheRest() {
+    final LogThrottle throttle = new LogThrottle(2);
+
+    assertThat(throttle.tryAcquire(10)).isTrue();
+    assertThat(throttle.tryAcquire(20)).isTrue();
+    assertThat(throttle.tryAcquire(30)).isFalse();
+    assertThat(throttle.tryAcquire(MINUTE - 1)).isFalse();
+    assertThat(throttle.getSuppressedCount()).isEqualTo(2);
+
+    // A new minute starts with a fresh budget
+    assertThat(throttle.tryAcquire(MINUTE)).isTrue();
+    assertThat(throttle.tryAcquire(MINUTE + 1)).isTrue();
+    assertThat(throttle.tryAcquire(MINUTE + 2)).isFalse();
+    assertThat(throttle.getSuppressedCount()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldHandleNegativeNanoTime() {
+    final LogThrottle throttle = new LogThrottle(1);
+
+    assertThat(throttle.tryAcquire(-5 * MINUTE)).isTrue();
+    assertThat(throttle.tryAcquire(-5 * MINUTE + 1)).isFalse();
+    assertThat(throttle.tryAcquire(-4 * MINUTE)).isTrue();
+  }
+
+  @Test
+  void shouldReportSuppressedLinesOnce() {
+    final LogThrottle throttle = new LogThrottle(1);
+    throttle.tryAcquire(0);
+    throttle.tryAcquire(1);
+    throttle.tryAcquire(2);
+
+    assertThat(throttle.takeSuppressed()).isEqualTo(2);
+    assertThat(throttle.takeSuppressed()).isZero();
+    assertThat(throttle.getSuppressedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldNeverSuppressWhenUnlimited() {
+    final LogThrottle throttle = new LogThrottle(-1);
+
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(throttle.tryAcquire(i)).isTrue();
+    }
+    assertThat(throttle.isUnlimited()).isTrue();
+    assertThat(throttle.getSuppressedCount()).isZero();
+  }
+
+  @Test
+  void shouldSuppressEveryLineWithZeroBudget() {
+    final LogThrottle throttle = new LogThrottle(0);
+
+    assertThat(throttle.tryAcquire(0)).isFalse();
+    assertThat(throttle.tryAcquire(MINUTE)).isFalse();
+    assertThat(throttle.getSuppressedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldKeepBudgetUnderConcurrentCallers() throws InterruptedException {
+    final LogThrottle throttle = new LogThrottle(100);
+    final Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 1_000; i++) {
+                      throttle.tryAcquire(42);
+                    }
+                  });
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(throttle.getSuppressedCount()).isEqualTo(8 * 1_000 - 100);
+  }
+}
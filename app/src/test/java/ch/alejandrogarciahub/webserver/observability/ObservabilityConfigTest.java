@@ -2,6 +2,7 @@ package ch.alejandrogarciahub.webserver.observability;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class ObservabilityConfigTest {
@@ -15,4 +16,14 @@ class ObservabilityConfigTest {
     assertThat(config.getMaxParseErrorLogsPerMinute()).isEqualTo(42);
     assertThat(config.getMetricsEndpointPath()).isEqualTo("/metrics-test");
   }
+
+  @Test
+  void shouldExposeMetricsRoutes() {
+    final ObservabilityConfig config =
+        new ObservabilityConfig(true, true, -1, "/stats", List.of("/assets", "/api"), 0);
+
+    assertThat(config.getMetricsRoutes()).containsExactly("/assets", "/api");
+    // At least one route besides the overflow route
+    assertThat(config.getMaxMetricsRoutes()).isEqualTo(1);
+  }
 }
@@ -0,0 +1,70 @@
+package ch.alejandrogarciahub.webserver.observability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class PrometheusWriterTest {
+
+  @Test
+  void shouldWriteFamiliesAndLabelledSamples() {
+    final PrometheusWriter writer = new PrometheusWriter(false);
+
+    writer.counter("jobs_total", "Jobs done.");
+    writer.sample("jobs_total").label("queue", "a\"b\\c\nd").label("kind", "x").value(-42);
+    writer.sample("jobs_total").value(0);
+    writer.finish();
+
+    assertThat(text(writer))
+        .isEqualTo(
+            "# HELP jobs_total Jobs done.\n"
+                + "# TYPE jobs_total counter\n"
+                + "jobs_total{queue=\"a\\\"b\\\\c\\nd\",kind=\"x\"} -42\n"
+                + "jobs_total 0\n");
+    assertThat(writer.contentType()).startsWith("text/plain; version=0.0.4");
+  }
+
+  @Test
+  void shouldNameCounterFamiliesWithoutSuffixAndEndOpenMetrics() {
+    final PrometheusWriter writer = new PrometheusWriter(true);
+
+    writer.counter("jobs_total", "Jobs done.");
+    writer.sample("jobs_total").value(3);
+    writer.finish();
+
+    assertThat(text(writer))
+        .isEqualTo("# HELP jobs Jobs done.\n# TYPE jobs counter\njobs_total 3\n# EOF\n");
+    assertThat(writer.contentType()).startsWith("application/openmetrics-text");
+  }
+
+  @Test
+  void shouldWriteFixedPointValues() {
+    final PrometheusWriter writer = new PrometheusWriter(false);
+
+    writer.sample("a").value(1_234_567, 6);
+    writer.sample("b").value(5, 3);
+    writer.sample("c", "_sum").value(-1_500, 3);
+    writer.sample("d").value(Long.MAX_VALUE);
+
+    assertThat(text(writer))
+        .isEqualTo("a 1.234567\nb 0.005\nc_sum -1.500\nd 9223372036854775807\n");
+  }
+
+  @Test
+  void shouldStartOverAfterReset() {
+    final PrometheusWriter writer = new PrometheusWriter(false);
+    for (int i = 0; i < 1_000; i++) {
+      writer.sample("padding").value(i);
+    }
+
+    writer.reset(1024);
+    writer.sample("x").value(1);
+
+    assertThat(text(writer)).isEqualTo("x 1\n");
+  }
+
+  private static String text(final PrometheusWriter writer) {
+    return new String(writer.toByteArray(), StandardCharsets.US_ASCII);
+  }
+}
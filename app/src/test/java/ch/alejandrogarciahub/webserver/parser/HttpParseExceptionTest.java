@@ -52,4 +52,11 @@ class HttpParseExceptionTest {
 
     assertThat(ex.getCause()).isEqualTo(cause);
   }
+
+  @Test
+  void shouldNotCaptureStackTrace() {
+    final HttpParseException ex = HttpParseException.badRequest("Invalid input");
+
+    assertThat(ex.getStackTrace()).isEmpty();
+  }
 }
@@ -0,0 +1,146 @@
+package ch.alejandrogarciahub.webserver.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.alejandrogarciahub.webserver.http.HttpMethod;
+import ch.alejandrogarciahub.webserver.http.HttpRequest;
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HttpRequestDecoder} focusing on resumption across fragments.
+ *
+ * <p>Validation rules are shared with {@link HttpRequestParser} and covered by its tests; these
+ * tests exercise what only the push-style API can do: partial input, pipelined input and EOF.
+ */
+class HttpRequestDecoderTest {
+
+  private final HttpRequestDecoder decoder = new HttpRequestDecoder(8192, 8192, 100, 1024);
+
+  @Test
+  void shouldCompleteRequestFedOneByteAtATime() {
+    final byte[] request =
+        bytes("POST /api HTTP/1.1\r\nHost: example.com\r\nContent-Length: 5\r\n\r\nhello");
+
+    for (int i = 0; i < request.length - 1; i++) {
+      assertThat(decoder.decode(ByteBuffer.wrap(request, i, 1)))
+          .isEqualTo(HttpRequestDecoder.Result.NEED_MORE);
+    }
+    assertThat(decoder.decode(ByteBuffer.wrap(request, request.length - 1, 1)))
+        .isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+
+    final HttpRequest result = decoder.takeRequest();
+    assertThat(result.getMethod()).isEqualTo(HttpMethod.POST);
+    assertThat(new String(result.getBody(), StandardCharsets.US_ASCII)).isEqualTo("hello");
+  }
+
+  @Test
+  void shouldResumeChunkedBodyAcrossFragments() {
+    final String request =
+        "POST /upload HTTP/1.1\r\nHost: example.com\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n";
+
+    assertThat(decoder.decode(buffer(request.substring(0, 80))))
+        .isEqualTo(HttpRequestDecoder.Result.NEED_MORE);
+    assertThat(decoder.decode(buffer(request.substring(80))))
+        .isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+
+    assertThat(new String(decoder.takeRequest().getBody(), StandardCharsets.US_ASCII))
+        .isEqualTo("hello world");
+  }
+
+  @Test
+  void shouldCollectChunkedBodyLargerThanInitialCapacity() {
+    final HttpRequestDecoder large = new HttpRequestDecoder(8192, 8192, 100, 64 * 1024);
+    final StringBuilder request =
+        new StringBuilder(
+            "POST /upload HTTP/1.1\r\nHost: example.com\r\nTransfer-Encoding: chunked\r\n\r\n");
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      final String chunk = String.valueOf((char) ('a' + i)).repeat(700);
+      request.append("2bc\r\n").append(chunk).append("\r\n");
+      expected.append(chunk);
+    }
+    request.append("0\r\n\r\n");
+
+    assertThat(large.decode(buffer(request.toString())))
+        .isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+    assertThat(new String(large.takeRequest().getBody(), StandardCharsets.US_ASCII))
+        .isEqualTo(expected.toString());
+  }
+
+  @Test
+  void shouldLeavePipelinedBytesInBuffer() {
+    final ByteBuffer input =
+        buffer(
+            "GET /first HTTP/1.1\r\nHost: example.com\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: example.com\r\n\r\n");
+
+    assertThat(decoder.decode(input)).isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+    assertThat(decoder.takeRequest().getPath()).isEqualTo("/first");
+    assertThat(input.hasRemaining()).isTrue();
+
+    assertThat(decoder.decode(input)).isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+    assertThat(decoder.takeRequest().getPath()).isEqualTo("/second");
+    assertThat(input.hasRemaining()).isFalse();
+  }
+
+  @Test
+  void shouldReportErrorWithParserStatus() {
+    assertThat(decoder.decode(buffer("GET / HTTP/2.0\r\n")))
+        .isEqualTo(HttpRequestDecoder.Result.ERROR);
+    assertThat(decoder.getError().getStatus()).isEqualTo(HttpStatus.HTTP_VERSION_NOT_SUPPORTED);
+
+    // Failed state is sticky until reset
+    assertThat(decoder.decode(buffer("GET / HTTP/1.1\r\n")))
+        .isEqualTo(HttpRequestDecoder.Result.ERROR);
+    decoder.reset();
+    assertThat(decoder.decode(buffer("GET / HTTP/1.1\r\nHost: a\r\n\r\n")))
+        .isEqualTo(HttpRequestDecoder.Result.COMPLETE);
+  }
+
+  @Test
+  void shouldRaiseOwnStacklessErrorPerRequest() {
+    final HttpRequestDecoder other = new HttpRequestDecoder(8192, 8192, 100, 1024);
+    decoder.decode(buffer("GET / HTTP/1.1\r\nno colon\r\n"));
+    other.decode(buffer("GET / HTTP/1.1\r\nno colon\r\n"));
+
+    assertThat(decoder.getError()).isNotSameAs(other.getError());
+    assertThat(decoder.getError().getMessage()).isEqualTo("Invalid header format: missing colon");
+    assertThat(decoder.getError().getStackTrace()).isEmpty();
+  }
+
+  @Test
+  void shouldRejectBodyAboveLimitBeforeReadingIt() {
+    assertThat(
+            decoder.decode(
+                buffer("POST / HTTP/1.1\r\nHost: a\r\nContent-Length: 4096\r\n\r\n")))
+        .isEqualTo(HttpRequestDecoder.Result.ERROR);
+    assertThat(decoder.getError().getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+  }
+
+  @Test
+  void shouldTreatEndOfInputBetweenRequestsAsGraceful() {
+    assertThat(decoder.isMidRequest()).isFalse();
+    assertThat(decoder.endOfInput()).isNull();
+  }
+
+  @Test
+  void shouldReportEndOfInputInsideRequest() {
+    decoder.decode(buffer("GET / HTTP/1.1\r\nHost: example.com\r\n"));
+
+    assertThat(decoder.isMidRequest()).isTrue();
+    assertThat(decoder.endOfInput().getMessage())
+        .contains("Unexpected end of stream while reading headers");
+  }
+
+  private static ByteBuffer buffer(final String value) {
+    return ByteBuffer.wrap(bytes(value));
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -7,8 +7,10 @@ import ch.alejandrogarciahub.webserver.http.HttpMethod;
 import ch.alejandrogarciahub.webserver.http.HttpRequest;
 import ch.alejandrogarciahub.webserver.http.HttpStatus;
 import ch.alejandrogarciahub.webserver.http.HttpVersion;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 
@@ -262,6 +264,59 @@ class HttpRequestParserTest {
         .hasMessageContaining("Invalid Content-Length");
   }
 
+  @Test
+  void shouldKeepRepeatedHeaderFields() throws Exception {
+    final String request =
+        "GET / HTTP/1.1\r\n"
+            + "Host: example.com\r\n"
+            + "Accept: text/html\r\n"
+            + "accept: application/json\r\n"
+            + "\r\n";
+
+    final HttpRequest result = parse(request);
+
+    assertThat(result.getHeaders().getAll("Accept"))
+        .containsExactly("text/html", "application/json");
+  }
+
+  @Test
+  void shouldAcceptRepeatedIdenticalContentLength() throws Exception {
+    final String request =
+        "POST /api HTTP/1.1\r\n"
+            + "Host: example.com\r\n"
+            + "Content-Length: 2\r\n"
+            + "Content-Length: 2\r\n"
+            + "\r\n"
+            + "ok";
+
+    assertThat(new String(parse(request).getBody())).isEqualTo("ok");
+  }
+
+  @Test
+  void shouldRejectConflictingContentLength() {
+    final String request =
+        "POST /api HTTP/1.1\r\n"
+            + "Host: example.com\r\n"
+            + "Content-Length: 2\r\n"
+            + "Content-Length: 5\r\n"
+            + "\r\n"
+            + "hello";
+
+    assertThatThrownBy(() -> parse(request))
+        .isInstanceOf(HttpParseException.class)
+        .hasMessageContaining("Conflicting Content-Length");
+  }
+
+  @Test
+  void shouldRejectMultipleHostHeaders() {
+    final String request =
+        "GET / HTTP/1.1\r\n" + "Host: a.example\r\n" + "Host: b.example\r\n" + "\r\n";
+
+    assertThatThrownBy(() -> parse(request))
+        .isInstanceOf(HttpParseException.class)
+        .hasMessageContaining("Multiple Host");
+  }
+
   @Test
   void shouldRejectBodyExceedingMaxContentLength() {
     final HttpRequestParser parser = new HttpRequestParser(8192, 8192, 100, 10);
@@ -346,7 +401,7 @@ class HttpRequestParserTest {
             + "0\r\n"
             + "\r\n";
 
-    assertThatThrownBy(() -> parse(request))
+    assertThatThrownBy(() -> parse(request).readBody())
         .isInstanceOf(HttpParseException.class)
         .hasMessageContaining("Invalid chunk size");
   }
@@ -365,7 +420,7 @@ class HttpRequestParserTest {
             + "0\r\n"
             + "\r\n";
 
-    assertThatThrownBy(() -> parser.parse(toInputStream(request)))
+    assertThatThrownBy(() -> parser.parse(toInputStream(request)).readBody())
         .isInstanceOf(HttpParseException.class)
         .extracting(e -> ((HttpParseException) e).getStatus())
         .isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
@@ -400,11 +455,92 @@ class HttpRequestParserTest {
             + "\r\n"
             + "short"; // Only 5 bytes, expected 10
 
-    assertThatThrownBy(() -> parse(request))
+    assertThatThrownBy(() -> parse(request).readBody())
         .isInstanceOf(HttpParseException.class)
         .hasMessageContaining("Unexpected end of stream");
   }
 
+  @Test
+  void shouldLeavePipelinedRequestInStream() throws Exception {
+    final BufferedInputStream input =
+        new BufferedInputStream(
+            toInputStream(
+                "GET /first HTTP/1.1\r\nHost: example.com\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\nHost: example.com\r\n\r\n"));
+
+    assertThat(DEFAULT_PARSER.parse(input).getPath()).isEqualTo("/first");
+    assertThat(DEFAULT_PARSER.parse(input).getPath()).isEqualTo("/second");
+    assertThat(DEFAULT_PARSER.parse(input)).isNull();
+  }
+
+  // Streamed Bodies
+
+  @Test
+  void shouldReturnRequestBeforeBodyArrives() throws Exception {
+    final HttpRequestParser parser = new HttpRequestParser(8192, 8192, 100, 1024);
+    final String head = "POST /upload HTTP/1.1\r\nHost: example.com\r\nContent-Length: 5\r\n\r\n";
+
+    final HttpRequest result = parser.parse(toInputStream(head));
+
+    assertThat(result.getPath()).isEqualTo("/upload");
+    assertThatThrownBy(result::readBody)
+        .isInstanceOf(HttpParseException.class)
+        .hasMessageContaining("expected 5 bytes, got 0");
+  }
+
+  @Test
+  void shouldStreamChunkedBodyOnDemand() throws Exception {
+    final String request =
+        "POST /upload HTTP/1.1\r\n"
+            + "Host: example.com\r\n"
+            + "Transfer-Encoding: chunked\r\n"
+            + "\r\n"
+            + "5\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: ignored\r\n\r\n";
+
+    final InputStream body = parse(request).getBodyStream();
+    final byte[] first = new byte[3];
+
+    assertThat(body.read(first)).isEqualTo(3);
+    assertThat(new String(first, StandardCharsets.US_ASCII)).isEqualTo("hel");
+    assertThat(new String(body.readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("lo world");
+    assertThat(body.read()).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldDiscardUnreadBodyBeforeNextRequest() throws Exception {
+    final HttpRequestParser parser = new HttpRequestParser(8192, 8192, 100, 1024);
+    final BufferedInputStream input =
+        new BufferedInputStream(
+            toInputStream(
+                "POST /first HTTP/1.1\r\nHost: example.com\r\nContent-Length: 9\r\n\r\n"
+                    + "GET /evil"
+                    + "POST /second HTTP/1.1\r\nHost: example.com\r\n"
+                    + "Transfer-Encoding: chunked\r\n\r\n"
+                    + "9\r\nGET /evil\r\n0\r\n\r\n"
+                    + "GET /third HTTP/1.1\r\nHost: example.com\r\n\r\n"));
+
+    assertThat(parser.parse(input).getPath()).isEqualTo("/first");
+    assertThat(parser.parse(input).getPath()).isEqualTo("/second");
+    assertThat(parser.parse(input).getPath()).isEqualTo("/third");
+    assertThat(parser.parse(input)).isNull();
+  }
+
+  @Test
+  void shouldRejectMalformedBodyWhenDiscarding() throws Exception {
+    final HttpRequestParser parser = new HttpRequestParser(8192, 8192, 100, 1024);
+    final BufferedInputStream input =
+        new BufferedInputStream(
+            toInputStream(
+                "POST /upload HTTP/1.1\r\nHost: example.com\r\n"
+                    + "Transfer-Encoding: chunked\r\n\r\n"
+                    + "5\r\nhelloXX\r\n0\r\n\r\n"));
+
+    assertThat(parser.parse(input).getPath()).isEqualTo("/upload");
+    assertThatThrownBy(parser::discardUnreadBody)
+        .isInstanceOf(HttpParseException.class)
+        .hasMessageContaining("Missing CRLF after chunk data");
+  }
+
   // Helper Methods
 
   private HttpRequest parse(final String request) throws IOException, HttpParseException {
@@ -0,0 +1,80 @@
+package ch.alejandrogarciahub.webserver.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.alejandrogarciahub.webserver.http.HttpStatus;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link RequestBodyInputStream}.
+ *
+ * <p>Critical areas: the body never reads past its own framing, and framing errors are sticky.
+ */
+class RequestBodyInputStreamTest {
+
+  @Test
+  void shouldStopAtContentLength() throws Exception {
+    final InputStream source = input("helloGET /next");
+
+    final RequestBodyInputStream body = RequestBodyInputStream.fixedLength(source, 5);
+
+    assertThat(text(body.readAllBytes())).isEqualTo("hello");
+    assertThat(body.read()).isEqualTo(-1);
+    assertThat(text(source.readAllBytes())).isEqualTo("GET /next");
+  }
+
+  @Test
+  void shouldDecodeChunksAndSkipTrailers() throws Exception {
+    final InputStream source =
+        input("3;name=value\r\nhel\r\n2\r\nlo\r\n0\r\nExpires: never\r\n\r\nGET /next");
+
+    final RequestBodyInputStream body = RequestBodyInputStream.chunked(source, 1024, 1024);
+
+    assertThat(text(body.readAllBytes())).isEqualTo("hello");
+    assertThat(text(source.readAllBytes())).isEqualTo("GET /next");
+  }
+
+  @Test
+  void shouldDiscardRemainingBody() throws Exception {
+    final InputStream source = input("5\r\nhello\r\n6\r\n world\r\n0\r\n\r\nGET /next");
+    final RequestBodyInputStream body = RequestBodyInputStream.chunked(source, 1024, 1024);
+    assertThat(body.read()).isEqualTo((int) 'h');
+
+    body.discardRemaining();
+
+    assertThat(body.read()).isEqualTo(-1);
+    assertThat(text(source.readAllBytes())).isEqualTo("GET /next");
+  }
+
+  @Test
+  void shouldRejectChunkedBodyExceedingLimit() {
+    final RequestBodyInputStream body =
+        RequestBodyInputStream.chunked(input("8\r\n12345678\r\n0\r\n\r\n"), 4, 1024);
+
+    assertThatThrownBy(body::readAllBytes)
+        .isInstanceOf(HttpParseException.class)
+        .extracting(e -> ((HttpParseException) e).getStatus())
+        .isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+  }
+
+  @Test
+  void shouldReportSameErrorOnEveryReadAfterFailure() {
+    final RequestBodyInputStream body =
+        RequestBodyInputStream.chunked(input("5\r\nhelloXX\r\n"), 1024, 1024);
+
+    assertThatThrownBy(body::readAllBytes).hasMessageContaining("Missing CRLF after chunk data");
+    assertThatThrownBy(body::read).hasMessageContaining("Missing CRLF after chunk data");
+  }
+
+  private static InputStream input(final String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static String text(final byte[] bytes) {
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}